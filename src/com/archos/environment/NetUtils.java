@@ -55,7 +55,7 @@ public class NetUtils implements LifecycleObserver {
     /**
      * Indicates there is no available network.
      */
-    private static final int NO_NETWORK_AVAILABLE = -1;
+    public static final int NO_NETWORK_AVAILABLE = -1;
     /**
      * Indicates this network uses a Cellular transport.
      */
@@ -158,10 +158,17 @@ public class NetUtils implements LifecycleObserver {
      * <p>
      */
     public int getActiveNetwork() {
-        NetworkInfo activeNetwork = mConnectivityMgr.getActiveNetworkInfo(); // Deprecated in API 29
+        return getActiveTransport(mConnectivityMgr);
+    }
+
+    /**
+     * Same as getActiveNetwork() without a NetUtils instance (and its activity), e.g. from a service
+     */
+    public static int getActiveTransport(ConnectivityManager connectivityMgr) {
+        NetworkInfo activeNetwork = connectivityMgr.getActiveNetworkInfo(); // Deprecated in API 29
         if (activeNetwork != null)
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                NetworkCapabilities capabilities = mConnectivityMgr.getNetworkCapabilities(mConnectivityMgr.getActiveNetwork());
+                NetworkCapabilities capabilities = connectivityMgr.getNetworkCapabilities(connectivityMgr.getActiveNetwork());
                 if (capabilities != null)
                     if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
                         return TRANSPORT_CELLULAR;
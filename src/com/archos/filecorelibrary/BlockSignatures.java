@@ -0,0 +1,104 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MD5 of each fixed size block of a file, the last block being possibly shorter.
+ * Used by the delta copy to only send the blocks of a file that differ from the existing target.
+ */
+public class BlockSignatures {
+
+    private final int mBlockSize;
+    private final byte[][] mHashes;
+
+    public BlockSignatures(int blockSize, List<byte[]> hashes) {
+        mBlockSize = blockSize;
+        mHashes = hashes.toArray(new byte[0][]);
+    }
+
+    public int getBlockSize() {
+        return mBlockSize;
+    }
+
+    public int getBlockCount() {
+        return mHashes.length;
+    }
+
+    /**
+     * true if block index exists in the signed file and has the same MD5 as hash
+     */
+    public boolean matches(int index, byte[] hash) {
+        return index < mHashes.length && Arrays.equals(mHashes[index], hash);
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // MD5 is mandatory on Android
+        }
+    }
+
+    /**
+     * Reads in until end of stream (stream is closed)
+     */
+    public static BlockSignatures compute(InputStream in, int blockSize) throws IOException {
+        MessageDigest md = newDigest();
+        List<byte[]> hashes = new ArrayList<>();
+        byte[] block = new byte[blockSize];
+        try {
+            int len;
+            while ((len = readBlock(in, block)) > 0) {
+                md.update(block, 0, len);
+                hashes.add(md.digest());
+                if (len < blockSize)
+                    break;
+            }
+        } finally {
+            in.close();
+        }
+        return new BlockSignatures(blockSize, hashes);
+    }
+
+    /**
+     * Fills block as much as the stream allows
+     * @return number of bytes read, less than block.length only at end of stream
+     */
+    public static int readBlock(InputStream in, byte[] block) throws IOException {
+        int total = 0;
+        while (total < block.length) {
+            int len = in.read(block, total, block.length - total);
+            if (len < 0)
+                break;
+            total += len;
+        }
+        return total;
+    }
+
+    public static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        return bytes;
+    }
+}
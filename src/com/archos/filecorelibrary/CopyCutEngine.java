@@ -14,12 +14,15 @@
 
 package com.archos.filecorelibrary;
 
+import static com.archos.filecorelibrary.FileUtils.caughtException;
+
 import android.content.Context;
-import android.content.Intent;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 
+import com.archos.filecorelibrary.sshj.SshjTarPipe;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.SftpException;
 
@@ -27,9 +30,16 @@ import com.jcraft.jsch.SftpException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class CopyCutEngine {
     private final Context mContext;
@@ -37,12 +47,29 @@ public class CopyCutEngine {
     private CopyThread mCopyThread;
     private OperationEngineListener mListener;
     private boolean mHasToStop;
-    private static final int MAX_COUNT = 32768;
     private String mFileCopyString;
     private String mFirstCopyPattern; // Full pattern for the first copy
     private String mCopyPatternLeft; // Part of the pattern before the index
     private String mCopyPatternRight; // Part of the pattern after the index
     private String mTargetFilePrefix;
+    private boolean mSyncCompareContent;
+    private TransferDigest.Algorithm mDigestAlgorithm;
+    private boolean mVerifyTarget;
+    private volatile TreeWalker mTreeWalker;
+    private boolean mPipelined;
+    private int mMediaStoreBatchSize = MediaStoreBatch.DEFAULT_BATCH_SIZE;
+    private int mMaxBufferSize;
+    private boolean mDelta;
+    private Map<Uri, Uri> mResumeTargets;
+    private static final int DELTA_BLOCK_SIZE = 1024 * 1024;
+    // directories with at least this number of files go through a tar stream when one side is sftp
+    private static final int TAR_PIPE_MIN_FILES = 100;
+    private static final long TAR_PIPE_PROGRESS_INTERVAL_MS = 200;
+    // number of discovered files waiting to be transferred in pipelined mode
+    private static final int PIPELINE_QUEUE_SIZE = 512;
+    private static final long PIPELINE_POLL_MS = 200;
+    // FAT and SMB1 only keep modification dates with a 2s granularity
+    private static final long SYNC_DATE_TOLERANCE_MS = 2000;
 
 
     /**
@@ -96,8 +123,91 @@ public class CopyCutEngine {
         }
     }
 
+    /**
+     * Mirror sources into target: only new or changed files (size, last modification date) are transferred,
+     * unchanged ones are skipped. Changed files are overwritten in place, target entries of the other type than
+     * their source (file vs directory) are deleted first and reported in SyncReport.getToReplace().
+     *
+     * @param deleteExtraneous also delete target files that are not in the source directories anymore
+     * (only inside synced directories, never at the root of target)
+     * @param dryRun only compute the plan and report it through onSyncReport(), nothing is written
+     */
+    public void sync(List<MetaFile2> sources, Uri target, boolean deleteExtraneous, boolean dryRun) {
+        if(mCopyThread==null || !mCopyThread.isAlive()){
+            mCopyThread = new CopyThread();
+            mHasToStop = false;
+            mCopyThread.setSyncLists(sources, target, deleteExtraneous, dryRun);
+            mCopyThread.start();
+        }
+    }
+
+    /**
+     * When true, sync compares the content of files having the same size instead of trusting their dates (slow: both files are read)
+     */
+    public void setSyncCompareContent(boolean compareContent) {
+        mSyncCompareContent = compareContent;
+    }
+
+    /**
+     * Compute a digest of every copied file on the fly, reported through onDigest()
+     * @param algorithm null to disable
+     * @param verifyTarget check afterwards that the target holds the same digest (server-side hash when available,
+     * re-read otherwise), reported through onDigestMismatch()
+     * Files are then always streamed one by one through the device, never copied server-side or tar piped.
+     */
+    public void setDigest(TransferDigest.Algorithm algorithm, boolean verifyTarget) {
+        mDigestAlgorithm = algorithm;
+        mVerifyTarget = verifyTarget;
+    }
+
+    /**
+     * When overwriting (or syncing) a file that already exists, only send the blocks that differ from the target,
+     * written in place. Used when the target protocol can hash its blocks where they are and write at random offsets
+     * (local storage, sftp), regular copy otherwise.
+     */
+    public void setDelta(boolean delta) {
+        mDelta = delta;
+    }
+
+    /**
+     * Copy/cut start transferring while the source trees are still being listed, with a bounded memory footprint
+     * whatever the size of the trees (sync keeps planning everything first).
+     * In this mode onFilesListUpdate() only carries the root files and the totals are refined through onTotalSizeUpdate()
+     */
+    public void setPipelined(boolean pipelined) {
+        mPipelined = pipelined;
+    }
+
+    /**
+     * Upper bound of the buffer of streamed copies, whose size otherwise comes from the TransferTuning of the server
+     * @param maxBufferSize 0 for no bound
+     */
+    public void setMaxBufferSize(int maxBufferSize) {
+        mMaxBufferSize = maxBufferSize;
+    }
+
+    /**
+     * Resuming a copy/cut that was started without overwrite: each source root goes to the target reported by
+     * onTargetsResolved() during the first run (e.g. its " (copy N)" name) instead of picking a name again.
+     * Roots missing from targets get a free name, existing files are never overwritten.
+     * @param targets source root uri -> target uri, null to pick names as usual
+     */
+    public void setResumeTargets(Map<Uri, Uri> targets) {
+        mResumeTargets = targets;
+    }
+
+    /**
+     * Number of MediaStore operations grouped in one provider transaction when cutting local files
+     */
+    public void setMediaStoreBatchSize(int batchSize) {
+        mMediaStoreBatchSize = batchSize;
+    }
+
     public void stop() {
         mHasToStop = true;
+        TreeWalker walker = mTreeWalker;
+        if (walker != null)
+            walker.cancel();
     }
 
     public void setAllTargetFilesShouldStartWithString(String s) {
@@ -113,6 +223,10 @@ public class CopyCutEngine {
         private Uri mTargetDirectory;
         private boolean mCut;
         private boolean mOverwrite;
+        private boolean mSync;
+        private boolean mSyncDeleteExtraneous;
+        private boolean mSyncDryRun;
+        private SyncReport mSyncReport;
         /* to delete folder on file cut, we need to keep parent of each metafile and children of each metafile because folders
         are not recursively copied (first we retrieve every children, then we copy each one of them as singular files)
         these maps will be used to check at the end of each file cut if parent folder is empty.
@@ -121,131 +235,25 @@ public class CopyCutEngine {
         private HashMap<MetaFile2, List<MetaFile2>> parents; // key : parent, value : children
         private HashMap<MetaFile2, MetaFile2>children; // key : a child file, value : its parent
         private long mLastUpdate = 0;
+        // pipelined mode: the transfer loop is over, the enumeration thread has to give up
+        private volatile boolean mPipelineStopped;
 
 
-        private Uri getNextCopyUri(MetaFile2 toCopy, List<MetaFile2> inTargetDirectory, Uri directory) {
+        private Uri getNextCopyUri(MetaFile2 toCopy, DestinationNameIndex inTargetDirectory, Uri directory) {
             // Extract the filename and the extension from the complete path
             String fullName = toCopy.getName();
             //add prefix when needed
             if(mTargetFilePrefix!=null&&!fullName.startsWith(mTargetFilePrefix)){
                 fullName = mTargetFilePrefix+fullName;
             }
-            if(mOverwrite)
+            if (mResumeTargets != null) {
+                Uri recorded = mResumeTargets.get(toCopy.getUri());
+                if (recorded != null)
+                    return recorded;
+            } else if(mOverwrite||mSync)
                 return FileUtils.buildChildUri(directory, fullName);
-            String name; // myvideo
-            String extension; // avi
-            // Unused.
-
-            //check if already in target
-            boolean isInTarget = false;
-            for(MetaFile2 target : inTargetDirectory){
-                if(target.getName().equals(fullName)){
-                    isInTarget = true;
-                    break;
-                }
-            }
-            if(!isInTarget){
-                return FileUtils.buildChildUri(directory, fullName);
-            }
-            int extensionPos = fullName.lastIndexOf('.');
-            if (extensionPos >= 0) {
-                name = fullName.substring(0, extensionPos);
-                extension = fullName.substring(extensionPos + 1);
-            } else {
-                name = fullName;
-                extension = "";
-            }
-
-            // Get the base name of the file to copy:
-            // - if the file is itself a copy of another file => use the name of
-            // the original file
-            // - use the current name otherwise
-            String baseName = name;
-            if (name.endsWith(mFirstCopyPattern)) {
-                baseName = name.substring(0, name.length() - mFirstCopyPattern.length());
-            } else if (name.endsWith(mCopyPatternRight)) {
-                // Check if we can find the " (copy NN)" pattern
-                int templatePos = name.lastIndexOf(mCopyPatternLeft);
-                if (templatePos >= 0) {
-                    baseName = name.substring(0, templatePos);
-                }
-            }
-
-            // Check if there are already some copies of the file in the current
-            // folder
-            // and retrieve the first available index for the suffix to add to
-            // the filename
-            int copyIndex = getNextCopyIndex(inTargetDirectory, baseName, extension);
-
-            // Build the new filename by appending a suffix to the current
-            // filename
-            String suffix;
-            if (copyIndex == 1) {
-                // First copy => add a " (copy)" suffix
-                suffix = mFirstCopyPattern;
-            } else {
-                // Other copies => add a " (copy NN)" suffix
-                suffix = mCopyPatternLeft + copyIndex + mCopyPatternRight;
-            }
-            if (extension.isEmpty()) {
-                return FileUtils.buildChildUri(directory, baseName + suffix);
-            }
-
-            return FileUtils.buildChildUri(directory,baseName + suffix + "." + extension);
-        }
-
-        private int getNextCopyIndex(List<MetaFile2> inTargetDirectory, String originalName,
-                                     String originalExtension) {
-            int maxCopyIndex = 0;
-            // Scan the contents of the current folder
-            for (MetaFile2 file : inTargetDirectory) {
-                int index = 0;
-                // Extract the filename and the extension from the complete path
-                String extension;
-                int extensionPos = file.getName().lastIndexOf('.');
-                if (extensionPos >= 0) {
-                    extension = file.getName().substring(extensionPos + 1);
-                } else {
-                    extension = "";
-                }
-                if(extension==null)
-                    extension="";
-                // We only need to compare the filenames if the extension is the
-                // same
-                if (extension.equals(originalExtension)) {
-                        String fileName;
-                        if (extension.isEmpty()) {
-                        fileName = file.getName();
-                    } else {
-                        fileName = file.getName().substring(0, file.getName().length()
-                                - extension.length() - 1);
-                    }
-                    if (fileName.startsWith(originalName)) {
-                        // Check if there is a known suffix at the end of the
-                        // filename
-                        if (fileName.endsWith(mFirstCopyPattern)) {
-                            // This is the first copy of the original file
-                            index = 1;
-                        } else if (fileName.endsWith(mCopyPatternRight)) {
-                            // This could be a copy of the original file
-                            // => check if we can find the " (copy NN)" pattern
-                            // and extract NN then
-                            int templatePos = fileName.lastIndexOf(mCopyPatternLeft);
-                            if (templatePos >= 0) {
-                                String indexString = fileName.substring(templatePos
-                                        + mCopyPatternLeft.length(), fileName.length() - 1);
-                                index = Integer.parseInt(indexString);
-                            }
-                        }
-                    }
-                }
-
-                if (maxCopyIndex < index) {
-                    // We found a copy with a higher index => remember it
-                    maxCopyIndex = index;
-                }
-            }
-            return (maxCopyIndex + 1);
+            // free name, or " (copy N)" variant with the first index available after the existing copies of the original file
+            return FileUtils.buildChildUri(directory, inTargetDirectory.reserve(fullName));
         }
 
         /**
@@ -260,29 +268,125 @@ public class CopyCutEngine {
          * return size
          */
 
-        private long getDirectoryInfo(MetaFile2 file, Uri target, List<MetaFile2> filesToCopy) throws Exception {
-            long size = 0;
-            List<MetaFile2> files = file.getRawListerInstance().getFileList();
-            parents.put(file, files);
-            if (files != null) {
+        private long getDirectoryInfo(MetaFile2 file, Uri target, final List<MetaFile2> filesToCopy) throws Exception {
+            // target of each directory waiting to be listed
+            final HashMap<MetaFile2, Uri> directoryTargets = new HashMap<>();
+            directoryTargets.put(file, target);
+            final long[] size = {0};
+            TreeWalker walker = new TreeWalker(new TreeWalker.Visitor() {
+                @Override
+                public List<MetaFile2> onDirectoryListed(MetaFile2 directory, List<MetaFile2> files) throws Exception {
+                    Uri directoryTarget = directoryTargets.remove(directory);
+                    parents.put(directory, files);
+                    if (files == null)
+                        return null;
+                    List<MetaFile2> subdirectories = new ArrayList<>();
+                    // sync: what is already in target, entries left at the end are not in source anymore
+                    HashMap<String, MetaFile2> targetEntries = mSync ? getTargetEntries(directoryTarget) : null;
+                    for (MetaFile2 f : files) {
+                        if(mHasToStop)
+                            return null;
+                        Uri newTarget = Uri.withAppendedPath(directoryTarget, f.getName());
+                        if (mSync) {
+                            MetaFile2 existing = targetEntries.remove(f.getName());
+                            if (existing != null && isUnchanged(f, existing)) {
+                                // existing directory: no need to create it but its content still has to be checked
+                                if (f.isDirectory()) {
+                                    directoryTargets.put(f, newTarget);
+                                    subdirectories.add(f);
+                                } else
+                                    mSyncReport.addUnchanged(f);
+                                continue;
+                            }
+                            if (existing != null && existing.isDirectory() != f.isDirectory())
+                                mSyncReport.addToReplace(existing);
+                            mSyncReport.addToTransfer(f);
+                        }
+                        filesToCopy.add(f);
+                        mSourceTarget.put(f,newTarget);
+                        children.put(f, directory);
+                        if (f.isDirectory()) {
+                            directoryTargets.put(f, newTarget);
+                            subdirectories.add(f);
+                        } else {
+                            size[0] += f.length();
+                            mTotalSize += f.length();
+                        }
+                    }
 
-                for (MetaFile2 f : files) {
-                    if(mHasToStop)
-                        return -1;
-                    filesToCopy.add(f);
-                    Uri newTarget = Uri.withAppendedPath(target, f.getName());
-                    mSourceTarget.put(f,newTarget);
-                    children.put(f, file);
-                    if (f.isDirectory()) {
-                        size += getDirectoryInfo(f,newTarget, filesToCopy);
-                    } else {
-                        size += f.length();
-                        mTotalSize += f.length();
+                    if (mSync && mSyncDeleteExtraneous) {
+                        for (MetaFile2 extraneous : targetEntries.values())
+                            mSyncReport.addToDelete(extraneous);
                     }
+                    return subdirectories;
                 }
+            });
+            mTreeWalker = walker;
+            walker.walk(file);
+            mTreeWalker = null;
+            return mHasToStop ? -1 : size[0];
+        }
 
+        /**
+         * Lists target directory for sync, indexed by name. Empty when the directory does not exist yet.
+         */
+        private HashMap<String, MetaFile2> getTargetEntries(Uri targetDirectory) {
+            HashMap<String, MetaFile2> entries = new HashMap<>();
+            try {
+                List<MetaFile2> files = RawListerFactory.getRawListerForUrl(targetDirectory, false).getFileList();
+                if (files != null) {
+                    for (MetaFile2 f : files)
+                        entries.put(f.getName(), f);
+                }
+            } catch (Exception e) {
+                // target directory not created yet: everything in source is new
+            }
+            return entries;
+        }
+
+        /**
+         * Sync: true if target does not need to be transferred again.
+         * Copies do not preserve modification dates, hence a target at least as recent as its source with the same size is up to date.
+         */
+        private boolean isUnchanged(MetaFile2 source, MetaFile2 target) throws Exception {
+            if (source.isDirectory() != target.isDirectory())
+                return false;
+            if (source.isDirectory())
+                return true;
+            if (source.length() != target.length())
+                return false;
+            if (mSyncCompareContent)
+                return getDigest(source, TransferDigest.Algorithm.SHA256).equals(getDigest(target, TransferDigest.Algorithm.SHA256));
+            if (source.lastModified() <= 0 || target.lastModified() <= 0) // date not available, size is all we have
+                return true;
+            return target.lastModified() >= source.lastModified() - SYNC_DATE_TOLERANCE_MS;
+        }
+
+        private String getDigest(MetaFile2 file, TransferDigest.Algorithm algorithm) throws Exception {
+            FileEditor editor = file.getFileEditorInstance(mContext);
+            String digest = editor.getDigest(algorithm);
+            if (digest == null)
+                digest = TransferDigest.compute(editor.getInputStream(), algorithm);
+            return digest;
+        }
+
+        /**
+         * Checks that target holds the bytes that were sent
+         */
+        private void verifyTarget(FileEditor targetEditor, final Uri target, final TransferDigest.Algorithm algorithm, final String expected) throws Exception {
+            String digest = targetEditor.getDigest(algorithm);
+            if (digest == null)
+                digest = TransferDigest.compute(targetEditor.getInputStream(), algorithm);
+            final String actual = digest;
+            if (!expected.equals(actual)) {
+                mUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mListener != null)
+                            mListener.onDigestMismatch(target, algorithm, expected, actual);
+                    }
+                });
             }
-            return size;
         }
 
         /**
@@ -300,18 +404,37 @@ public class CopyCutEngine {
             }
             else {
                 FileEditor sourceEditor = FileEditorFactory.getFileEditorForUrl(source.getUri(),mContext);
+                // a digest needs the bytes: server-side copies would be reported without one
+                if (mDigestAlgorithm == null && sourceEditor.canCopyServerSide(target) && copyServerSide(sourceEditor, source, target, currentFile, currentRootFile, rootProgress, totalProgress))
+                    return source.length();
+                if (mDelta && (mOverwrite || mSync) && targetEditor.exists()) {
+                    long copied = copyDelta(sourceEditor, targetEditor, target, currentFile, currentRootFile, rootProgress, totalProgress);
+                    if (copied >= 0)
+                        return copied;
+                }
                 OutputStream out = targetEditor.getOutputStream();
                 InputStream in = sourceEditor.getInputStream();
                 if (in != null && out != null) {
                     long position = 0;
                     long startTime = System.currentTimeMillis();
                     boolean isNetworkFileCopy = !FileUtils.isLocal(target) || !FileUtils.isLocal(source.getUri());
-                    byte buf[] = new byte[MAX_COUNT];
+                    final TransferDigest digest = mDigestAlgorithm != null ? new TransferDigest(mDigestAlgorithm) : null;
+                    Uri remote = FileUtils.isLocal(source.getUri()) ? target : source.getUri();
+                    int bufferSize = TransferTuning.getParameters(remote).bufferSize;
+                    if (mMaxBufferSize > 0)
+                        bufferSize = Math.min(bufferSize, mMaxBufferSize);
+                    // first large file of a server never seen before: measured for the next transfers, once this one is over
+                    TransferTuning tuning = TransferTuning.getInstance();
+                    if (tuning != null && !FileUtils.isLocal(source.getUri()))
+                        tuning.probeIfNeeded(source.getUri(), source.length());
+                    byte buf[] = new byte[bufferSize];
                     int len;
                     while ((len = in.read(buf)) != -1) {
                         if(mHasToStop)
                             break;
                         out.write(buf, 0, len);
+                        if (digest != null)
+                            digest.update(buf, 0, len);
                         position += (long)len;
                         totalProgress +=(long)len;
                         rootProgress += (long)len;
@@ -334,13 +457,19 @@ public class CopyCutEngine {
                     if(mHasToStop){
                         targetEditor.delete();
                     }else{
-                        if(FileUtils.isLocal(target)) {
-                            Uri toIndex = target;
-                            if (toIndex.getScheme() == null)
-                                toIndex = Uri.parse("file://" + toIndex.toString());
-                            Intent scanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
-                            scanIntent.setData(toIndex);
-                            mContext.sendBroadcast(scanIntent);
+                        if(FileUtils.isLocal(target))
+                            MediaScanBatcher.getInstance(mContext).add(target);
+                        if (digest != null) {
+                            final String value = digest.getValue();
+                            mUiHandler.post(new Runnable() {
+                                @Override
+                                public void run() {
+                                    if (mListener != null)
+                                        mListener.onDigest(target, digest.getAlgorithm(), value);
+                                }
+                            });
+                            if (mVerifyTarget)
+                                verifyTarget(targetEditor, target, digest.getAlgorithm(), value);
                         }
                         mUiHandler.post(new Runnable() {
                             @Override
@@ -358,6 +487,468 @@ public class CopyCutEngine {
             return 0;
         }
 
+        /**
+         * Sends only the blocks of source whose MD5 differ from the block at the same offset in the existing target.
+         * Blocks are compared in place: appended data and same-size edits (tags) are cheap, shifted content is not.
+         * @return number of bytes of source, -1 if target does not support it: caller has to do a regular copy
+         */
+        private long copyDelta(FileEditor sourceEditor, FileEditor targetEditor, final Uri target, final int currentFile, final int currentRootFile, long rootProgress, long totalProgress) throws Exception {
+            BlockSignatures signatures;
+            PositionalWriter writer;
+            try {
+                signatures = targetEditor.getBlockSignatures(DELTA_BLOCK_SIZE);
+                writer = signatures != null ? targetEditor.getPositionalWriter() : null;
+            } catch (Exception e) {
+                caughtException(e, "CopyCutEngine:copyDelta", "Exception getting block signatures of " + target + ", falling back to regular copy");
+                return -1;
+            }
+            if (writer == null)
+                return -1;
+            InputStream in = sourceEditor.getInputStream();
+            if (in == null) {
+                writer.close();
+                return -1;
+            }
+            final TransferDigest digest = mDigestAlgorithm != null ? new TransferDigest(mDigestAlgorithm) : null;
+            MessageDigest md = BlockSignatures.newDigest();
+            byte[] block = new byte[DELTA_BLOCK_SIZE];
+            long position = 0;
+            long startTime = System.currentTimeMillis();
+            int index = 0;
+            try {
+                int len;
+                while ((len = BlockSignatures.readBlock(in, block)) > 0) {
+                    if (mHasToStop)
+                        break;
+                    md.update(block, 0, len);
+                    // a short last block only matches if the target ends at the same place
+                    if (!signatures.matches(index, md.digest())) {
+                        writer.write(position, block, 0, len);
+                    }
+                    if (digest != null)
+                        digest.update(block, 0, len);
+                    position += len;
+                    totalProgress += len;
+                    rootProgress += len;
+                    index++;
+                    final long finalPosition = position;
+                    final long finalTotalProgress = totalProgress;
+                    final long finalRootProgress = rootProgress;
+                    final double currentSpeed = getCopySpeed(position, startTime);
+                    mUiHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if(mListener != null){
+                                mListener.onProgress(currentFile, finalPosition, currentRootFile, finalRootProgress, finalTotalProgress, currentSpeed);
+                            }
+                        }
+                    });
+                    if (len < DELTA_BLOCK_SIZE)
+                        break;
+                }
+                if (!mHasToStop)
+                    writer.setLength(position);
+            } finally {
+                in.close();
+                writer.close();
+            }
+            if (mHasToStop) {
+                // half updated, same as an interrupted regular copy
+                targetEditor.delete();
+                return position;
+            }
+            if (FileUtils.isLocal(target))
+                MediaScanBatcher.getInstance(mContext).add(target);
+            if (digest != null) {
+                final String value = digest.getValue();
+                mUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mListener != null)
+                            mListener.onDigest(target, digest.getAlgorithm(), value);
+                    }
+                });
+                if (mVerifyTarget)
+                    verifyTarget(targetEditor, target, digest.getAlgorithm(), value);
+            }
+            mUiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mListener != null) {
+                        mListener.onSuccess(target);
+                    }
+                }
+            });
+            return position;
+        }
+
+        private boolean isTarPipeCandidate(MetaFile2 root, List<MetaFile2> tree) {
+            // files in the tar stream get no digest
+            if (mDigestAlgorithm != null)
+                return false;
+            Uri target = mSourceTarget.get(root);
+            if (!SshjTarPipe.canUpload(root.getUri(), target) && !SshjTarPipe.canDownload(root.getUri(), target))
+                return false;
+            int fileCount = 0;
+            for (MetaFile2 f : tree) {
+                if (f.isFile() && ++fileCount >= TAR_PIPE_MIN_FILES)
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Transfers a root directory and its content in a single tar stream
+         * @return the entries transferred, the others (e.g. all of them without shell access) have to be copied one by one
+         */
+        private Set<MetaFile2> tarPipe(List<MetaFile2> tree, final int currentFile, final int currentRootFile, final long rootProgress, final long totalProgress) {
+            final MetaFile2 root = tree.get(0);
+            final long startTime = System.currentTimeMillis();
+            SshjTarPipe.Listener listener = new SshjTarPipe.Listener() {
+                private long mLastProgress;
+                @Override
+                public void onProgress(final long transferred) {
+                    long now = System.currentTimeMillis();
+                    if (now - mLastProgress < TAR_PIPE_PROGRESS_INTERVAL_MS)
+                        return;
+                    mLastProgress = now;
+                    final double currentSpeed = getCopySpeed(transferred, startTime);
+                    mUiHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if(mListener != null){
+                                mListener.onProgress(currentFile, transferred, currentRootFile, rootProgress + transferred, totalProgress + transferred, currentSpeed);
+                            }
+                        }
+                    });
+                }
+
+                @Override
+                public boolean isCanceled() {
+                    return mHasToStop;
+                }
+            };
+            if (SshjTarPipe.canUpload(root.getUri(), mSourceTarget.get(root)))
+                return SshjTarPipe.upload(mContext, tree, mSourceTarget, listener);
+            return SshjTarPipe.download(mContext, tree, mSourceTarget, listener);
+        }
+
+        /**
+         * Bookkeeping of an entry already transferred by the tar stream of its root
+         * @return size of the entry
+         */
+        private long tarPiped(MetaFile2 source) {
+            final Uri target = mSourceTarget.get(source);
+            if (source.isDirectory())
+                return 0;
+            if (FileUtils.isLocal(target))
+                MediaScanBatcher.getInstance(mContext).add(target);
+            mUiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mListener != null) {
+                        mListener.onSuccess(target);
+                    }
+                }
+            });
+            return source.length();
+        }
+
+        /**
+         * A moved local file has to be indexed at its new place and removed from the index at the old one
+         */
+        private void scanMoved(Uri source, Uri target) {
+            // before Q a local move already updated the MediaStore entry in place (see LocalStorageFileEditor.move)
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q && MediaStoreBatch.current() != null
+                    && FileUtils.isLocal(source) && FileUtils.isLocal(target))
+                return;
+            if (FileUtils.isLocal(target))
+                MediaScanBatcher.getInstance(mContext).add(target);
+            if (FileUtils.isLocal(source))
+                MediaScanBatcher.getInstance(mContext).add(source);
+        }
+
+        /**
+         * Moves a root directory as a whole when the server can do it with a single rename.
+         * An existing target is left to the per-file path, which merges into it instead of replacing it
+         */
+        private boolean moveServerSide(MetaFile2 source) {
+            final Uri target = mSourceTarget.get(source);
+            try {
+                FileEditor editor = source.getFileEditorInstance(mContext);
+                return editor.canMoveServerSide(target)
+                        && !FileEditorFactory.getFileEditorForUrl(target, mContext).exists()
+                        && editor.move(target);
+            } catch (Exception e) {
+                caughtException(e, "CopyCutEngine:moveServerSide", "Exception in server-side move of " + source.getUri());
+            }
+            return false;
+        }
+
+        /**
+         * Copy done by the server itself when source and target are on the same server, nothing goes through the device
+         * @return false if the server refused it, the file has then to be streamed
+         */
+        private boolean copyServerSide(FileEditor sourceEditor, final MetaFile2 source, final Uri target, final int currentFile, final int currentRootFile, long rootProgress, long totalProgress) {
+            try {
+                if (!sourceEditor.copyServerSide(target))
+                    return false;
+            } catch (Exception e) {
+                caughtException(e, "CopyCutEngine:copyServerSide", "Exception in server-side copy of " + source.getUri() + ", falling back to streaming");
+                return false;
+            }
+            final long length = source.length();
+            final long finalRootProgress = rootProgress + length;
+            final long finalTotalProgress = totalProgress + length;
+            mUiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mListener != null) {
+                        mListener.onProgress(currentFile, length, currentRootFile, finalRootProgress, finalTotalProgress, -1.0);
+                        mListener.onSuccess(target);
+                    }
+                }
+            });
+            return true;
+        }
+
+        /**
+         * Pipelined mode: enumeration thread feeds a bounded queue consumed by the transfer loop.
+         * Cut cleanup is tracked per directory with a count of entries not transferred yet, instead of the parents/children maps.
+         */
+        private void transferPipelined(final boolean cut, MediaStoreBatch mediaStoreBatch) throws Exception {
+            final BlockingQueue<WorkItem> queue = new ArrayBlockingQueue<>(PIPELINE_QUEUE_SIZE);
+            final List<MetaFile2> rootFiles = new ArrayList<>(mSources);
+            final Exception[] enumerationException = {null};
+            mPipelineStopped = false;
+            mUiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(mListener != null)
+                        mListener.onFilesListUpdate(rootFiles, rootFiles);
+                }
+            });
+            Thread enumerator = new Thread("CopyCutEngine-enumerator") {
+                @Override
+                public void run() {
+                    try {
+                        enumerateSources(rootFiles, cut, queue);
+                    } catch (Exception e) {
+                        enumerationException[0] = e;
+                    } finally {
+                        try {
+                            enqueue(queue, WorkItem.END);
+                        } catch (InterruptedException ignored) {}
+                    }
+                }
+            };
+            enumerator.start();
+
+            try {
+                int i = 0;
+                long totalProgress = 0;
+                long rootProgress = 0;
+                int currentRootFile = -1;
+                while (!mHasToStop) {
+                    WorkItem item = queue.poll(PIPELINE_POLL_MS, TimeUnit.MILLISECONDS);
+                    if (item == null)
+                        continue;
+                    if (item == WorkItem.END)
+                        break;
+                    if (item.listedCount >= 0) {
+                        // listing done: account for its entries then release the listing token
+                        item.node.pending += item.listedCount;
+                        releaseDirectory(item.node, cut);
+                        continue;
+                    }
+                    if (item.rootIndex != currentRootFile) {
+                        currentRootFile = item.rootIndex;
+                        rootProgress = 0;
+                    }
+                    final MetaFile2 source = item.source;
+                    final int currentFile = i;
+                    final long finalTotalProgress = totalProgress;
+                    final int finalCurrentRootFile = currentRootFile;
+                    final long finalRootProgress = rootProgress;
+                    mUiHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if(mListener != null){
+                                mListener.onProgress(currentFile, 0, finalCurrentRootFile, finalRootProgress, finalTotalProgress, -1.0);
+                            }
+                        }
+                    });
+                    boolean moveSuccess = item.moved;
+                    if (moveSuccess) {
+                        mUiHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (mListener != null)
+                                    mListener.onSuccess(item.target);
+                            }
+                        });
+                    } else if (cut && source.isFile()) { //first, we need to try a fast move
+                        try {
+                            long tmpProgress = source.length();
+                            moveSuccess = source.getFileEditorInstance(mContext).move(item.target);
+                            if (moveSuccess) {
+                                totalProgress += tmpProgress;
+                                scanMoved(source.getUri(), item.target);
+                            }
+                        } catch (Exception e) {
+
+                        }
+                    }
+                    if (!moveSuccess) {
+                        long progress = copy(source, item.target, i, currentRootFile, rootProgress, totalProgress);
+                        totalProgress += progress;
+                        rootProgress += progress;
+                        // directories are deleted once their whole content has been transferred (see releaseDirectory)
+                        if (!mHasToStop && cut && source.isFile())
+                            source.getFileEditorInstance(mContext).delete();
+                    }
+                    if (!mHasToStop && item.parent != null && source.isFile())
+                        releaseDirectory(item.parent, cut);
+                    final long finalTotalProgress2 = totalProgress;
+                    final long finalRootProgress2 = rootProgress;
+                    mUiHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if(mListener != null){
+                                mListener.onProgress(currentFile, -1, finalCurrentRootFile, finalRootProgress2, finalTotalProgress2, -1.0); //-1 means finished
+                            }
+                        }
+                    });
+                    i++;
+                }
+            } finally {
+                // done, canceled or failed: the enumerator must not wait forever for room in the queue
+                mPipelineStopped = true;
+                TreeWalker walker = mTreeWalker;
+                if (walker != null)
+                    walker.cancel();
+                enumerator.interrupt();
+                try {
+                    enumerator.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (mHasToStop) {
+                invalidateListings(cut);
+                mUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(mListener!=null)
+                            mListener.onCanceled();
+                    }
+                });
+                return;
+            }
+            if (enumerationException[0] != null)
+                throw enumerationException[0];
+            // pending MediaStore updates of the moved files are visible once onEnd() is received
+            mediaStoreBatch.flush();
+            invalidateListings(cut);
+            mUiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(mListener!=null)
+                        mListener.onEnd();
+                }
+            });
+        }
+
+        /**
+         * Runs on the enumeration thread: blocks whenever the transfer loop is PIPELINE_QUEUE_SIZE entries behind
+         */
+        private void enumerateSources(List<MetaFile2> roots, boolean cut, final BlockingQueue<WorkItem> queue) throws Exception {
+            final long[] totalSize = {0};
+            final int[] fileCount = {0};
+            for (int r = 0; r < roots.size() && !mHasToStop && !mPipelineStopped; r++) {
+                final int rootIndex = r;
+                final MetaFile2 root = roots.get(r);
+                final Uri rootTarget = mSourceTarget.get(root);
+                if (root.isFile()) {
+                    totalSize[0] += root.length();
+                    fileCount[0]++;
+                    enqueue(queue, new WorkItem(root, rootTarget, rootIndex, null, null, false));
+                    postTotalSize(totalSize[0], fileCount[0], false);
+                    continue;
+                }
+                if (cut && moveServerSide(root)) {
+                    enqueue(queue, new WorkItem(root, rootTarget, rootIndex, null, null, true));
+                    continue;
+                }
+                // directories waiting to be listed
+                final HashMap<MetaFile2, DirectoryNode> toList = new HashMap<>();
+                DirectoryNode rootNode = new DirectoryNode(root, rootTarget, null);
+                toList.put(root, rootNode);
+                enqueue(queue, new WorkItem(root, rootTarget, rootIndex, null, rootNode, false));
+                TreeWalker walker = new TreeWalker(new TreeWalker.Visitor() {
+                    @Override
+                    public List<MetaFile2> onDirectoryListed(MetaFile2 directory, List<MetaFile2> files) throws Exception {
+                        DirectoryNode node = toList.remove(directory);
+                        // never delete a directory whose content is unknown
+                        if (files == null) node.keep = true;
+                        enqueue(queue, WorkItem.listed(node, files == null ? 0 : files.size()));
+                        if (files == null)
+                            return null;
+                        List<MetaFile2> subdirectories = new ArrayList<>();
+                        for (MetaFile2 f : files) {
+                            Uri target = Uri.withAppendedPath(node.target, f.getName());
+                            DirectoryNode childNode = null;
+                            if (f.isDirectory()) {
+                                childNode = new DirectoryNode(f, target, node);
+                                toList.put(f, childNode);
+                                subdirectories.add(f);
+                            } else {
+                                totalSize[0] += f.length();
+                                fileCount[0]++;
+                            }
+                            enqueue(queue, new WorkItem(f, target, rootIndex, node, childNode, false));
+                        }
+                        postTotalSize(totalSize[0], fileCount[0], false);
+                        return subdirectories;
+                    }
+                });
+                mTreeWalker = walker;
+                walker.walk(root);
+                mTreeWalker = null;
+            }
+            if (!mHasToStop)
+                postTotalSize(totalSize[0], fileCount[0], true);
+        }
+
+        private void enqueue(BlockingQueue<WorkItem> queue, WorkItem item) throws InterruptedException {
+            while (!mHasToStop && !mPipelineStopped && !queue.offer(item, PIPELINE_POLL_MS, TimeUnit.MILLISECONDS));
+        }
+
+        private void postTotalSize(final long totalSize, final int fileCount, final boolean complete) {
+            mUiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mListener != null)
+                        mListener.onTotalSizeUpdate(totalSize, fileCount, complete);
+                }
+            });
+        }
+
+        /**
+         * One entry of the directory has been transferred (or its listing is done): once nothing is left, a cut
+         * directory is deleted and its parent is released in turn
+         */
+        private void releaseDirectory(DirectoryNode node, boolean cut) throws Exception {
+            if (--node.pending > 0)
+                return;
+            if (cut && !node.keep && !mHasToStop)
+                node.directory.getFileEditorInstance(mContext).delete();
+            if (node.parent != null) {
+                if (node.keep) node.parent.keep = true;
+                releaseDirectory(node.parent, cut);
+            }
+        }
+
         /**
          * will delete parent folders when empty
          *
@@ -390,6 +981,9 @@ public class CopyCutEngine {
                 }
             });
             mTotalSize=0;
+            final MediaStoreBatch mediaStoreBatch = MediaStoreBatch.begin(mContext, mMediaStoreBatchSize);
+            final TransferTuning tuning = TransferTuning.getInstance();
+            final List<Uri> servers = new ArrayList<>();
             try {
 
                     //first we check if we have metafiles, if we don't, we retrieve them
@@ -402,12 +996,20 @@ public class CopyCutEngine {
                            }
                        }
                     }
+                // servers busy with this job are not probed until it ends
+                if (tuning != null) {
+                    servers.add(mTargetDirectory);
+                    for (MetaFile2 source : mSources)
+                        servers.add(source.getUri());
+                    for (Uri server : servers)
+                        tuning.beginTransfer(server);
+                }
                 //we check if target directory exists
                 FileEditor fe = FileEditorFactory.getFileEditorForUrl(mTargetDirectory,mContext);
-                if(!fe.exists())
+                if(!mSyncDryRun && !fe.exists())
                     fe.mkdir();
                 // we make a list of targets uri based on what is already in targetdirectory
-                List<MetaFile2> files = RawListerFactory.getRawListerForUrl(mTargetDirectory).getFileList();
+                List<MetaFile2> files = RawListerFactory.getRawListerForUrl(mTargetDirectory, false).getFileList();
 
                 //infolder is useful to avoid conflict when copying
                     /*
@@ -426,36 +1028,123 @@ public class CopyCutEngine {
 
                      */
 
+                    DestinationNameIndex targetNames = new DestinationNameIndex(files, mFirstCopyPattern, mCopyPatternLeft, mCopyPatternRight);
                     for(MetaFile2 mf : mSources){
                         if(mHasToStop)
                             break;
-                        Uri nextTarget = getNextCopyUri(mf, files, mTargetDirectory);
+                        Uri nextTarget = getNextCopyUri(mf, targetNames, mTargetDirectory);
                         mSourceTarget.put(mf, nextTarget);
 
                     }
+                    final HashMap<Uri, Uri> rootTargets = new HashMap<>();
+                    for (Map.Entry<MetaFile2, Uri> sourceTarget : mSourceTarget.entrySet())
+                        rootTargets.put(sourceTarget.getKey().getUri(), sourceTarget.getValue());
+                    mUiHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if(mListener != null)
+                                mListener.onTargetsResolved(rootTargets);
+                        }
+                    });
+
+                if (mPipelined && !mSync) {
+                    transferPipelined(cut, mediaStoreBatch);
+                    return;
+                }
 
                 ArrayList<MetaFile2> toRetrieve = new ArrayList<MetaFile2>();
                 toRetrieve.addAll(mSources);
 
+                HashMap<String, MetaFile2> rootTargetEntries = new HashMap<>();
+                if (mSync && files != null) {
+                    for (MetaFile2 f : files)
+                        rootTargetEntries.put(f.getName(), f);
+                }
+
                 long totalSize = 0;
                 long totalProgress = 0;
                 final List<MetaFile2> rootFiles = new ArrayList<>();
                 final List<MetaFile2> filesToCopy = new ArrayList<>();
+                final HashSet<MetaFile2> movedDirectories = new HashSet<>();
+                // root directory -> itself and its content, for the roots eligible to the tar stream
+                final HashMap<MetaFile2, List<MetaFile2>> tarPipeRoots = new HashMap<>();
+                final HashSet<MetaFile2> tarPiped = new HashSet<>();
+                // sync roots whose directory is already on target: nothing to create, only their content is transferred
+                final HashSet<MetaFile2> existingDirectories = new HashSet<>();
                 for(MetaFile2 source : toRetrieve){
                     if(mHasToStop)
                         break;
+                    if (mSync) {
+                        MetaFile2 existing = rootTargetEntries.get(FileUtils.getName(mSourceTarget.get(source)));
+                        if (existing != null && source.isFile() && isUnchanged(source, existing)) {
+                            mSyncReport.addUnchanged(source);
+                            continue;
+                        }
+                        boolean replaced = existing != null && existing.isDirectory() != source.isDirectory();
+                        if (replaced)
+                            mSyncReport.addToReplace(existing);
+                        // root directories are always kept since they carry the root progress of their content
+                        if (existing == null || replaced || source.isFile())
+                            mSyncReport.addToTransfer(source);
+                        else
+                            existingDirectories.add(source);
+                    }
                     filesToCopy.add(source);
                     if(source.isDirectory()) {
-                        source.setLength(getDirectoryInfo(source, mSourceTarget.get(source), filesToCopy));
+                        // a directory renamed in one request by the server does not need to be listed
+                        if (cut && moveServerSide(source))
+                            movedDirectories.add(source);
+                        else {
+                            int start = filesToCopy.size() - 1;
+                            // sources may be shared with cached listings: their size is not stored in them
+                            totalSize += Math.max(0, getDirectoryInfo(source, mSourceTarget.get(source), filesToCopy));
+                            List<MetaFile2> tree = filesToCopy.subList(start, filesToCopy.size());
+                            if (!mSync && isTarPipeCandidate(source, tree))
+                                tarPipeRoots.put(source, new ArrayList<>(tree));
+                        }
+                    } else if (source.length() > 0) {
+                        totalSize += source.length();
                     }
                     rootFiles.add(source);
                     i++;
                 }
+                if (mSync) {
+                    final SyncReport report = mSyncReport;
+                    mUiHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if(mListener != null)
+                                mListener.onSyncReport(report);
+                        }
+                    });
+                    if (mSyncDryRun) {
+                        mUiHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if(mListener != null)
+                                    mListener.onEnd();
+                            }
+                        });
+                        return;
+                    }
+                    // a file where a directory has to go, or the other way around: out of the way first
+                    for (MetaFile2 replaced : mSyncReport.getToReplace()) {
+                        if (mHasToStop)
+                            break;
+                        replaced.getFileEditorInstance(mContext).delete();
+                    }
+                }
+                final long finalTotalSize = totalSize;
+                int fileCount = 0;
+                for (MetaFile2 f : filesToCopy)
+                    if (f.isFile()) fileCount++;
+                final int finalFileCount = fileCount;
                 mUiHandler.post(new Runnable() {
                     @Override
                     public void run() {
                         if(mListener != null){
                             mListener.onFilesListUpdate(filesToCopy,rootFiles);
+                            mListener.onTotalSizeUpdate(finalTotalSize, finalFileCount, true);
                         }
                     }
                 });
@@ -483,13 +1172,22 @@ public class CopyCutEngine {
 
                     if(mHasToStop)
                         break;
-                    boolean moveSuccess = false;
-                    if(cut&&source.isFile()){ //first, we need to try a fast move
+                    boolean moveSuccess = movedDirectories.contains(source);
+                    if (moveSuccess) {
+                        mUiHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (mListener != null)
+                                    mListener.onSuccess(mSourceTarget.get(source));
+                            }
+                        });
+                    } else if(cut&&source.isFile()){ //first, we need to try a fast move
                         try {
                             long tmpProgress = source.length();
                             moveSuccess = source.getFileEditorInstance(mContext).move(mSourceTarget.get(source));
                             if(moveSuccess) {
                                 totalProgress += tmpProgress;
+                                scanMoved(source.getUri(), mSourceTarget.get(source));
                                 // we don't delete folders when there are still files to copy inside
                                 invertedDelete(source);
                             }
@@ -499,7 +1197,16 @@ public class CopyCutEngine {
                         }
                     }
                     if(!cut||!moveSuccess) { // if move didn't succeeded, we try to copy then to delete
-                        long progress = copy(source, mSourceTarget.get(source), i, currentRootFile, rootProgress, totalProgress);
+                        List<MetaFile2> tree = tarPipeRoots.get(source);
+                        if (tree != null)
+                            tarPiped.addAll(tarPipe(tree, i, currentRootFile, rootProgress, totalProgress));
+                        long progress;
+                        if (tarPiped.contains(source))
+                            progress = tarPiped(source);
+                        else if (existingDirectories.contains(source))
+                            progress = 0; // mkdir() fails on an existing directory, and sftp drops the session then
+                        else
+                            progress = copy(source, mSourceTarget.get(source), i, currentRootFile, rootProgress, totalProgress);
                         totalProgress += progress;
                         rootProgress += progress;
                         if (!mHasToStop && cut) {
@@ -522,7 +1229,16 @@ public class CopyCutEngine {
                     });
                     i++;
                 }
+                if (mSync && !mHasToStop) {
+                    // deletion propagation: what is left in target but not in source anymore
+                    for (MetaFile2 extraneous : mSyncReport.getToDelete()) {
+                        if (mHasToStop)
+                            break;
+                        extraneous.getFileEditorInstance(mContext).delete();
+                    }
+                }
                 if(mHasToStop){
+                    invalidateListings(cut);
                     mUiHandler.post(new Runnable() {
                         @Override
                         public void run() {
@@ -532,6 +1248,8 @@ public class CopyCutEngine {
                     });
                 }
                 else{
+                    mediaStoreBatch.flush();
+                    invalidateListings(cut);
                     mUiHandler.post(new Runnable() {
                         @Override
                         public void run() {
@@ -542,6 +1260,7 @@ public class CopyCutEngine {
 
                 } 
             } catch (final Exception e) {
+                invalidateListings(cut);
                 mUiHandler.post(new Runnable() {
                     @Override
                     public void run() {
@@ -549,7 +1268,30 @@ public class CopyCutEngine {
                             mListener.onFatalError(e);
                     }
                 });
-            }  
+            } finally {
+                if (tuning != null) {
+                    for (Uri server : servers)
+                        tuning.endTransfer(server);
+                }
+                mediaStoreBatch.end();
+                // do not wait for the debounce window once the job is over
+                MediaScanBatcher.getInstance(mContext).flush();
+            }
+        }
+
+        /**
+         * Listings cached before the copy do not show what has been written, nor what has been moved away.
+         * Called before the end of the job is posted: a listener refreshing its listing from there must not get the cached one
+         */
+        private void invalidateListings(boolean cut) {
+            ListingCache cache = ListingCache.getInstance();
+            if (mTargetDirectory != null)
+                cache.invalidate(mTargetDirectory);
+            for (Map.Entry<MetaFile2, Uri> sourceTarget : mSourceTarget.entrySet()) {
+                cache.onFileChanged(sourceTarget.getValue());
+                if (cut)
+                    cache.onFileChanged(sourceTarget.getKey().getUri());
+            }
         }
 
         /**
@@ -580,6 +1322,58 @@ public class CopyCutEngine {
             mTargetDirectory = targetDirectory;
             mCut = false;
         }
+
+        public void setSyncLists(List<MetaFile2> sources, Uri targetDirectory, boolean deleteExtraneous, boolean dryRun) {
+            setCopyLists(sources, targetDirectory, false, true);
+            mSync = true;
+            mSyncDeleteExtraneous = deleteExtraneous;
+            mSyncDryRun = dryRun;
+            mSyncReport = new SyncReport(dryRun);
+        }
+    }
+
+    /**
+     * Pipelined mode bookkeeping of a source directory, only touched by the transfer loop
+     */
+    private static final class DirectoryNode {
+        final MetaFile2 directory;
+        final Uri target;
+        final DirectoryNode parent;
+        // listing token + entries not transferred yet
+        int pending = 1;
+        boolean keep;
+
+        DirectoryNode(MetaFile2 directory, Uri target, DirectoryNode parent) {
+            this.directory = directory;
+            this.target = target;
+            this.parent = parent;
+        }
     }
 
+    private static final class WorkItem {
+        static final WorkItem END = new WorkItem(null, null, -1, null, null, false);
+
+        final MetaFile2 source;
+        final Uri target;
+        final int rootIndex;
+        final DirectoryNode parent; // null for root files
+        final DirectoryNode node; // directory entries only
+        final boolean moved; // already moved server-side
+        int listedCount = -1; // >= 0: listing of node is done with that many entries
+
+        WorkItem(MetaFile2 source, Uri target, int rootIndex, DirectoryNode parent, DirectoryNode node, boolean moved) {
+            this.source = source;
+            this.target = target;
+            this.rootIndex = rootIndex;
+            this.parent = parent;
+            this.node = node;
+            this.moved = moved;
+        }
+
+        static WorkItem listed(DirectoryNode node, int count) {
+            WorkItem item = new WorkItem(null, null, -1, null, node, false);
+            item.listedCount = count;
+            return item;
+        }
+    }
 }
@@ -19,15 +19,35 @@ import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DeleteEngine {
+    private static final Logger log = LoggerFactory.getLogger(DeleteEngine.class);
+
+    private static final int BULK_DELETE_PARALLELISM = 4;
+    private static final long BULK_PROGRESS_INTERVAL_MS = 200;
+
     private final Context mContext;
     private Handler mUiHandler;
     private DeleteThread mDeleteThread;
     private OperationEngineListener mListener;
-    private boolean mHasToStop;
+    private volatile boolean mHasToStop;
+    private boolean mBulk;
+    private int mMediaStoreBatchSize = MediaStoreBatch.DEFAULT_BATCH_SIZE;
+    private volatile TreeWalker mTreeWalker;
 
 
 
@@ -72,8 +92,27 @@ public class DeleteEngine {
             mDeleteThread.start();
         }
     }
+    /**
+     * Bulk mode for network directories: a single server-side recursive delete when the protocol has one,
+     * otherwise the tree is walked and its files deleted in parallel (bounded per host), then the directories bottom-up.
+     * Local storage always goes through FileEditor.delete() (MediaStore bookkeeping, user confirmation on Q+)
+     */
+    public void setBulk(boolean bulk) {
+        mBulk = bulk;
+    }
+
+    /**
+     * Number of MediaStore deletes grouped in one provider transaction when deleting local files
+     */
+    public void setMediaStoreBatchSize(int batchSize) {
+        mMediaStoreBatchSize = batchSize;
+    }
+
     public void stop() {
         mHasToStop = true;
+        TreeWalker walker = mTreeWalker;
+        if (walker != null)
+            walker.cancel();
 
     }
     final class DeleteThread extends Thread{
@@ -89,6 +128,7 @@ public class DeleteEngine {
                         mListener.onStart();
                 }
             });
+            final MediaStoreBatch mediaStoreBatch = MediaStoreBatch.begin(mContext, mMediaStoreBatchSize);
             try {
                 if(mSources==null&&mSourcesUri!=null){
                     mSources = new ArrayList<MetaFile2>();
@@ -114,7 +154,20 @@ public class DeleteEngine {
                        FileEditor fe =  mf.getFileEditorInstance(mContext);
                        final int progress = i;
                        if(fe!=null) {
-                           fe.delete();
+                           if (mBulk && mf.isDirectory() && FileUtils.isNetworkShare(mf.getUri()))
+                               deleteBulk(mf, fe, progress);
+                           else
+                               fe.delete();
+                           if (mHasToStop) {
+                               mUiHandler.post(new Runnable() {
+                                   @Override
+                                   public void run() {
+                                       if(mListener!=null)
+                                           mListener.onCanceled();
+                                   }
+                               });
+                               return;
+                           }
                            mUiHandler.post(new Runnable() {
                                @Override
                                public void run() {
@@ -132,6 +185,7 @@ public class DeleteEngine {
                         });
                        i++; 
                     }
+                    mediaStoreBatch.flush();
                     mUiHandler.post(new Runnable() {
                         @Override
                         public void run() {
@@ -149,8 +203,133 @@ public class DeleteEngine {
                             mListener.onFatalError(e);
                     }
                 });
-            }  
+            } finally {
+                mediaStoreBatch.end();
+            }
+        }
+        private void deleteBulk(MetaFile2 directory, FileEditor editor, final int currentFile) throws Exception {
+            if (editor.deleteRecursiveServerSide()) {
+                log.debug("deleteBulk: server-side delete of " + directory.getUri());
+                return;
+            }
+            final ExecutorService pool = Executors.newFixedThreadPool(BULK_DELETE_PARALLELISM);
+            final AtomicInteger deletedCount = new AtomicInteger();
+            final Exception[] error = {null};
+            final long[] lastProgress = {0};
+            // directories by depth, deleted deepest first once all files are gone
+            final List<List<MetaFile2>> directoriesByDepth = new ArrayList<>();
+            final HashMap<MetaFile2, Integer> depths = new HashMap<>();
+            depths.put(directory, 0);
+            try {
+                TreeWalker walker = new TreeWalker(new TreeWalker.Visitor() {
+                    @Override
+                    public List<MetaFile2> onDirectoryListed(MetaFile2 dir, List<MetaFile2> entries) throws Exception {
+                        int depth = depths.remove(dir);
+                        while (directoriesByDepth.size() <= depth)
+                            directoriesByDepth.add(new ArrayList<MetaFile2>());
+                        directoriesByDepth.get(depth).add(dir);
+                        if (entries == null || mHasToStop)
+                            return null;
+                        List<MetaFile2> subdirectories = new ArrayList<>();
+                        for (final MetaFile2 entry : entries) {
+                            if (entry.isDirectory()) {
+                                depths.put(entry, depth + 1);
+                                subdirectories.add(entry);
+                            } else {
+                                // files are deleted while the rest of the tree is still being listed
+                                pool.execute(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        if (mHasToStop || error[0] != null)
+                                            return;
+                                        try {
+                                            deleteWithPermit(entry);
+                                            deletedCount.incrementAndGet();
+                                        } catch (Exception e) {
+                                            synchronized (error) {
+                                                if (error[0] == null) error[0] = e;
+                                            }
+                                        }
+                                    }
+                                });
+                            }
+                        }
+                        postBulkProgress(currentFile, deletedCount.get(), lastProgress);
+                        if (error[0] != null)
+                            throw error[0];
+                        return subdirectories;
+                    }
+                });
+                mTreeWalker = walker;
+                walker.walk(directory);
+                mTreeWalker = null;
+                pool.shutdown();
+                while (!pool.awaitTermination(BULK_PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                    if (mHasToStop) return;
+                    postBulkProgress(currentFile, deletedCount.get(), lastProgress);
+                }
+                if (error[0] != null)
+                    throw error[0];
+                // same depth directories are independent: delete them in parallel, deepest level first
+                ExecutorService directoryPool = Executors.newFixedThreadPool(BULK_DELETE_PARALLELISM);
+                try {
+                    for (int depth = directoriesByDepth.size() - 1; depth >= 0 && !mHasToStop; depth--) {
+                        List<Future<?>> deletions = new ArrayList<>();
+                        for (final MetaFile2 dir : directoriesByDepth.get(depth)) {
+                            deletions.add(directoryPool.submit(new Callable<Void>() {
+                                @Override
+                                public Void call() throws Exception {
+                                    deleteWithPermit(dir);
+                                    return null;
+                                }
+                            }));
+                        }
+                        for (Future<?> deletion : deletions) {
+                            try {
+                                deletion.get();
+                            } catch (ExecutionException e) {
+                                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                            }
+                        }
+                        deletedCount.addAndGet(deletions.size());
+                        postBulkProgress(currentFile, deletedCount.get(), lastProgress);
+                    }
+                } finally {
+                    directoryPool.shutdownNow();
+                }
+            } finally {
+                pool.shutdownNow();
+                mTreeWalker = null;
+            }
+        }
+
+        private void deleteWithPermit(MetaFile2 mf) throws Exception {
+            Semaphore permits = TreeWalker.getHostPermits(mf.getUri());
+            permits.acquire();
+            try {
+                mf.getFileEditorInstance(mContext).delete();
+            } finally {
+                permits.release();
+            }
         }
+
+        /**
+         * currentFileProgress is the number of entries deleted so far inside the current root
+         */
+        private void postBulkProgress(final int currentFile, final int deletedCount, long[] lastProgress) {
+            long now = System.currentTimeMillis();
+            if (now - lastProgress[0] < BULK_PROGRESS_INTERVAL_MS)
+                return;
+            lastProgress[0] = now;
+            mUiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(mListener!=null)
+                        mListener.onProgress(currentFile, deletedCount, currentFile, deletedCount, -1, -1.0);
+                }
+            });
+        }
+
         public void setDeleteList(List<MetaFile2> filestodelete) {
             mSources = filestodelete;
         }
@@ -0,0 +1,134 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Names of a target directory, built once per copy, to pick " (copy N)" names without rescanning the listing
+ * for every source. Names handed out are recorded too, so that two sources with the same name never collide.
+ */
+public class DestinationNameIndex {
+
+    private final String mFirstCopyPattern; // " (copy)"
+    private final String mCopyPatternLeft; // " (copy "
+    private final String mCopyPatternRight; // ")"
+    private final HashSet<String> mNames = new HashSet<>();
+    // base name + extension -> highest copy index in use
+    private final HashMap<String, Integer> mMaxCopyIndex = new HashMap<>();
+
+    public DestinationNameIndex(List<MetaFile2> inTargetDirectory, String firstCopyPattern, String copyPatternLeft, String copyPatternRight) {
+        mFirstCopyPattern = firstCopyPattern;
+        mCopyPatternLeft = copyPatternLeft;
+        mCopyPatternRight = copyPatternRight;
+        if (inTargetDirectory != null) {
+            for (MetaFile2 file : inTargetDirectory)
+                add(file.getName());
+        }
+    }
+
+    /**
+     * @return fullName if it is free in the target directory, its next " (copy N)" variant otherwise.
+     * The returned name is considered taken from now on.
+     */
+    public String reserve(String fullName) {
+        if (!mNames.contains(fullName)) {
+            add(fullName);
+            return fullName;
+        }
+        String name;
+        String extension;
+        int extensionPos = fullName.lastIndexOf('.');
+        if (extensionPos >= 0) {
+            name = fullName.substring(0, extensionPos);
+            extension = fullName.substring(extensionPos + 1);
+        } else {
+            name = fullName;
+            extension = "";
+        }
+        // a copy of a copy is numbered after the original file
+        String baseName = getBaseName(name);
+        Integer maxCopyIndex = mMaxCopyIndex.get(key(baseName, extension));
+        int copyIndex = (maxCopyIndex != null ? maxCopyIndex : 0) + 1;
+        String newName;
+        do {
+            String suffix = copyIndex == 1 ? mFirstCopyPattern : mCopyPatternLeft + copyIndex + mCopyPatternRight;
+            newName = extension.isEmpty() ? baseName + suffix : baseName + suffix + "." + extension;
+            copyIndex++;
+        } while (mNames.contains(newName));
+        add(newName);
+        return newName;
+    }
+
+    private void add(String fullName) {
+        mNames.add(fullName);
+        String name;
+        String extension;
+        int extensionPos = fullName.lastIndexOf('.');
+        if (extensionPos >= 0) {
+            name = fullName.substring(0, extensionPos);
+            extension = fullName.substring(extensionPos + 1);
+        } else {
+            name = fullName;
+            extension = "";
+        }
+        int index = getCopyIndex(name);
+        if (index <= 0)
+            return;
+        String key = key(getBaseName(name), extension);
+        Integer max = mMaxCopyIndex.get(key);
+        if (max == null || max < index)
+            mMaxCopyIndex.put(key, index);
+    }
+
+    /**
+     * "movie (copy 2)" -> "movie", name unchanged if it is not a copy
+     */
+    private String getBaseName(String name) {
+        if (name.endsWith(mFirstCopyPattern))
+            return name.substring(0, name.length() - mFirstCopyPattern.length());
+        if (name.endsWith(mCopyPatternRight)) {
+            int templatePos = name.lastIndexOf(mCopyPatternLeft);
+            if (templatePos >= 0 && getCopyIndex(name) > 0)
+                return name.substring(0, templatePos);
+        }
+        return name;
+    }
+
+    /**
+     * 1 for " (copy)", N for " (copy N)", 0 if not a copy
+     */
+    private int getCopyIndex(String name) {
+        if (name.endsWith(mFirstCopyPattern))
+            return 1;
+        if (name.endsWith(mCopyPatternRight)) {
+            int templatePos = name.lastIndexOf(mCopyPatternLeft);
+            if (templatePos >= 0) {
+                try {
+                    return Integer.parseInt(name.substring(templatePos + mCopyPatternLeft.length(), name.length() - mCopyPatternRight.length()));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static String key(String baseName, String extension) {
+        return baseName + '/' + extension; // '/' cannot appear in a file name
+    }
+}
@@ -39,7 +39,6 @@ public abstract class FileEditor {
     private static final Logger log = LoggerFactory.getLogger(FileEditor.class);
 
     protected Uri mUri;
-    private static final int MAX_COUNT = 32768;
     public FileEditor(Uri uri){
         mUri = uri;
     }
@@ -49,11 +48,62 @@ public abstract class FileEditor {
     public abstract InputStream getInputStream(long from) throws Exception;
     public OutputStream getOutputStream() throws Exception { return null; };
     public Boolean delete() throws Exception { return null; };
+
+    /**
+     * Deletes this directory and all its content with a single server-side operation
+     * @return false if the server cannot do it: caller has to delete the content itself
+     */
+    public boolean deleteRecursiveServerSide() throws Exception { return false; }
     public boolean rename(String newName) { return false; };
     public boolean move(Uri uri) { return false; };
+
+    /**
+     * true if move(target) is a single server request (rename), whatever the size of the file or directory
+     */
+    public boolean canMoveServerSide(Uri target) { return false; }
     public abstract boolean exists();
     public long length() throws Exception { return -1; }
 
+    /**
+     * Digest of the file computed without streaming it through the caller (server-side hash, local mmap...)
+     * @return lowercase hex digest, null if not supported by this editor: caller has to read the file
+     */
+    public String getDigest(TransferDigest.Algorithm algorithm) throws Exception { return null; }
+
+    /**
+     * true if this file can be copied to target by the server itself, without the data going through the device
+     */
+    public boolean canCopyServerSide(Uri target) { return false; }
+
+    /**
+     * Server-side copy of this file to target (see canCopyServerSide)
+     * @return false if the server refused it: caller has to fall back to a streamed copy
+     */
+    public boolean copyServerSide(Uri target) throws Exception { return false; }
+
+    /**
+     * MD5 of each block of the existing file, computed where the file is (local read, remote helper)
+     * @return null if not supported by this editor: delta copy is then not used
+     */
+    public BlockSignatures getBlockSignatures(int blockSize) throws Exception { return null; }
+
+    /**
+     * Writer updating the existing file in place
+     * @return null if this editor cannot write at random offsets
+     */
+    public PositionalWriter getPositionalWriter() throws Exception { return null; }
+
+    /**
+     * To be called by editors once mUri has been created, deleted, renamed or moved:
+     * ListingCache drops the listings of its parent and of what was below it
+     * @param target new location, null if none
+     */
+    protected void invalidateListings(Uri target) {
+        ListingCache.getInstance().onFileChanged(mUri);
+        if (target != null)
+            ListingCache.getInstance().onFileChanged(target);
+    }
+
     /**
      * Use it for file (and just file) copy
      * @param target
@@ -67,7 +117,7 @@ public abstract class FileEditor {
         InputStream in = getInputStream();
         if(in!=null&&out!=null) {
             long position = 0;
-            byte buf[] = new byte[MAX_COUNT];
+            byte buf[] = new byte[TransferTuning.getParameters(FileUtils.isLocal(mUri) ? target : mUri).bufferSize];
             int len;
             while ((len = in.read(buf)) != -1) {
                 out.write(buf, 0, len);
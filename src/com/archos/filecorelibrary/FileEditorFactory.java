@@ -27,7 +27,10 @@ import com.archos.filecorelibrary.localstorage.LocalStorageFileEditor;
 import com.archos.filecorelibrary.sftp.SftpFileEditor;
 import com.archos.filecorelibrary.smbj.SmbjFileEditor;
 import com.archos.filecorelibrary.sshj.SshjFileEditor;
+import com.archos.filecorelibrary.tar.TarFileEditor;
+import com.archos.filecorelibrary.tar.TarUtils;
 import com.archos.filecorelibrary.zip.ZipFileEditor;
+import com.archos.filecorelibrary.zip.ZipUtils;
 import com.archos.filecorelibrary.webdav.WebdavFileEditor;
 
 /**
@@ -51,9 +54,12 @@ public class FileEditorFactory {
         else if ("sshj".equalsIgnoreCase(uri.getScheme())) {
             return new SshjFileEditor(uri);
         }
-        else if ("zip".equalsIgnoreCase(uri.getScheme())) {
+        else if (ZipUtils.isZipScheme(uri.getScheme())) {
             return new ZipFileEditor(uri);
         }
+        else if (TarUtils.isTarScheme(uri.getScheme())) {
+            return new TarFileEditor(uri);
+        }
         else if ("content".equalsIgnoreCase(uri.getScheme())) {
             return new ContentStorageFileEditor(uri, ct);
         }
@@ -29,6 +29,7 @@ import android.provider.Settings;
 import androidx.core.content.ContextCompat;
 
 import com.archos.filecorelibrary.contentstorage.DocumentUriBuilder;
+import com.archos.filecorelibrary.samba.NetworkCredentialsDatabase;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +43,7 @@ import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -310,6 +312,20 @@ public class FileUtils {
         return isNetworkShare(Uri.parse(path));
     }
 
+    /**
+     * true if both uris are reached through the same server connection: same scheme, host, port and credentials
+     * (the network utils cache one connection per credential)
+     */
+    public static boolean isSameServer(Uri uri1, Uri uri2) {
+        if (uri1 == null || uri2 == null) return false;
+        if (!Objects.equals(uri1.getScheme(), uri2.getScheme())
+                || !Objects.equals(uri1.getHost(), uri2.getHost())
+                || uri1.getPort() != uri2.getPort())
+            return false;
+        NetworkCredentialsDatabase credentialsDatabase = NetworkCredentialsDatabase.getInstance();
+        return Objects.equals(credentialsDatabase.getCredential(uri1.toString()), credentialsDatabase.getCredential(uri2.toString()));
+    }
+
     /**
      * returns true if is really on a share (for example smb://quatro/sda(...) or ftp://bla.fr(...))
      * @param parent
@@ -2,15 +2,18 @@ package com.archos.filecorelibrary;
 
 import android.app.PendingIntent;
 import android.app.RecoverableSecurityException;
+import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.IntentSender;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
 import android.media.MediaScannerConnection;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Environment;
+import android.os.RemoteException;
 import android.provider.MediaStore;
 
 import androidx.activity.result.ActivityResultLauncher;
@@ -171,8 +174,23 @@ public class FileUtilsQ {
         Boolean isSuccessful = null;
         ContentResolver contentResolver = mContext.getContentResolver();
         ArrayList<Uri> collection = new ArrayList<>();
+        ArrayList<Uri> toDeleteOneByOne = new ArrayList<>();
+
+        // one provider transaction per chunk, only a chunk that hits a SecurityException goes through the per uri path
+        for (int start = 0; start < allUris.size(); start += MediaStoreBatch.DEFAULT_BATCH_SIZE) {
+            List<Uri> chunk = allUris.subList(start, Math.min(start + MediaStoreBatch.DEFAULT_BATCH_SIZE, allUris.size()));
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>(chunk.size());
+            for (Uri uri : chunk)
+                operations.add(ContentProviderOperation.newDelete(uri).build());
+            try {
+                log.debug("deleteAll: batch of " + chunk.size() + " uris");
+                contentResolver.applyBatch(MediaStore.AUTHORITY, operations);
+            } catch (SecurityException | RemoteException | OperationApplicationException e) {
+                toDeleteOneByOne.addAll(chunk);
+            }
+        }
 
-        for (Uri uri : allUris) {
+        for (Uri uri : toDeleteOneByOne) {
             try {
                 // delete object using resolver
                 log.debug("deleteAll: uri " + uri);
@@ -0,0 +1,264 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary;
+
+import android.net.Uri;
+
+import com.archos.filecorelibrary.samba.NetworkCredentialsDatabase;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Directory listings shared by the listing engines (see ListingEngineFactory) and the RawLister callers (see
+ * RawListerFactory): going back into a folder listed a moment ago does not hit the server again.
+ * Listings are kept for a time that depends on the scheme, in a LRU bounded by the total number of entries, and are
+ * keyed by normalized uri and credential. The library drops them on its own changes (mkdir, delete, rename and move
+ * of the network FileEditors, targets of the copy engines).
+ * Only network schemes are cached: local and content listings are cheap and changed behind our back by other apps,
+ * archives have their own index.
+ */
+public class ListingCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ListingCache.class);
+
+    private static final long DEFAULT_NETWORK_TTL_MS = 30000;
+    // expired listings can still be shown while being revalidated (see getStale()) until then
+    private static final long MAX_STALE_MS = 10 * 60 * 1000;
+    private static final int MAX_CACHED_ENTRIES = 20000;
+    private static final String[] NETWORK_SCHEMES = {"smb", "smbj", "ftp", "ftps", "sftp", "sshj", "webdav", "webdavs"};
+
+    private static final ListingCache sInstance = new ListingCache();
+
+    private static final class Listing {
+        final List<MetaFile2> files;
+        final long expiry;
+        Listing(List<MetaFile2> files, long expiry) {
+            this.files = files;
+            this.expiry = expiry;
+        }
+    }
+
+    // scheme -> time to live in ms
+    private final HashMap<String, Long> mTtls = new HashMap<>();
+    // normalized directory uri -> its listings by credential and variant, access ordered: eldest is the least recently used
+    private final LinkedHashMap<String, HashMap<String, Listing>> mDirectories = new LinkedHashMap<>(16, 0.75f, true);
+    private int mEntryCount;
+
+    public static ListingCache getInstance() {
+        return sInstance;
+    }
+
+    private ListingCache() {
+        for (String scheme : NETWORK_SCHEMES)
+            mTtls.put(scheme, DEFAULT_NETWORK_TTL_MS);
+    }
+
+    /**
+     * @param ttlMs how long listings of scheme are served from the cache, 0 to never cache them
+     */
+    public synchronized void setTtl(String scheme, long ttlMs) {
+        mTtls.put(scheme.toLowerCase(Locale.US), ttlMs);
+        if (ttlMs <= 0)
+            clear(scheme);
+    }
+
+    public synchronized long getTtl(String scheme) {
+        Long ttl = scheme != null ? mTtls.get(scheme.toLowerCase(Locale.US)) : null;
+        return ttl != null ? ttl : 0;
+    }
+
+    public boolean isCacheable(Uri uri) {
+        return getTtl(uri.getScheme()) > 0;
+    }
+
+    /**
+     * @param variant tells apart listings of the same directory that differ, e.g. by the filter of a ListingEngine,
+     * "" for the raw listings of RawLister
+     * @return a copy of the cached listing, null if there is none or it has expired
+     */
+    public List<MetaFile2> get(Uri directory, String variant) {
+        return get(directory, variant, false);
+    }
+
+    /**
+     * Same as get() but also returns a listing that has expired not too long ago: it is to be shown while the
+     * directory is listed again, see ListingEngine.setStaleWhileRevalidate()
+     */
+    public List<MetaFile2> getStale(Uri directory, String variant) {
+        return get(directory, variant, true);
+    }
+
+    private List<MetaFile2> get(Uri directory, String variant, boolean stale) {
+        if (!isCacheable(directory))
+            return null;
+        String key = normalize(directory);
+        String listingKey = getCredentialKey(directory) + '|' + variant;
+        synchronized (this) {
+            HashMap<String, Listing> listings = mDirectories.get(key);
+            Listing listing = listings != null ? listings.get(listingKey) : null;
+            if (listing == null)
+                return null;
+            long now = System.currentTimeMillis();
+            if (now >= listing.expiry + MAX_STALE_MS) {
+                listings.remove(listingKey);
+                mEntryCount -= listing.files.size();
+                if (listings.isEmpty())
+                    mDirectories.remove(key);
+                return null;
+            }
+            if (now >= listing.expiry && !stale)
+                return null;
+            log.trace("get: hit for " + key + (now >= listing.expiry ? " (stale)" : ""));
+            return new ArrayList<>(listing.files);
+        }
+    }
+
+    public void put(Uri directory, String variant, List<? extends MetaFile2> files) {
+        long ttl = getTtl(directory.getScheme());
+        if (ttl <= 0 || files == null || files.size() > MAX_CACHED_ENTRIES)
+            return;
+        String key = normalize(directory);
+        String listingKey = getCredentialKey(directory) + '|' + variant;
+        Listing listing = new Listing(new ArrayList<MetaFile2>(files), System.currentTimeMillis() + ttl);
+        synchronized (this) {
+            HashMap<String, Listing> listings = mDirectories.get(key);
+            if (listings == null) {
+                listings = new HashMap<>();
+                mDirectories.put(key, listings);
+            }
+            Listing previous = listings.put(listingKey, listing);
+            if (previous != null)
+                mEntryCount -= previous.files.size();
+            mEntryCount += listing.files.size();
+            Iterator<Map.Entry<String, HashMap<String, Listing>>> it = mDirectories.entrySet().iterator();
+            while (mEntryCount > MAX_CACHED_ENTRIES && it.hasNext()) {
+                Map.Entry<String, HashMap<String, Listing>> eldest = it.next();
+                if (eldest.getKey().equals(key))
+                    continue;
+                it.remove();
+                remove(eldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * Drops every listing of directory
+     */
+    public synchronized void invalidate(Uri directory) {
+        HashMap<String, Listing> listings = mDirectories.remove(normalize(directory));
+        if (listings != null)
+            remove(listings);
+    }
+
+    /**
+     * To be called once uri has been created, deleted, renamed or moved: drops the listing of its parent and,
+     * for a directory, the listings of everything below it.
+     */
+    public synchronized void onFileChanged(Uri uri) {
+        if (mDirectories.isEmpty())
+            return;
+        String key = normalize(uri);
+        String subtree = key + '/';
+        Iterator<Map.Entry<String, HashMap<String, Listing>>> it = mDirectories.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, HashMap<String, Listing>> entry = it.next();
+            if (entry.getKey().equals(key) || entry.getKey().startsWith(subtree)) {
+                it.remove();
+                remove(entry.getValue());
+            }
+        }
+        String parent = getParentKey(key);
+        if (parent != null) {
+            HashMap<String, Listing> listings = mDirectories.remove(parent);
+            if (listings != null)
+                remove(listings);
+        }
+    }
+
+    public synchronized void clear() {
+        mDirectories.clear();
+        mEntryCount = 0;
+    }
+
+    private void clear(String scheme) {
+        String prefix = scheme.toLowerCase(Locale.US) + "://";
+        Iterator<Map.Entry<String, HashMap<String, Listing>>> it = mDirectories.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, HashMap<String, Listing>> entry = it.next();
+            if (entry.getKey().startsWith(prefix)) {
+                it.remove();
+                remove(entry.getValue());
+            }
+        }
+    }
+
+    private void remove(HashMap<String, Listing> listings) {
+        for (Listing listing : listings.values())
+            mEntryCount -= listing.files.size();
+    }
+
+    /**
+     * scheme and host lower cased, no trailing or duplicate '/': smb://Server/share/dir/ -> smb://server/share/dir
+     */
+    static String normalize(Uri uri) {
+        StringBuilder key = new StringBuilder();
+        key.append(uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.US) : "file").append("://");
+        if (uri.getEncodedUserInfo() != null)
+            key.append(uri.getEncodedUserInfo()).append('@');
+        if (uri.getHost() != null)
+            key.append(uri.getHost().toLowerCase(Locale.US));
+        if (uri.getPort() != -1)
+            key.append(':').append(uri.getPort());
+        String path = uri.getEncodedPath();
+        if (path != null) {
+            for (String segment : path.split("/")) {
+                if (!segment.isEmpty())
+                    key.append('/').append(segment);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return normalized key of the parent directory, null for the root of a server
+     */
+    private static String getParentKey(String key) {
+        int pathStart = key.indexOf('/', key.indexOf("://") + 3);
+        if (pathStart < 0)
+            return null;
+        return key.substring(0, key.lastIndexOf('/'));
+    }
+
+    /**
+     * Listings depend on who lists: the credential used for uri is part of the key (never the password itself)
+     */
+    private static String getCredentialKey(Uri uri) {
+        NetworkCredentialsDatabase.Credential credential = NetworkCredentialsDatabase.getInstance().getCredential(uri.toString());
+        if (credential == null)
+            return "";
+        String password = credential.getPassword();
+        return credential.getDomain() + '\\' + credential.getUsername() + ':' + Integer.toHexString(password != null ? password.hashCode() : 0);
+    }
+}
@@ -21,6 +21,7 @@ import android.os.Looper;
 
 import com.archos.filecorelibrary.localstorage.JavaFile2;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
@@ -42,6 +43,13 @@ public abstract class ListingEngine {
     protected SortOrder mSortOrder;
     private long mListingTimeOutMs;
     private boolean mKeepHiddenFiles;
+    protected boolean mStaleWhileRevalidate;
+    protected boolean mProgressive;
+
+    // the first page fills a screen as soon as possible, the next ones are larger not to flood the UI thread
+    private static final int FIRST_PAGE_SIZE = 100;
+    private static final int PAGE_SIZE = 1000;
+    private static final long PAGE_INTERVAL_MS = 500;
 
     /**
      * error codes
@@ -93,7 +101,8 @@ public abstract class ListingEngine {
     /**
      * True when the time-out has actually occurred
      */
-    private boolean mTimeOutHasOccurred = false;
+    private volatile boolean mTimeOutHasOccurred = false;
+    private boolean mTimeOutArmed = false;
 
     public interface Listener {
         /**
@@ -127,6 +136,20 @@ public abstract class ListingEngine {
         public void onListingFatalError(Exception e, ErrorEnum errorCode);
 
         void onListingFileInfoUpdate(Uri uri, MetaFile2 metaFile2);
+
+        /**
+         * The listing reported by onListingUpdate() was a cached one, the directory has been listed again since:
+         * what differs from it, to patch what is displayed (see setStaleWhileRevalidate()).
+         * Called before onListingEnd(), only if something changed. Entries are matched by name.
+         * @param changed new version of the entries whose size, date or type changed
+         */
+        default void onListingDelta(List<MetaFile2> added, List<MetaFile2> removed, List<MetaFile2> changed) {}
+
+        /**
+         * Progressive listing (see setProgressive()): entries listed since the previous page, unsorted.
+         * onListingUpdate() still reports the whole sorted listing at the end.
+         */
+        default void onListingPage(List<? extends MetaFile2> files) {}
     }
 
     public ListingEngine(Context context) {
@@ -168,6 +191,23 @@ public abstract class ListingEngine {
         mKeepHiddenFiles = keep;
     }
 
+    /**
+     * When the listing of a network share has been cached but has expired, report it at once and list the directory
+     * again in the background, then report the differences through onListingDelta().
+     * Only for listeners handling onListingDelta(), expired listings are not shown otherwise.
+     */
+    public void setStaleWhileRevalidate(boolean staleWhileRevalidate) {
+        mStaleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    /**
+     * Report the entries through onListingPage() while the directory is being listed, for very large directories.
+     * Engines that cannot get entries before the end of the listing only report them through onListingUpdate().
+     */
+    public void setProgressive(boolean progressive) {
+        mProgressive = progressive;
+    }
+
     public abstract void start();
 
     public abstract void abort();
@@ -216,8 +256,9 @@ public abstract class ListingEngine {
         return true;
     }
 
-    protected void preLaunchTimeOut() {
+    protected synchronized void preLaunchTimeOut() {
         if (mListingTimeOutMs>0) {
+            mTimeOutArmed = true;
             mUiHandler.postDelayed(mTimeOutRunnable, mListingTimeOutMs);
         }
     }
@@ -225,11 +266,70 @@ public abstract class ListingEngine {
     /**
      * To be called as soon as we get the results, to cancel the delayed time-out message
      */
-    protected void noTimeOut() {
+    protected synchronized void noTimeOut() {
+        mTimeOutArmed = false;
         mTimeOutHasOccurred = false;
         mUiHandler.removeCallbacks(mTimeOutRunnable);
     }
 
+    /**
+     * Entries keep arriving: the time-out only counts the time without progress
+     */
+    protected synchronized void postponeTimeOut() {
+        if (mTimeOutArmed && !mTimeOutHasOccurred) {
+            mUiHandler.removeCallbacks(mTimeOutRunnable);
+            mUiHandler.postDelayed(mTimeOutRunnable, mListingTimeOutMs);
+        }
+    }
+
+    /**
+     * Engines supporting the progressive mode tell whether they have been aborted: no page is reported then
+     */
+    protected boolean isAborted() {
+        return false;
+    }
+
+    /**
+     * Progressive mode: collects the entries kept while listing and posts them in pages through onListingPage().
+     * Each page counts as progress for the time-out. Does nothing when not progressive.
+     */
+    protected class PageEmitter {
+        private ArrayList<MetaFile2> mPage = new ArrayList<>();
+        private int mPageSize = FIRST_PAGE_SIZE;
+        private long mLastPageTime = System.currentTimeMillis();
+
+        public PageEmitter() {
+        }
+
+        public void add(MetaFile2 file) {
+            if (!mProgressive)
+                return;
+            mPage.add(file);
+            if (mPage.size() >= mPageSize || System.currentTimeMillis() - mLastPageTime >= PAGE_INTERVAL_MS)
+                flush();
+        }
+
+        /**
+         * Posts what is pending, e.g. at the end of a batch received from the server
+         */
+        public void flush() {
+            if (!mProgressive || mPage.isEmpty() || isAborted())
+                return;
+            final List<MetaFile2> page = mPage;
+            mPage = new ArrayList<>();
+            mPageSize = PAGE_SIZE;
+            mLastPageTime = System.currentTimeMillis();
+            postponeTimeOut();
+            mUiHandler.post(new Runnable() {
+                public void run() {
+                    if (!isAborted() && !mTimeOutHasOccurred && mListener != null) {
+                        mListener.onListingPage(page);
+                    }
+                }
+            });
+        }
+    }
+
     protected boolean timeOutHasOccurred() {
         return mTimeOutHasOccurred;
     }
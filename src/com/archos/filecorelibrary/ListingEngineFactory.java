@@ -24,11 +24,29 @@ import com.archos.filecorelibrary.localstorage.LocalStorageListingEngine;
 import com.archos.filecorelibrary.sftp.SFtpListingEngine;
 import com.archos.filecorelibrary.smbj.SmbjListingEngine;
 import com.archos.filecorelibrary.sshj.SshjListingEngine;
+import com.archos.filecorelibrary.tar.TarListingEngine;
+import com.archos.filecorelibrary.tar.TarUtils;
 import com.archos.filecorelibrary.webdav.WebdavListingEngine;
 import com.archos.filecorelibrary.zip.ZipListingEngine;
+import com.archos.filecorelibrary.zip.ZipUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
 public class ListingEngineFactory {
+    /**
+     * Listings of network shares may come from ListingCache
+     */
     public static ListingEngine getListingEngineForUrl(Context context, Uri uri) {
+        ListingEngine engine = createListingEngine(context, uri);
+        if (ListingCache.getInstance().isCacheable(uri))
+            return new CachingListingEngine(context, uri, engine);
+        return engine;
+    }
+
+    private static ListingEngine createListingEngine(Context context, Uri uri) {
         if (FileUtils.isLocal(uri)&&(uri.getScheme()==null||!uri.getScheme().equals("content"))) {
             return new LocalStorageListingEngine(context, uri);
         }else if(uri.getScheme().equals("content")){
@@ -54,9 +72,12 @@ public class ListingEngineFactory {
             if (uri.getPath().equals("/")) return new JcifListingEngine(context, uri);
             else return new SmbjListingEngine(context, uri);
         }
-        else if (uri.getScheme().equals("zip")) {
+        else if (ZipUtils.isZipScheme(uri.getScheme())) {
             return new ZipListingEngine(context, uri);
         }
+        else if (TarUtils.isTarScheme(uri.getScheme())) {
+            return new TarListingEngine(context, uri);
+        }
         else {
             try {
                 return new GenericListingEngine(context, uri);
@@ -66,6 +87,185 @@ public class ListingEngineFactory {
         }
     }
 
+    /**
+     * Serves the listing from ListingCache when fresh, runs the protocol engine and caches what it reports otherwise.
+     * An expired listing is served too when the caller handles onListingDelta(), see setStaleWhileRevalidate().
+     * Engines filter and sort while listing: filters, hidden files and sort order are part of the cache key.
+     */
+    public static class CachingListingEngine extends ListingEngine {
+        final private Uri mUri;
+        final private ListingEngine mEngine;
+        private boolean mKeepHiddenFiles;
+        private boolean mAbort = false;
+
+        public CachingListingEngine(Context context, Uri uri, ListingEngine engine) {
+            super(context);
+            mUri = uri;
+            mEngine = engine;
+        }
+
+        @Override
+        public void setFilter(String[] mimeTypeFilter, String[] extensionFilter) {
+            super.setFilter(mimeTypeFilter, extensionFilter);
+            mEngine.setFilter(mimeTypeFilter, extensionFilter);
+        }
+
+        @Override
+        public void setListingTimeOut(long listingTimeOutMs) {
+            super.setListingTimeOut(listingTimeOutMs);
+            mEngine.setListingTimeOut(listingTimeOutMs);
+        }
+
+        @Override
+        public void setSortOrder(SortOrder order) {
+            super.setSortOrder(order);
+            mEngine.setSortOrder(order);
+        }
+
+        @Override
+        public void setKeepHiddenFiles(boolean keep) {
+            super.setKeepHiddenFiles(keep);
+            mEngine.setKeepHiddenFiles(keep);
+            mKeepHiddenFiles = keep;
+        }
+
+        @Override
+        public void setProgressive(boolean progressive) {
+            super.setProgressive(progressive);
+            mEngine.setProgressive(progressive);
+        }
+
+        private String getVariant() {
+            return Arrays.toString(mMimeTypeFilter) + Arrays.toString(mExtensionFilter) + mKeepHiddenFiles + mSortOrder;
+        }
+
+        @Override
+        public void start() {
+            final String variant = getVariant();
+            final List<MetaFile2> cached = ListingCache.getInstance().get(mUri, variant);
+            if (cached != null) {
+                mUiHandler.post(new Runnable() {
+                    public void run() {
+                        if (mListener != null) {
+                            mListener.onListingStart();
+                            if (!mAbort)
+                                mListener.onListingUpdate(cached);
+                            mListener.onListingEnd();
+                        }
+                    }
+                });
+                return;
+            }
+            // expired listing shown at once, the engine result is then reported as a delta
+            final List<MetaFile2> stale = mStaleWhileRevalidate ? ListingCache.getInstance().getStale(mUri, variant) : null;
+            if (stale != null) {
+                mUiHandler.post(new Runnable() {
+                    public void run() {
+                        if (mListener != null) {
+                            mListener.onListingStart();
+                            if (!mAbort)
+                                mListener.onListingUpdate(stale);
+                        }
+                    }
+                });
+            }
+            // all the callbacks run on the UI thread
+            mEngine.setListener(new Listener() {
+                private final ArrayList<MetaFile2> mFiles = new ArrayList<>();
+                private boolean mUpdated;
+                private boolean mFailed;
+                private boolean mEnded;
+
+                @Override
+                public void onListingStart() {
+                    if (stale == null && mListener != null) mListener.onListingStart();
+                }
+
+                @Override
+                public void onListingUpdate(List<? extends MetaFile2> files) {
+                    mFiles.addAll(files);
+                    mUpdated = true;
+                    if (stale == null && mListener != null) mListener.onListingUpdate(files);
+                }
+
+                @Override
+                public void onListingPage(List<? extends MetaFile2> files) {
+                    // pages would duplicate the stale listing already shown
+                    if (stale == null && !mAbort && mListener != null) mListener.onListingPage(files);
+                }
+
+                @Override
+                public void onListingEnd() {
+                    // some engines report the end twice
+                    if (!mEnded && mUpdated && !mFailed && !mAbort) {
+                        ListingCache.getInstance().put(mUri, variant, mFiles);
+                        if (stale != null && mListener != null)
+                            reportDelta(stale, mFiles);
+                    }
+                    boolean ended = mEnded;
+                    mEnded = true;
+                    if (mListener != null && (stale == null || !ended)) mListener.onListingEnd();
+                }
+
+                @Override
+                public void onListingTimeOut() {
+                    mFailed = true;
+                    if (mListener != null) mListener.onListingTimeOut();
+                }
+
+                @Override
+                public void onCredentialRequired(Exception e) {
+                    mFailed = true;
+                    if (mListener != null) mListener.onCredentialRequired(e);
+                }
+
+                @Override
+                public void onListingFatalError(Exception e, ErrorEnum errorCode) {
+                    mFailed = true;
+                    if (mListener != null) mListener.onListingFatalError(e, errorCode);
+                }
+
+                @Override
+                public void onListingFileInfoUpdate(Uri uri, MetaFile2 metaFile2) {
+                    if (mListener != null) mListener.onListingFileInfoUpdate(uri, metaFile2);
+                }
+            });
+            mEngine.start();
+        }
+
+        /**
+         * Hash join on name between what has been shown and what has just been listed: linear even on large directories
+         */
+        private void reportDelta(List<MetaFile2> previous, List<MetaFile2> current) {
+            HashMap<String, MetaFile2> previousByName = new HashMap<>(previous.size() * 2);
+            for (MetaFile2 file : previous)
+                previousByName.put(file.getName(), file);
+            ArrayList<MetaFile2> added = new ArrayList<>();
+            ArrayList<MetaFile2> changed = new ArrayList<>();
+            for (MetaFile2 file : current) {
+                MetaFile2 old = previousByName.remove(file.getName());
+                if (old == null)
+                    added.add(file);
+                else if (old.isDirectory() != file.isDirectory() || old.length() != file.length() || old.lastModified() != file.lastModified())
+                    changed.add(file);
+            }
+            // in the order they were shown
+            ArrayList<MetaFile2> removed = new ArrayList<>(previousByName.size());
+            for (MetaFile2 file : previous) {
+                if (previousByName.remove(file.getName()) != null)
+                    removed.add(file);
+            }
+            if (!added.isEmpty() || !removed.isEmpty() || !changed.isEmpty())
+                mListener.onListingDelta(added, removed, changed);
+        }
+
+        @Override
+        public void abort() {
+            mAbort = true;
+            mEngine.abort();
+        }
+    }
+
     public static class GenericListingEngine extends ListingEngine {
         final private Thread mListingThread = new Thread() {
             public void run() {
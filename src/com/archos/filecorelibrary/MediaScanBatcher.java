@@ -0,0 +1,110 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary;
+
+import android.content.Context;
+import android.media.MediaScannerConnection;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashSet;
+
+/**
+ * Collects local files to be (re)indexed by the media scanner and submits them in batches
+ * (one MediaScannerConnection.scanFile() call per batch instead of one broadcast per file).
+ * Paths of files that do not exist anymore are scanned too: the scanner then removes them from MediaStore.
+ */
+public class MediaScanBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaScanBatcher.class);
+
+    // a batch is submitted when no file has been added for DEBOUNCE_MS...
+    private static final long DEBOUNCE_MS = 1000;
+    // ...or when the oldest pending file has been waiting for MAX_DELAY_MS
+    private static final long MAX_DELAY_MS = 5000;
+    private static final int MAX_BATCH_SIZE = 500;
+
+    private static volatile MediaScanBatcher sInstance;
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final LinkedHashSet<String> mPending = new LinkedHashSet<>();
+    private long mFirstPendingTime;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public static MediaScanBatcher getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (MediaScanBatcher.class) {
+                if (sInstance == null) sInstance = new MediaScanBatcher(context.getApplicationContext());
+            }
+        }
+        return sInstance;
+    }
+
+    private MediaScanBatcher(Context context) {
+        mContext = context;
+        mHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Queue a local file (file:// or plain path uri) for scanning, can be called from any thread
+     */
+    public void add(Uri uri) {
+        String path = uri.getPath();
+        if (path == null)
+            return;
+        boolean flushNow;
+        long delay;
+        synchronized (mPending) {
+            long now = System.currentTimeMillis();
+            if (mPending.isEmpty()) mFirstPendingTime = now;
+            mPending.add(path);
+            flushNow = mPending.size() >= MAX_BATCH_SIZE;
+            delay = Math.min(DEBOUNCE_MS, Math.max(0, mFirstPendingTime + MAX_DELAY_MS - now));
+        }
+        if (flushNow) {
+            flush();
+        } else {
+            mHandler.removeCallbacks(mFlushRunnable);
+            mHandler.postDelayed(mFlushRunnable, delay);
+        }
+    }
+
+    /**
+     * Submit what is pending right away, e.g. at the end of a copy
+     */
+    public void flush() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        String[] paths;
+        synchronized (mPending) {
+            if (mPending.isEmpty())
+                return;
+            paths = mPending.toArray(new String[0]);
+            mPending.clear();
+        }
+        log.debug("flush: scanning " + paths.length + " files");
+        MediaScannerConnection.scanFile(mContext, paths, null, null);
+    }
+}
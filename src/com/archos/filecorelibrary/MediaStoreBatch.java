@@ -0,0 +1,148 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.provider.MediaStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups MediaStore deletes and updates into applyBatch() transactions instead of one provider call per file.
+ * An engine attaches a batch to its thread with begin() and detaches it with end(): while attached,
+ * LocalStorageFileEditor queues its MediaStore bookkeeping into it instead of calling the ContentResolver.
+ * A batch that fails as a whole (e.g. SecurityException on one item) is replayed one operation at a time.
+ */
+public class MediaStoreBatch {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaStoreBatch.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 200;
+
+    private static final ThreadLocal<MediaStoreBatch> sCurrent = new ThreadLocal<>();
+
+    private final ContentResolver mContentResolver;
+    private final int mBatchSize;
+    private final ArrayList<ContentProviderOperation> mOperations = new ArrayList<>();
+
+    public MediaStoreBatch(ContentResolver contentResolver, int batchSize) {
+        mContentResolver = contentResolver;
+        mBatchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * Attaches a new batch to the calling thread, to be closed with end() by the same thread
+     */
+    public static MediaStoreBatch begin(Context context, int batchSize) {
+        MediaStoreBatch batch = new MediaStoreBatch(context.getContentResolver(), batchSize);
+        sCurrent.set(batch);
+        return batch;
+    }
+
+    /**
+     * @return the batch attached to the calling thread, null if none
+     */
+    public static MediaStoreBatch current() {
+        return sCurrent.get();
+    }
+
+    /**
+     * Applies what is pending and detaches the batch from the calling thread
+     */
+    public void end() {
+        flush();
+        if (sCurrent.get() == this)
+            sCurrent.remove();
+    }
+
+    /**
+     * Removes the MediaStore entry of a file given its path
+     */
+    public void addDelete(String path) {
+        add(ContentProviderOperation.newDelete(MediaStore.Files.getContentUri("external"))
+                .withSelection(MediaStore.MediaColumns.DATA + "=?", new String[] { path })
+                .build());
+    }
+
+    /**
+     * Removes a MediaStore entry given its content uri
+     */
+    public void addDelete(Uri contentUri) {
+        add(ContentProviderOperation.newDelete(contentUri).build());
+    }
+
+    /**
+     * Points the MediaStore entry of a moved file to its new path (only honored by the provider before Q,
+     * afterwards the media scanner takes care of it)
+     */
+    public void addPathUpdate(String oldPath, String newPath) {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.DATA, newPath);
+        add(ContentProviderOperation.newUpdate(MediaStore.Files.getContentUri("external"))
+                .withSelection(MediaStore.MediaColumns.DATA + "=?", new String[] { oldPath })
+                .withValues(values)
+                .build());
+    }
+
+    private void add(ContentProviderOperation operation) {
+        boolean full;
+        synchronized (mOperations) {
+            mOperations.add(operation);
+            full = mOperations.size() >= mBatchSize;
+        }
+        if (full)
+            flush();
+    }
+
+    public void flush() {
+        ArrayList<ContentProviderOperation> operations;
+        synchronized (mOperations) {
+            if (mOperations.isEmpty())
+                return;
+            operations = new ArrayList<>(mOperations);
+            mOperations.clear();
+        }
+        log.debug("flush: applying " + operations.size() + " operations");
+        try {
+            mContentResolver.applyBatch(MediaStore.AUTHORITY, operations);
+        } catch (RemoteException | OperationApplicationException | SecurityException e) {
+            log.warn("flush: batch failed, applying operations one by one", e);
+            applyOneByOne(operations);
+        }
+    }
+
+    private void applyOneByOne(List<ContentProviderOperation> operations) {
+        ArrayList<ContentProviderOperation> single = new ArrayList<>(1);
+        for (ContentProviderOperation operation : operations) {
+            single.clear();
+            single.add(operation);
+            try {
+                mContentResolver.applyBatch(MediaStore.AUTHORITY, single);
+            } catch (RemoteException | OperationApplicationException | SecurityException e) {
+                log.warn("applyOneByOne: failed for " + operation.getUri(), e);
+            }
+        }
+    }
+}
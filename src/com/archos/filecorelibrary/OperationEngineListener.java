@@ -18,6 +18,7 @@ import android.net.Uri;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by alexandre on 19/08/15.
@@ -45,7 +46,8 @@ public interface OperationEngineListener {
      * send new file list
      *
      * copyingMetaFiles : every metafile being copied
-     * rootMetaFiles : files as first set by user of the engine (for example : copy(List<Uri>) Uri -> Metafile2) associated with there total length
+     * rootMetaFiles : files as first set by user of the engine (for example : copy(List<Uri>) Uri -> Metafile2), left untouched:
+     * the total size of the copy comes with onTotalSizeUpdate()
      *
      *
      */
@@ -64,4 +66,31 @@ public interface OperationEngineListener {
      * When action is canceled
      */
     public void onCanceled();
+
+    /**
+     * Size and number of the files to transfer, reported once the source trees have been listed (complete is then true).
+     * Pipelined copy (CopyCutEngine.setPipelined()) also reports the files discovered so far while listing
+     */
+    default void onTotalSizeUpdate(long totalSize, int fileCount, boolean complete) {}
+
+    /**
+     * Copy/cut/sync: target of each source root (source uri -> target uri), once names are picked and before any transfer
+     */
+    default void onTargetsResolved(Map<Uri, Uri> targets) {}
+
+    /**
+     * Sync planning is done (CopyCutEngine.sync() only), called before any transfer
+     * In dry-run mode it is followed by onEnd() without anything being written
+     */
+    default void onSyncReport(SyncReport report) {}
+
+    /**
+     * Digest of the bytes transferred to file (see CopyCutEngine.setDigest())
+     */
+    default void onDigest(Uri file, TransferDigest.Algorithm algorithm, String digest) {}
+
+    /**
+     * Verification failed: file does not hold the bytes that were sent
+     */
+    default void onDigestMismatch(Uri file, TransferDigest.Algorithm algorithm, String expected, String actual) {}
 }
@@ -0,0 +1,31 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes at arbitrary offsets of an existing file, leaving the rest of its content untouched
+ */
+public interface PositionalWriter extends Closeable {
+
+    void write(long position, byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * Cuts the file to length bytes (or extends it)
+     */
+    void setLength(long length) throws IOException;
+}
@@ -31,11 +31,36 @@ import com.archos.filecorelibrary.sshj.SshjFile2;
 import com.archos.filecorelibrary.sshj.SshjRawLister;
 import com.archos.filecorelibrary.webdav.WebdavRawLister;
 import com.archos.filecorelibrary.smbj.SmbjRawLister;
+import com.archos.filecorelibrary.tar.TarRawLister;
+import com.archos.filecorelibrary.tar.TarUtils;
 import com.archos.filecorelibrary.zip.ZipRawLister;
+import com.archos.filecorelibrary.zip.ZipUtils;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.SftpException;
+
+import java.io.IOException;
+import java.util.List;
 
 public class RawListerFactory {
 
+    /**
+     * Listings of network shares may come from ListingCache
+     */
     public static RawLister getRawListerForUrl(Uri uri) {
+        return getRawListerForUrl(uri, true);
+    }
+
+    /**
+     * @param useCache false when the listing must reflect the directory as it is now, e.g. to pick names that do not collide
+     */
+    public static RawLister getRawListerForUrl(Uri uri, boolean useCache) {
+        RawLister rawLister = createRawLister(uri);
+        if (useCache && ListingCache.getInstance().isCacheable(uri))
+            return new CachedRawLister(uri, rawLister);
+        return rawLister;
+    }
+
+    private static RawLister createRawLister(Uri uri) {
 
         if ("smb".equals(uri.getScheme())) {
             if (isSMBjEnabled()) return new SmbjRawLister(uri);
@@ -52,9 +77,12 @@ public class RawListerFactory {
         else if ("sshj".equals(uri.getScheme())) {
             return new SshjRawLister(uri);
         }
-        else if ("zip".equals(uri.getScheme())) {
+        else if (ZipUtils.isZipScheme(uri.getScheme())) {
             return new ZipRawLister(uri);
         }
+        else if (TarUtils.isTarScheme(uri.getScheme())) {
+            return new TarRawLister(uri);
+        }
         else if ("content".equals(uri.getScheme())) {
             return new ContentStorageRawLister(uri);
         }
@@ -74,4 +102,26 @@ public class RawListerFactory {
             throw new IllegalArgumentException("not implemented yet for "+uri);
         }
     }
+
+    /**
+     * Serves the listing from ListingCache when fresh, lists and caches it otherwise
+     */
+    public static class CachedRawLister extends RawLister {
+        private final RawLister mRawLister;
+
+        public CachedRawLister(Uri uri, RawLister rawLister) {
+            super(uri);
+            mRawLister = rawLister;
+        }
+
+        @Override
+        public List<MetaFile2> getFileList() throws IOException, AuthenticationException, SftpException, JSchException {
+            List<MetaFile2> files = ListingCache.getInstance().get(mUri, "");
+            if (files != null)
+                return files;
+            files = mRawLister.getFileList();
+            ListingCache.getInstance().put(mUri, "", files);
+            return files;
+        }
+    }
 }
@@ -563,7 +563,7 @@ public class StreamOverHttp {
 		try {
 			OutputStream out = socket.getOutputStream();
 			PrintWriter pw = new PrintWriter(out);
-			bin = new BufferedInputStream(isInput, BUFFER_SIZE*10);
+			bin = new BufferedInputStream(isInput, Math.max(BUFFER_SIZE*10, TransferTuning.getParameters(mUri).bufferSize));
 			{
 				String retLine = "HTTP/1.0 " + status + " \r\n";
 				pw.print(retLine);
@@ -0,0 +1,94 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of the planning pass of a sync run (see CopyCutEngine.sync()).
+ * Lists the files that are (or would be in dry-run) transferred and deleted, unchanged files are only counted
+ * to keep the report small on big mirrors.
+ */
+public class SyncReport {
+    private final boolean mDryRun;
+    private final List<MetaFile2> mToTransfer = new ArrayList<>();
+    private final List<MetaFile2> mToDelete = new ArrayList<>();
+    private final List<MetaFile2> mToReplace = new ArrayList<>();
+    private long mBytesToTransfer = 0;
+    private int mUnchangedCount = 0;
+    private long mUnchangedBytes = 0;
+
+    public SyncReport(boolean dryRun) {
+        mDryRun = dryRun;
+    }
+
+    /** true if nothing has been (nor will be) written to the target */
+    public boolean isDryRun() {
+        return mDryRun;
+    }
+
+    /** new or changed source files and the source directories missing on the target */
+    public List<MetaFile2> getToTransfer() {
+        return mToTransfer;
+    }
+
+    /** target files and directories not present in the source anymore (only filled when deletion propagation is enabled) */
+    public List<MetaFile2> getToDelete() {
+        return mToDelete;
+    }
+
+    /** target files in place of a source directory and target directories in place of a source file: deleted before the transfer */
+    public List<MetaFile2> getToReplace() {
+        return mToReplace;
+    }
+
+    public long getBytesToTransfer() {
+        return mBytesToTransfer;
+    }
+
+    public int getUnchangedCount() {
+        return mUnchangedCount;
+    }
+
+    public long getUnchangedBytes() {
+        return mUnchangedBytes;
+    }
+
+    void addToTransfer(MetaFile2 source) {
+        mToTransfer.add(source);
+        if (source.isFile()) mBytesToTransfer += source.length();
+    }
+
+    void addToDelete(MetaFile2 target) {
+        mToDelete.add(target);
+    }
+
+    void addToReplace(MetaFile2 target) {
+        mToReplace.add(target);
+    }
+
+    void addUnchanged(MetaFile2 source) {
+        mUnchangedCount++;
+        mUnchangedBytes += source.length();
+    }
+
+    @Override
+    public String toString() {
+        return "SyncReport{dryRun=" + mDryRun + ", toTransfer=" + mToTransfer.size() + " (" + mBytesToTransfer + " bytes)"
+                + ", unchanged=" + mUnchangedCount + " (" + mUnchangedBytes + " bytes)"
+                + ", toReplace=" + mToReplace.size() + ", toDelete=" + mToDelete.size() + "}";
+    }
+}
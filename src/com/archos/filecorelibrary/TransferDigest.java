@@ -0,0 +1,127 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary;
+
+import android.os.Build;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Digest computed on the fly on the bytes of a transfer, without any extra buffering
+ * Value is reported as a lowercase hex string
+ */
+public class TransferDigest {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferDigest.class);
+
+    private static final int BUFFER_SIZE = 65536;
+
+    public enum Algorithm {
+        CRC32,
+        CRC32C, // API26+, falls back to CRC32 on older devices
+        SHA256
+    }
+
+    private final Algorithm mAlgorithm;
+    private Checksum mChecksum;
+    private MessageDigest mMessageDigest;
+    private byte[] mBuffer;
+
+    public TransferDigest(Algorithm algorithm) {
+        if (algorithm == Algorithm.CRC32C && Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            log.warn("TransferDigest: CRC32C not available before API26, using CRC32");
+            algorithm = Algorithm.CRC32;
+        }
+        mAlgorithm = algorithm;
+        switch (algorithm) {
+            case CRC32C:
+                mChecksum = new CRC32C();
+                break;
+            case SHA256:
+                try {
+                    mMessageDigest = MessageDigest.getInstance("SHA-256");
+                } catch (NoSuchAlgorithmException e) { // mandatory algorithm, cannot happen
+                    throw new IllegalStateException(e);
+                }
+                break;
+            case CRC32:
+            default:
+                mChecksum = new CRC32();
+        }
+    }
+
+    /** algorithm actually used, may differ from the requested one (see CRC32C) */
+    public Algorithm getAlgorithm() {
+        return mAlgorithm;
+    }
+
+    public void update(byte[] buf, int off, int len) {
+        if (mMessageDigest != null) mMessageDigest.update(buf, off, len);
+        else mChecksum.update(buf, off, len);
+    }
+
+    public void update(ByteBuffer buffer) {
+        if (mMessageDigest != null) {
+            mMessageDigest.update(buffer);
+            return;
+        }
+        // Checksum.update(ByteBuffer) is API26+
+        if (mBuffer == null) mBuffer = new byte[BUFFER_SIZE];
+        while (buffer.hasRemaining()) {
+            int len = Math.min(buffer.remaining(), mBuffer.length);
+            buffer.get(mBuffer, 0, len);
+            mChecksum.update(mBuffer, 0, len);
+        }
+    }
+
+    /** lowercase hex value, the digest cannot be updated afterwards */
+    public String getValue() {
+        if (mMessageDigest != null) return toHex(mMessageDigest.digest());
+        return String.format("%08x", mChecksum.getValue());
+    }
+
+    /**
+     * Digest of a whole stream, the stream is closed
+     */
+    public static String compute(InputStream in, Algorithm algorithm) throws IOException {
+        TransferDigest digest = new TransferDigest(algorithm);
+        try {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = in.read(buf)) != -1)
+                digest.update(buf, 0, len);
+        } finally {
+            in.close();
+        }
+        return digest.getValue();
+    }
+
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,329 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+
+import com.archos.environment.ArchosUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transfer parameters (buffer size, sftp read-ahead depth, parallelism) per server, i.e. per scheme + host + port.
+ * They are found by a short read throughput probe run on a file of the server the first time it is used
+ * (see probeIfNeeded()) or on demand (probe()), and persisted in SharedPreferences.
+ * A probe never runs during a transfer with its server (see beginTransfer()): the measure would be skewed by it.
+ * Servers not probed yet and local storage use DEFAULT.
+ */
+public class TransferTuning {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferTuning.class);
+
+    public static class Parameters {
+        public final int bufferSize;
+        public final int readAhead; // sftp requests in flight while reading
+        public final int parallelism; // concurrent requests to the server
+
+        public Parameters(int bufferSize, int readAhead, int parallelism) {
+            this.bufferSize = bufferSize;
+            this.readAhead = readAhead;
+            this.parallelism = parallelism;
+        }
+
+        private static Parameters fromString(String s) {
+            String[] values = s.split(",");
+            if (values.length != 3)
+                return null;
+            try {
+                return new Parameters(Integer.parseInt(values[0]), Integer.parseInt(values[1]), Integer.parseInt(values[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return bufferSize + "," + readAhead + "," + parallelism;
+        }
+    }
+
+    public static final Parameters DEFAULT = new Parameters(32768, 16, 4);
+
+    private static final String PREFS_NAME = "transfer_tuning";
+    private static final int[] BUFFER_SIZES = { 32 * 1024, 128 * 1024, 512 * 1024, 1024 * 1024 };
+    private static final int[] READ_AHEADS = { 4, 16, 64 };
+    private static final int[] PARALLELISMS = { 1, 2, 4, 8 };
+    // each trial reads at most PROBE_BYTES per stream and lasts at most PROBE_TIME_MS
+    private static final long PROBE_BYTES = 4 * 1024 * 1024;
+    private static final long PROBE_TIME_MS = 1000;
+    public static final long PROBE_MIN_FILE_SIZE = 2 * PROBE_BYTES;
+    // a larger value has to be clearly better to be picked, measures are noisy
+    private static final double MIN_GAIN = 1.1;
+
+    private static volatile TransferTuning sInstance;
+    // parameters under trial, seen by the readers of the probing threads only
+    private static final ThreadLocal<Parameters> sTrial = new ThreadLocal<>();
+
+    private final SharedPreferences mPreferences;
+    private final HashMap<String, Parameters> mParameters = new HashMap<>();
+    private final HashSet<String> mProbing = new HashSet<>();
+    // guarded by mProbing: transfers in progress per server, probes waiting for their end
+    private final HashMap<String, Integer> mActiveTransfers = new HashMap<>();
+    private final HashMap<String, Uri> mPendingProbes = new HashMap<>();
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * @return null before the application context is known
+     */
+    public static TransferTuning getInstance() {
+        if (sInstance == null) {
+            Context context = ArchosUtils.getGlobalContext();
+            if (context == null)
+                return null;
+            synchronized (TransferTuning.class) {
+                if (sInstance == null) sInstance = new TransferTuning(context.getApplicationContext());
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * Parameters to use for transfers from/to uri, can be called from any thread
+     */
+    public static Parameters getParameters(Uri uri) {
+        Parameters trial = sTrial.get();
+        if (trial != null)
+            return trial;
+        TransferTuning tuning = getInstance();
+        if (tuning == null || uri == null || FileUtils.isLocal(uri))
+            return DEFAULT;
+        return tuning.get(uri);
+    }
+
+    private TransferTuning(Context context) {
+        mPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public Parameters get(Uri uri) {
+        String key = getKey(uri);
+        synchronized (mParameters) {
+            Parameters parameters = mParameters.get(key);
+            if (parameters == null) {
+                String saved = mPreferences.getString(key, null);
+                parameters = saved != null ? Parameters.fromString(saved) : null;
+                if (parameters == null)
+                    return DEFAULT;
+                mParameters.put(key, parameters);
+            }
+            return parameters;
+        }
+    }
+
+    public boolean isTuned(Uri uri) {
+        String key = getKey(uri);
+        synchronized (mParameters) {
+            return mParameters.containsKey(key) || mPreferences.contains(key);
+        }
+    }
+
+    /**
+     * Probes the server of file in the background if it has never been, file being large enough to be measured
+     */
+    public void probeIfNeeded(final Uri file, long length) {
+        if (FileUtils.isLocal(file) || length < PROBE_MIN_FILE_SIZE || isTuned(file))
+            return;
+        final String key = getKey(file);
+        synchronized (mProbing) {
+            if (mActiveTransfers.containsKey(key)) {
+                mPendingProbes.put(key, file);
+                return;
+            }
+            if (!mProbing.add(key))
+                return;
+        }
+        startProbe(key, file);
+    }
+
+    /**
+     * A transfer with the server of uri starts: its probe is postponed until the last one ends
+     */
+    public void beginTransfer(Uri uri) {
+        if (uri == null || FileUtils.isLocal(uri))
+            return;
+        String key = getKey(uri);
+        synchronized (mProbing) {
+            Integer count = mActiveTransfers.get(key);
+            mActiveTransfers.put(key, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Balances beginTransfer(), runs the probe that was waiting for it if any
+     */
+    public void endTransfer(Uri uri) {
+        if (uri == null || FileUtils.isLocal(uri))
+            return;
+        String key = getKey(uri);
+        Uri pending;
+        synchronized (mProbing) {
+            Integer count = mActiveTransfers.get(key);
+            if (count == null)
+                return;
+            if (count > 1) {
+                mActiveTransfers.put(key, count - 1);
+                return;
+            }
+            mActiveTransfers.remove(key);
+            pending = mPendingProbes.remove(key);
+            if (pending == null || isTuned(pending) || !mProbing.add(key))
+                return;
+        }
+        startProbe(key, pending);
+    }
+
+    private void startProbe(final String key, final Uri file) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    probe(file);
+                } catch (Exception e) {
+                    log.warn("probeIfNeeded: probe failed for " + key, e);
+                } finally {
+                    synchronized (mProbing) {
+                        mProbing.remove(key);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocking probe reading the beginning of file, result is saved for its server.
+     * Only reads are measured, the same parameters are used for writes.
+     */
+    public Parameters probe(Uri file) throws Exception {
+        final String key = getKey(file);
+        final FileEditor editor = FileEditorFactory.getFileEditorForUrl(file, null);
+        long length = editor.length();
+        measure(editor, DEFAULT, 1); // warm up: connection, server cache
+        Parameters best = DEFAULT;
+        double bestSpeed = measure(editor, best, 1);
+        for (int bufferSize : BUFFER_SIZES) {
+            if (bufferSize == best.bufferSize) continue;
+            Parameters candidate = new Parameters(bufferSize, best.readAhead, best.parallelism);
+            double speed = measure(editor, candidate, 1);
+            if (speed > bestSpeed * (bufferSize > best.bufferSize ? MIN_GAIN : 1)) {
+                best = candidate;
+                bestSpeed = speed;
+            }
+        }
+        if ("sshj".equals(file.getScheme())) {
+            for (int readAhead : READ_AHEADS) {
+                if (readAhead == best.readAhead) continue;
+                Parameters candidate = new Parameters(best.bufferSize, readAhead, best.parallelism);
+                double speed = measure(editor, candidate, 1);
+                if (speed > bestSpeed * (readAhead > best.readAhead ? MIN_GAIN : 1)) {
+                    best = candidate;
+                    bestSpeed = speed;
+                }
+            }
+        }
+        // parallel streams on distinct ranges of the file, aggregated throughput
+        // not measurable on a small file: keep the default
+        int bestParallelism = length < 2 * PROBE_BYTES ? DEFAULT.parallelism : 1;
+        for (int parallelism : PARALLELISMS) {
+            if (parallelism == 1 || length < parallelism * PROBE_BYTES) continue;
+            double speed = measure(editor, best, parallelism);
+            if (speed > bestSpeed * MIN_GAIN) {
+                bestParallelism = parallelism;
+                bestSpeed = speed;
+            }
+        }
+        best = new Parameters(best.bufferSize, best.readAhead, bestParallelism);
+        log.debug("probe: " + key + " -> " + best + " (" + (long) bestSpeed + " B/s)");
+        synchronized (mParameters) {
+            mParameters.put(key, best);
+            mPreferences.edit().putString(key, best.toString()).apply();
+        }
+        return best;
+    }
+
+    /**
+     * Drops what was found for the server of uri, it is probed again next time
+     */
+    public void forget(Uri uri) {
+        String key = getKey(uri);
+        synchronized (mParameters) {
+            mParameters.remove(key);
+            mPreferences.edit().remove(key).apply();
+        }
+    }
+
+    /**
+     * @return bytes/s read with parameters by parallelism concurrent streams
+     */
+    private static double measure(final FileEditor editor, final Parameters parameters, int parallelism) throws Exception {
+        final AtomicLong total = new AtomicLong();
+        final Exception[] error = {null};
+        final long start = System.currentTimeMillis();
+        Thread[] threads = new Thread[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            final long from = i * PROBE_BYTES;
+            threads[i] = new Thread("TransferTuning-probe-" + i) {
+                @Override
+                public void run() {
+                    sTrial.set(parameters);
+                    try (InputStream in = from == 0 ? editor.getInputStream() : editor.getInputStream(from)) {
+                        byte[] buffer = new byte[parameters.bufferSize];
+                        long read = 0;
+                        int len;
+                        while (read < PROBE_BYTES && System.currentTimeMillis() - start < PROBE_TIME_MS
+                                && (len = in.read(buffer)) != -1) {
+                            read += len;
+                            total.addAndGet(len);
+                        }
+                    } catch (Exception e) {
+                        error[0] = e;
+                    } finally {
+                        sTrial.remove();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        if (error[0] != null)
+            throw error[0];
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        return 1000.0 * total.get() / elapsed;
+    }
+
+    private static String getKey(Uri uri) {
+        return uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort();
+    }
+}
@@ -0,0 +1,243 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary;
+
+import android.net.Uri;
+
+import com.archos.filecorelibrary.tar.TarUtils;
+import com.archos.filecorelibrary.zip.ZipUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recursive enumeration shared by the operation engines.
+ * Several directories are listed at once (bounded per host, whatever the number of walkers running) while the
+ * listings are handed to the Visitor one at a time on the thread calling walk(), as soon as they are available.
+ * A directory is always reported after the listing that contains it, never before.
+ */
+public class TreeWalker {
+
+    private static final Logger log = LoggerFactory.getLogger(TreeWalker.class);
+
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int MIN_TUNED_PARALLELISM = 2;
+    // ftp opens a new connection per listing and servers often cap connections per client
+    private static final int FTP_PARALLELISM = 2;
+    // zip and tar listings come from an index of the whole archive, nothing to gain
+    private static final int ZIP_PARALLELISM = 1;
+    private static final long POLL_TIMEOUT_MS = 200;
+
+    private static final HashMap<String, HostPermits> sHostPermits = new HashMap<>();
+
+    private static final ExecutorService sExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger mCount = new AtomicInteger();
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "TreeWalker-" + mCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    public interface Visitor {
+        /**
+         * Called for each listed directory, on the thread running walk()
+         * @param entries content of directory as returned by its RawLister
+         * @return the subdirectories to walk into, null for none
+         */
+        List<MetaFile2> onDirectoryListed(MetaFile2 directory, List<MetaFile2> entries) throws Exception;
+    }
+
+    private static final class Listing {
+        final MetaFile2 directory;
+        final List<MetaFile2> entries;
+        final Exception exception;
+        Listing(MetaFile2 directory, List<MetaFile2> entries, Exception exception) {
+            this.directory = directory;
+            this.entries = entries;
+            this.exception = exception;
+        }
+    }
+
+    private final Visitor mVisitor;
+    private final ArrayDeque<MetaFile2> mToList = new ArrayDeque<>();
+    private BlockingQueue<Listing> mListings;
+    private int mInFlight;
+    private volatile boolean mCanceled;
+    private long mTotalSize;
+    private int mFileCount;
+    private int mDirectoryCount;
+
+    public TreeWalker(Visitor visitor) {
+        mVisitor = visitor;
+    }
+
+    /**
+     * Walks the tree below root (root itself is listed but not reported as an entry).
+     * Blocks until the whole tree has been visited or the walk is canceled.
+     * The first listing error cancels the walk and is thrown back.
+     */
+    public void walk(MetaFile2 root) throws Exception {
+        // a fresh queue per walk: listings still in flight from a canceled walk must not leak into the next one
+        mListings = new LinkedBlockingQueue<>();
+        mToList.clear();
+        mInFlight = 0;
+        mToList.add(root);
+        while (!mCanceled && (mInFlight > 0 || !mToList.isEmpty())) {
+            dispatch();
+            Listing listing = mListings.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (listing == null)
+                continue;
+            mInFlight--;
+            if (listing.exception != null) {
+                cancel();
+                throw listing.exception;
+            }
+            if (listing.entries != null) {
+                for (MetaFile2 entry : listing.entries) {
+                    if (entry.isDirectory()) {
+                        mDirectoryCount++;
+                    } else {
+                        mFileCount++;
+                        mTotalSize += entry.length();
+                    }
+                }
+            }
+            List<MetaFile2> subdirectories = mVisitor.onDirectoryListed(listing.directory, listing.entries);
+            if (subdirectories != null)
+                mToList.addAll(subdirectories);
+        }
+    }
+
+    /**
+     * Stops the walk as soon as possible, listings in flight are dropped. Can be called from any thread.
+     */
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    public boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /** total size of the files reported so far */
+    public long getTotalSize() {
+        return mTotalSize;
+    }
+
+    public int getFileCount() {
+        return mFileCount;
+    }
+
+    public int getDirectoryCount() {
+        return mDirectoryCount;
+    }
+
+    private void dispatch() throws InterruptedException {
+        while (!mCanceled && !mToList.isEmpty()) {
+            final MetaFile2 directory = mToList.peekFirst();
+            final Semaphore permits = getHostPermits(directory.getUri());
+            // never wait for a permit while listings are pending: they have to be consumed meanwhile
+            if (mInFlight == 0) permits.acquire();
+            else if (!permits.tryAcquire()) return;
+            mToList.pollFirst();
+            mInFlight++;
+            final BlockingQueue<Listing> listings = mListings;
+            sExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (mCanceled) {
+                            listings.add(new Listing(directory, null, null));
+                            return;
+                        }
+                        log.trace("listing " + directory.getUri());
+                        listings.add(new Listing(directory, directory.getRawListerInstance().getFileList(), null));
+                    } catch (Exception e) {
+                        listings.add(new Listing(directory, null, e));
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Permits bounding the number of concurrent requests to the server of uri, shared with other bulk operations.
+     * Their number follows the parallelism tuned for the server, which can change after a probe.
+     */
+    static Semaphore getHostPermits(Uri uri) {
+        final String scheme = uri.getScheme();
+        final String key = scheme + "://" + uri.getHost() + ":" + uri.getPort();
+        int parallelism = getParallelism(uri);
+        synchronized (sHostPermits) {
+            HostPermits permits = sHostPermits.get(key);
+            if (permits == null) {
+                permits = new HostPermits(parallelism);
+                sHostPermits.put(key, permits);
+            } else {
+                permits.resize(parallelism);
+            }
+            return permits;
+        }
+    }
+
+    private static int getParallelism(Uri uri) {
+        final String scheme = uri.getScheme();
+        if ("ftp".equals(scheme) || "ftps".equals(scheme)) return FTP_PARALLELISM;
+        // archives, local ones or zip+smb://, tar+sftp://... on a network share
+        if ("zip".equals(scheme) || "tar".equals(scheme)
+                || ZipUtils.isRemoteZipUri(uri) || TarUtils.isRemoteTarUri(uri)) return ZIP_PARALLELISM;
+        // tuned servers: what the probe found, but listing is latency bound so never serialize it completely
+        TransferTuning tuning = TransferTuning.getInstance();
+        return tuning != null && tuning.isTuned(uri)
+                ? Math.max(MIN_TUNED_PARALLELISM, TransferTuning.getParameters(uri).parallelism) : DEFAULT_PARALLELISM;
+    }
+
+    /**
+     * Semaphore whose number of permits can be changed while some are held: a shrink is absorbed as they are released
+     */
+    private static final class HostPermits extends Semaphore {
+        private int mParallelism;
+
+        HostPermits(int parallelism) {
+            super(parallelism);
+            mParallelism = parallelism;
+        }
+
+        /** called under the sHostPermits lock */
+        void resize(int parallelism) {
+            if (parallelism > mParallelism)
+                release(parallelism - mParallelism);
+            else if (parallelism < mParallelism)
+                reducePermits(mParallelism - parallelism);
+            mParallelism = parallelism;
+        }
+    }
+}
@@ -50,11 +50,13 @@ public class FtpFileEditor extends FileEditor {
             if (mUri.getScheme().equals("ftps")) {
                 FTPSClient ftp = Session.getInstance().getNewFTPSClient(mUri, FTP.BINARY_FILE_TYPE);
                 Boolean isOk = ftp.makeDirectory(mUri.getPath());
+                invalidateListings(null);
                 Session.closeNewFTPSClient(ftp);
                 return isOk;
             } else {
                 FTPClient ftp = Session.getInstance().getNewFTPClient(mUri, FTP.BINARY_FILE_TYPE);
                 Boolean isOk = ftp.makeDirectory(mUri.getPath());
+                invalidateListings(null);
                 Session.closeNewFTPClient(ftp);
                 return isOk;
             }
@@ -122,6 +124,7 @@ public class FtpFileEditor extends FileEditor {
             isDeleteOK = ftp.deleteFile(mUri.getPath());
             Session.closeNewFTPClient(ftp);
         }
+        invalidateListings(null);
         return isDeleteOK;
     }
 
@@ -137,6 +140,7 @@ public class FtpFileEditor extends FileEditor {
                 ftp.rename(mUri.getPath(), new File(new File(mUri.getPath()).getParentFile(), newName).getAbsolutePath());
                 Session.closeNewFTPClient(ftp);
             }
+            invalidateListings(null);
             return true;
         } catch (Exception e) {
             log.error("Caught Exception: ",e);
@@ -156,6 +160,7 @@ public class FtpFileEditor extends FileEditor {
                 ftp.rename(mUri.getPath(), uri.getPath());
                 Session.closeNewFTPClient(ftp);
             }
+            invalidateListings(uri);
             return true;
         } catch (Exception e) {
             log.error("Caught Exception: ",e);
@@ -77,6 +77,11 @@ public class JcifListingEngine extends ListingEngine {
         mAbort = true;
     }
 
+    @Override
+    protected boolean isAborted() {
+        return mAbort;
+    }
+
     private SmbFileFilter mFileFilter = new SmbFileFilter() {
         /**
          * @return true if the file must be kept
@@ -108,8 +113,23 @@ public class JcifListingEngine extends ListingEngine {
         public void run(){
             try {
                 log.debug("JcifListingThread: listFiles for: " + mUri.toString());
-                NovaSmbFile nSmbFile = getSmbFile(mUri);
-                SmbFile[] listFiles = nSmbFile.smbFile.listFiles(mFileFilter);
+                final NovaSmbFile nSmbFile = getSmbFile(mUri);
+                SmbFile[] listFiles;
+                if (mProgressive) {
+                    // the filter sees the entries as each search response is decoded: report them from there
+                    final PageEmitter pages = new PageEmitter();
+                    listFiles = nSmbFile.smbFile.listFiles(new SmbFileFilter() {
+                        @Override
+                        public boolean accept(SmbFile f) throws SmbException {
+                            if (!mFileFilter.accept(f)) return false;
+                            pages.add(new JcifsFile2(f, nSmbFile.shareName, nSmbFile.shareIP));
+                            return true;
+                        }
+                    });
+                    pages.flush();
+                } else {
+                    listFiles = nSmbFile.smbFile.listFiles(mFileFilter);
+                }
                 // Check if timeout or abort occurred
                 if (timeOutHasOccurred() || mAbort) {
                     mUiHandler.post(new Runnable() {
@@ -54,6 +54,7 @@ public class JcifsFileEditor extends FileEditor{
     public boolean mkdir() {
         try {
             getSmbFile(mUri).smbFile.mkdir();
+            invalidateListings(null);
             return true;
         } catch (SmbException e) {
             caughtException(e, "JcifsFileEditor:mkdir", "SmbException in mkdir " + mUri);
@@ -85,6 +86,7 @@ public class JcifsFileEditor extends FileEditor{
         SmbFile smbFile = getSmbFile(mUri).smbFile;
         if (smbFile.isFile() || smbFile.isDirectory())
             getSmbFile(mUri).smbFile.delete();
+        invalidateListings(null);
         return null;
     }
 
@@ -96,6 +98,7 @@ public class JcifsFileEditor extends FileEditor{
                 SmbFile to = getSmbFile(Uri.parse(from.getParent() + "/" + newName)).smbFile;
                 if (to != null) {
                     from.renameTo(to);
+                    invalidateListings(null);
                     return true;
                 }
             }
@@ -0,0 +1,163 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary.jobs;
+
+import android.net.Uri;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One operation of the TransferJobQueue, persisted until it is done, failed or canceled.
+ * Progress fields are only updated on the UI thread by the queue.
+ */
+public class TransferJob {
+
+    public enum Type {
+        COPY,
+        CUT,
+        SYNC,
+        DELETE,
+        COMPRESS,
+        EXTRACT
+    }
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        PAUSED,
+        DONE,
+        FAILED,
+        CANCELED
+    }
+
+    // background jobs are held back while playback is active (see TransferJobQueue.setPlaybackActive())
+    public static final int PRIORITY_BACKGROUND = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+
+    public static final int FLAG_OVERWRITE = 1;
+    public static final int FLAG_DELETE_EXTRANEOUS = 2; // SYNC only
+
+    private final long mId;
+    private final Type mType;
+    private final List<Uri> mSources;
+    private final Uri mTarget;
+    private final int mFlags;
+    private final int mPriority;
+    private final long mCreated;
+    State mState;
+    // has already transferred something: a copy is then resumed incrementally
+    boolean mStarted;
+    // copy/cut: target picked for each source root by the first run, reused when resuming
+    Map<Uri, Uri> mTargets;
+    // network job suspended after an error, held back until the network changes (see TransferJobQueue)
+    boolean mWaitingForNetwork;
+    int mCurrentFile;
+    int mFileCount;
+    long mProgress;
+    long mTotalSize = -1;
+    double mSpeed = -1.0;
+    Exception mError;
+
+    TransferJob(long id, Type type, List<Uri> sources, Uri target, int flags, int priority, long created, State state, boolean started) {
+        mId = id;
+        mType = type;
+        mSources = sources;
+        mTarget = target;
+        mFlags = flags;
+        mPriority = priority;
+        mCreated = created;
+        mState = state;
+        mStarted = started;
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public Type getType() {
+        return mType;
+    }
+
+    public List<Uri> getSources() {
+        return mSources;
+    }
+
+    /** null for DELETE */
+    public Uri getTarget() {
+        return mTarget;
+    }
+
+    public int getFlags() {
+        return mFlags;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (mFlags & flag) != 0;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public long getCreated() {
+        return mCreated;
+    }
+
+    public State getState() {
+        return mState;
+    }
+
+    public boolean isFinished() {
+        return mState == State.DONE || mState == State.FAILED || mState == State.CANCELED;
+    }
+
+    /** index of the file being processed */
+    public int getCurrentFile() {
+        return mCurrentFile;
+    }
+
+    /** number of files of the job, 0 until known */
+    public int getFileCount() {
+        return mFileCount;
+    }
+
+    /** bytes processed so far */
+    public long getProgress() {
+        return mProgress;
+    }
+
+    /** -1 until known */
+    public long getTotalSize() {
+        return mTotalSize;
+    }
+
+    /** bytes/s for network transfers, -1 otherwise */
+    public double getSpeed() {
+        return mSpeed;
+    }
+
+    /** cause of a FAILED job */
+    public Exception getError() {
+        return mError;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferJob{id=" + mId + ", type=" + mType + ", state=" + mState + ", priority=" + mPriority
+                + ", sources=" + mSources.size() + ", target=" + mTarget + ", progress=" + mProgress + "/" + mTotalSize + "}";
+    }
+}
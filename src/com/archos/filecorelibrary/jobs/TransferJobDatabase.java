@@ -0,0 +1,198 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary.jobs;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.Uri;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pending jobs of the TransferJobQueue, so that they survive process death.
+ * Finished jobs are removed. Methods do disk I/O: the queue calls them from its database thread only.
+ */
+class TransferJobDatabase {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferJobDatabase.class);
+
+    private static final String DATABASE_NAME = "transfer_jobs_db";
+    private static final int DATABASE_VERSION = 2;
+    private static final String JOBS_TABLE = "jobs_table";
+    private static final String KEY_ID = "_id";
+    private static final String KEY_TYPE = "type";
+    private static final String KEY_SOURCES = "sources";
+    private static final String KEY_TARGET = "target";
+    private static final String KEY_FLAGS = "flags";
+    private static final String KEY_PRIORITY = "priority";
+    private static final String KEY_CREATED = "created";
+    private static final String KEY_STATE = "state";
+    private static final String KEY_STARTED = "started";
+    private static final String KEY_TARGETS = "targets";
+    private static final String[] COLS = { KEY_ID, KEY_TYPE, KEY_SOURCES, KEY_TARGET, KEY_FLAGS, KEY_PRIORITY, KEY_CREATED, KEY_STATE, KEY_STARTED, KEY_TARGETS };
+
+    private static final String DATABASE_CREATE_JOBS =
+            "create table " + JOBS_TABLE + " (" + KEY_ID + " integer primary key autoincrement, " + KEY_TYPE + " text not null, "
+                    + KEY_SOURCES + " text not null, " + KEY_TARGET + " text, " + KEY_FLAGS + " integer, " + KEY_PRIORITY + " integer, "
+                    + KEY_CREATED + " integer, " + KEY_STATE + " text not null, " + KEY_STARTED + " integer, " + KEY_TARGETS + " text);";
+
+    private final DatabaseHelper mDBHelper;
+
+    TransferJobDatabase(Context context) {
+        mDBHelper = new DatabaseHelper(context.getApplicationContext());
+    }
+
+    /**
+     * @param id given by the queue, above the ids of the jobs already stored
+     */
+    void insert(long id, TransferJob.Type type, List<Uri> sources, Uri target, int flags, int priority, long created) {
+        JSONArray array = new JSONArray();
+        for (Uri source : sources)
+            array.put(source.toString());
+        ContentValues values = new ContentValues();
+        values.put(KEY_ID, id);
+        values.put(KEY_TYPE, type.name());
+        values.put(KEY_SOURCES, array.toString());
+        values.put(KEY_TARGET, target != null ? target.toString() : null);
+        values.put(KEY_FLAGS, flags);
+        values.put(KEY_PRIORITY, priority);
+        values.put(KEY_CREATED, created);
+        values.put(KEY_STATE, TransferJob.State.QUEUED.name());
+        values.put(KEY_STARTED, 0);
+        try {
+            if (mDBHelper.getWritableDatabase().insert(JOBS_TABLE, null, values) < 0)
+                log.error("insert: failed for job " + id + " " + type);
+        } catch (SQLException e) {
+            log.error("insert: failed for job " + id + " " + type, e);
+        }
+    }
+
+    void updateState(long id, TransferJob.State state, boolean started) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_STATE, state.name());
+        values.put(KEY_STARTED, started ? 1 : 0);
+        try {
+            mDBHelper.getWritableDatabase().update(JOBS_TABLE, values, KEY_ID + "=?", new String[] { String.valueOf(id) });
+        } catch (SQLException e) {
+            log.error("updateState: failed for job " + id, e);
+        }
+    }
+
+    /**
+     * Source root -> target of a copy/cut, stored as a JSON object
+     */
+    void updateTargets(long id, Map<Uri, Uri> targets) {
+        JSONObject object = new JSONObject();
+        try {
+            for (Map.Entry<Uri, Uri> target : targets.entrySet())
+                object.put(target.getKey().toString(), target.getValue().toString());
+        } catch (JSONException e) {
+            log.error("updateTargets: failed for job " + id, e);
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(KEY_TARGETS, object.toString());
+        try {
+            mDBHelper.getWritableDatabase().update(JOBS_TABLE, values, KEY_ID + "=?", new String[] { String.valueOf(id) });
+        } catch (SQLException e) {
+            log.error("updateTargets: failed for job " + id, e);
+        }
+    }
+
+    void delete(long id) {
+        try {
+            mDBHelper.getWritableDatabase().delete(JOBS_TABLE, KEY_ID + "=?", new String[] { String.valueOf(id) });
+        } catch (SQLException e) {
+            log.error("delete: failed for job " + id, e);
+        }
+    }
+
+    /**
+     * Jobs that were running when the process died come back as QUEUED
+     */
+    List<TransferJob> loadJobs() {
+        List<TransferJob> jobs = new ArrayList<>();
+        try (Cursor cursor = mDBHelper.getWritableDatabase().query(JOBS_TABLE, COLS, null, null, null, null, KEY_ID)) {
+            while (cursor.moveToNext()) {
+                try {
+                    JSONArray array = new JSONArray(cursor.getString(cursor.getColumnIndexOrThrow(KEY_SOURCES)));
+                    List<Uri> sources = new ArrayList<>(array.length());
+                    for (int i = 0; i < array.length(); i++)
+                        sources.add(Uri.parse(array.getString(i)));
+                    String target = cursor.getString(cursor.getColumnIndexOrThrow(KEY_TARGET));
+                    TransferJob.State state = TransferJob.State.valueOf(cursor.getString(cursor.getColumnIndexOrThrow(KEY_STATE)));
+                    if (state == TransferJob.State.RUNNING) state = TransferJob.State.QUEUED;
+                    TransferJob job = new TransferJob(cursor.getLong(cursor.getColumnIndexOrThrow(KEY_ID)),
+                            TransferJob.Type.valueOf(cursor.getString(cursor.getColumnIndexOrThrow(KEY_TYPE))),
+                            sources,
+                            target != null ? Uri.parse(target) : null,
+                            cursor.getInt(cursor.getColumnIndexOrThrow(KEY_FLAGS)),
+                            cursor.getInt(cursor.getColumnIndexOrThrow(KEY_PRIORITY)),
+                            cursor.getLong(cursor.getColumnIndexOrThrow(KEY_CREATED)),
+                            state,
+                            cursor.getInt(cursor.getColumnIndexOrThrow(KEY_STARTED)) != 0);
+                    String targets = cursor.getString(cursor.getColumnIndexOrThrow(KEY_TARGETS));
+                    if (targets != null) {
+                        JSONObject object = new JSONObject(targets);
+                        job.mTargets = new HashMap<>();
+                        Iterator<String> keys = object.keys();
+                        while (keys.hasNext()) {
+                            String source = keys.next();
+                            job.mTargets.put(Uri.parse(source), Uri.parse(object.getString(source)));
+                        }
+                    }
+                    jobs.add(job);
+                } catch (JSONException | IllegalArgumentException e) {
+                    log.warn("loadJobs: dropping unreadable job", e);
+                }
+            }
+        } catch (SQLException e) {
+            log.error("loadJobs: failed", e);
+        }
+        return jobs;
+    }
+
+    private static class DatabaseHelper extends SQLiteOpenHelper {
+
+        DatabaseHelper(Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL(DATABASE_CREATE_JOBS);
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            if (oldVersion < 2)
+                db.execSQL("alter table " + JOBS_TABLE + " add column " + KEY_TARGETS + " text;");
+        }
+    }
+}
@@ -0,0 +1,646 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary.jobs;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.archos.filecorelibrary.CopyCutEngine;
+import com.archos.filecorelibrary.DeleteEngine;
+import com.archos.filecorelibrary.FileUtils;
+import com.archos.filecorelibrary.MetaFile2;
+import com.archos.filecorelibrary.MetaFile2Factory;
+import com.archos.filecorelibrary.OperationEngineListener;
+import com.archos.filecorelibrary.zip.ZipCompressionEngine;
+import com.archos.filecorelibrary.zip.ZipExtractionEngine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Queue of file operations (copy, cut, sync, delete, zip) run by the existing engines.
+ * Jobs are persisted until they end so that they are picked up again after process death, run by priority
+ * (then by age) with a configurable number of concurrent jobs, and can be paused, resumed and canceled.
+ * A job that already transferred data is resumed incrementally: copies go through CopyCutEngine.sync(), towards
+ * the targets picked by their first run (never overwriting files that were there before the job).
+ * Jobs going through the network follow the TransferPolicy: they are held back or throttled on cellular/metered
+ * links, and suspended when the network is lost (instead of failing) until it changes.
+ *
+ * Everything runs on the UI thread, including the Listener callbacks. Public methods can be called from any thread.
+ */
+public class TransferJobQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferJobQueue.class);
+
+    private static final int DEFAULT_MAX_CONCURRENT_JOBS = 2;
+    // a network job failing while the network seems fine waits that long for a network change before failing
+    private static final long NETWORK_ERROR_GRACE_MS = 30000;
+
+    public interface Listener {
+        void onJobStateChanged(TransferJob job);
+        void onJobProgress(TransferJob job);
+    }
+
+    private static volatile TransferJobQueue sInstance;
+
+    private final Context mContext;
+    private final Handler mUiHandler;
+    private final TransferJobDatabase mDatabase;
+    private final TransferPolicy mPolicy;
+    // resolving sources may need network: never on the UI thread
+    private final ExecutorService mResolver = Executors.newSingleThreadExecutor();
+    // database accesses, off the UI thread and in the order they were requested
+    private final ExecutorService mDatabaseExecutor = Executors.newSingleThreadExecutor();
+    // ids are given before the job is inserted: strictly increasing, above the autoincrement ones of older versions
+    private long mLastId;
+    private final List<TransferJob> mJobs = new ArrayList<>();
+    private final HashMap<Long, RunningJob> mRunning = new HashMap<>();
+    private final List<Listener> mListeners = new ArrayList<>();
+    private int mMaxConcurrentJobs = DEFAULT_MAX_CONCURRENT_JOBS;
+    private boolean mPlaybackActive;
+
+    private interface Stoppable {
+        void stop();
+    }
+
+    private static class RunningJob {
+        Stoppable engine;
+        // engine stopped to make room: job goes back to QUEUED instead of ending as canceled
+        boolean requeue;
+    }
+
+    public static TransferJobQueue getInstance(Context context) {
+        if (sInstance == null) {
+            synchronized (TransferJobQueue.class) {
+                if (sInstance == null) sInstance = new TransferJobQueue(context.getApplicationContext());
+            }
+        }
+        return sInstance;
+    }
+
+    TransferJobQueue(Context context) {
+        mContext = context;
+        mUiHandler = new Handler(Looper.getMainLooper());
+        mDatabase = new TransferJobDatabase(context);
+        mPolicy = new TransferPolicy(context);
+        mPolicy.start(new TransferPolicy.Listener() {
+            @Override
+            public void onPolicyChanged() {
+                mUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        applyPolicy();
+                    }
+                });
+            }
+        });
+        mDatabaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<TransferJob> jobs = mDatabase.loadJobs();
+                for (TransferJob job : jobs)
+                    nextId(job.getId());
+                log.debug("TransferJobQueue: restoring " + jobs.size() + " jobs");
+                mUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mJobs.addAll(0, jobs);
+                        schedule();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @param target null for DELETE
+     * @param flags TransferJob.FLAG_*
+     * @param priority TransferJob.PRIORITY_*
+     * @return id of the job. It is persisted in the background: if that fails, the job still runs but does not survive process death.
+     */
+    public long enqueue(final TransferJob.Type type, List<Uri> sources, final Uri target, final int flags, final int priority) {
+        final long created = System.currentTimeMillis();
+        final long id = nextId(created);
+        final List<Uri> jobSources = new ArrayList<>(sources);
+        mDatabaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDatabase.insert(id, type, jobSources, target, flags, priority, created);
+            }
+        });
+        final TransferJob job = new TransferJob(id, type, jobSources, target, flags, priority, created, TransferJob.State.QUEUED, false);
+        mUiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mJobs.add(job);
+                notifyStateChanged(job);
+                schedule();
+            }
+        });
+        return id;
+    }
+
+    public void pause(final long id) {
+        mUiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                TransferJob job = getJob(id);
+                if (job == null || job.isFinished() || job.mState == TransferJob.State.PAUSED)
+                    return;
+                RunningJob running = mRunning.get(id);
+                setState(job, TransferJob.State.PAUSED);
+                // the engine reports onCanceled() once stopped, job stays paused
+                if (running != null) running.engine.stop();
+                schedule();
+            }
+        });
+    }
+
+    public void resume(final long id) {
+        mUiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                TransferJob job = getJob(id);
+                if (job == null || job.mState != TransferJob.State.PAUSED)
+                    return;
+                // if still stopping, onStopped() keeps it queued and schedule() picks it up then
+                job.mWaitingForNetwork = false;
+                setState(job, TransferJob.State.QUEUED);
+                schedule();
+            }
+        });
+    }
+
+    public void cancel(final long id) {
+        mUiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                TransferJob job = getJob(id);
+                if (job == null || job.isFinished())
+                    return;
+                RunningJob running = mRunning.get(id);
+                if (running != null) {
+                    running.requeue = false;
+                    setState(job, TransferJob.State.CANCELED);
+                    running.engine.stop();
+                } else {
+                    finish(job, TransferJob.State.CANCELED, null);
+                }
+            }
+        });
+    }
+
+    public void setMaxConcurrentJobs(final int maxConcurrentJobs) {
+        mUiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mMaxConcurrentJobs = Math.max(1, maxConcurrentJobs);
+                schedule();
+            }
+        });
+    }
+
+    /**
+     * While playback is active only one job runs and background priority jobs are put back in the queue,
+     * to keep the network and storage bandwidth for the player
+     */
+    public void setPlaybackActive(final boolean playbackActive) {
+        mUiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mPlaybackActive == playbackActive)
+                    return;
+                mPlaybackActive = playbackActive;
+                log.debug("setPlaybackActive: " + playbackActive);
+                if (playbackActive) {
+                    for (TransferJob job : mJobs) {
+                        RunningJob running = mRunning.get(job.getId());
+                        if (running != null && job.mState == TransferJob.State.RUNNING && job.getPriority() == TransferJob.PRIORITY_BACKGROUND) {
+                            running.requeue = true;
+                            running.engine.stop();
+                        }
+                    }
+                }
+                schedule();
+            }
+        });
+    }
+
+    public TransferPolicy getPolicy() {
+        return mPolicy;
+    }
+
+    /** must be called on the UI thread */
+    public List<TransferJob> getJobs() {
+        return new ArrayList<>(mJobs);
+    }
+
+    /** must be called on the UI thread */
+    public TransferJob getJob(long id) {
+        for (TransferJob job : mJobs)
+            if (job.getId() == id) return job;
+        return null;
+    }
+
+    /** forgets finished jobs, must be called on the UI thread */
+    public void clearFinished() {
+        for (int i = mJobs.size() - 1; i >= 0; i--)
+            if (mJobs.get(i).isFinished()) mJobs.remove(i);
+    }
+
+    /** must be called on the UI thread */
+    public void addListener(Listener listener) {
+        if (!mListeners.contains(listener)) mListeners.add(listener);
+    }
+
+    /** must be called on the UI thread */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Network jobs running against the current policy go back to the queue, they are resumed by schedule()
+     * once the policy allows it
+     */
+    private void applyPolicy() {
+        TransferPolicy.Rule rule = mPolicy.getCurrentRule();
+        log.debug("applyPolicy: " + rule);
+        if (rule != TransferPolicy.Rule.PAUSE) {
+            // network changed since they failed: give them another try
+            for (TransferJob job : mJobs)
+                job.mWaitingForNetwork = false;
+        }
+        boolean networkJobKept = false;
+        for (TransferJob job : mJobs) {
+            RunningJob running = mRunning.get(job.getId());
+            if (running == null || job.mState != TransferJob.State.RUNNING || !needsNetwork(job))
+                continue;
+            boolean allowed = rule == TransferPolicy.Rule.ALLOW
+                    || (rule == TransferPolicy.Rule.THROTTLE && !networkJobKept && job.getPriority() != TransferJob.PRIORITY_BACKGROUND);
+            if (allowed) {
+                networkJobKept = true;
+            } else {
+                running.requeue = true;
+                running.engine.stop();
+            }
+        }
+        schedule();
+    }
+
+    private static boolean needsNetwork(TransferJob job) {
+        if (job.getTarget() != null && !FileUtils.isLocal(job.getTarget()))
+            return true;
+        for (Uri source : job.getSources())
+            if (!FileUtils.isLocal(source)) return true;
+        return false;
+    }
+
+    private static boolean isNetworkError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketException || cause instanceof SocketTimeoutException || cause instanceof UnknownHostException)
+                return true;
+        }
+        return false;
+    }
+
+    private int getRunningNetworkJobs() {
+        int count = 0;
+        for (TransferJob job : mJobs)
+            if (mRunning.containsKey(job.getId()) && needsNetwork(job)) count++;
+        return count;
+    }
+
+    private void schedule() {
+        int maxRunning = mPlaybackActive ? 1 : mMaxConcurrentJobs;
+        TransferPolicy.Rule rule = mPolicy.getCurrentRule();
+        while (mRunning.size() < maxRunning) {
+            TransferJob next = null;
+            boolean networkJobsAllowed = rule == TransferPolicy.Rule.ALLOW
+                    || (rule == TransferPolicy.Rule.THROTTLE && getRunningNetworkJobs() == 0);
+            for (TransferJob job : mJobs) {
+                if (job.mState != TransferJob.State.QUEUED || mRunning.containsKey(job.getId()) || job.mWaitingForNetwork)
+                    continue;
+                if (mPlaybackActive && job.getPriority() == TransferJob.PRIORITY_BACKGROUND)
+                    continue;
+                if (needsNetwork(job) && (!networkJobsAllowed
+                        || (rule == TransferPolicy.Rule.THROTTLE && job.getPriority() == TransferJob.PRIORITY_BACKGROUND)))
+                    continue;
+                // mJobs is in creation order: first of the highest priority
+                if (next == null || job.getPriority() > next.getPriority())
+                    next = job;
+            }
+            if (next == null)
+                return;
+            start(next);
+        }
+    }
+
+    private void start(final TransferJob job) {
+        log.debug("start: " + job);
+        final RunningJob running = new RunningJob();
+        mRunning.put(job.getId(), running);
+        setState(job, TransferJob.State.RUNNING);
+        // placeholder until sources are resolved: a stop request just drops the job from the resolver
+        running.engine = new Stoppable() {
+            @Override
+            public void stop() {
+                mUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onStopped(job);
+                    }
+                });
+            }
+        };
+        mResolver.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ArrayList<MetaFile2> sources = new ArrayList<>();
+                for (Uri uri : job.getSources()) {
+                    try {
+                        MetaFile2 mf = MetaFile2Factory.getMetaFileForUrl(uri);
+                        if (mf != null) sources.add(mf);
+                    } catch (Exception e) {
+                        // moved away by a previous run of a cut job, or not reachable anymore
+                        log.warn("start: skipping source " + uri + " of job " + job.getId(), e);
+                    }
+                }
+                mUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mRunning.get(job.getId()) != running || job.mState != TransferJob.State.RUNNING)
+                            return; // stopped meanwhile, onStopped() already handled it
+                        if (sources.isEmpty() && !job.mStarted) {
+                            finish(job, TransferJob.State.FAILED, null);
+                            return;
+                        }
+                        running.engine = startEngine(job, sources, new JobListener(job));
+                    }
+                });
+            }
+        });
+    }
+
+    private Stoppable startEngine(TransferJob job, ArrayList<MetaFile2> sources, OperationEngineListener listener) {
+        final boolean overwrite = job.hasFlag(TransferJob.FLAG_OVERWRITE);
+        switch (job.getType()) {
+            case COPY:
+            case CUT:
+            case SYNC: {
+                final CopyCutEngine engine = new CopyCutEngine(mContext);
+                engine.setListener(listener);
+                if (needsNetwork(job))
+                    engine.setMaxBufferSize(mPolicy.getBufferSize());
+                // on resume the targets recorded by the first run belong to this job, other names are picked again
+                if (job.mStarted && !overwrite && job.mTargets != null)
+                    engine.setResumeTargets(job.mTargets);
+                if (job.getType() == TransferJob.Type.SYNC)
+                    engine.sync(sources, job.getTarget(), job.hasFlag(TransferJob.FLAG_DELETE_EXTRANEOUS), false);
+                else if (job.getType() == TransferJob.Type.CUT)
+                    engine.cut(sources, job.getTarget(), overwrite);
+                else if (job.mStarted && (overwrite || job.mTargets != null))
+                    // files already complete in their target are skipped
+                    engine.sync(sources, job.getTarget(), false, false);
+                else
+                    engine.copy(sources, job.getTarget(), overwrite);
+                return new Stoppable() {
+                    @Override
+                    public void stop() {
+                        engine.stop();
+                    }
+                };
+            }
+            case DELETE: {
+                final DeleteEngine engine = new DeleteEngine(mContext);
+                engine.setListener(listener);
+                engine.delete(sources);
+                return new Stoppable() {
+                    @Override
+                    public void stop() {
+                        engine.stop();
+                    }
+                };
+            }
+            case COMPRESS: {
+                final ZipCompressionEngine engine = new ZipCompressionEngine(listener);
+                engine.compress(sources, job.getTarget());
+                return new Stoppable() {
+                    @Override
+                    public void stop() {
+                        engine.stop();
+                    }
+                };
+            }
+            case EXTRACT:
+            default: {
+                final ZipExtractionEngine engine = new ZipExtractionEngine(listener, mContext);
+                engine.extract(sources, job.getTarget());
+                return new Stoppable() {
+                    @Override
+                    public void stop() {
+                        engine.stop();
+                    }
+                };
+            }
+        }
+    }
+
+    /**
+     * Engine is stopped (canceled, paused or requeued)
+     */
+    private void onStopped(TransferJob job) {
+        RunningJob running = mRunning.remove(job.getId());
+        if (job.mState == TransferJob.State.CANCELED) {
+            finish(job, TransferJob.State.CANCELED, null);
+        } else if (job.mState == TransferJob.State.PAUSED && (running == null || !running.requeue)) {
+            notifyStateChanged(job);
+        } else {
+            setState(job, TransferJob.State.QUEUED);
+        }
+        schedule();
+    }
+
+    private void finish(TransferJob job, TransferJob.State state, Exception error) {
+        log.debug("finish: " + job + " -> " + state);
+        mRunning.remove(job.getId());
+        job.mError = error;
+        job.mState = state;
+        final long id = job.getId();
+        mDatabaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDatabase.delete(id);
+            }
+        });
+        notifyStateChanged(job);
+        schedule();
+    }
+
+    private void setState(TransferJob job, TransferJob.State state) {
+        job.mState = state;
+        persistState(job);
+        notifyStateChanged(job);
+    }
+
+    /**
+     * @return an id above min and above every id given so far
+     */
+    private synchronized long nextId(long min) {
+        mLastId = Math.max(min, mLastId + 1);
+        return mLastId;
+    }
+
+    /**
+     * Writes the current state of job in the background, values are taken now
+     */
+    private void persistState(TransferJob job) {
+        final long id = job.getId();
+        final TransferJob.State state = job.mState;
+        final boolean started = job.mStarted;
+        mDatabaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDatabase.updateState(id, state, started);
+            }
+        });
+    }
+
+    private void notifyStateChanged(TransferJob job) {
+        for (Listener listener : new ArrayList<>(mListeners))
+            listener.onJobStateChanged(job);
+    }
+
+    private void notifyProgress(TransferJob job) {
+        for (Listener listener : new ArrayList<>(mListeners))
+            listener.onJobProgress(job);
+    }
+
+    /**
+     * Engine callbacks are already on the UI thread
+     */
+    private class JobListener implements OperationEngineListener {
+        private final TransferJob mJob;
+
+        JobListener(TransferJob job) {
+            mJob = job;
+        }
+
+        @Override
+        public void onStart() {}
+
+        @Override
+        public void onProgress(int currentFile, long currentFileProgress, int currentRootFile, long currentRootProgress, long totalProgress, double currentSpeed) {
+            mJob.mCurrentFile = currentFile;
+            if (totalProgress >= 0) mJob.mProgress = totalProgress;
+            mJob.mSpeed = currentSpeed;
+            if (!mJob.mStarted && totalProgress > 0) {
+                mJob.mStarted = true;
+                persistState(mJob);
+            }
+            notifyProgress(mJob);
+        }
+
+        @Override
+        public void onSuccess(Uri file) {
+            if (!mJob.mStarted) {
+                mJob.mStarted = true;
+                persistState(mJob);
+            }
+        }
+
+        @Override
+        public void onTargetsResolved(Map<Uri, Uri> targets) {
+            // a resumed job reports the recorded targets again, plus the names picked for roots not reached before
+            if (mJob.getType() == TransferJob.Type.SYNC || targets.equals(mJob.mTargets))
+                return;
+            mJob.mTargets = new HashMap<>(targets);
+            final long id = mJob.getId();
+            final Map<Uri, Uri> recorded = new HashMap<>(targets);
+            mDatabaseExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    mDatabase.updateTargets(id, recorded);
+                }
+            });
+        }
+
+        @Override
+        public void onFilesListUpdate(List<MetaFile2> copyingMetaFiles, List<MetaFile2> rootMetaFiles) {
+            mJob.mFileCount = copyingMetaFiles.size();
+            long totalSize = 0;
+            for (MetaFile2 mf : rootMetaFiles)
+                if (mf.length() > 0) totalSize += mf.length();
+            mJob.mTotalSize = totalSize;
+            notifyProgress(mJob);
+        }
+
+        @Override
+        public void onTotalSizeUpdate(long totalSize, int fileCount, boolean complete) {
+            mJob.mTotalSize = totalSize;
+            mJob.mFileCount = fileCount;
+            notifyProgress(mJob);
+        }
+
+        @Override
+        public void onEnd() {
+            if (mRunning.containsKey(mJob.getId()))
+                finish(mJob, TransferJob.State.DONE, null);
+        }
+
+        @Override
+        public void onFatalError(final Exception e) {
+            if (!mRunning.containsKey(mJob.getId()))
+                return;
+            // the error can be seen before the network callback reports the loss: network errors are suspended too
+            if (needsNetwork(mJob) && (mPolicy.getCurrentRule() == TransferPolicy.Rule.PAUSE || isNetworkError(e))) {
+                // network lost under the job: wait for it instead of failing, the job resumes where it was
+                log.debug("onFatalError: network lost, suspending " + mJob, e);
+                mRunning.remove(mJob.getId());
+                mJob.mWaitingForNetwork = true;
+                setState(mJob, TransferJob.State.QUEUED);
+                mUiHandler.postDelayed(new Runnable() {
+                    @Override
+                    public void run() {
+                        // still waiting with a usable network: the server is the problem, not the network
+                        if (mJob.mWaitingForNetwork && mJob.mState == TransferJob.State.QUEUED
+                                && mPolicy.getCurrentRule() != TransferPolicy.Rule.PAUSE)
+                            finish(mJob, TransferJob.State.FAILED, e);
+                    }
+                }, NETWORK_ERROR_GRACE_MS);
+                schedule();
+                return;
+            }
+            finish(mJob, TransferJob.State.FAILED, e);
+        }
+
+        @Override
+        public void onCanceled() {
+            if (mRunning.containsKey(mJob.getId()))
+                onStopped(mJob);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.jobs;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.Build;
+
+import com.archos.environment.NetUtils;
+import com.archos.environment.NetworkState;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.HashMap;
+
+/**
+ * Decides how the TransferJobQueue runs jobs that go through the network, depending on the active transport
+ * (NetUtils.TRANSPORT_*) and on whether it is metered: normally, throttled (a single network job, background
+ * jobs held back, small buffers) or not at all. Without network, network jobs are suspended and picked up again
+ * (incrementally, see TransferJobQueue) as soon as the network is back.
+ * Changes are tracked through a default network callback (NetworkState callbacks before N): a switch between Wi-Fi
+ * and a metered network is seen even when the device stays connected all along.
+ */
+public class TransferPolicy {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferPolicy.class);
+
+    public static final int TRANSPORT_NONE = NetUtils.NO_NETWORK_AVAILABLE;
+
+    public enum Rule {
+        ALLOW,
+        THROTTLE,
+        PAUSE
+    }
+
+    interface Listener {
+        /** called on the thread of the network callback */
+        void onPolicyChanged();
+    }
+
+    private static final int BUFFER_SIZE_ETHERNET = 1024 * 1024;
+    private static final int BUFFER_SIZE_WIFI = 256 * 1024;
+    private static final int BUFFER_SIZE_CELLULAR = 64 * 1024;
+    private static final int BUFFER_SIZE_THROTTLED = 32 * 1024;
+
+    private final Context mContext;
+    private final ConnectivityManager mConnectivityManager;
+    private final HashMap<Integer, Rule> mTransportRules = new HashMap<>();
+    private Rule mMeteredRule = Rule.THROTTLE;
+    private Listener mListener;
+    // capabilities of the default network as last reported by its callback, null when there is none
+    private volatile NetworkCapabilities mDefaultCapabilities;
+    private volatile boolean mTrackingDefaultNetwork;
+    private Rule mLastRule;
+
+    private final PropertyChangeListener mNetworkStateListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent event) {
+            log.debug("propertyChange: " + event.getPropertyName() + " " + event.getOldValue() + "->" + event.getNewValue());
+            notifyChanged();
+        }
+    };
+
+    TransferPolicy(Context context) {
+        mContext = context;
+        mConnectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        mTransportRules.put(NetUtils.TRANSPORT_ETHERNET, Rule.ALLOW);
+        mTransportRules.put(NetUtils.TRANSPORT_WIFI, Rule.ALLOW);
+        mTransportRules.put(NetUtils.TRANSPORT_CELLULAR, Rule.THROTTLE);
+    }
+
+    private final ConnectivityManager.NetworkCallback mDefaultNetworkCallback = new ConnectivityManager.NetworkCallback() {
+        @Override
+        public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+            mDefaultCapabilities = capabilities;
+            notifyIfRuleChanged();
+        }
+
+        @Override
+        public void onLost(Network network) {
+            mDefaultCapabilities = null;
+            notifyIfRuleChanged();
+        }
+    };
+
+    void start(Listener listener) {
+        mListener = listener;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && mConnectivityManager != null) {
+            try {
+                mTrackingDefaultNetwork = true;
+                mConnectivityManager.registerDefaultNetworkCallback(mDefaultNetworkCallback);
+                return;
+            } catch (RuntimeException e) {
+                // too many callbacks registered by the app
+                log.warn("start: cannot register default network callback, " + e.getMessage());
+                mTrackingDefaultNetwork = false;
+            }
+        }
+        NetworkState networkState = NetworkState.instance(mContext);
+        networkState.registerNetworkCallback();
+        networkState.addPropertyChangeListener(mNetworkStateListener);
+    }
+
+    /**
+     * @param transport NetUtils.TRANSPORT_*
+     */
+    public void setTransportRule(int transport, Rule rule) {
+        synchronized (this) {
+            mTransportRules.put(transport, rule);
+        }
+        notifyChanged();
+    }
+
+    /**
+     * Rule applied on metered networks whatever their transport, when stricter than the transport one
+     */
+    public void setMeteredRule(Rule rule) {
+        synchronized (this) {
+            mMeteredRule = rule;
+        }
+        notifyChanged();
+    }
+
+    /**
+     * Rule for network jobs right now, PAUSE when there is no network
+     */
+    public synchronized Rule getCurrentRule() {
+        int transport = getActiveTransport();
+        if (transport == TRANSPORT_NONE)
+            return Rule.PAUSE;
+        Rule rule = mTransportRules.get(transport);
+        if (rule == null)
+            rule = Rule.ALLOW;
+        if (isMetered() && mMeteredRule.ordinal() > rule.ordinal())
+            rule = mMeteredRule;
+        return rule;
+    }
+
+    /**
+     * Upper bound of the copy buffer suited to the active transport (the server itself is tuned by TransferTuning)
+     */
+    public int getBufferSize() {
+        if (getCurrentRule() == Rule.THROTTLE)
+            return BUFFER_SIZE_THROTTLED;
+        switch (getActiveTransport()) {
+            case NetUtils.TRANSPORT_ETHERNET: return BUFFER_SIZE_ETHERNET;
+            case NetUtils.TRANSPORT_WIFI: return BUFFER_SIZE_WIFI;
+            default: return BUFFER_SIZE_CELLULAR;
+        }
+    }
+
+    /**
+     * NetUtils.TRANSPORT_* of the active network, TRANSPORT_NONE when offline
+     */
+    public int getActiveTransport() {
+        if (mTrackingDefaultNetwork) {
+            NetworkCapabilities capabilities = mDefaultCapabilities;
+            if (capabilities == null)
+                return TRANSPORT_NONE;
+            if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET))
+                return NetUtils.TRANSPORT_ETHERNET;
+            if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI))
+                return NetUtils.TRANSPORT_WIFI;
+            // cellular, or vpn and others whose underlying transport is unknown: be conservative
+            return NetUtils.TRANSPORT_CELLULAR;
+        }
+        if (mConnectivityManager == null)
+            return TRANSPORT_NONE;
+        try {
+            return NetUtils.getActiveTransport(mConnectivityManager);
+        } catch (Exception e) {
+            log.warn("getActiveTransport: caught exception " + e.getMessage());
+            return TRANSPORT_NONE;
+        }
+    }
+
+    public boolean isMetered() {
+        if (mTrackingDefaultNetwork) {
+            NetworkCapabilities capabilities = mDefaultCapabilities;
+            return capabilities != null && !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        }
+        return mConnectivityManager != null && mConnectivityManager.isActiveNetworkMetered();
+    }
+
+    /**
+     * Capabilities are reported again for signal strength and the like: only actual rule changes are notified
+     */
+    private void notifyIfRuleChanged() {
+        Rule rule = getCurrentRule();
+        synchronized (this) {
+            if (rule == mLastRule)
+                return;
+            log.debug("notifyIfRuleChanged: " + mLastRule + "->" + rule);
+            mLastRule = rule;
+        }
+        notifyChanged();
+    }
+
+    private void notifyChanged() {
+        Listener listener = mListener;
+        if (listener != null)
+            listener.onPolicyChanged();
+    }
+}
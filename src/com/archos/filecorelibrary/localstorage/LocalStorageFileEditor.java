@@ -25,12 +25,16 @@ import android.os.Build;
 import android.os.Environment;
 import android.provider.MediaStore;
 
+import com.archos.environment.ArchosUtils;
+import com.archos.filecorelibrary.BlockSignatures;
 import com.archos.filecorelibrary.ExtStorageManager;
 import com.archos.filecorelibrary.FileEditor;
 import com.archos.filecorelibrary.FileUtils;
 import com.archos.filecorelibrary.FileUtilsQ;
+import com.archos.filecorelibrary.MediaStoreBatch;
 import com.archos.filecorelibrary.MetaFile2;
-import com.archos.environment.ArchosUtils;
+import com.archos.filecorelibrary.PositionalWriter;
+import com.archos.filecorelibrary.TransferDigest;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,7 +47,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -68,6 +76,9 @@ public class LocalStorageFileEditor extends FileEditor {
         DCIM_PATH,(new File(STORAGE, "Android")).getPath(), MUSIC_PATH, PICTURES_PATH, VIDEO_PATH, USBHOST_PTP_PATH
     };
 
+    // keep mappings small enough for 32bit address spaces
+    private static final long MMAP_CHUNK_SIZE = 64 * 1024 * 1024;
+
     public LocalStorageFileEditor(Uri uri, Context context) {
         super(uri);
         mContext = context;
@@ -223,6 +234,11 @@ public class LocalStorageFileEditor extends FileEditor {
 
     private void deleteFromDatabase(String path) {
         log.debug("deleteFromDatabase: " + path);
+        MediaStoreBatch batch = MediaStoreBatch.current();
+        if (batch != null) {
+            batch.addDelete(path);
+            return;
+        }
         if (mContext != null) {
             Uri extUri = MediaStore.Files.getContentUri("external");
             String where = MediaStore.MediaColumns.DATA + "=?";
@@ -365,11 +381,87 @@ public class LocalStorageFileEditor extends FileEditor {
             return false;
         }
         if (uri.getScheme().equals(mUri.getScheme())) {
-           return new File(mUri.getPath()).renameTo(new File(uri.getPath()));
+           boolean success = new File(mUri.getPath()).renameTo(new File(uri.getPath()));
+           MediaStoreBatch batch = MediaStoreBatch.current();
+           // from Q on the provider ignores it, CopyCutEngine rescans both paths instead
+           if (success && batch != null && Build.VERSION.SDK_INT < Build.VERSION_CODES.Q)
+               batch.addPathUpdate(mUri.getPath(), uri.getPath());
+           return success;
         }
         return false;
     }
 
+    @Override
+    public String getDigest(TransferDigest.Algorithm algorithm) throws Exception {
+        // hash straight from the page cache through mmap instead of copying the file into java buffers
+        try (RandomAccessFile raf = new RandomAccessFile(new File(mUri.getPath()), "r");
+             FileChannel channel = raf.getChannel()) {
+            TransferDigest digest = new TransferDigest(algorithm);
+            long size = channel.size();
+            long position = 0;
+            while (position < size) {
+                long chunk = Math.min(MMAP_CHUNK_SIZE, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, chunk);
+                digest.update(buffer);
+                position += chunk;
+            }
+            return digest.getValue();
+        }
+    }
+
+    @Override
+    public BlockSignatures getBlockSignatures(int blockSize) throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(new File(mUri.getPath()), "r");
+             FileChannel channel = raf.getChannel()) {
+            MessageDigest md = BlockSignatures.newDigest();
+            List<byte[]> hashes = new ArrayList<>();
+            long size = channel.size();
+            // whole blocks per mapping so that no block straddles two of them
+            long chunkSize = Math.max(blockSize, MMAP_CHUNK_SIZE / blockSize * blockSize);
+            long position = 0;
+            while (position < size) {
+                long chunk = Math.min(chunkSize, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, chunk);
+                while (buffer.hasRemaining()) {
+                    ByteBuffer block = buffer.slice();
+                    block.limit(Math.min(blockSize, block.remaining()));
+                    buffer.position(buffer.position() + block.limit());
+                    md.update(block);
+                    hashes.add(md.digest());
+                }
+                position += chunk;
+            }
+            return new BlockSignatures(blockSize, hashes);
+        }
+    }
+
+    @Override
+    public PositionalWriter getPositionalWriter() throws Exception {
+        final File file = new File(mUri.getPath());
+        if (!file.canWrite()) // e.g. external storage only writable through ExternalSDFileWriter
+            return null;
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        final FileChannel channel = raf.getChannel();
+        return new PositionalWriter() {
+            @Override
+            public void write(long position, byte[] buffer, int offset, int length) throws IOException {
+                ByteBuffer src = ByteBuffer.wrap(buffer, offset, length);
+                while (src.hasRemaining())
+                    position += channel.write(src, position);
+            }
+
+            @Override
+            public void setLength(long length) throws IOException {
+                raf.setLength(length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                raf.close();
+            }
+        };
+    }
+
     @Override
     public boolean exists() {
         String path = mUri.getPath();
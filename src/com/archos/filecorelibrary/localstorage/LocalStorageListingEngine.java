@@ -69,6 +69,11 @@ public class LocalStorageListingEngine extends ListingEngine {
         mAbort = true;
     }
 
+    @Override
+    protected boolean isAborted() {
+        return mAbort;
+    }
+
     private FileFilter mFileFilter = new FileFilter() {
         /**
          * @return true if the file must be kept
@@ -107,7 +112,22 @@ public class LocalStorageListingEngine extends ListingEngine {
                     return;
                 }
 
-                File[] listFiles = directory.listFiles(mFileFilter);
+                File[] listFiles;
+                if (mProgressive) {
+                    // names are read at once but each entry is stat'ed by the filter: report them from there
+                    final PageEmitter pages = new PageEmitter();
+                    listFiles = directory.listFiles(new FileFilter() {
+                        @Override
+                        public boolean accept(File f) {
+                            if (!mFileFilter.accept(f)) return false;
+                            pages.add(f.isDirectory() ? new JavaFile2(f, JavaFile2.NUMBER_UNKNOWN, JavaFile2.NUMBER_UNKNOWN) : new JavaFile2(f));
+                            return true;
+                        }
+                    });
+                    pages.flush();
+                } else {
+                    listFiles = directory.listFiles(mFileFilter);
+                }
 
                 // Useful for test purpose
                 //try { Thread.sleep(1000); } catch (InterruptedException e) {}
@@ -72,11 +72,23 @@ public class SFtpListingEngine extends ListingEngine {
         mAbort = true;
     }
 
-    private Vector<LsEntry> listEntries(final ChannelSftp channelSftp, final String path) throws SftpException {
+    @Override
+    protected boolean isAborted() {
+        return mAbort;
+    }
+
+    /**
+     * The selector is called as each readdir response is decoded: kept entries go to pages from there,
+     * except links that are only resolved once the listing is complete
+     */
+    private Vector<LsEntry> listEntries(final ChannelSftp channelSftp, final String path, final PageEmitter pages) throws SftpException {
         final Vector<LsEntry> vector = new Vector<LsEntry>();
 
         LsEntrySelector selector = new LsEntrySelector() {
             public int select(LsEntry entry)  {
+                if (mAbort || timeOutHasOccurred()) {
+                    return BREAK;
+                }
                 final String filename = entry.getFilename();
                 if (filename.equals(".") || filename.equals("..")) {
                     return CONTINUE;
@@ -87,11 +99,13 @@ public class SFtpListingEngine extends ListingEngine {
                 else if (entry.getAttrs().isDir()) {
                     if (keepDirectory(filename)) {
                         vector.addElement(entry);
+                        pages.add(new SFTPFile2(entry.getAttrs(), filename, Uri.withAppendedPath(mUri, filename)));
                     }
                 }
                 else {
                      if (keepFile(filename)) {
                         vector.addElement(entry);
+                        pages.add(new SFTPFile2(entry.getAttrs(), filename, Uri.withAppendedPath(mUri, filename)));
                     }
                 }
                 return CONTINUE;
@@ -99,6 +113,7 @@ public class SFtpListingEngine extends ListingEngine {
         };
 
         channelSftp.ls(path, selector);
+        pages.flush();
         channelSftp.disconnect();
         SFTPSession.getInstance().releaseSession(channelSftp);
         return vector;
@@ -130,7 +145,7 @@ public class SFtpListingEngine extends ListingEngine {
                     return;
                 }
                 ChannelSftp channelSftp = (ChannelSftp)channel;
-                Vector<LsEntry> vector = listEntries(channelSftp, mUri.getPath().isEmpty() ? "/" : mUri.getPath());
+                Vector<LsEntry> vector = listEntries(channelSftp, mUri.getPath().isEmpty() ? "/" : mUri.getPath(), new PageEmitter());
                 // Check if timeout or abort occurred
                 if (timeOutHasOccurred() || mAbort) {
                     mUiHandler.post(new Runnable() {
@@ -55,6 +55,7 @@ public class SftpFileEditor  extends FileEditor{
             channelSftp.mkdir(mUri.getPath());
             channel.disconnect();
             SFTPSession.getInstance().releaseSession(channel);
+            invalidateListings(null);
             return true;
         }
         catch (SftpException e) {
@@ -175,6 +176,7 @@ public class SftpFileEditor  extends FileEditor{
         try {
             channel = SFTPSession.getInstance().getSFTPChannel(mUri);
             ((ChannelSftp)channel).rm(mUri.getPath());
+            invalidateListings(null);
         } catch (JSchException e) {
             if(channel!=null&&channel.isConnected()) {
                 channel.disconnect();
@@ -203,6 +205,7 @@ public class SftpFileEditor  extends FileEditor{
             ((ChannelSftp)channel).rename(mUri.getPath(), new File(new File(mUri.getPath()).getParentFile(), newName).getAbsolutePath());
             channel.disconnect();
             SFTPSession.getInstance().releaseSession(channel);
+            invalidateListings(null);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -225,6 +228,7 @@ public class SftpFileEditor  extends FileEditor{
             ((ChannelSftp)channel).rename(mUri.getPath(),uri.getPath());
             channel.disconnect();
             SFTPSession.getInstance().releaseSession(channel);
+            invalidateListings(uri);
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -17,6 +17,8 @@ package com.archos.filecorelibrary.smbj;
 import static com.archos.filecorelibrary.FileUtils.caughtException;
 import static com.archos.filecorelibrary.FileUtils.getFilePath;
 import static com.archos.filecorelibrary.FileUtils.getParentDirectoryPath;
+import static com.archos.filecorelibrary.FileUtils.getShareName;
+import static com.archos.filecorelibrary.FileUtils.isSameServer;
 
 import android.net.Uri;
 
@@ -29,6 +31,7 @@ import com.hierynomus.mssmb2.SMB2CreateDisposition;
 import com.hierynomus.mssmb2.SMB2CreateOptions;
 import com.hierynomus.mssmb2.SMB2ShareAccess;
 import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.share.DiskEntry;
 import com.hierynomus.smbj.share.DiskShare;
 import com.hierynomus.smbj.share.File;
 
@@ -112,6 +115,7 @@ public class SmbjFileEditor extends FileEditor {
     public boolean mkdir() {
         try {
             SmbjUtils.peekInstance().getSmbShare(mUri).mkdir(getFilePath(mUri));
+            invalidateListings(null);
             return true;
         } catch (IOException e) {
             caughtException(e, "SmbjFileEditor:mkdir", "IOException in mkdir " + mUri);
@@ -128,11 +132,75 @@ public class SmbjFileEditor extends FileEditor {
         // TODO MARC check if need to be recursive
         if(mDiskShare.folderExists(mFilePath)) mDiskShare.rmdir(mFilePath, true);
         else mDiskShare.rm(mFilePath);
+        invalidateListings(null);
         return null;
     }
 
     @Override
-    public boolean move(Uri uri) { return false;}
+    public boolean move(Uri uri) {
+        if (!canMoveServerSide(uri)) return false;
+        // FileRenameInformation: works for files and directories, across directories of the share
+        try (DiskEntry entry = SmbjUtils.peekInstance().getSmbShare(mUri).open(getFilePath(mUri),
+                EnumSet.of(AccessMask.DELETE, AccessMask.FILE_READ_ATTRIBUTES),
+                null, SMB2ShareAccess.ALL,
+                SMB2CreateDisposition.FILE_OPEN,
+                null)) {
+            entry.rename(getFilePath(uri), false);
+            invalidateListings(uri);
+            return true;
+        } catch (IOException e) {
+            caughtException(e, "SmbjFileEditor:move", "IOException in move " + mUri + " into " + uri);
+        } catch (SMBApiException se) {
+            caughtException(se, "SmbjFileEditor:move", "SMBApiException in move " + mUri + " into " + uri);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean canMoveServerSide(Uri target) {
+        return isSameShare(target);
+    }
+
+    @Override
+    public boolean canCopyServerSide(Uri target) {
+        // FSCTL_SRV_COPYCHUNK only works between two handles of the same tree connect
+        return isSameShare(target);
+    }
+
+    private boolean isSameShare(Uri target) {
+        return "smbj".equals(target.getScheme()) && isSameServer(mUri, target)
+                && getShareName(mUri) != null && getShareName(mUri).equals(getShareName(target));
+    }
+
+    @Override
+    public boolean copyServerSide(Uri target) throws Exception {
+        DiskShare diskShare = SmbjUtils.peekInstance().getSmbShare(mUri);
+        File source = null;
+        File destination = null;
+        try {
+            source = diskShare.openFile(getFilePath(mUri),
+                    EnumSet.of(AccessMask.GENERIC_READ),
+                    null, EnumSet.of(SMB2ShareAccess.FILE_SHARE_READ),
+                    SMB2CreateDisposition.FILE_OPEN,
+                    null);
+            // copychunk requires read access on the destination too
+            destination = diskShare.openFile(getFilePath(target),
+                    EnumSet.of(AccessMask.GENERIC_WRITE, AccessMask.GENERIC_READ),
+                    null, SMB2ShareAccess.ALL,
+                    SMB2CreateDisposition.FILE_OVERWRITE_IF,
+                    null);
+            log.debug("copyServerSide: " + mUri + " -> " + target);
+            source.remoteCopyTo(destination);
+            return true;
+        } catch (SMBApiException se) {
+            // e.g. STATUS_NOT_SUPPORTED on servers without copychunk support
+            caughtException(se, "SmbjFileEditor:copyServerSide", "SMBApiException in copyServerSide " + mUri + " to " + target);
+        } finally {
+            if (source != null) source.closeSilently();
+            if (destination != null) destination.closeSilently();
+        }
+        return false;
+    }
 
     @Override
     public boolean rename(String newName) {
@@ -141,6 +209,7 @@ public class SmbjFileEditor extends FileEditor {
             File from = SmbjUtils.peekInstance().getSmbShare(mUri).openFile(mFilePath, EnumSet.of(AccessMask.GENERIC_ALL), null, SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_OPEN, null);
             if (from != null) {
                 from.rename(getParentDirectoryPath(mFilePath) + "/" + newName);
+                invalidateListings(null);
                 return true;
             }
         } catch (IOException e) {
@@ -24,8 +24,12 @@ import android.net.Uri;
 
 import com.archos.filecorelibrary.FileComparator;
 import com.archos.filecorelibrary.ListingEngine;
+import com.hierynomus.msdtyp.AccessMask;
 import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
+import com.hierynomus.mssmb2.SMB2CreateDisposition;
+import com.hierynomus.mssmb2.SMB2ShareAccess;
 import com.hierynomus.mssmb2.SMBApiException;
+import com.hierynomus.smbj.share.Directory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,7 +39,7 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.List;
+import java.util.EnumSet;
 
 /**
  * This class handles the threading of the Smbj file listing
@@ -75,6 +79,11 @@ public class SmbjListingEngine extends ListingEngine {
         mAbort = true;
     }
 
+    @Override
+    protected boolean isAborted() {
+        return mAbort;
+    }
+
     private final class SmbjListingThread extends Thread {
 
         public void run(){
@@ -85,27 +94,38 @@ public class SmbjListingEngine extends ListingEngine {
                 String filePath = getFilePath(mUri);
 
                 var acceptedDiskShareLst = new ArrayList<FileIdBothDirectoryInformation>();
-                List<FileIdBothDirectoryInformation> diskShareLst = diskShare.list(filePath);
 
                 final ArrayList<SmbjFile2> directories = new ArrayList<>();
                 final ArrayList<SmbjFile2> files = new ArrayList<>();
+                final PageEmitter pages = new PageEmitter();
 
                 final String shareName = getShareName(mUri);
-                for (FileIdBothDirectoryInformation fileOrDir : diskShareLst) {
-                    final String filename = fileOrDir.getFileName();
-                    final String fullFilename = "/" + shareName + "/" + filename;
-                    if (isDirectory(fileOrDir)) {
-                        if (keepDirectory(filename)) {
-                            log.trace("SmbjListingThread: adding directory " + fullFilename);
-                            directories.add(new SmbjFile2(fileOrDir, mUri.buildUpon().appendEncodedPath(filename).build()));
-                        }
-                    } else { // this is a file
-                        if (keepFile(filename)) {
-                            log.trace("SmbjListingThread: adding file " + fullFilename);
-                            files.add(new SmbjFile2(fileOrDir, mUri.buildUpon().appendEncodedPath(filename).build()));
+                // same handle as diskShare.list() but iterated as the query directory responses arrive
+                try (Directory directory = diskShare.openDirectory(filePath,
+                        EnumSet.of(AccessMask.FILE_LIST_DIRECTORY, AccessMask.FILE_READ_ATTRIBUTES, AccessMask.FILE_READ_EA),
+                        null, SMB2ShareAccess.ALL, SMB2CreateDisposition.FILE_OPEN, null)) {
+                    for (FileIdBothDirectoryInformation fileOrDir : directory) {
+                        if (mAbort || timeOutHasOccurred()) break;
+                        final String filename = fileOrDir.getFileName();
+                        final String fullFilename = "/" + shareName + "/" + filename;
+                        if (isDirectory(fileOrDir)) {
+                            if (keepDirectory(filename)) {
+                                log.trace("SmbjListingThread: adding directory " + fullFilename);
+                                SmbjFile2 file = new SmbjFile2(fileOrDir, mUri.buildUpon().appendEncodedPath(filename).build());
+                                directories.add(file);
+                                pages.add(file);
+                            }
+                        } else { // this is a file
+                            if (keepFile(filename)) {
+                                log.trace("SmbjListingThread: adding file " + fullFilename);
+                                SmbjFile2 file = new SmbjFile2(fileOrDir, mUri.buildUpon().appendEncodedPath(filename).build());
+                                files.add(file);
+                                pages.add(file);
+                            }
                         }
                     }
                 }
+                pages.flush();
 
                 // Check if timeout or abort occurred
                 if (timeOutHasOccurred() || mAbort) {
@@ -16,6 +16,7 @@ package com.archos.filecorelibrary.sshj;
 
 import static com.archos.filecorelibrary.FileUtils.caughtException;
 import static com.archos.filecorelibrary.FileUtils.getParentDirectoryPath;
+import static com.archos.filecorelibrary.FileUtils.isSameServer;
 import static com.archos.filecorelibrary.sshj.SshjUtils.getSftpPath;
 
 import android.net.Uri;
@@ -23,34 +24,64 @@ import android.net.Uri;
 import com.archos.environment.ObservableInputStream;
 import com.archos.environment.ObservableOutputStream;
 import com.archos.filecorelibrary.AuthenticationException;
+import com.archos.filecorelibrary.BlockSignatures;
 import com.archos.filecorelibrary.FileEditor;
+import com.archos.filecorelibrary.PositionalWriter;
+import com.archos.filecorelibrary.TransferDigest;
+import com.archos.filecorelibrary.TransferTuning;
 
+import net.schmizz.sshj.SSHClient;
 import net.schmizz.sshj.common.SSHException;
+import net.schmizz.sshj.connection.ConnectionException;
+import net.schmizz.sshj.connection.channel.direct.Session;
 import net.schmizz.sshj.sftp.FileAttributes;
 import net.schmizz.sshj.sftp.FileMode;
 import net.schmizz.sshj.sftp.OpenMode;
+import net.schmizz.sshj.sftp.PacketType;
 import net.schmizz.sshj.sftp.RemoteFile;
+import net.schmizz.sshj.sftp.Request;
+import net.schmizz.sshj.sftp.Response;
 import net.schmizz.sshj.sftp.SFTPClient;
+import net.schmizz.sshj.sftp.SFTPEngine;
+import net.schmizz.sshj.sftp.SFTPException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class SshjFileEditor extends FileEditor {
 
     private static final Logger log = LoggerFactory.getLogger(SshjFileEditor.class);
 
+    private static final int SFTP_WRITE_CHUNK_SIZE = 32768;
+    private static final String EXEC_PROBE = "exec-probe";
+    private static final long EXEC_PROBE_TIMEOUT_S = 10;
+
+    // per connection: servers without copy-data, accounts with or without exec
+    private static final Set<SFTPEngine> sNoCopyData = Collections.newSetFromMap(Collections.synchronizedMap(new WeakHashMap<SFTPEngine, Boolean>()));
+    private static final Map<SSHClient, Boolean> sCanExec = Collections.synchronizedMap(new WeakHashMap<SSHClient, Boolean>());
+
     public SshjFileEditor(Uri uri) { super(uri);}
 
     @Override
     public InputStream getInputStream() throws Exception {
         final RemoteFile sshjFile = SshjUtils.peekInstance().getSFTPClient(mUri).open(getSftpPath(mUri));
-        final InputStream is = sshjFile.new ReadAheadRemoteFileInputStream(16);
+        final InputStream is = sshjFile.new ReadAheadRemoteFileInputStream(TransferTuning.getParameters(mUri).readAhead);
         /*
         final ObservableInputStream ois = new ObservableInputStream(is);
         ois.onClose(() -> {
@@ -72,7 +103,7 @@ public class SshjFileEditor extends FileEditor {
     @Override
     public InputStream getInputStream(long from) throws Exception {
         final RemoteFile sshjFile = SshjUtils.peekInstance().getSFTPClient(mUri).open(getSftpPath(mUri));
-        final InputStream is = sshjFile.new ReadAheadRemoteFileInputStream(16, from);
+        final InputStream is = sshjFile.new ReadAheadRemoteFileInputStream(TransferTuning.getParameters(mUri).readAhead, from);
         /*
         final ObservableInputStream ois = new ObservableInputStream(is);
         ois.onClose(() -> {
@@ -93,7 +124,7 @@ public class SshjFileEditor extends FileEditor {
 
     @Override
     public OutputStream getOutputStream() throws Exception {
-        final RemoteFile sshjFile = SshjUtils.peekInstance().getSFTPClient(mUri).open(getSftpPath(mUri), EnumSet.of(OpenMode.CREAT, OpenMode.WRITE));
+        final RemoteFile sshjFile = SshjUtils.peekInstance().getSFTPClient(mUri).open(getSftpPath(mUri), EnumSet.of(OpenMode.CREAT, OpenMode.WRITE, OpenMode.TRUNC));
         final OutputStream os = sshjFile.new RemoteFileOutputStream();
         /*
         final ObservableOutputStream oos = new ObservableOutputStream(os);
@@ -122,6 +153,7 @@ public class SshjFileEditor extends FileEditor {
     public boolean mkdir() {
         try {
             SshjUtils.peekInstance().getSFTPClient(mUri).mkdir(getSftpPath(mUri));
+            invalidateListings(null);
             return true;
         } catch (IOException e) {
             caughtException(e, "SshjFileEditor:mkdir", "IOException" + mUri);
@@ -146,16 +178,65 @@ public class SshjFileEditor extends FileEditor {
         final FileMode.Type type = fileAttributes.getType();
         if (type == FileMode.Type.REGULAR || type == FileMode.Type.SYMLINK) {
             sftpClient.rm(mFilePath);
+            invalidateListings(null);
             return true;
         } else if (type == FileMode.Type.DIRECTORY) {
             sftpClient.rmdir(mFilePath);
+            invalidateListings(null);
             return true;
         }
         return null;
     }
 
+    /**
+     * rm -r through an exec channel, not available on sftp-only accounts
+     */
+    @Override
+    public boolean deleteRecursiveServerSide() throws Exception {
+        final String path = getSftpPath(mUri);
+        // never hand a whole filesystem to rm
+        if (path.replace("/", "").isEmpty())
+            return false;
+        if (!canExec(mUri))
+            return false;
+        try (Session session = SshjUtils.peekInstance().getSshClient(mUri).startSession()) {
+            final Session.Command command = session.exec("rm -rf -- " + shellQuote(path));
+            command.join();
+            final Integer exitStatus = command.getExitStatus();
+            log.debug("deleteRecursiveServerSide: rm -rf " + path + " exit status " + exitStatus);
+            invalidateListings(null);
+            return exitStatus != null && exitStatus == 0;
+        } catch (SSHException e) {
+            caughtException(e, "SshjFileEditor:deleteRecursiveServerSide", "SSHException in remote rm " + mUri);
+        }
+        return false;
+    }
+
     @Override
-    public boolean move(Uri uri) { return false;}
+    public boolean move(Uri uri) {
+        if (!canMoveServerSide(uri)) return false;
+        try {
+            SshjUtils.peekInstance().getSFTPClient(mUri).rename(getSftpPath(mUri), getSftpPath(uri));
+            invalidateListings(uri);
+            return true;
+        } catch (IOException e) {
+            caughtException(e, "SshjFileEditor:move", "IOException" + mUri);
+            if (e instanceof SSHException) {
+                SshjUtils.closeSFTPClient(mUri);
+                SshjUtils.disconnectSshClient(mUri);
+            }
+        } catch (AuthenticationException e) {
+            caughtException(e, "SshjFileEditor:move", "AuthenticationException" + mUri);
+            SshjUtils.closeSFTPClient(mUri);
+            SshjUtils.disconnectSshClient(mUri);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean canMoveServerSide(Uri target) {
+        return "sshj".equals(target.getScheme()) && isSameServer(mUri, target);
+    }
 
     @Override
     public boolean rename(String newName) {
@@ -163,6 +244,7 @@ public class SshjFileEditor extends FileEditor {
             final String mFilePath = getSftpPath(mUri);
             final SFTPClient sftpClient = SshjUtils.peekInstance().getSFTPClient(mUri);
             sftpClient.rename(getSftpPath(mUri), getParentDirectoryPath(mFilePath) + "/" + newName);
+            invalidateListings(null);
             return true;
         } catch (IOException e) {
             caughtException(e, "SshjFileEditor:rename", "IOException" + mUri);
@@ -178,6 +260,231 @@ public class SshjFileEditor extends FileEditor {
         return false;
     }
 
+    @Override
+    public boolean canCopyServerSide(Uri target) {
+        return "sshj".equals(target.getScheme()) && isSameServer(mUri, target);
+    }
+
+    /**
+     * Tries the "copy-data" SFTP extension (OpenSSH 9.0+) then a remote cp through an exec channel,
+     * the latter being unavailable on sftp-only accounts. What a connection lacks is not tried again for the next files.
+     */
+    @Override
+    public boolean copyServerSide(Uri target) throws Exception {
+        final SFTPEngine engine = SshjUtils.peekInstance().getSFTPClient(mUri).getSFTPEngine();
+        final String sourcePath = getSftpPath(mUri);
+        final String targetPath = getSftpPath(target);
+        // sshj only looks up "name@domain" extensions, and copy-data is advertised without domain: the first answer tells
+        if (!sNoCopyData.contains(engine)) {
+            try {
+                copyData(engine, sourcePath, targetPath);
+                log.debug("copyServerSide: copy-data " + sourcePath + " -> " + targetPath);
+                return true;
+            } catch (SFTPException e) {
+                if (e.getStatusCode() == Response.StatusCode.OP_UNSUPPORTED)
+                    sNoCopyData.add(engine);
+                log.debug("copyServerSide: copy-data failed with " + e.getStatusCode() + ", trying remote cp");
+            }
+        }
+        if (!canExec(mUri))
+            return false;
+        try (Session session = SshjUtils.peekInstance().getSshClient(mUri).startSession()) {
+            final Session.Command command = session.exec("cp -- " + shellQuote(sourcePath) + " " + shellQuote(targetPath));
+            command.join();
+            final Integer exitStatus = command.getExitStatus();
+            log.debug("copyServerSide: cp " + sourcePath + " -> " + targetPath + " exit status " + exitStatus);
+            return exitStatus != null && exitStatus == 0;
+        } catch (SSHException e) {
+            caughtException(e, "SshjFileEditor:copyServerSide", "SSHException in remote cp " + mUri);
+        }
+        return false;
+    }
+
+    private static void copyData(SFTPEngine engine, String sourcePath, String targetPath) throws IOException {
+        // copy-data works on handles but RemoteFile does not expose them: open them by hand
+        final byte[] readHandle = openHandle(engine, sourcePath, EnumSet.of(OpenMode.READ));
+        try {
+            final byte[] writeHandle = openHandle(engine, targetPath, EnumSet.of(OpenMode.CREAT, OpenMode.WRITE, OpenMode.TRUNC));
+            try {
+                final Request request = engine.newExtendedRequest("copy-data");
+                request.putString(readHandle)
+                        .putUInt64(0) // read offset
+                        .putUInt64(0) // length: up to end of file
+                        .putString(writeHandle)
+                        .putUInt64(0); // write offset
+                engine.request(request).retrieve(engine.getTimeoutMs(), TimeUnit.MILLISECONDS).ensureStatusPacketIsOK();
+            } finally {
+                new RemoteFile(engine, targetPath, writeHandle).close();
+            }
+        } finally {
+            new RemoteFile(engine, sourcePath, readHandle).close();
+        }
+    }
+
+    private static byte[] openHandle(SFTPEngine engine, String path, Set<OpenMode> modes) throws IOException {
+        final Request request = engine.newRequest(PacketType.OPEN);
+        request.putString(path)
+                .putUInt32(OpenMode.toMask(modes))
+                .putFileAttributes(FileAttributes.EMPTY);
+        return engine.request(request).retrieve(engine.getTimeoutMs(), TimeUnit.MILLISECONDS)
+                .ensurePacketTypeIs(PacketType.HANDLE).readBytes();
+    }
+
+    /**
+     * true if commands can be run on the server of uri. Sftp-only accounts either refuse exec channels or run the sftp
+     * server whatever the command: probed with an echo once per connection.
+     */
+    static boolean canExec(Uri uri) throws IOException, AuthenticationException {
+        final SSHClient client = SshjUtils.peekInstance().getSshClient(uri);
+        Boolean canExec = sCanExec.get(client);
+        if (canExec == null) {
+            canExec = probeExec(client);
+            if (canExec == null) // not known, e.g. timeout: asked again next time
+                return false;
+            sCanExec.put(client, canExec);
+        }
+        return canExec;
+    }
+
+    private static Boolean probeExec(SSHClient client) {
+        try (Session session = client.startSession()) {
+            final Session.Command command = session.exec("echo " + EXEC_PROBE);
+            // a forced sftp server would wait for requests
+            command.getOutputStream().close();
+            final String output = new BufferedReader(new InputStreamReader(command.getInputStream(), StandardCharsets.US_ASCII)).readLine();
+            command.join(EXEC_PROBE_TIMEOUT_S, TimeUnit.SECONDS);
+            final boolean canExec = EXEC_PROBE.equals(output) && Integer.valueOf(0).equals(command.getExitStatus());
+            log.debug("probeExec: exec " + (canExec ? "available" : "not available") + " on " + client.getRemoteHostname());
+            return canExec;
+        } catch (ConnectionException e) {
+            // channel or exec request refused
+            log.debug("probeExec: exec refused by " + client.getRemoteHostname() + ": " + e.getMessage());
+            return false;
+        } catch (IOException e) {
+            caughtException(e, "SshjFileEditor:probeExec", "IOException probing exec on " + client.getRemoteHostname());
+            return null;
+        }
+    }
+
+    static String shellQuote(String s) {
+        return "'" + s.replace("'", "'\\''") + "'";
+    }
+
+    /**
+     * Server-side hash through the "check-file-name" SFTP extension (draft-ietf-secsh-filexfer-extensions)
+     * returns null when the server does not implement it (e.g. OpenSSH)
+     */
+    @Override
+    public String getDigest(TransferDigest.Algorithm algorithm) throws Exception {
+        final String hashAlgorithm;
+        switch (algorithm) {
+            case SHA256: hashAlgorithm = "sha256"; break;
+            case CRC32: hashAlgorithm = "crc32"; break;
+            default: return null;
+        }
+        final SFTPEngine engine = SshjUtils.peekInstance().getSFTPClient(mUri).getSFTPEngine();
+        final Request request = engine.newExtendedRequest("check-file-name");
+        request.putString(getSftpPath(mUri))
+                .putString(hashAlgorithm)
+                .putUInt64(0) // start offset
+                .putUInt64(0) // length: whole file
+                .putUInt32(0); // block size: one hash for the whole range
+        try {
+            final Response response = engine.request(request).retrieve(engine.getTimeoutMs(), TimeUnit.MILLISECONDS);
+            response.ensurePacketTypeIs(PacketType.EXTENDED_REPLY);
+            response.readString(); // "check-file"
+            if (!hashAlgorithm.equals(response.readString())) return null;
+            final byte[] hash = new byte[response.available()];
+            response.readRawBytes(hash);
+            return TransferDigest.toHex(hash);
+        } catch (SFTPException e) {
+            log.debug("getDigest: check-file-name not supported for " + mUri);
+            return null;
+        }
+    }
+
+    /**
+     * Block hashes through "check-file-name" when the server has it, otherwise through GNU split + md5sum
+     * in an exec channel. null when neither is available (sftp-only account, no coreutils)
+     */
+    @Override
+    public BlockSignatures getBlockSignatures(int blockSize) throws Exception {
+        final String path = getSftpPath(mUri);
+        final SFTPEngine engine = SshjUtils.peekInstance().getSFTPClient(mUri).getSFTPEngine();
+        final Request request = engine.newExtendedRequest("check-file-name");
+        request.putString(path)
+                .putString("md5")
+                .putUInt64(0) // start offset
+                .putUInt64(0) // length: whole file
+                .putUInt32(blockSize);
+        try {
+            final Response response = engine.request(request).retrieve(engine.getTimeoutMs(), TimeUnit.MILLISECONDS);
+            response.ensurePacketTypeIs(PacketType.EXTENDED_REPLY);
+            response.readString(); // "check-file"
+            if ("md5".equals(response.readString())) {
+                final List<byte[]> hashes = new ArrayList<>();
+                while (response.available() >= 16) {
+                    final byte[] hash = new byte[16];
+                    response.readRawBytes(hash);
+                    hashes.add(hash);
+                }
+                return new BlockSignatures(blockSize, hashes);
+            }
+        } catch (SFTPException e) {
+            log.debug("getBlockSignatures: check-file-name not supported for " + mUri + ", trying split");
+        }
+        if (!canExec(mUri))
+            return null;
+        try (Session session = SshjUtils.peekInstance().getSshClient(mUri).startSession()) {
+            final Session.Command command = session.exec("split -b " + blockSize + " --filter=md5sum -- " + shellQuote(path));
+            final List<byte[]> hashes = new ArrayList<>();
+            // one "<md5>  -" line per block, in file order
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(command.getInputStream(), StandardCharsets.US_ASCII));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() < 32)
+                    return null;
+                hashes.add(BlockSignatures.fromHex(line.substring(0, 32)));
+            }
+            command.join();
+            final Integer exitStatus = command.getExitStatus();
+            log.debug("getBlockSignatures: split " + path + " exit status " + exitStatus + ", " + hashes.size() + " blocks");
+            if (exitStatus != null && exitStatus == 0)
+                return new BlockSignatures(blockSize, hashes);
+        } catch (SSHException | NumberFormatException e) {
+            caughtException(e, "SshjFileEditor:getBlockSignatures", "Exception in remote split " + mUri);
+        }
+        return null;
+    }
+
+    @Override
+    public PositionalWriter getPositionalWriter() throws Exception {
+        final RemoteFile sshjFile = SshjUtils.peekInstance().getSFTPClient(mUri).open(getSftpPath(mUri), EnumSet.of(OpenMode.WRITE));
+        return new PositionalWriter() {
+            @Override
+            public void write(long position, byte[] buffer, int offset, int length) throws IOException {
+                // one SFTP write request per chunk, servers reject packets much larger than 32KB
+                while (length > 0) {
+                    final int chunk = Math.min(length, SFTP_WRITE_CHUNK_SIZE);
+                    sshjFile.write(position, buffer, offset, chunk);
+                    position += chunk;
+                    offset += chunk;
+                    length -= chunk;
+                }
+            }
+
+            @Override
+            public void setLength(long length) throws IOException {
+                sshjFile.setLength(length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                sshjFile.close();
+            }
+        };
+    }
+
     @Override
     public boolean exists() {
         SFTPClient sftpClient;
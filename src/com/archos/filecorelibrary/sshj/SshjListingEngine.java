@@ -27,6 +27,7 @@ import com.archos.filecorelibrary.ListingEngine;
 import com.hierynomus.msfscc.fileinformation.FileIdBothDirectoryInformation;
 
 import net.schmizz.sshj.common.SSHException;
+import net.schmizz.sshj.sftp.RemoteResourceFilter;
 import net.schmizz.sshj.sftp.RemoteResourceInfo;
 
 import org.slf4j.Logger;
@@ -37,7 +38,6 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.List;
 
 /**
  * This class handles the threading of the Sshj file listing
@@ -77,6 +77,11 @@ public class SshjListingEngine extends ListingEngine {
         mAbort = true;
     }
 
+    @Override
+    protected boolean isAborted() {
+        return mAbort;
+    }
+
     private final class SshjListingThread extends Thread {
 
         public void run(){
@@ -87,26 +92,37 @@ public class SshjListingEngine extends ListingEngine {
                 String filePath = getSftpPath(mUri);
 
                 var acceptedDiskShareLst = new ArrayList<FileIdBothDirectoryInformation>();
-                List<RemoteResourceInfo> lst = sftpClient.ls(filePath);
 
                 final ArrayList<SshjFile2> directories = new ArrayList<>();
                 final ArrayList<SshjFile2> files = new ArrayList<>();
+                final PageEmitter pages = new PageEmitter();
 
                 final String shareName = getShareName(mUri);
-                for (RemoteResourceInfo fileOrDir : lst) {
-                    final String filename = fileOrDir.getName();
-                    if (fileOrDir.isDirectory()) {
-                        if (keepDirectory(filename)) {
-                            log.trace("SshjListingThread: adding directory " + filename);
-                            directories.add(new SshjFile2(fileOrDir, mUri.buildUpon().appendEncodedPath(filename).build()));
-                        }
-                    } else { // this is a file
-                        if (keepFile(filename)) {
-                            log.trace("SshjListingThread: adding file " + filename);
-                            files.add(new SshjFile2(fileOrDir, mUri.buildUpon().appendEncodedPath(filename).build()));
+                // the filter is called as each readdir response arrives: entries are kept from there, ls() returns none
+                sftpClient.ls(filePath, new RemoteResourceFilter() {
+                    @Override
+                    public boolean accept(RemoteResourceInfo fileOrDir) {
+                        if (mAbort || timeOutHasOccurred()) return false;
+                        final String filename = fileOrDir.getName();
+                        if (fileOrDir.isDirectory()) {
+                            if (keepDirectory(filename)) {
+                                log.trace("SshjListingThread: adding directory " + filename);
+                                SshjFile2 file = new SshjFile2(fileOrDir, mUri.buildUpon().appendEncodedPath(filename).build());
+                                directories.add(file);
+                                pages.add(file);
+                            }
+                        } else { // this is a file
+                            if (keepFile(filename)) {
+                                log.trace("SshjListingThread: adding file " + filename);
+                                SshjFile2 file = new SshjFile2(fileOrDir, mUri.buildUpon().appendEncodedPath(filename).build());
+                                files.add(file);
+                                pages.add(file);
+                            }
                         }
+                        return false;
                     }
-                }
+                });
+                pages.flush();
 
                 // Check if timeout or abort occurred
                 if (timeOutHasOccurred() || mAbort) {
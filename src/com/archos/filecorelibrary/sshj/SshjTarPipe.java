@@ -0,0 +1,186 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.sshj;
+
+import static com.archos.filecorelibrary.FileUtils.caughtException;
+import static com.archos.filecorelibrary.sshj.SshjUtils.getSftpPath;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.archos.filecorelibrary.FileEditor;
+import com.archos.filecorelibrary.FileEditorFactory;
+import com.archos.filecorelibrary.FileUtils;
+import com.archos.filecorelibrary.MetaFile2;
+import com.archos.filecorelibrary.tar.TarEntry;
+import com.archos.filecorelibrary.tar.TarInputStream;
+import com.archos.filecorelibrary.tar.TarOutputStream;
+
+import net.schmizz.sshj.connection.channel.direct.Session;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Transfers a whole directory tree to or from an sftp server as a tar stream through an exec channel
+ * ("tar -x" or "tar -c" run remotely), instead of one open/write/close round trip per file.
+ * Nothing is stored on either side besides the files themselves.
+ * Needs a shell account with tar: sftp-only accounts make the transfer fail and the caller falls back to sftp
+ * for every entry that was not transferred.
+ */
+public class SshjTarPipe {
+
+    private static final Logger log = LoggerFactory.getLogger(SshjTarPipe.class);
+
+    private static final int BUFFER_SIZE = 65536;
+
+    public interface Listener {
+        /** bytes of file content transferred so far */
+        void onProgress(long transferred);
+        boolean isCanceled();
+    }
+
+    /**
+     * true if a tree can be sent from source to target through "tar -x" on target
+     */
+    public static boolean canUpload(Uri source, Uri target) {
+        return "sshj".equals(target.getScheme()) && !"sshj".equals(source.getScheme());
+    }
+
+    /**
+     * true if a tree can be fetched from source through "tar -c" on source
+     */
+    public static boolean canDownload(Uri source, Uri target) {
+        return "sshj".equals(source.getScheme()) && FileUtils.isLocal(target) && !"content".equals(target.getScheme());
+    }
+
+    /**
+     * @param entries root directory first, then its content, a directory always before what it contains
+     * @param targets target of each entry, all below the target of the root
+     * @return all the entries if the remote tar succeeded, none otherwise (what it extracted is unknown), nothing is cleaned up
+     */
+    public static Set<MetaFile2> upload(Context context, List<MetaFile2> entries, Map<MetaFile2, Uri> targets, Listener listener) {
+        final Uri rootTarget = targets.get(entries.get(0));
+        final String extractPath = getSftpPath(FileUtils.getParentUrl(rootTarget));
+        try (Session session = SshjUtils.peekInstance().getSshClient(rootTarget).startSession()) {
+            final Session.Command command = session.exec("mkdir -p -- " + SshjFileEditor.shellQuote(extractPath)
+                    + " && tar -x -f - -C " + SshjFileEditor.shellQuote(extractPath));
+            final TarOutputStream tar = new TarOutputStream(new BufferedOutputStream(command.getOutputStream(), BUFFER_SIZE));
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            long transferred = 0;
+            for (MetaFile2 entry : entries) {
+                if (listener.isCanceled())
+                    return Collections.emptySet();
+                final String name = getRelativePath(extractPath, getSftpPath(targets.get(entry)));
+                if (entry.isDirectory()) {
+                    tar.putNextEntry(TarEntry.directory(name, entry.lastModified()));
+                    continue;
+                }
+                tar.putNextEntry(TarEntry.file(name, entry.length(), entry.lastModified()));
+                try (InputStream in = entry.getFileEditorInstance(context).getInputStream()) {
+                    int len;
+                    while ((len = in.read(buffer)) != -1) {
+                        tar.write(buffer, 0, len);
+                        transferred += len;
+                        listener.onProgress(transferred);
+                    }
+                }
+            }
+            tar.finish();
+            command.getOutputStream().close(); // EOF for the remote tar
+            command.join();
+            final Integer exitStatus = command.getExitStatus();
+            log.debug("upload: " + entries.size() + " entries to " + extractPath + ", exit status " + exitStatus);
+            if (exitStatus != null && exitStatus == 0)
+                return new HashSet<>(entries);
+        } catch (Exception e) {
+            caughtException(e, "SshjTarPipe:upload", "Exception in tar upload to " + rootTarget);
+        }
+        return Collections.emptySet();
+    }
+
+    /**
+     * @param entries root directory first, then its content, as listed on the server
+     * @param targets target of each entry, all below the target of the root
+     * @return the entries written completely, even if the transfer failed or was canceled afterwards:
+     * entries missing from the archive (links, unreadable files...) are not in it, nothing is cleaned up
+     */
+    public static Set<MetaFile2> download(Context context, List<MetaFile2> entries, Map<MetaFile2, Uri> targets, Listener listener) {
+        final Uri root = entries.get(0).getUri();
+        final String parentPath = getSftpPath(FileUtils.getParentUrl(root));
+        // tar names are relative to the parent of the root
+        final HashMap<String, MetaFile2> entryByName = new HashMap<>();
+        for (MetaFile2 entry : entries)
+            entryByName.put(getRelativePath(parentPath, getSftpPath(entry.getUri())), entry);
+        final HashSet<MetaFile2> written = new HashSet<>();
+        try (Session session = SshjUtils.peekInstance().getSshClient(root).startSession()) {
+            final Session.Command command = session.exec("tar -c -f - -C " + SshjFileEditor.shellQuote(parentPath)
+                    + " -- " + SshjFileEditor.shellQuote(getRelativePath(parentPath, getSftpPath(root))));
+            final TarInputStream tar = new TarInputStream(new BufferedInputStream(command.getInputStream(), BUFFER_SIZE));
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            long transferred = 0;
+            TarEntry tarEntry;
+            while ((tarEntry = tar.getNextEntry()) != null) {
+                if (listener.isCanceled())
+                    return written;
+                final MetaFile2 entry = entryByName.get(tarEntry.getName());
+                // created since listing, or neither file nor directory (links...)
+                if (entry == null || (!tarEntry.isDirectory() && !tarEntry.isFile()))
+                    continue;
+                final FileEditor editor = FileEditorFactory.getFileEditorForUrl(targets.get(entry), context);
+                if (tarEntry.isDirectory()) {
+                    if (editor.mkdir() || editor.exists())
+                        written.add(entry);
+                    continue;
+                }
+                try (OutputStream out = editor.getOutputStream()) {
+                    int len;
+                    while ((len = tar.read(buffer)) != -1) {
+                        out.write(buffer, 0, len);
+                        transferred += len;
+                        listener.onProgress(transferred);
+                    }
+                }
+                written.add(entry);
+            }
+            command.join();
+            log.debug("download: " + written.size() + "/" + entries.size() + " entries from " + parentPath + ", exit status " + command.getExitStatus());
+        } catch (Exception e) {
+            caughtException(e, "SshjTarPipe:download", "Exception in tar download from " + root);
+        }
+        // a non zero exit status (e.g. unreadable file) does not undo the entries fully written before
+        return written;
+    }
+
+    private static String getRelativePath(String parentPath, String path) throws IllegalArgumentException {
+        final String prefix = parentPath.endsWith("/") ? parentPath : parentPath + "/";
+        if (!path.startsWith(prefix))
+            throw new IllegalArgumentException(path + " is not below " + parentPath);
+        return path.substring(prefix.length());
+    }
+}
@@ -0,0 +1,100 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.tar;
+
+/**
+ * Header of one member of a tar archive
+ */
+public class TarEntry {
+
+    public static final char TYPE_FILE = '0';
+    public static final char TYPE_OLD_FILE = '\0';
+    public static final char TYPE_SYMLINK = '2';
+    public static final char TYPE_DIRECTORY = '5';
+
+    private final String mName;
+    private final char mType;
+    private final long mSize;
+    private final long mLastModified;
+    private final int mMode;
+    private long mDataOffset = -1;
+
+    /**
+     * @param name path inside the archive, '/' separated, without trailing '/'
+     * @param lastModified in ms
+     */
+    public TarEntry(String name, char type, long size, long lastModified, int mode) {
+        while (name.endsWith("/"))
+            name = name.substring(0, name.length() - 1);
+        mName = name;
+        mType = type;
+        mSize = type == TYPE_DIRECTORY ? 0 : size;
+        mLastModified = lastModified;
+        mMode = mode;
+    }
+
+    public static TarEntry file(String name, long size, long lastModified) {
+        return new TarEntry(name, TYPE_FILE, size, lastModified, 0644);
+    }
+
+    public static TarEntry directory(String name, long lastModified) {
+        return new TarEntry(name, TYPE_DIRECTORY, 0, lastModified, 0755);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public char getType() {
+        return mType;
+    }
+
+    public boolean isDirectory() {
+        return mType == TYPE_DIRECTORY;
+    }
+
+    public boolean isFile() {
+        return mType == TYPE_FILE || mType == TYPE_OLD_FILE;
+    }
+
+    public long getSize() {
+        return mSize;
+    }
+
+    public long getLastModified() {
+        return mLastModified;
+    }
+
+    public int getMode() {
+        return mMode;
+    }
+
+    /**
+     * Offset of the content of this entry in the archive, -1 when unknown (non seekable stream)
+     */
+    public long getDataOffset() {
+        return mDataOffset;
+    }
+
+    void setDataOffset(long dataOffset) {
+        mDataOffset = dataOffset;
+    }
+
+    @Override
+    public String toString() {
+        return mName + (isDirectory() ? "/" : " (" + mSize + ")");
+    }
+}
@@ -0,0 +1,120 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.tar;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.archos.filecorelibrary.FileEditor;
+import com.archos.filecorelibrary.FileUtils;
+import com.archos.filecorelibrary.MetaFile2;
+import com.archos.filecorelibrary.RawLister;
+
+/**
+ * Entry of a tar archive, see TarUtils for its uri
+ */
+public class TarFile2 extends MetaFile2 {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long mLastModified;
+    private final long mLength;
+    private final boolean mIsFile;
+    private final String mPath;
+    // scheme and authority of the uri: "tar://" for local archives, "tar+smb://server" etc. for remote ones
+    private final String mUriPrefix;
+
+    /**
+     * @param tarUri tar uri of the archive (see TarUtils.getTarUri()), local or remote
+     */
+    public TarFile2(Uri tarUri, TarEntry entry) {
+        if (entry == null)
+            throw new IllegalArgumentException("entry must not be null");
+        String tarPath = tarUri.getPath();
+        if (!tarPath.endsWith("/"))
+            tarPath += "/";
+
+        mPath = tarPath + entry.getName();
+        mUriPrefix = tarUri.getScheme() + "://" + (tarUri.getEncodedAuthority() != null ? tarUri.getEncodedAuthority() : "");
+        mLength = entry.getSize();
+        mIsFile = !entry.isDirectory();
+        mLastModified = entry.getLastModified();
+    }
+
+    @Override
+    public String getName() {
+        return FileUtils.getName(getUri());
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return !mIsFile;
+    }
+
+    @Override
+    public boolean isFile() {
+        return mIsFile;
+    }
+
+    @Override
+    public long lastModified() {
+        return mLastModified;
+    }
+
+    @Override
+    public long length() {
+        return mLength;
+    }
+
+    @Override
+    public Uri getUri() {
+        return Uri.parse(mUriPrefix + mPath);
+    }
+
+    @Override
+    public boolean canRead() {
+        return true;
+    }
+
+    @Override
+    public boolean canWrite() {
+        return false;
+    }
+
+    @Override
+    public boolean isRemote() {
+        return !(TarUtils.SCHEME + "://").equals(mUriPrefix);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof TarFile2) {
+            return getUri().equals(((TarFile2) other).getUri());
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public RawLister getRawListerInstance() {
+        return new TarRawLister(getUri());
+    }
+
+    @Override
+    public FileEditor getFileEditorInstance(Context ct) {
+        return new TarFileEditor(getUri());
+    }
+}
@@ -0,0 +1,94 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.tar;
+
+import android.net.Uri;
+
+import com.archos.environment.ArchosUtils;
+import com.archos.filecorelibrary.FileEditor;
+import com.archos.filecorelibrary.FileEditorFactory;
+import com.archos.filecorelibrary.localstorage.LocalStorageFileEditor;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Read only access to the entries of a tar archive. Entries are read in place from their offset in the index,
+ * seeking (e.g. in a video streamed through StreamOverHttp) costs nothing.
+ */
+public class TarFileEditor extends FileEditor {
+
+    public TarFileEditor(Uri uri) {
+        super(uri);
+    }
+
+    @Override
+    public InputStream getInputStream() throws Exception {
+        return getInputStream(0);
+    }
+
+    @Override
+    public InputStream getInputStream(long from) throws Exception {
+        String remains = TarUtils.getEntryName(mUri);
+        if (remains.equals("")) // input is on the whole archive
+            return new TarInputStream(new BufferedInputStream(getArchiveEditor().getInputStream()));
+        TarIndex.Archive archive = TarIndex.getInstance().get(mUri);
+        TarEntry entry = archive.getEntry(remains);
+        if (entry == null || !entry.isFile())
+            return null;
+        return archive.getInputStream(entry, from);
+    }
+
+    @Override
+    public long length() throws Exception {
+        String remains = TarUtils.getEntryName(mUri);
+        if (remains.equals("")) {
+            if (!TarUtils.isRemoteTarUri(mUri))
+                return new File(TarUtils.getTarPathFromUri(mUri)).length();
+            return getArchiveEditor().length();
+        }
+        TarEntry entry = TarIndex.getInstance().get(mUri).getEntry(remains);
+        return entry != null ? entry.getSize() : -1;
+    }
+
+    /**
+     * editor of the archive file itself, local or on a network share
+     */
+    private FileEditor getArchiveEditor() {
+        Uri archiveUri = TarUtils.getArchiveUri(mUri);
+        if (!TarUtils.isRemoteTarUri(mUri))
+            return new LocalStorageFileEditor(archiveUri, null);
+        return FileEditorFactory.getFileEditorForUrl(archiveUri, ArchosUtils.getGlobalContext());
+    }
+
+    @Override
+    public Boolean delete() throws Exception {
+        throw new LocalStorageFileEditor.DeleteFailException();
+    }
+
+    @Override
+    public boolean exists() {
+        if (TarUtils.getEntryName(mUri).equals(""))
+            return getArchiveEditor().exists();
+        try {
+            return TarIndex.getInstance().get(mUri).getEntry(TarUtils.getEntryName(mUri)) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.tar;
+
+import android.net.Uri;
+
+import com.archos.filecorelibrary.MetaFile2;
+import com.archos.filecorelibrary.MetaFile2Factory;
+import com.archos.filecorelibrary.zip.FileZipSource;
+import com.archos.filecorelibrary.zip.RemoteZipSource;
+import com.archos.filecorelibrary.zip.ZipSource;
+import com.archos.filecorelibrary.zip.ZipSourceInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Headers of the tar archives being browsed, found in one sequential pass and kept as a directory -> children tree
+ * with the data offset of each entry. Tar data is stored as is, so an entry is then read (and seeked) in place.
+ * The most recently used archives are kept open; an archive is indexed again when its size or date changes.
+ * Archives are read through the positional sources of the zip package: the pass skips the data of the entries
+ * without reading it, locally as well as on network shares (range reads, see RemoteZipSource).
+ */
+public class TarIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(TarIndex.class);
+
+    private static final int MAX_OPEN_ARCHIVES = 4;
+    // size and date of a remote archive cost a round trip: not checked again before that
+    private static final long REMOTE_CHECK_INTERVAL_MS = 10000;
+
+    private static final TarIndex sInstance = new TarIndex();
+
+    // access ordered: eldest is the least recently used
+    private final LinkedHashMap<String, Archive> mArchives = new LinkedHashMap<>(MAX_OPEN_ARCHIVES + 1, 0.75f, true);
+
+    public static TarIndex getInstance() {
+        return sInstance;
+    }
+
+    private TarIndex() {}
+
+    /**
+     * @param tarUri tar uri of the archive or of one of its entries, local or remote
+     */
+    public Archive get(Uri tarUri) throws IOException {
+        if (!TarUtils.isRemoteTarUri(tarUri)) {
+            File file = new File(TarUtils.getTarPathFromUri(tarUri));
+            return get(file.getPath(), null, file.length(), file.lastModified());
+        }
+        Uri archiveUri = TarUtils.getArchiveUri(tarUri);
+        String key = archiveUri.toString();
+        synchronized (mArchives) {
+            Archive archive = mArchives.get(key);
+            if (archive != null && System.currentTimeMillis() - archive.mCheckTime < REMOTE_CHECK_INTERVAL_MS)
+                return archive;
+        }
+        MetaFile2 metaFile;
+        try {
+            metaFile = MetaFile2Factory.getMetaFileForUrl(archiveUri);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("cannot reach " + archiveUri, e);
+        }
+        if (metaFile == null || !metaFile.isFile())
+            throw new FileNotFoundException(archiveUri.toString());
+        return get(key, archiveUri, metaFile.length(), metaFile.lastModified());
+    }
+
+    /**
+     * @param remoteUri null for local archives
+     */
+    private Archive get(String key, Uri remoteUri, long length, long lastModified) throws IOException {
+        synchronized (mArchives) {
+            Archive archive = mArchives.get(key);
+            if (archive != null && archive.mLength == length && archive.mLastModified == lastModified) {
+                archive.mCheckTime = System.currentTimeMillis();
+                return archive;
+            }
+            if (archive != null) {
+                mArchives.remove(key);
+                archive.evict();
+            }
+        }
+        if (remoteUri == null && !new File(key).isFile())
+            throw new FileNotFoundException(key);
+        // indexed outside of the lock: other archives stay available meanwhile
+        ZipSource source = remoteUri != null ? new RemoteZipSource(remoteUri, length) : new FileZipSource(new File(key));
+        Archive archive = new Archive(key, source, length, lastModified);
+        synchronized (mArchives) {
+            Archive concurrent = mArchives.get(key);
+            if (concurrent != null && concurrent.mLength == length && concurrent.mLastModified == lastModified) {
+                archive.evict();
+                return concurrent;
+            }
+            if (concurrent != null)
+                concurrent.evict();
+            mArchives.put(key, archive);
+            Iterator<Map.Entry<String, Archive>> it = mArchives.entrySet().iterator();
+            while (mArchives.size() > MAX_OPEN_ARCHIVES && it.hasNext()) {
+                Archive eldest = it.next().getValue();
+                it.remove();
+                eldest.evict();
+            }
+        }
+        return archive;
+    }
+
+    /**
+     * Forgets an archive, e.g. after it has been rewritten
+     * @param tarPath local path, or archive uri for remote ones
+     */
+    public void invalidate(String tarPath) {
+        synchronized (mArchives) {
+            Archive archive = mArchives.remove(tarPath);
+            if (archive != null) archive.evict();
+        }
+    }
+
+    public static class Archive {
+        private final String mPath;
+        private final long mLength;
+        private final long mLastModified;
+        private final ZipSource mSource;
+        // directory ("" for root, "a/b" otherwise) -> its direct children
+        private final HashMap<String, List<TarEntry>> mChildren = new HashMap<>();
+        private final HashMap<String, TarEntry> mEntries = new HashMap<>();
+        // open streams: the source is closed once evicted and no stream uses it anymore
+        private int mOpenStreams;
+        private boolean mEvicted;
+        private volatile long mCheckTime = System.currentTimeMillis();
+
+        private Archive(String path, ZipSource source, long length, long lastModified) throws IOException {
+            mPath = path;
+            mLength = length;
+            mLastModified = lastModified;
+            mSource = source;
+            long start = System.currentTimeMillis();
+            mChildren.put("", new ArrayList<TarEntry>());
+            try {
+                TarInputStream in = new TarInputStream(new ZipSourceInputStream(mSource, 0, length));
+                TarEntry entry;
+                while ((entry = in.getNextEntry()) != null) {
+                    if (entry.isFile() || entry.isDirectory())
+                        add(entry);
+                    else
+                        log.trace("Archive: skipping " + entry.getName() + " of type " + entry.getType());
+                }
+            } catch (IOException | RuntimeException e) {
+                mSource.close();
+                throw e;
+            }
+            log.debug("Archive: " + path + " indexed " + mEntries.size() + " entries in " + (System.currentTimeMillis() - start) + "ms");
+        }
+
+        private void add(TarEntry entry) {
+            String name = entry.getName();
+            if (name.startsWith("./") || name.startsWith("/")) {
+                // archives made with "tar cf backup.tar ." or absolute paths: browsed from their top directory
+                while (name.startsWith("./") || name.startsWith("/"))
+                    name = name.substring(name.indexOf('/') + 1);
+                long dataOffset = entry.getDataOffset();
+                entry = new TarEntry(name, entry.getType(), entry.getSize(), entry.getLastModified(), entry.getMode());
+                entry.setDataOffset(dataOffset);
+            }
+            if (name.isEmpty() || ".".equals(name))
+                return;
+            String parent = getParent(name);
+            TarEntry previous = mEntries.put(name, entry);
+            if (entry.isDirectory() && !mChildren.containsKey(name))
+                mChildren.put(name, new ArrayList<TarEntry>());
+            List<TarEntry> siblings = mChildren.get(parent);
+            if (siblings == null) {
+                // parent has no entry of its own
+                add(TarEntry.directory(parent, 0));
+                siblings = mChildren.get(parent);
+            }
+            if (previous != null) {
+                // appended again (tar -r): the last copy wins
+                siblings.set(siblings.indexOf(previous), entry);
+                return;
+            }
+            siblings.add(entry);
+        }
+
+        /**
+         * "a/b/c" -> "a/b", "c" -> ""
+         */
+        private static String getParent(String name) {
+            int slash = name.lastIndexOf('/');
+            return slash < 0 ? "" : name.substring(0, slash);
+        }
+
+        private static String normalize(String name) {
+            while (name.endsWith("/"))
+                name = name.substring(0, name.length() - 1);
+            return name;
+        }
+
+        public String getPath() {
+            return mPath;
+        }
+
+        /**
+         * @param directory "" for the root of the archive, with or without trailing '/' otherwise
+         * @return entries directly in directory, null if there is no such directory
+         */
+        public List<TarEntry> list(String directory) {
+            List<TarEntry> children = mChildren.get(normalize(directory));
+            return children != null ? new ArrayList<>(children) : null;
+        }
+
+        /**
+         * @return entry named name, with or without trailing '/' for a directory, null if none
+         */
+        public TarEntry getEntry(String name) {
+            return mEntries.get(normalize(name));
+        }
+
+        public int size() {
+            return mEntries.size();
+        }
+
+        public InputStream getInputStream(TarEntry entry) throws IOException {
+            return getInputStream(entry, 0);
+        }
+
+        /**
+         * Data of entry starting at offset from, read in place: seeking costs nothing
+         */
+        public InputStream getInputStream(TarEntry tarEntry, long from) throws IOException {
+            TarEntry entry = mEntries.get(tarEntry.getName());
+            if (entry == null || !entry.isFile())
+                throw new FileNotFoundException("no such entry " + tarEntry.getName() + " in " + mPath);
+            synchronized (this) {
+                if (mEvicted && mOpenStreams == 0)
+                    throw new IOException("archive " + mPath + " has been closed");
+                mOpenStreams++;
+            }
+            long dataOffset = entry.getDataOffset();
+            InputStream in = new ZipSourceInputStream(mSource, dataOffset + Math.min(Math.max(from, 0), entry.getSize()), dataOffset + entry.getSize());
+            return new FilterInputStream(in) {
+                private boolean mClosed;
+                @Override
+                public void close() throws IOException {
+                    if (mClosed) return;
+                    mClosed = true;
+                    try {
+                        super.close();
+                    } finally {
+                        release();
+                    }
+                }
+            };
+        }
+
+        private synchronized void release() {
+            if (--mOpenStreams == 0 && mEvicted)
+                closeSource();
+        }
+
+        private synchronized void evict() {
+            mEvicted = true;
+            if (mOpenStreams == 0)
+                closeSource();
+        }
+
+        private void closeSource() {
+            closeSilently(mSource);
+        }
+
+        private void closeSilently(Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                log.warn("closeSilently: " + mPath, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.tar;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a tar archive (ustar, GNU long names and base-256 sizes, pax path/size records) from a stream.
+ * read() returns the content of the current entry only.
+ */
+public class TarInputStream extends FilterInputStream {
+
+    private static final int BLOCK_SIZE = TarOutputStream.BLOCK_SIZE;
+    private static final char TYPE_PAX_HEADER = 'x';
+    private static final char TYPE_PAX_GLOBAL_HEADER = 'g';
+
+    private final byte[] mHeader = new byte[BLOCK_SIZE];
+    private long mRemaining;
+    private long mPadding;
+    private long mPosition;
+    private boolean mEnd;
+
+    public TarInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Skips what is left of the current entry
+     * @return next entry, null at end of archive
+     */
+    public TarEntry getNextEntry() throws IOException {
+        String longName = null;
+        long paxSize = -1;
+        while (true) {
+            skipBytes(mRemaining + mPadding);
+            mRemaining = 0;
+            mPadding = 0;
+            if (mEnd || !readHeader())
+                return null;
+            char type = (char) mHeader[156];
+            long size = parseNumber(mHeader, 124, 12);
+            if (type == TarOutputStream.TYPE_GNU_LONG_NAME) {
+                longName = trimNul(new String(readContent(size), StandardCharsets.UTF_8));
+                continue;
+            }
+            if (type == TYPE_PAX_HEADER) {
+                String records = new String(readContent(size), StandardCharsets.UTF_8);
+                String path = getPaxValue(records, "path");
+                if (path != null) longName = path;
+                String paxSizeValue = getPaxValue(records, "size");
+                if (paxSizeValue != null) paxSize = Long.parseLong(paxSizeValue);
+                continue;
+            }
+            if (type == TYPE_PAX_GLOBAL_HEADER) {
+                readContent(size);
+                continue;
+            }
+            String name = longName;
+            if (name == null) {
+                name = parseString(mHeader, 0, 100);
+                String prefix = "ustar".equals(parseString(mHeader, 257, 5)) ? parseString(mHeader, 345, 155) : "";
+                if (!prefix.isEmpty())
+                    name = prefix + "/" + name;
+            }
+            if (paxSize >= 0)
+                size = paxSize;
+            if (type == TarEntry.TYPE_OLD_FILE && name.endsWith("/"))
+                type = TarEntry.TYPE_DIRECTORY;
+            TarEntry entry = new TarEntry(name, type, size, parseNumber(mHeader, 136, 12) * 1000, (int) parseNumber(mHeader, 100, 8));
+            entry.setDataOffset(mPosition);
+            mRemaining = entry.getSize();
+            mPadding = (BLOCK_SIZE - mRemaining % BLOCK_SIZE) % BLOCK_SIZE;
+            return entry;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (mRemaining <= 0)
+            return -1;
+        int read = in.read(b, off, (int) Math.min(len, mRemaining));
+        if (read < 0)
+            throw new EOFException("truncated tar entry");
+        mRemaining -= read;
+        mPosition += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long toSkip = Math.min(n, mRemaining);
+        skipBytes(toSkip);
+        mRemaining -= toSkip;
+        return toSkip;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), mRemaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * @return false at end of archive (two zero blocks, or end of stream for archives missing them)
+     */
+    private boolean readHeader() throws IOException {
+        int total = 0;
+        while (total < BLOCK_SIZE) {
+            int read = in.read(mHeader, total, BLOCK_SIZE - total);
+            if (read < 0) {
+                if (total == 0) {
+                    mEnd = true;
+                    return false;
+                }
+                throw new EOFException("truncated tar header");
+            }
+            total += read;
+        }
+        mPosition += BLOCK_SIZE;
+        boolean zero = true;
+        long checksum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            if (mHeader[i] != 0) zero = false;
+            checksum += (i >= 148 && i < 156) ? ' ' : mHeader[i] & 0xff;
+        }
+        if (zero) {
+            mEnd = true;
+            return false;
+        }
+        if (checksum != parseNumber(mHeader, 148, 8))
+            throw new IOException("bad tar header checksum");
+        return true;
+    }
+
+    private byte[] readContent(long size) throws IOException {
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("tar metadata record too large");
+        byte[] content = new byte[(int) size];
+        int total = 0;
+        while (total < content.length) {
+            int read = in.read(content, total, content.length - total);
+            if (read < 0)
+                throw new EOFException("truncated tar record");
+            total += read;
+        }
+        mPosition += size;
+        skipBytes((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+        return content;
+    }
+
+    private void skipBytes(long n) throws IOException {
+        byte[] buffer = null;
+        long left = n;
+        while (left > 0) {
+            long skipped = in.skip(left);
+            if (skipped <= 0) {
+                // some streams (ssh channels) do not skip: read instead
+                if (buffer == null) buffer = new byte[8192];
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+                if (read < 0)
+                    throw new EOFException("truncated tar archive");
+                skipped = read;
+            }
+            left -= skipped;
+        }
+        mPosition += n;
+    }
+
+    /**
+     * pax records are "<length> <key>=<value>\n"
+     */
+    private static String getPaxValue(String records, String key) {
+        int position = 0;
+        while (position < records.length()) {
+            int space = records.indexOf(' ', position);
+            if (space < 0) break;
+            int length;
+            try {
+                length = Integer.parseInt(records.substring(position, space));
+            } catch (NumberFormatException e) {
+                break;
+            }
+            // length counts bytes, close enough for the ascii keys we look for as long as we stop at the newline
+            int end = records.indexOf('\n', space);
+            if (end < 0 || length <= 0) break;
+            String record = records.substring(space + 1, end);
+            if (record.startsWith(key + "="))
+                return record.substring(key.length() + 1);
+            position = end + 1;
+        }
+        return null;
+    }
+
+    static String parseString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0)
+            end++;
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    static long parseNumber(byte[] header, int offset, int length) {
+        if ((header[offset] & 0x80) != 0) {
+            // GNU base-256
+            long value = header[offset] & 0x7f;
+            for (int i = 1; i < length; i++)
+                value = (value << 8) | (header[offset + i] & 0xff);
+            return value;
+        }
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0) break;
+            if (b == ' ') {
+                if (value == 0) continue; // leading spaces
+                break;
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    private static String trimNul(String s) {
+        int nul = s.indexOf('\0');
+        return nul >= 0 ? s.substring(0, nul) : s;
+    }
+}
@@ -0,0 +1,131 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.tar;
+
+import android.content.Context;
+import android.net.Uri;
+
+import com.archos.filecorelibrary.ListingEngine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists one directory of a tar archive, local or remote, from its cached index
+ */
+public class TarListingEngine extends ListingEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(TarListingEngine.class);
+
+    final private Uri mUri;
+    final private ListingThread mListingThread;
+    private volatile boolean mAbort = false;
+
+    public TarListingEngine(Context context, Uri uri) {
+        super(context);
+        mUri = uri;
+        mListingThread = new ListingThread();
+    }
+
+    @Override
+    public void start() {
+        // Tell ASAP the listener that we are starting discovery
+        mUiHandler.post(new Runnable() {
+            public void run() {
+                if (mListener != null) {
+                    mListener.onListingStart();
+                }
+            }
+        });
+
+        mListingThread.start();
+
+        preLaunchTimeOut();
+    }
+
+    @Override
+    public void abort() {
+        mAbort = true;
+    }
+
+    private final class ListingThread extends Thread {
+
+        public void run() {
+            try {
+                log.debug("listing files for " + mUri);
+                // the first listing of an archive indexes it, then every directory level comes from the index
+                List<TarEntry> entries = TarIndex.getInstance().get(mUri).list(TarUtils.getEntryName(mUri));
+                if (entries == null) {
+                    postError(ErrorEnum.ERROR_FILE_NOT_FOUND);
+                    return;
+                }
+                Uri tarUri = TarUtils.getTarUri(TarUtils.getArchiveUri(mUri));
+                ArrayList<TarFile2> files = new ArrayList<>();
+                ArrayList<TarFile2> directories = new ArrayList<>();
+                for (TarEntry entry : entries) {
+                    if (entry.isDirectory()) {
+                        if (keepDirectory(entry.getName().substring(entry.getName().lastIndexOf('/') + 1)))
+                            directories.add(new TarFile2(tarUri, entry));
+                    } else if (keepFile(entry.getName().substring(entry.getName().lastIndexOf('/') + 1))) {
+                        files.add(new TarFile2(tarUri, entry));
+                    }
+                }
+                final ArrayList<TarFile2> allFiles = new ArrayList<>(directories.size() + files.size());
+                allFiles.addAll(directories);
+                allFiles.addAll(files);
+
+                if (timeOutHasOccurred() || mAbort)
+                    return;
+
+                // Send list to the the world
+                mUiHandler.post(new Runnable() {
+                    public void run() {
+                        if (!mAbort && mListener != null) {
+                            mListener.onListingUpdate(allFiles);
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                log.warn("listing " + mUri + " failed", e);
+                postError(ErrorEnum.ERROR_UNKNOWN);
+            } finally {
+                noTimeOut(); // be sure there is no time out triggered after an error
+
+                mUiHandler.post(new Runnable() {
+                    public void run() {
+                        if (mListener != null) { // always report end even when aborted
+                            mListener.onListingEnd();
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private void postError(final ErrorEnum error) {
+        mUiHandler.post(new Runnable() {
+            public void run() {
+                if (!mAbort && mListener != null) { // do not report error if aborted
+                    mListener.onListingFatalError(null, error);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,188 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.tar;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes a ustar archive on the fly, nothing is buffered besides the current header.
+ * Names that do not fit in ustar name/prefix fields use a GNU long name record, sizes above 8GB the GNU
+ * base-256 encoding: both are understood by GNU tar, bsdtar and busybox.
+ */
+public class TarOutputStream extends FilterOutputStream {
+
+    static final int BLOCK_SIZE = 512;
+    static final String LONG_NAME = "././@LongLink";
+    static final char TYPE_GNU_LONG_NAME = 'L';
+
+    private long mRemaining;
+    private long mWritten;
+    private boolean mFinished;
+
+    public TarOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Starts a new member, the previous one must have received all its bytes
+     */
+    public void putNextEntry(TarEntry entry) throws IOException {
+        closeEntry();
+        String name = entry.isDirectory() ? entry.getName() + "/" : entry.getName();
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        String prefix = "";
+        if (nameBytes.length > 100) {
+            int split = findPrefixSplit(name);
+            if (split > 0) {
+                prefix = name.substring(0, split);
+                name = name.substring(split + 1);
+            } else {
+                byte[] longName = Arrays.copyOf(nameBytes, nameBytes.length + 1); // NUL terminated
+                writeHeader(LONG_NAME, "", TYPE_GNU_LONG_NAME, longName.length, 0, 0644);
+                writeContent(longName);
+                name = new String(nameBytes, 0, 100, StandardCharsets.UTF_8);
+            }
+        }
+        writeHeader(name, prefix, entry.getType(), entry.getSize(), entry.getLastModified(), entry.getMode());
+        mRemaining = entry.getSize();
+        mWritten = 0;
+    }
+
+    /**
+     * Pads the current member to a whole number of blocks
+     */
+    public void closeEntry() throws IOException {
+        if (mRemaining > 0)
+            throw new IOException("entry is missing " + mRemaining + " bytes");
+        pad(mWritten);
+        mWritten = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > mRemaining)
+            throw new IOException("entry content larger than its declared size");
+        out.write(b, off, len);
+        mRemaining -= len;
+        mWritten += len;
+    }
+
+    /**
+     * Writes the end of archive marker, the underlying stream is left open
+     */
+    public void finish() throws IOException {
+        if (mFinished)
+            return;
+        closeEntry();
+        out.write(new byte[2 * BLOCK_SIZE]);
+        out.flush();
+        mFinished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+
+    private void writeContent(byte[] content) throws IOException {
+        out.write(content);
+        pad(content.length);
+    }
+
+    private void pad(long length) throws IOException {
+        int padding = (int) ((BLOCK_SIZE - length % BLOCK_SIZE) % BLOCK_SIZE);
+        if (padding > 0)
+            out.write(new byte[padding]);
+    }
+
+    private void writeHeader(String name, String prefix, char type, long size, long lastModified, int mode) throws IOException {
+        byte[] header = new byte[BLOCK_SIZE];
+        putString(header, 0, 100, name);
+        putOctal(header, 100, 8, mode);
+        putOctal(header, 108, 8, 0); // uid
+        putOctal(header, 116, 8, 0); // gid
+        putNumber(header, 124, 12, size);
+        putOctal(header, 136, 12, Math.max(0, lastModified) / 1000);
+        Arrays.fill(header, 148, 156, (byte) ' '); // checksum is computed with spaces in its field
+        header[156] = (byte) type;
+        putString(header, 257, 6, "ustar"); // NUL terminated
+        header[263] = '0';
+        header[264] = '0';
+        putString(header, 345, 155, prefix);
+        long checksum = 0;
+        for (byte b : header)
+            checksum += b & 0xff;
+        putOctal(header, 148, 7, checksum);
+        header[155] = ' ';
+        out.write(header);
+    }
+
+    /**
+     * Index of the '/' splitting name into a prefix of at most 155 bytes and a name of at most 100 bytes, -1 if none
+     */
+    private static int findPrefixSplit(String name) {
+        for (int i = name.indexOf('/'); i > 0; i = name.indexOf('/', i + 1)) {
+            int prefixLength = name.substring(0, i).getBytes(StandardCharsets.UTF_8).length;
+            if (prefixLength > 155)
+                return -1;
+            if (name.substring(i + 1).getBytes(StandardCharsets.UTF_8).length <= 100)
+                return i;
+        }
+        return -1;
+    }
+
+    private static void putString(byte[] header, int offset, int length, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+
+    /**
+     * length - 1 octal digits followed by NUL
+     */
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String octal = Long.toOctalString(value);
+        int digits = length - 1;
+        for (int i = 0; i < digits; i++) {
+            int from = octal.length() - digits + i;
+            header[offset + i] = (byte) (from >= 0 ? octal.charAt(from) : '0');
+        }
+        header[offset + digits] = 0;
+    }
+
+    private static void putNumber(byte[] header, int offset, int length, long value) {
+        if (value < 1L << (3 * (length - 1))) {
+            putOctal(header, offset, length, value);
+            return;
+        }
+        // GNU base-256: high bit of the first byte set, big endian value in the rest
+        Arrays.fill(header, offset, offset + length, (byte) 0);
+        header[offset] = (byte) 0x80;
+        for (int i = length - 1; i > 0 && value != 0; i--) {
+            header[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+}
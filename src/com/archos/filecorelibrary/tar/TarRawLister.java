@@ -0,0 +1,46 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.tar;
+
+import android.net.Uri;
+
+import com.archos.filecorelibrary.AuthenticationException;
+import com.archos.filecorelibrary.MetaFile2;
+import com.archos.filecorelibrary.RawLister;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists one directory of a tar archive from its cached index
+ */
+public class TarRawLister extends RawLister {
+    public TarRawLister(Uri uri) {
+        super(uri);
+    }
+
+    public List<MetaFile2> getFileList() throws IOException, AuthenticationException {
+        List<TarEntry> entries = TarIndex.getInstance().get(mUri).list(TarUtils.getEntryName(mUri));
+        if (entries == null)
+            return null;
+        Uri tarUri = TarUtils.getTarUri(TarUtils.getArchiveUri(mUri));
+        ArrayList<MetaFile2> list = new ArrayList<>(entries.size());
+        for (TarEntry entry : entries)
+            list.add(new TarFile2(tarUri, entry));
+        return list;
+    }
+}
@@ -0,0 +1,110 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.tar;
+
+import android.net.Uri;
+
+import com.archos.filecorelibrary.FileUtils;
+import com.archos.filecorelibrary.MetaFile2;
+
+import java.io.File;
+
+/**
+ * Tar archives are browsed like zip ones: tar://path/to/archive.tar/entry for local archives,
+ * tar+scheme uris for archives on a network share, e.g. tar+smb://server/share/dir/archive.tar/entry
+ */
+public class TarUtils {
+
+    public static final String SCHEME = "tar";
+    public static final String REMOTE_SCHEME_PREFIX = "tar+";
+
+    public static boolean isTarScheme(String scheme) {
+        return SCHEME.equals(scheme) || isRemoteTarScheme(scheme);
+    }
+
+    public static boolean isRemoteTarUri(Uri uri) {
+        return isRemoteTarScheme(uri.getScheme());
+    }
+
+    private static boolean isRemoteTarScheme(String scheme) {
+        return scheme != null && scheme.startsWith(REMOTE_SCHEME_PREFIX) && scheme.length() > REMOTE_SCHEME_PREFIX.length();
+    }
+
+    public static boolean isTarMetaFile(MetaFile2 mf) {
+        if (mf == null) return false;
+        return "application/x-tar".equals(mf.getMimeType()) || mf instanceof TarFile2;
+    }
+
+    /**
+     * @return tar uri browsing the content of archiveUri, local file or on a network share
+     */
+    public static Uri getTarUri(Uri archiveUri) {
+        if (FileUtils.isLocal(archiveUri))
+            return Uri.parse(SCHEME + "://" + archiveUri.getPath());
+        return archiveUri.buildUpon().scheme(REMOTE_SCHEME_PREFIX + archiveUri.getScheme()).build();
+    }
+
+    /**
+     * @return uri of the archive itself: a file uri for a local tar, the network uri for tar+scheme ones
+     */
+    public static Uri getArchiveUri(Uri tarUri) {
+        if (!isRemoteTarUri(tarUri))
+            return Uri.fromFile(new File(getTarPathFromUri(tarUri)));
+        return tarUri.buildUpon()
+                .scheme(tarUri.getScheme().substring(REMOTE_SCHEME_PREFIX.length()))
+                .path(getRemoteTarPath(tarUri))
+                .build();
+    }
+
+    /**
+     * @return local path of the archive of a tar uri like tar://path/to/archive.tar/entry, i.e. /path/to/archive.tar
+     */
+    public static String getTarPathFromUri(Uri uri) {
+        String toTest = "";
+        for (String seg : uri.getPathSegments()) {
+            if (!seg.startsWith("/"))
+                toTest += "/";
+            toTest += seg;
+            if (new File(toTest).isFile()) // then we have our archive
+                break;
+        }
+        return toTest;
+    }
+
+    /**
+     * Checking each segment of a remote uri would cost a round trip, the first one named *.tar is the archive
+     */
+    private static String getRemoteTarPath(Uri tarUri) {
+        String toTest = "";
+        for (String seg : tarUri.getPathSegments()) {
+            toTest += "/" + seg;
+            if (seg.toLowerCase().endsWith(".tar"))
+                break;
+        }
+        return toTest;
+    }
+
+    /**
+     * @return path of the entry inside the archive, "" for the archive itself
+     */
+    public static String getEntryName(Uri tarUri) {
+        String tarPath = isRemoteTarUri(tarUri) ? getRemoteTarPath(tarUri) : getTarPathFromUri(tarUri);
+        String path = tarUri.getPath();
+        if (path.length() > tarPath.length() + 1)
+            return path.substring(tarPath.length() + 1);//remove first "/"
+        return "";
+    }
+}
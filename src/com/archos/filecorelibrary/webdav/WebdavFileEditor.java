@@ -91,6 +91,7 @@ public class WebdavFileEditor extends FileEditor {
         try {
             var u = WebdavFile2.uriToHttp(mUri);
             mSardine.createDirectory(u.toString());
+            invalidateListings(null);
             return true;
         } catch (IOException e) {
             caughtException(e, "WebdavFileEditor:mkdir", "IOException in mkdir " + mUri);
@@ -102,9 +103,25 @@ public class WebdavFileEditor extends FileEditor {
     public Boolean delete() throws Exception {
         var u = WebdavFile2.uriToHttp(mUri);
         mSardine.delete(u.toString());
+        invalidateListings(null);
         return null;
     }
 
+    /**
+     * DELETE on a collection removes all its members (RFC 4918 9.6.1)
+     */
+    @Override
+    public boolean deleteRecursiveServerSide() throws Exception {
+        try {
+            delete();
+            return true;
+        } catch (SardineException e) {
+            // e.g. 403 or 423 Locked: let the caller delete the content itself
+            caughtException(e, "WebdavFileEditor:deleteRecursiveServerSide", "SardineException in delete " + mUri);
+        }
+        return false;
+    }
+
     @Override
     public boolean move(Uri uri) {
         var origin = WebdavFile2.uriToHttp(mUri);
@@ -112,7 +129,9 @@ public class WebdavFileEditor extends FileEditor {
             if (origin != null) {
                 var destination = WebdavFile2.uriToHttp(uri);
                 if (destination != null) {
-                    mSardine.move(origin.toString(), destination.toString());
+                    // without Overwrite: F the server deletes an existing destination first (RFC 4918 9.9.3)
+                    mSardine.move(origin.toString(), destination.toString(), false);
+                    invalidateListings(uri);
                     return true;
                 }
             }
@@ -122,6 +141,32 @@ public class WebdavFileEditor extends FileEditor {
         return false;
     }
 
+    @Override
+    public boolean canMoveServerSide(Uri target) {
+        return FileUtils.isSameServer(mUri, target);
+    }
+
+    @Override
+    public boolean canCopyServerSide(Uri target) {
+        return FileUtils.isSameServer(mUri, target);
+    }
+
+    @Override
+    public boolean copyServerSide(Uri target) throws Exception {
+        var origin = WebdavFile2.uriToHttp(mUri);
+        var destination = WebdavFile2.uriToHttp(target);
+        if (origin == null || destination == null) return false;
+        try {
+            log.debug("copyServerSide: " + origin + " -> " + destination);
+            mSardine.copy(origin.toString(), destination.toString(), true);
+            return true;
+        } catch (SardineException e) {
+            // COPY is optional for some servers (501/403): let the caller stream the file
+            caughtException(e, "WebdavFileEditor:copyServerSide", "SardineException in copy " + mUri + " to " + target);
+        }
+        return false;
+    }
+
     @Override
     public boolean rename(String newName) {
         return move(Uri.parse(FileUtils.getParentUrl(mUri.toString()) + "/" + newName));
@@ -68,6 +68,11 @@ public class WebdavListingEngine extends ListingEngine {
         mAbort = true;
     }
 
+    @Override
+    protected boolean isAborted() {
+        return mAbort;
+    }
+
     private final class WebdavListingThread extends Thread {
 
         public void run(){
@@ -82,6 +87,8 @@ public class WebdavListingEngine extends ListingEngine {
 
                 final ArrayList<WebdavFile2> directories = new ArrayList<>();
                 final ArrayList<WebdavFile2> files = new ArrayList<>();
+                // the PROPFIND answer is parsed as a whole: pages only spare waiting for the sort
+                final PageEmitter pages = new PageEmitter();
 
                 // First answer is ourselves, ignore it
                 davResources.remove(0);
@@ -90,16 +97,21 @@ public class WebdavListingEngine extends ListingEngine {
                     if (davResource.isDirectory()) {
                         if (keepDirectory(filename)) {
                             log.trace("WebdavListingThread: adding directory " + davResource.getPath());
-                            directories.add(new WebdavFile2(davResource, mUri.buildUpon().appendEncodedPath(davResource.getName()).build()));
+                            WebdavFile2 file = new WebdavFile2(davResource, mUri.buildUpon().appendEncodedPath(davResource.getName()).build());
+                            directories.add(file);
+                            pages.add(file);
                         }
                     } else { // this is a file
                         if (keepFile(filename)) {
                             log.trace("WebdavListingThread: adding file " + davResource.getPath());
                             //listFiles.add(new WebdavFile2(davResource, mUri.buildUpon().appendEncodedPath(davResource.getName()).build()));
-                            files.add(new WebdavFile2(davResource, mUri.buildUpon().appendEncodedPath(davResource.getName()).build()));
+                            WebdavFile2 file = new WebdavFile2(davResource, mUri.buildUpon().appendEncodedPath(davResource.getName()).build());
+                            files.add(file);
+                            pages.add(file);
                         }
                     }
                 }
+                pages.flush();
 
                 // Check if timeout or abort occurred
                 if (timeOutHasOccurred() || mAbort) {
@@ -0,0 +1,51 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * ZipSource on a local file
+ */
+public class FileZipSource implements ZipSource {
+
+    // seek + read under lock rather than FileChannel positional reads: an interrupted reader would close the channel for everyone
+    private final RandomAccessFile mFile;
+
+    public FileZipSource(File file) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+    }
+
+    @Override
+    public long length() throws IOException {
+        return mFile.length();
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        synchronized (mFile) {
+            mFile.seek(position);
+            return mFile.read(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mFile.close();
+    }
+}
@@ -0,0 +1,190 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import android.net.Uri;
+
+import com.archos.environment.ArchosUtils;
+import com.archos.filecorelibrary.FileEditor;
+import com.archos.filecorelibrary.FileEditorFactory;
+import com.archos.filecorelibrary.TransferTuning;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/**
+ * ZipSource on an archive of a network share, read through FileEditor.getInputStream(from) range reads:
+ * only the end of the archive, its central directory and the entries actually opened are transferred.
+ * Opening a stream costs a round trip, so the last few are kept as cursors and reused by reads starting at
+ * (or shortly after) where they stopped: the central directory and each entry are then read with a single request.
+ * Concurrent reads each use their own cursor.
+ */
+public class RemoteZipSource implements ZipSource {
+
+    private static final Logger log = LoggerFactory.getLogger(RemoteZipSource.class);
+
+    // idle cursors kept, also the number of entries an extraction reads at once
+    public static final int MAX_CURSORS = 3;
+    // reading that much to reach the position is cheaper than a new request
+    private static final long MAX_CURSOR_SKIP = 256 * 1024;
+
+    private static final class Cursor {
+        final InputStream in;
+        long position;
+        Cursor(InputStream in, long position) {
+            this.in = in;
+            this.position = position;
+        }
+    }
+
+    private final Uri mUri;
+    private final FileEditor mEditor;
+    private final long mLength;
+    private final int mBufferSize;
+    // most recently used first
+    private final ArrayList<Cursor> mCursors = new ArrayList<>();
+    private boolean mClosed;
+
+    /**
+     * @param length size of the archive, as given by its MetaFile2
+     */
+    public RemoteZipSource(Uri uri, long length) {
+        this(uri, FileEditorFactory.getFileEditorForUrl(uri, ArchosUtils.getGlobalContext()), length, TransferTuning.getParameters(uri).bufferSize);
+    }
+
+    RemoteZipSource(Uri uri, FileEditor editor, long length, int bufferSize) {
+        mUri = uri;
+        mEditor = editor;
+        mLength = length;
+        mBufferSize = bufferSize;
+    }
+
+    @Override
+    public long length() {
+        return mLength;
+    }
+
+    /**
+     * Each read owns its cursor while it runs: concurrent reads (e.g. several entries extracted at once) go through
+     * distinct requests, the lock only guards the list of idle cursors
+     */
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        if (position >= mLength)
+            return -1;
+        length = (int) Math.min(length, mLength - position);
+        Cursor cursor = takeCursor(position);
+        boolean retried = false;
+        while (true) {
+            try {
+                if (cursor == null)
+                    cursor = open(position);
+                while (cursor.position < position) {
+                    long skipped = cursor.in.skip(position - cursor.position);
+                    if (skipped <= 0)
+                        throw new IOException("cannot skip to " + position + " in " + mUri);
+                    cursor.position += skipped;
+                }
+                int read = cursor.in.read(buffer, offset, length);
+                if (read > 0)
+                    cursor.position += read;
+                putCursor(cursor);
+                return read;
+            } catch (IOException e) {
+                if (cursor != null)
+                    closeSilently(cursor);
+                cursor = null;
+                // a kept stream may have been closed by the server meanwhile: one more try with a fresh one
+                if (retried)
+                    throw e;
+                retried = true;
+                log.debug("read: retrying at " + position + " in " + mUri, e);
+            }
+        }
+    }
+
+    private synchronized Cursor takeCursor(long position) {
+        for (int i = 0; i < mCursors.size(); i++) {
+            Cursor cursor = mCursors.get(i);
+            if (cursor.position <= position && position - cursor.position <= MAX_CURSOR_SKIP) {
+                mCursors.remove(i);
+                return cursor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Keeps cursor for the next reads, the least recently used ones beyond MAX_CURSORS are closed
+     */
+    private void putCursor(Cursor cursor) {
+        ArrayList<Cursor> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (mClosed) {
+                evicted.add(cursor);
+            } else {
+                mCursors.add(0, cursor);
+                while (mCursors.size() > MAX_CURSORS)
+                    evicted.add(mCursors.remove(mCursors.size() - 1));
+            }
+        }
+        for (Cursor c : evicted)
+            closeSilently(c);
+    }
+
+    private Cursor open(long position) throws IOException {
+        log.trace("open: " + mUri + " at " + position);
+        InputStream in;
+        try {
+            in = position == 0 ? mEditor.getInputStream() : mEditor.getInputStream(position);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("cannot read " + mUri, e);
+        }
+        if (in == null)
+            throw new IOException("cannot read " + mUri);
+        return new Cursor(new BufferedInputStream(in, mBufferSize), position);
+    }
+
+    /**
+     * Closes the idle cursors, the ones in use are closed by their read when it ends
+     */
+    @Override
+    public void close() {
+        ArrayList<Cursor> cursors;
+        synchronized (this) {
+            mClosed = true;
+            cursors = new ArrayList<>(mCursors);
+            mCursors.clear();
+        }
+        for (Cursor cursor : cursors)
+            closeSilently(cursor);
+    }
+
+    private void closeSilently(Cursor cursor) {
+        try {
+            cursor.in.close();
+        } catch (IOException e) {
+            // silence
+        }
+    }
+}
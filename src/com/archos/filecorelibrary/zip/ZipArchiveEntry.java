@@ -0,0 +1,76 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import java.util.zip.ZipEntry;
+
+/**
+ * ZipEntry as read from the central directory, with what is needed to reach its data directly
+ */
+public class ZipArchiveEntry extends ZipEntry {
+
+    private static final int FLAG_ENCRYPTED = 1;
+
+    private int mCompressionMethod = STORED;
+    private int mFlags;
+    private long mLocalHeaderOffset = -1;
+    // resolved from the local header on first access
+    private volatile long mDataOffset = -1;
+
+    public ZipArchiveEntry(String name) {
+        super(name);
+    }
+
+    /**
+     * Raw method of the entry, not limited to STORED and DEFLATED as ZipEntry.getMethod() is
+     */
+    public int getCompressionMethod() {
+        return mCompressionMethod;
+    }
+
+    void setCompressionMethod(int method) {
+        mCompressionMethod = method;
+        if (method == STORED || method == DEFLATED)
+            setMethod(method);
+    }
+
+    void setFlags(int flags) {
+        mFlags = flags;
+    }
+
+    public boolean isEncrypted() {
+        return (mFlags & FLAG_ENCRYPTED) != 0;
+    }
+
+    /**
+     * @return offset of the local file header in the archive, -1 for directories only implied by the path of their content
+     */
+    public long getLocalHeaderOffset() {
+        return mLocalHeaderOffset;
+    }
+
+    void setLocalHeaderOffset(long offset) {
+        mLocalHeaderOffset = offset;
+    }
+
+    long getDataOffset() {
+        return mDataOffset;
+    }
+
+    void setDataOffset(long offset) {
+        mDataOffset = offset;
+    }
+}
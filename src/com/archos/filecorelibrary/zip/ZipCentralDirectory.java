@@ -0,0 +1,224 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of a zip archive (zip64 included) from a ZipSource, and locates the data of its entries.
+ * Only the end of the archive and the central directory itself are read, whatever the size of the archive.
+ */
+public class ZipCentralDirectory {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int EOCD_LENGTH = 22;
+    private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int ZIP64_EOCD_LOCATOR_LENGTH = 20;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_EOCD_LENGTH = 56;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int CENTRAL_HEADER_LENGTH = 46;
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int LOCAL_HEADER_LENGTH = 30;
+    private static final int MAX_COMMENT_LENGTH = 0xffff;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final int EXTENDED_TIMESTAMP_EXTRA_ID = 0x5455;
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+    private static final int CENTRAL_DIRECTORY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @return the entries of the archive, in central directory order
+     */
+    public static List<ZipArchiveEntry> read(ZipSource source) throws IOException {
+        long length = source.length();
+        // the end of central directory record is followed by a comment of up to 64KB
+        int tailLength = (int) Math.min(length, EOCD_LENGTH + MAX_COMMENT_LENGTH);
+        byte[] tail = new byte[tailLength];
+        readFully(source, length - tailLength, tail, 0, tailLength);
+        int eocd = -1;
+        for (int i = tailLength - EOCD_LENGTH; i >= 0; i--) {
+            if (getInt(tail, i) == EOCD_SIGNATURE && i + EOCD_LENGTH + getShort(tail, i + 20) <= tailLength) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0)
+            throw new ZipException("not a zip archive");
+        long eocdPosition = length - tailLength + eocd;
+        long entryCount = getShort(tail, eocd + 10);
+        long directorySize = getUnsignedInt(tail, eocd + 12);
+        long directoryOffset = getUnsignedInt(tail, eocd + 16);
+        // offsets are relative to the start of the zip data, which may be prefixed (e.g. self extracting archives)
+        long base = 0;
+        long locatorPosition = eocdPosition - ZIP64_EOCD_LOCATOR_LENGTH;
+        byte[] locator = new byte[ZIP64_EOCD_LOCATOR_LENGTH];
+        // the tail usually holds it already: on a network share each read behind the last one is a new request
+        if (eocd >= ZIP64_EOCD_LOCATOR_LENGTH)
+            System.arraycopy(tail, eocd - ZIP64_EOCD_LOCATOR_LENGTH, locator, 0, locator.length);
+        else if (locatorPosition >= 0)
+            readFully(source, locatorPosition, locator, 0, locator.length);
+        if (getInt(locator, 0) == ZIP64_EOCD_LOCATOR_SIGNATURE) {
+            byte[] zip64 = new byte[ZIP64_EOCD_LENGTH];
+            readFully(source, getLong(locator, 8), zip64, 0, zip64.length);
+            if (getInt(zip64, 0) != ZIP64_EOCD_SIGNATURE)
+                throw new ZipException("invalid zip64 end of central directory");
+            entryCount = getLong(zip64, 32);
+            directorySize = getLong(zip64, 40);
+            directoryOffset = getLong(zip64, 48);
+        } else {
+            base = eocdPosition - directorySize - directoryOffset;
+            if (base < 0)
+                throw new ZipException("invalid central directory offset");
+        }
+
+        ArrayList<ZipArchiveEntry> entries = new ArrayList<>((int) Math.min(entryCount, 1 << 16));
+        long directoryStart = base + directoryOffset;
+        long tailStart = length - tailLength;
+        InputStream in;
+        if (directoryStart >= tailStart && directoryStart + directorySize <= length)
+            in = new ByteArrayInputStream(tail, (int) (directoryStart - tailStart), (int) directorySize);
+        else
+            in = new BufferedInputStream(new ZipSourceInputStream(source, directoryStart, directoryStart + directorySize),
+                    CENTRAL_DIRECTORY_BUFFER_SIZE);
+        byte[] header = new byte[CENTRAL_HEADER_LENGTH];
+        for (long i = 0; i < entryCount; i++) {
+            readFully(in, header, CENTRAL_HEADER_LENGTH);
+            if (getInt(header, 0) != CENTRAL_HEADER_SIGNATURE)
+                throw new ZipException("invalid central directory header for entry " + i);
+            byte[] variable = new byte[getShort(header, 28) + getShort(header, 30) + getShort(header, 32)];
+            readFully(in, variable, variable.length);
+            entries.add(parseEntry(header, variable, base));
+        }
+        return entries;
+    }
+
+    private static ZipArchiveEntry parseEntry(byte[] header, byte[] variable, long base) throws ZipException {
+        int nameLength = getShort(header, 28);
+        int extraLength = getShort(header, 30);
+        // the zip spec says CP437 unless flagged UTF-8, but UTF-8 is what java.util.zip always assumed here
+        ZipArchiveEntry entry = new ZipArchiveEntry(new String(variable, 0, nameLength, StandardCharsets.UTF_8));
+        entry.setFlags(getShort(header, 8));
+        entry.setCompressionMethod(getShort(header, 10));
+        entry.setTime(dosToJavaTime(getShort(header, 14), getShort(header, 12)));
+        entry.setCrc(getUnsignedInt(header, 16));
+        long compressedSize = getUnsignedInt(header, 20);
+        long size = getUnsignedInt(header, 24);
+        long localHeaderOffset = getUnsignedInt(header, 42);
+        // extra fields: zip64 sizes/offset, and the unix modification time when present
+        int position = nameLength;
+        int end = nameLength + extraLength;
+        while (position + 4 <= end) {
+            int id = getShort(variable, position);
+            int dataLength = getShort(variable, position + 2);
+            int data = position + 4;
+            if (data + dataLength > end)
+                break;
+            if (id == ZIP64_EXTRA_ID) {
+                int field = data;
+                if (size == ZIP64_MAGIC && field + 8 <= data + dataLength) {
+                    size = getLong(variable, field);
+                    field += 8;
+                }
+                if (compressedSize == ZIP64_MAGIC && field + 8 <= data + dataLength) {
+                    compressedSize = getLong(variable, field);
+                    field += 8;
+                }
+                if (localHeaderOffset == ZIP64_MAGIC && field + 8 <= data + dataLength)
+                    localHeaderOffset = getLong(variable, field);
+            } else if (id == EXTENDED_TIMESTAMP_EXTRA_ID && dataLength >= 5 && (variable[data] & 1) != 0) {
+                entry.setTime(getUnsignedInt(variable, data + 1) * 1000);
+            }
+            position = data + dataLength;
+        }
+        if (size < 0 || compressedSize < 0)
+            throw new ZipException("invalid size for entry " + entry.getName());
+        entry.setSize(size);
+        entry.setCompressedSize(compressedSize);
+        entry.setLocalHeaderOffset(base + localHeaderOffset);
+        return entry;
+    }
+
+    /**
+     * @return offset of the first byte of entry data, read from its local header the first time
+     */
+    public static long getDataOffset(ZipSource source, ZipArchiveEntry entry) throws IOException {
+        long dataOffset = entry.getDataOffset();
+        if (dataOffset >= 0)
+            return dataOffset;
+        if (entry.getLocalHeaderOffset() < 0)
+            throw new ZipException(entry.getName() + " has no data");
+        byte[] header = new byte[LOCAL_HEADER_LENGTH];
+        readFully(source, entry.getLocalHeaderOffset(), header, 0, LOCAL_HEADER_LENGTH);
+        if (getInt(header, 0) != LOCAL_HEADER_SIGNATURE)
+            throw new ZipException("invalid local header for " + entry.getName());
+        // local name and extra field lengths may differ from the central directory ones
+        dataOffset = entry.getLocalHeaderOffset() + LOCAL_HEADER_LENGTH + getShort(header, 26) + getShort(header, 28);
+        entry.setDataOffset(dataOffset);
+        return dataOffset;
+    }
+
+    private static long dosToJavaTime(int date, int time) {
+        GregorianCalendar calendar = new GregorianCalendar(((date >> 9) & 0x7f) + 1980, ((date >> 5) & 0x0f) - 1, date & 0x1f,
+                (time >> 11) & 0x1f, (time >> 5) & 0x3f, (time << 1) & 0x3e);
+        return calendar.getTimeInMillis();
+    }
+
+    private static void readFully(ZipSource source, long position, byte[] buffer, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = source.read(position, buffer, offset, length);
+            if (read < 0)
+                throw new EOFException("unexpected end of archive");
+            position += read;
+            offset += read;
+            length -= read;
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(buffer, offset, length - offset);
+            if (read < 0)
+                throw new EOFException("unexpected end of central directory");
+            offset += read;
+        }
+    }
+
+    private static int getShort(byte[] b, int offset) {
+        return (b[offset] & 0xff) | (b[offset + 1] & 0xff) << 8;
+    }
+
+    private static int getInt(byte[] b, int offset) {
+        return getShort(b, offset) | getShort(b, offset + 2) << 16;
+    }
+
+    private static long getUnsignedInt(byte[] b, int offset) {
+        return getInt(b, offset) & 0xffffffffL;
+    }
+
+    private static long getLong(byte[] b, int offset) {
+        return getUnsignedInt(b, offset) | getUnsignedInt(b, offset + 4) << 32;
+    }
+}
@@ -0,0 +1,81 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Data of a stored entry read from its start: size and CRC-32 are checked at its end like ZipInputStream does.
+ * Skipping moves the source without reading it, the check is then given up.
+ */
+class ZipCheckedInputStream extends FilterInputStream {
+
+    private final ZipArchiveEntry mEntry;
+    private final CRC32 mCrc = new CRC32();
+    private long mPosition;
+    private boolean mChecking = true;
+
+    ZipCheckedInputStream(InputStream in, ZipArchiveEntry entry) {
+        super(in);
+        mEntry = entry;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (!mChecking)
+            return read;
+        if (read > 0) {
+            mCrc.update(b, off, read);
+            mPosition += read;
+        } else if (read < 0) {
+            mChecking = false;
+            check();
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        if (skipped > 0)
+            mChecking = false;
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void check() throws ZipException {
+        if (mEntry.getSize() >= 0 && mPosition != mEntry.getSize())
+            throw new ZipException("invalid entry size for " + mEntry.getName() + " (expected " + mEntry.getSize() + " but got " + mPosition + " bytes)");
+        if (mEntry.getCrc() != -1 && mCrc.getValue() != mEntry.getCrc())
+            throw new ZipException("invalid entry CRC for " + mEntry.getName() + " (expected 0x" + Long.toHexString(mEntry.getCrc())
+                    + " but got 0x" + Long.toHexString(mCrc.getValue()) + ")");
+    }
+}
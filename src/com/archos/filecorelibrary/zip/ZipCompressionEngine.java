@@ -18,19 +18,22 @@ import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
 
+import com.archos.filecorelibrary.FileEditor;
 import com.archos.filecorelibrary.FileEditorFactory;
+import com.archos.filecorelibrary.ListingCache;
 import com.archos.filecorelibrary.MetaFile2;
 import com.archos.filecorelibrary.OperationEngineListener;
 import com.archos.filecorelibrary.FileUtils;
+import com.archos.filecorelibrary.TreeWalker;
 
+import java.io.BufferedInputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 /**
  * Created by alexandre on 20/07/15.
@@ -39,7 +42,12 @@ public class ZipCompressionEngine {
     private final Handler mUiHandler;
     private final OperationEngineListener mListener;
     private CompressThread mCompressThread;
-    private boolean mHasToStop;
+    private volatile boolean mHasToStop;
+    private volatile TreeWalker mTreeWalker;
+    private volatile ZipWriter mZipWriter;
+    private int mParallelism = Runtime.getRuntime().availableProcessors();
+    private int mMaxInFlightBlocks = ZipWriter.DEFAULT_MAX_IN_FLIGHT_BLOCKS;
+    private ZipCompressionPolicy mPolicy = ZipCompressionPolicy.DEFAULT;
 
 
 
@@ -51,8 +59,30 @@ public class ZipCompressionEngine {
     }
 
     public void stop() {
-        mHasToStop = true;
+        abort();
+    }
+
+    /**
+     * Number of threads deflating in parallel, 1 to compress on the engine thread only
+     */
+    public void setParallelism(int parallelism) {
+        mParallelism = parallelism;
+    }
+
+    /**
+     * Bounds memory: at most that many blocks of ZipWriter.BLOCK_SIZE are read ahead of what has been written
+     */
+    public void setMaxInFlightBlocks(int maxInFlightBlocks) {
+        mMaxInFlightBlocks = maxInFlightBlocks;
+    }
+
+    /**
+     * How files are added: stored or deflated, and at which level. Defaults to ZipCompressionPolicy.DEFAULT
+     */
+    public void setCompressionPolicy(ZipCompressionPolicy policy) {
+        mPolicy = policy;
     }
+
     public void compress(List<MetaFile2> toCompress, Uri target){
         if(mCompressThread!=null&&mCompressThread.isAlive())
             return;
@@ -63,6 +93,12 @@ public class ZipCompressionEngine {
     }
     public void abort(){
         mHasToStop = true;
+        TreeWalker walker = mTreeWalker;
+        if (walker != null)
+            walker.cancel();
+        ZipWriter writer = mZipWriter;
+        if (writer != null)
+            writer.cancel();
     }
 
     private class CompressThread extends  Thread{
@@ -74,23 +110,24 @@ public class ZipCompressionEngine {
 
 
         private void getDirectoryInfo(MetaFile2 file) throws Exception {
-
-            List<MetaFile2> files = file.getRawListerInstance().getFileList();
-            if (files != null) {
-
-                for (MetaFile2 f : files) {
-                    if(mHasToStop)
-                        return;
-                    mToCompress.add(f);
-
-                    if (f.isDirectory()) {
-                        getDirectoryInfo(f);
-                    } else {
-                        mTotalSize += f.length();
+            TreeWalker walker = new TreeWalker(new TreeWalker.Visitor() {
+                @Override
+                public List<MetaFile2> onDirectoryListed(MetaFile2 directory, List<MetaFile2> files) {
+                    if (files == null || mHasToStop)
+                        return null;
+                    List<MetaFile2> subdirectories = new ArrayList<>();
+                    for (MetaFile2 f : files) {
+                        mToCompress.add(f);
+                        if (f.isDirectory())
+                            subdirectories.add(f);
                     }
+                    return subdirectories;
                 }
-
-            }
+            });
+            mTreeWalker = walker;
+            walker.walk(file);
+            mTreeWalker = null;
+            mTotalSize += walker.getTotalSize();
         }
 
         public void run(){
@@ -119,10 +156,14 @@ public class ZipCompressionEngine {
                     }
                 });
 
-                ZipEntry entry;
-                String path;
-                InputStream fis;
-                ZipOutputStream zos = new ZipOutputStream(FileEditorFactory.getFileEditorForUrl(mTarget, null).getOutputStream());
+                FileEditor targetEditor = FileEditorFactory.getFileEditorForUrl(mTarget, null);
+                ZipWriter writer = new ZipWriter(targetEditor.getOutputStream(), mParallelism, mMaxInFlightBlocks);
+                mZipWriter = writer;
+                try {
+                    writer.setPositionalWriter(targetEditor.getPositionalWriter());
+                } catch (Exception e) {
+                    // stored entries will get their CRC from a first read
+                }
                 int i =0;
                 for(MetaFile2 mf2 : mToCompress) {
                     final int progress = i;
@@ -134,31 +175,20 @@ public class ZipCompressionEngine {
                     });
 
                     if (mf2.isDirectory()) {
-                        entry = new ZipEntry(mf2.getUri().toString().substring(mRootOffset).concat("/"));
-                        entry.setTime(mf2.lastModified());
-                        zos.putNextEntry(entry);
-                        zos.closeEntry();
+                        writer.putDirectory(mf2.getUri().toString().substring(mRootOffset), mf2.lastModified());
                     } else {
-                        entry = new ZipEntry(mf2.getUri().toString().substring(mRootOffset));
-                        int count = 0;
-                        byte[] bytes = new byte[1024];
-                        fis = mf2.getFileEditorInstance(null).getInputStream();
-                        entry.setSize(mf2.length());
-                        entry.setTime(mf2.lastModified());
-                        zos.putNextEntry(entry);
-
-                        while ((count = fis.read(bytes)) > 0&&!mHasToStop) {
-                            zos.write(bytes, 0, count);
-                        }
-                        zos.closeEntry();
-                        closeSilently(fis);
+                        addFile(writer, mf2, mf2.getUri().toString().substring(mRootOffset));
                     }
                     i++;
                     if(mHasToStop)
                         break;
                 }
                 if(mHasToStop){
+                    writer.cancel();
+                    closeSilently(writer);
+                    mZipWriter = null;
                     FileEditorFactory.getFileEditorForUrl(mTarget, null).delete(); // delete zip
+                    ListingCache.getInstance().onFileChanged(mTarget);
                     mUiHandler.post(new Runnable() {
                         @Override
                         public void run() {
@@ -168,15 +198,25 @@ public class ZipCompressionEngine {
                     return;
 
                 }
+                // central directory written before reporting the end, the archive is complete when onEnd() is called
+                writer.close();
+                mZipWriter = null;
+                // before onEnd(): a listener refreshing the target directory must not get the listing cached before the archive
+                ListingCache.getInstance().onFileChanged(mTarget);
                 mUiHandler.post(new Runnable() {
                     @Override
                     public void run() {
                         mListener.onEnd();
                     }
                 });
-
-                closeSilently(zos);
             } catch (final Exception e) {
+                ZipWriter writer = mZipWriter;
+                if (writer != null) {
+                    writer.cancel();
+                    closeSilently(writer);
+                    mZipWriter = null;
+                }
+                ListingCache.getInstance().onFileChanged(mTarget);
                 mUiHandler.post(new Runnable() {
                     @Override
                     public void run() {
@@ -187,6 +227,65 @@ public class ZipCompressionEngine {
             }
 
         }
+        private void addFile(ZipWriter writer, MetaFile2 mf2, String name) throws Exception {
+            ZipCompressionPolicy policy = mPolicy;
+            InputStream in = mf2.getFileEditorInstance(null).getInputStream();
+            try {
+                byte[] sample = null;
+                int sampleLength = 0;
+                if (policy.needsSample(name)) {
+                    in = new BufferedInputStream(in, ZipCompressionPolicy.SAMPLE_SIZE);
+                    in.mark(ZipCompressionPolicy.SAMPLE_SIZE);
+                    sample = new byte[ZipCompressionPolicy.SAMPLE_SIZE];
+                    sampleLength = readFully(in, sample);
+                    in.reset();
+                }
+                if (policy.getMethod(name, sample, sampleLength) == ZipEntry.DEFLATED) {
+                    // read in blocks deflated by the writer workers while the next ones are being read
+                    writer.setLevel(policy.getLevel());
+                    writer.putDeflated(name, mf2.lastModified(), mf2.length(), in);
+                } else if (writer.canPatchHeaders()) {
+                    writer.putStored(name, mf2.lastModified(), mf2.length(), in);
+                } else if (sample != null && sampleLength < sample.length) {
+                    // whole file already in the sample
+                    CRC32 crc = new CRC32();
+                    crc.update(sample, 0, sampleLength);
+                    writer.putStored(name, mf2.lastModified(), sampleLength, crc.getValue(), in);
+                } else {
+                    // the local header cannot be rewritten: CRC from a first read of the file
+                    closeSilently(in);
+                    in = null;
+                    long crc = computeCrc(mf2);
+                    in = mf2.getFileEditorInstance(null).getInputStream();
+                    writer.putStored(name, mf2.lastModified(), mf2.length(), crc, in);
+                }
+            } finally {
+                closeSilently(in);
+            }
+        }
+
+        private long computeCrc(MetaFile2 mf2) throws Exception {
+            CRC32 crc = new CRC32();
+            InputStream in = mf2.getFileEditorInstance(null).getInputStream();
+            try {
+                byte[] buffer = new byte[ZipWriter.BLOCK_SIZE];
+                int count;
+                while ((count = in.read(buffer)) > 0 && !mHasToStop)
+                    crc.update(buffer, 0, count);
+            } finally {
+                closeSilently(in);
+            }
+            return crc.getValue();
+        }
+
+        private int readFully(InputStream in, byte[] buffer) throws IOException {
+            int length = 0;
+            int count;
+            while (length < buffer.length && (count = in.read(buffer, length, buffer.length - length)) > 0)
+                length += count;
+            return length;
+        }
+
         public void set(List<MetaFile2> toCompress, Uri target){
             mToCompress = toCompress;
             mTarget = target;
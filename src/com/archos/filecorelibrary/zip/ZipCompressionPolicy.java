@@ -0,0 +1,133 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import com.archos.filecorelibrary.MimeUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Decides how each file goes into an archive: STORED when deflating it is not worth the CPU (media and archives
+ * are already compressed), DEFLATED at the job level otherwise.
+ * The type is guessed from the extension through MimeUtils; files of unknown type are decided on a sample of their first bytes.
+ */
+public class ZipCompressionPolicy {
+
+    public enum Mode {
+        /** by type, sampling unknown ones */
+        AUTO,
+        DEFLATE_ALL,
+        STORE_ALL
+    }
+
+    public static final ZipCompressionPolicy DEFAULT = new ZipCompressionPolicy(Mode.AUTO, Deflater.DEFAULT_COMPRESSION);
+
+    public static final int SAMPLE_SIZE = 64 * 1024;
+    // a sample that does not shrink by at least this much is stored
+    private static final double MIN_SAMPLE_GAIN = 0.05;
+
+    // media types that are not compressed
+    private static final HashSet<String> UNCOMPRESSED_MEDIA = new HashSet<>(Arrays.asList(
+            "audio/x-wav", "audio/x-aiff", "image/bmp", "image/x-ms-bmp", "image/tiff", "image/svg+xml",
+            "image/x-portable-anymap", "image/x-portable-bitmap", "image/x-portable-graymap", "image/x-portable-pixmap"));
+
+    // non media types that are already compressed
+    private static final HashSet<String> COMPRESSED_APPLICATIONS = new HashSet<>(Arrays.asList(
+            "application/zip", "application/rar", "application/ogg", "application/x-flac", "application/x-gtar",
+            "application/vnd.android.package-archive", "application/vnd.google-earth.kmz", "application/x-apple-diskimage",
+            "application/x-debian-package", "application/x-lha", "application/x-lzh", "application/x-stuffit",
+            "application/x-shockwave-flash", "application/x-ms-wmz"));
+    // zip based document formats
+    private static final String[] COMPRESSED_APPLICATION_PREFIXES = {
+            "application/vnd.openxmlformats-officedocument.", "application/vnd.oasis.opendocument." };
+
+    private final Mode mMode;
+    private final int mLevel;
+
+    /**
+     * @param level deflate level of the DEFLATED entries, Deflater.DEFAULT_COMPRESSION or 1 (fastest) to 9 (smallest)
+     */
+    public ZipCompressionPolicy(Mode mode, int level) {
+        mMode = mode;
+        mLevel = level;
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * @return true if getMethod() needs the first bytes of the file to decide
+     */
+    public boolean needsSample(String name) {
+        return mMode == Mode.AUTO && getMethodByType(name) < 0;
+    }
+
+    /**
+     * @param sample first bytes of the file, only looked at when needsSample()
+     * @return ZipEntry.STORED or ZipEntry.DEFLATED
+     */
+    public int getMethod(String name, byte[] sample, int sampleLength) {
+        if (mMode == Mode.STORE_ALL || mLevel == Deflater.NO_COMPRESSION)
+            return ZipEntry.STORED;
+        if (mMode == Mode.DEFLATE_ALL)
+            return ZipEntry.DEFLATED;
+        int method = getMethodByType(name);
+        if (method >= 0)
+            return method;
+        return sample != null && sampleLength > 0 && !isCompressible(sample, sampleLength) ? ZipEntry.STORED : ZipEntry.DEFLATED;
+    }
+
+    /**
+     * @return -1 when the type does not tell
+     */
+    private static int getMethodByType(String name) {
+        String mimeType = MimeUtils.guessMimeTypeFromExtension(MimeUtils.getExtension(name));
+        if (mimeType == null)
+            return -1;
+        if (mimeType.startsWith("video/") || mimeType.startsWith("audio/") || mimeType.startsWith("image/"))
+            return UNCOMPRESSED_MEDIA.contains(mimeType) ? ZipEntry.DEFLATED : ZipEntry.STORED;
+        if (mimeType.startsWith("text/"))
+            return ZipEntry.DEFLATED;
+        if (COMPRESSED_APPLICATIONS.contains(mimeType))
+            return ZipEntry.STORED;
+        for (String prefix : COMPRESSED_APPLICATION_PREFIXES)
+            if (mimeType.startsWith(prefix))
+                return ZipEntry.STORED;
+        return -1;
+    }
+
+    /**
+     * Fastest deflate of the sample: good enough to tell random looking data
+     */
+    private static boolean isCompressible(byte[] sample, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+            byte[] output = new byte[length];
+            int compressed = 0;
+            while (!deflater.finished() && compressed < length)
+                compressed += deflater.deflate(output, compressed, output.length - compressed);
+            return deflater.finished() && compressed < length * (1 - MIN_SAMPLE_GAIN);
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -12,6 +12,7 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
+
 package com.archos.filecorelibrary.zip;
 
 import android.content.Context;
@@ -19,32 +20,65 @@ import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
 
-import com.archos.filecorelibrary.CopyCutEngine;
+import com.archos.filecorelibrary.DestinationNameIndex;
+import com.archos.filecorelibrary.FileEditor;
+import com.archos.filecorelibrary.FileEditorFactory;
+import com.archos.filecorelibrary.FileUtils;
+import com.archos.filecorelibrary.ListingCache;
+import com.archos.filecorelibrary.MediaScanBatcher;
 import com.archos.filecorelibrary.MetaFile2;
 import com.archos.filecorelibrary.OperationEngineListener;
+import com.archos.filecorelibrary.R;
+import com.archos.filecorelibrary.RawListerFactory;
+import com.archos.filecorelibrary.TransferTuning;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Created by alexandre on 20/07/15.
+ *
+ * Everything to extract is taken from the central directory index in one go, nested directories included.
+ * Each entry is then read straight from its offset in the archive: directories are created first, files are
+ * written in parallel since their targets are independent.
  */
 public class ZipExtractionEngine {
+    private static final Logger log = LoggerFactory.getLogger(ZipExtractionEngine.class);
+
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int MIN_BUFFER_SIZE = 256 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 200;
+
     private final Handler mUiHandler;
     private final OperationEngineListener mListener;
     private final Context mContext;
+    private final String mFirstCopyPattern;
+    private final String mCopyPatternLeft;
+    private final String mCopyPatternRight;
     private ExtractThread mExtractThread;
-    private boolean mHasToStop;
-    private CopyCutEngine mCopyEngine;
+    private volatile boolean mHasToStop;
+    private int mParallelism = DEFAULT_PARALLELISM;
 
 
     public void stop() {
         mHasToStop = true;
-        if(mCopyEngine!=null)
-            mCopyEngine.stop();
     }
 
 
@@ -52,8 +86,19 @@ public class ZipExtractionEngine {
         mListener = listener;
         mContext = context;
         mUiHandler = new Handler(Looper.getMainLooper());
+        String fileCopyString = context.getString(R.string.file_copy_pattern);
+        mFirstCopyPattern = " (" + fileCopyString + ")";
+        mCopyPatternLeft = " (" + fileCopyString + " ";
+        mCopyPatternRight = ")";
+    }
 
+    /**
+     * Number of files written at once, at most RemoteZipSource.MAX_CURSORS for archives on a network share.
+     */
+    public void setParallelism(int parallelism) {
+        mParallelism = parallelism;
     }
+
     public void extract(List<MetaFile2> toCompress, Uri target){
         if(mExtractThread !=null&& mExtractThread.isAlive())
             return;
@@ -66,21 +111,112 @@ public class ZipExtractionEngine {
         mHasToStop = true;
     }
 
+    private static final class Item {
+        final ZipIndex.Archive archive;
+        final ZipArchiveEntry entry;
+        final Uri target;
+        final int rootIndex;
+        Item(ZipIndex.Archive archive, ZipArchiveEntry entry, Uri target, int rootIndex) {
+            this.archive = archive;
+            this.entry = entry;
+            this.target = target;
+            this.rootIndex = rootIndex;
+        }
+    }
+
     private class ExtractThread extends  Thread{
         private List<MetaFile2> mToExtract;
         private Uri mTarget;
+        private final List<Item> mDirectories = new ArrayList<>();
+        private final List<Item> mFiles = new ArrayList<>();
+        private final List<MetaFile2> mEntries = new ArrayList<>();
+        // kept open until the end of the job whatever is browsed meanwhile, released in run()
+        private final List<ZipIndex.Archive> mArchives = new ArrayList<>();
+        private boolean mHasRemoteArchive;
+        private long mTotalSize;
+        private AtomicLong mTotalProgress;
+        private AtomicLongArray mRootProgress;
+        private long mStartTime;
+        private long mLastProgressTime;
 
+        /**
+         * Adds every entry below source (the archive itself, a directory or a single file inside it)
+         */
+        private void addEntries(MetaFile2 source, int rootIndex, DestinationNameIndex targetNames) throws Exception {
+            Uri zipUri = ZipUtils.isZipScheme(source.getUri().getScheme()) ? source.getUri() : ZipUtils.getZipUri(source.getUri());
+            ZipIndex.Archive archive = ZipIndex.getInstance().acquire(zipUri);
+            mArchives.add(archive);
+            Uri archiveZipUri = ZipUtils.getZipUri(ZipUtils.getArchiveUri(zipUri));
+            mHasRemoteArchive |= ZipUtils.isRemoteZipUri(zipUri);
+            String name = ZipUtils.getEntryName(zipUri);
+            List<ZipArchiveEntry> entries;
+            String base;
+            if (name.isEmpty()) {
+                base = "";
+                entries = archive.listTree(base);
+            } else {
+                ZipArchiveEntry entry = archive.getEntry(name);
+                if (entry == null)
+                    throw new FileNotFoundException(name + " not found in " + archive.getPath());
+                if (entry.isDirectory()) {
+                    // the directory itself is extracted too
+                    String path = entry.getName().substring(0, entry.getName().length() - 1);
+                    base = path.substring(0, path.lastIndexOf('/') + 1);
+                    entries = new ArrayList<>();
+                    entries.add(entry);
+                    List<ZipArchiveEntry> content = archive.listTree(entry.getName());
+                    if (content != null)
+                        entries.addAll(content);
+                } else {
+                    base = name.substring(0, name.lastIndexOf('/') + 1);
+                    entries = Collections.singletonList(entry);
+                }
+            }
+            if (entries == null)
+                return;
+            // top level names of this source -> name given in the target directory
+            HashMap<String, String> topLevelNames = new HashMap<>();
+            for (ZipArchiveEntry entry : entries) {
+                String relative = entry.getName().substring(base.length());
+                if (relative.endsWith("/"))
+                    relative = relative.substring(0, relative.length() - 1);
+                String[] segments = relative.split("/");
+                if (!isSafe(segments)) {
+                    // would be written outside of the target directory
+                    log.warn("skipping entry " + entry.getName() + " of " + archive.getPath());
+                    continue;
+                }
+                String topLevelName = topLevelNames.get(segments[0]);
+                if (topLevelName == null) {
+                    topLevelName = targetNames.reserve(segments[0]);
+                    topLevelNames.put(segments[0], topLevelName);
+                }
+                Uri target = FileUtils.buildChildUri(mTarget, topLevelName);
+                for (int i = 1; i < segments.length; i++)
+                    target = Uri.withAppendedPath(target, segments[i]);
+                Item item = new Item(archive, entry, target, rootIndex);
+                if (entry.isDirectory()) {
+                    mDirectories.add(item);
+                } else {
+                    mFiles.add(item);
+                    mTotalSize += entry.getSize();
+                }
+                mEntries.add(new ZipFile2(archiveZipUri, entry));
+            }
+        }
 
-
-        private List<MetaFile2> listZipFile(MetaFile2 file) throws Exception {
-
-            ZipRawLister rawLister = new ZipRawLister(file.getUri());
-             return rawLister.getFileList();
+        private boolean isSafe(String[] segments) {
+            for (String segment : segments) {
+                if (segment.isEmpty() || ".".equals(segment) || "..".equals(segment) || segment.indexOf('\\') >= 0)
+                    return false;
+            }
+            return true;
         }
 
         public void run(){
             if(mTarget==null|| mToExtract ==null)
                 return;
+            final List<Uri> partial = Collections.synchronizedList(new ArrayList<Uri>());
             try {
                 mUiHandler.post(new Runnable() {
                     @Override
@@ -88,30 +224,65 @@ public class ZipExtractionEngine {
                         mListener.onStart();
                     }
                 });
-                //retrieving full list
-                List <MetaFile2> toCompressTmp = new ArrayList<>(mToExtract);
-                final List <MetaFile2> toCopy = new ArrayList<>();
-                for(MetaFile2 mf2 : toCompressTmp){
-                    List<MetaFile2> mfs2= listZipFile(mf2);
-                    if(mfs2!=null)
-                        toCopy.addAll(mfs2);
-
-                }
+                FileEditor targetDirectory = FileEditorFactory.getFileEditorForUrl(mTarget, mContext);
+                if (!targetDirectory.exists())
+                    targetDirectory.mkdir();
+                // extracted entries do not overwrite what is already there, like a copy
+                List<MetaFile2> inTarget = RawListerFactory.getRawListerForUrl(mTarget, false).getFileList();
+                DestinationNameIndex targetNames = new DestinationNameIndex(inTarget, mFirstCopyPattern, mCopyPatternLeft, mCopyPatternRight);
+                for (int i = 0; i < mToExtract.size() && !mHasToStop; i++)
+                    addEntries(mToExtract.get(i), i, targetNames);
 
+                final List<MetaFile2> entries = mEntries;
+                final long totalSize = mTotalSize;
+                final int fileCount = mFiles.size();
                 mUiHandler.post(new Runnable() {
                     @Override
                     public void run() {
-                        mListener  .onFilesListUpdate(toCopy, toCopy);
+                        mListener.onFilesListUpdate(entries, mToExtract);
+                        mListener.onTotalSizeUpdate(totalSize, fileCount, true);
                     }
                 });
-                mCopyEngine = new CopyCutEngine(mContext);
-                mCopyEngine.setListener(mListener);
-                mCopyEngine.copy(toCopy, mTarget, false);
-
-
 
+                // parents come before their content in the index, created in that order
+                for (Item directory : mDirectories) {
+                    if (mHasToStop)
+                        break;
+                    FileEditor editor = FileEditorFactory.getFileEditorForUrl(directory.target, mContext);
+                    if (!editor.exists())
+                        editor.mkdir();
+                }
 
+                Exception error = null;
+                if (!mHasToStop)
+                    error = extractFiles(partial);
+                if (error != null)
+                    throw error;
+                if (mHasToStop) {
+                    deleteSilently(partial);
+                    ListingCache.getInstance().invalidate(mTarget);
+                    mUiHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            mListener.onCanceled();
+                        }
+                    });
+                    return;
+                }
+                if (FileUtils.isLocal(mTarget))
+                    MediaScanBatcher.getInstance(mContext).flush();
+                // before onEnd(): a listener refreshing the target must not get the listing cached before the extraction
+                ListingCache.getInstance().invalidate(mTarget);
+                mUiHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mListener.onEnd();
+                    }
+                });
             } catch (final Exception e) {
+                mHasToStop = true;
+                deleteSilently(partial);
+                ListingCache.getInstance().invalidate(mTarget);
                 mUiHandler.post(new Runnable() {
                     @Override
                     public void run() {
@@ -119,9 +290,126 @@ public class ZipExtractionEngine {
                     }
                 });
                 e.printStackTrace();
+            } finally {
+                for (ZipIndex.Archive archive : mArchives)
+                    archive.release();
+                mArchives.clear();
             }
 
         }
+
+        /**
+         * Files being written are listed in partial until complete, they are deleted when stopped or on error
+         * @return the first error, the other files being stopped then
+         */
+        private Exception extractFiles(final List<Uri> partial) throws InterruptedException {
+            mTotalProgress = new AtomicLong();
+            mRootProgress = new AtomicLongArray(mToExtract.size());
+            mStartTime = System.currentTimeMillis();
+            // a remote archive keeps a few cursors only, one per entry read at once
+            int parallelism = mHasRemoteArchive ? Math.min(RemoteZipSource.MAX_CURSORS, Math.max(1, mParallelism)) : Math.max(1, mParallelism);
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, Math.max(1, mFiles.size())));
+            try {
+                List<Future<Void>> futures = new ArrayList<>();
+                for (int i = 0; i < mFiles.size(); i++) {
+                    final Item item = mFiles.get(i);
+                    final int currentFile = i;
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            if (!mHasToStop)
+                                extractFile(item, currentFile, partial);
+                            return null;
+                        }
+                    }));
+                }
+                Exception error = null;
+                for (Future<Void> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        if (error == null) {
+                            mHasToStop = true;
+                            error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                        }
+                    }
+                }
+                return error;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private void extractFile(final Item item, final int currentFile, List<Uri> partial) throws Exception {
+            FileEditor targetEditor = FileEditorFactory.getFileEditorForUrl(item.target, mContext);
+            InputStream in = null;
+            OutputStream out = null;
+            long position = 0;
+            try {
+                in = item.archive.getInputStream(item.entry);
+                out = targetEditor.getOutputStream();
+                partial.add(item.target);
+                byte[] buffer = new byte[Math.max(MIN_BUFFER_SIZE, TransferTuning.getParameters(item.target).bufferSize)];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    if (mHasToStop)
+                        return;
+                    out.write(buffer, 0, count);
+                    position += count;
+                    onProgress(currentFile, position, item.rootIndex, count, false);
+                }
+                out.close();
+                out = null;
+                partial.remove(item.target);
+            } finally {
+                closeSilently(in);
+                closeSilently(out);
+            }
+            onProgress(currentFile, position, item.rootIndex, 0, true);
+            if (FileUtils.isLocal(item.target))
+                MediaScanBatcher.getInstance(mContext).add(item.target);
+            mUiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onSuccess(item.target);
+                }
+            });
+        }
+
+        /**
+         * Shared by the workers, posted at most every PROGRESS_INTERVAL_MS unless force
+         */
+        private void onProgress(final int currentFile, final long position, final int rootIndex, long count, boolean force) {
+            final long rootProgress = mRootProgress.addAndGet(rootIndex, count);
+            final long totalProgress = mTotalProgress.addAndGet(count);
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                if (!force && now - mLastProgressTime < PROGRESS_INTERVAL_MS)
+                    return;
+                mLastProgressTime = now;
+            }
+            long elapsedTime = now - mStartTime;
+            final double currentSpeed = elapsedTime > 0 ? 1000.0 * totalProgress / elapsedTime : -1.0;
+            mUiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    mListener.onProgress(currentFile, position, rootIndex, rootProgress, totalProgress, currentSpeed);
+                }
+            });
+        }
+
+        private void deleteSilently(List<Uri> partial) {
+            synchronized (partial) {
+                for (Uri uri : partial) {
+                    try {
+                        FileEditorFactory.getFileEditorForUrl(uri, mContext).delete();
+                    } catch (Exception e) {
+                        log.warn("could not delete partial file " + uri, e);
+                    }
+                }
+            }
+        }
+
         public void set(List<MetaFile2> toCompress, Uri target){
             mToExtract = toCompress;
             mTarget = target;
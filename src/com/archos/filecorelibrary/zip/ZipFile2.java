@@ -40,6 +40,8 @@ public class ZipFile2 extends MetaFile2 {
     private final long mLength;
     private final boolean mIsFile;
     private final String mPath;
+    // scheme and authority of the uri: "zip://" for local archives, "zip+smb://server" etc. for remote ones
+    private final String mUriPrefix;
 
     /**
      * This method does access the actual storage to get data about the file
@@ -49,6 +51,7 @@ public class ZipFile2 extends MetaFile2 {
             throw new IllegalArgumentException("file must not be null");
 
         mPath = removeFileSlashSlash(file.getAbsolutePath());
+        mUriPrefix = "zip://";
         mLength = file.length();
         mIsFile = file.isFile();
         mLastModified = file.lastModified();
@@ -60,6 +63,24 @@ public class ZipFile2 extends MetaFile2 {
             zipPath += "/";
        
         mPath = zipPath+entry.getName();
+        mUriPrefix = "zip://";
+        mLength = entry.getSize();
+        mIsFile = !entry.isDirectory();
+        mLastModified = entry.getTime();
+    }
+
+    /**
+     * @param zipUri zip uri of the archive (see ZipUtils.getZipUri()), local or remote
+     */
+    public ZipFile2(Uri zipUri, ZipEntry entry) {
+        if (entry == null)
+            throw new IllegalArgumentException("file must not be null");
+        String zipPath = zipUri.getPath();
+        if(!zipPath.endsWith("/"))
+            zipPath += "/";
+
+        mPath = zipPath+entry.getName();
+        mUriPrefix = zipUri.getScheme() + "://" + (zipUri.getEncodedAuthority() != null ? zipUri.getEncodedAuthority() : "");
         mLength = entry.getSize();
         mIsFile = !entry.isDirectory();
         mLastModified = entry.getTime();
@@ -110,7 +131,7 @@ public class ZipFile2 extends MetaFile2 {
 
     @Override
     public Uri getUri() {
-        return Uri.parse("zip://"+mPath);
+        return Uri.parse(getUriPrefix()+mPath);
     }
 
     @Override
@@ -125,7 +146,12 @@ public class ZipFile2 extends MetaFile2 {
 
     @Override
     public boolean isRemote() {
-        return false;
+        return !"zip://".equals(getUriPrefix());
+    }
+
+    private String getUriPrefix() {
+        // null when deserialized from a version that only knew local archives
+        return mUriPrefix != null ? mUriPrefix : "zip://";
     }
 
     @Override
@@ -16,7 +16,8 @@ package com.archos.filecorelibrary.zip;
 
 import android.content.Context;
 import android.net.Uri;
-import android.util.Log;
+
+import com.archos.environment.ArchosUtils;
 
 import com.archos.filecorelibrary.FileEditor;
 import com.archos.filecorelibrary.FileEditorFactory;
@@ -25,13 +26,10 @@ import com.archos.filecorelibrary.localstorage.LocalStorageFileEditor;
 
 import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -64,38 +62,53 @@ public class ZipFileEditor extends FileEditor {
 
     @Override
     public InputStream getInputStream() throws Exception {
-        ZipInputStream zis = null;
-        FileInputStream fis = null;
-        BufferedInputStream buf = null;
-        String toTest = ZipUtils.getZipPathFromUri(mUri);
-
-        fis = new FileInputStream(new File(toTest));
-        buf = new BufferedInputStream(fis);
-        zis = new ZipInputStream(buf);
-        String path = mUri.getPath();
-        String remains ="";
-        Log.d("zipdebug", "mUri " + mUri);
-        if(path.length()>toTest.length()+1)
-            remains = path.substring(toTest.length()+1);//remove first "/"
-        if(remains.equals(""))// input is on the whole file
-            return zis;
-        ZipEntry entry;
-        while((entry=zis.getNextEntry())!=null){
-            Log.d("zipdebug", "name " + entry.getName());
-            Log.d("zipdebug","remains "+remains);
-            if(entry.getName().startsWith(remains)||remains.equals("")){
-                String name = entry.getName().substring(remains.length());
-                Log.d("zipdebug","input found");
-                    return zis;
-
-            }
+        String remains = ZipUtils.getEntryName(mUri);
+        if(remains.equals("")) {// input is on the whole file
+            return new ZipInputStream(new BufferedInputStream(getArchiveEditor().getInputStream()));
         }
-        return null;
+        // direct access to the entry through the cached central directory instead of scanning the archive
+        ZipIndex.Archive archive = ZipIndex.getInstance().get(mUri);
+        ZipEntry entry = archive.getEntry(remains);
+        if (entry == null || entry.isDirectory())
+            return null;
+        return archive.getInputStream(entry);
     }
 
+    /**
+     * Seeking is direct for stored entries (e.g. videos in uncompressed archives), skip based for deflated ones
+     */
     @Override
     public InputStream getInputStream(long from) throws Exception {
-        return getInputStream();
+        String remains = ZipUtils.getEntryName(mUri);
+        if(remains.equals(""))
+            return getInputStream();
+        ZipIndex.Archive archive = ZipIndex.getInstance().get(mUri);
+        ZipEntry entry = archive.getEntry(remains);
+        if (entry == null || entry.isDirectory())
+            return null;
+        return archive.getInputStream(entry, from);
+    }
+
+    @Override
+    public long length() throws Exception {
+        String remains = ZipUtils.getEntryName(mUri);
+        if (remains.equals("")) {
+            if (!ZipUtils.isRemoteZipUri(mUri))
+                return new File(ZipUtils.getZipPathFromUri(mUri)).length();
+            return getArchiveEditor().length();
+        }
+        ZipEntry entry = ZipIndex.getInstance().get(mUri).getEntry(remains);
+        return entry != null ? entry.getSize() : -1;
+    }
+
+    /**
+     * editor of the archive file itself, local or on a network share
+     */
+    private FileEditor getArchiveEditor() {
+        Uri archiveUri = ZipUtils.getArchiveUri(mUri);
+        if (!ZipUtils.isRemoteZipUri(mUri))
+            return new LocalStorageFileEditor(archiveUri, null);
+        return FileEditorFactory.getFileEditorForUrl(archiveUri, ArchosUtils.getGlobalContext());
     }
 
     @Override
@@ -120,6 +133,12 @@ public class ZipFileEditor extends FileEditor {
 
     @Override
     public boolean exists() {
-        return false;
+        if (ZipUtils.getEntryName(mUri).equals(""))
+            return getArchiveEditor().exists();
+        try {
+            return ZipIndex.getInstance().get(mUri).getEntry(ZipUtils.getEntryName(mUri)) != null;
+        } catch (IOException e) {
+            return false;
+        }
     }
 }
@@ -0,0 +1,405 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.archos.filecorelibrary.zip;
+
+import android.net.Uri;
+
+import com.archos.filecorelibrary.MetaFile2;
+import com.archos.filecorelibrary.MetaFile2Factory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Central directories of the zip archives being browsed, parsed once into a directory -> children tree.
+ * The most recently used archives are kept open; an archive is parsed again when its size or date changes.
+ * Directories only implied by the path of their content get an entry of their own.
+ * Archives on network shares (zip+scheme uris) are read through range reads, see RemoteZipSource.
+ */
+public class ZipIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ZipIndex.class);
+
+    private static final int MAX_OPEN_ARCHIVES = 4;
+    // size and date of a remote archive cost a round trip: not checked again before that
+    private static final long REMOTE_CHECK_INTERVAL_MS = 10000;
+
+    private static final ZipIndex sInstance = new ZipIndex();
+
+    // access ordered: eldest is the least recently used
+    private final LinkedHashMap<String, Archive> mArchives = new LinkedHashMap<>(MAX_OPEN_ARCHIVES + 1, 0.75f, true);
+
+    public static ZipIndex getInstance() {
+        return sInstance;
+    }
+
+    private ZipIndex() {}
+
+    /**
+     * @param zipUri zip uri of the archive or of one of its entries, local or remote
+     */
+    public Archive get(Uri zipUri) throws IOException {
+        if (!ZipUtils.isRemoteZipUri(zipUri))
+            return get(ZipUtils.getZipPathFromUri(zipUri));
+        Uri archiveUri = ZipUtils.getArchiveUri(zipUri);
+        String key = archiveUri.toString();
+        synchronized (mArchives) {
+            Archive archive = mArchives.get(key);
+            if (archive != null && System.currentTimeMillis() - archive.mCheckTime < REMOTE_CHECK_INTERVAL_MS)
+                return archive;
+        }
+        MetaFile2 metaFile;
+        try {
+            metaFile = MetaFile2Factory.getMetaFileForUrl(archiveUri);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("cannot reach " + archiveUri, e);
+        }
+        if (metaFile == null || !metaFile.isFile())
+            throw new FileNotFoundException(archiveUri.toString());
+        return get(key, archiveUri, metaFile.length(), metaFile.lastModified());
+    }
+
+    /**
+     * Same as get(), the archive staying open until Archive.release() even if it is evicted meanwhile:
+     * for callers keeping it across many reads, e.g. an extraction job
+     */
+    public Archive acquire(Uri zipUri) throws IOException {
+        while (true) {
+            Archive archive = get(zipUri);
+            // closed by an eviction since get() returned: it is not indexed anymore, next get() parses it again
+            if (archive.tryAcquire())
+                return archive;
+        }
+    }
+
+    /**
+     * @param zipPath local path of the archive
+     */
+    public Archive get(String zipPath) throws IOException {
+        File file = new File(zipPath);
+        return get(zipPath, null, file.length(), file.lastModified());
+    }
+
+    /**
+     * @param remoteUri null for local archives
+     */
+    private Archive get(String key, Uri remoteUri, long length, long lastModified) throws IOException {
+        synchronized (mArchives) {
+            Archive archive = mArchives.get(key);
+            if (archive != null && archive.mLength == length && archive.mLastModified == lastModified) {
+                archive.mCheckTime = System.currentTimeMillis();
+                return archive;
+            }
+            if (archive != null) {
+                mArchives.remove(key);
+                archive.evict();
+            }
+        }
+        // parsed outside of the lock: other archives stay available meanwhile
+        ZipSource source = remoteUri != null ? new RemoteZipSource(remoteUri, length) : new FileZipSource(new File(key));
+        Archive archive = new Archive(key, source, length, lastModified);
+        synchronized (mArchives) {
+            Archive concurrent = mArchives.get(key);
+            if (concurrent != null && concurrent.mLength == length && concurrent.mLastModified == lastModified) {
+                archive.evict();
+                return concurrent;
+            }
+            if (concurrent != null)
+                concurrent.evict();
+            mArchives.put(key, archive);
+            Iterator<Map.Entry<String, Archive>> it = mArchives.entrySet().iterator();
+            while (mArchives.size() > MAX_OPEN_ARCHIVES && it.hasNext()) {
+                Archive eldest = it.next().getValue();
+                it.remove();
+                eldest.evict();
+            }
+        }
+        return archive;
+    }
+
+    /**
+     * Forgets an archive, e.g. after it has been rewritten
+     * @param zipPath local path, or archive uri for remote ones
+     */
+    public void invalidate(String zipPath) {
+        synchronized (mArchives) {
+            Archive archive = mArchives.remove(zipPath);
+            if (archive != null) archive.evict();
+        }
+    }
+
+    public static class Archive {
+        private final String mPath;
+        private final long mLength;
+        private final long mLastModified;
+        private final ZipSource mSource;
+        // directory ("" for root, "a/b/" otherwise) -> its direct children
+        private final HashMap<String, List<ZipEntry>> mChildren = new HashMap<>();
+        private final HashMap<String, ZipArchiveEntry> mEntries = new HashMap<>();
+        // open streams and acquire() calls: the source is closed once evicted and nothing uses it anymore
+        private int mUsers;
+        private boolean mEvicted;
+        private volatile long mCheckTime = System.currentTimeMillis();
+        // last deflated stream closed before its end, resumed when the same entry is read again further on (seek forward)
+        private ZipInflaterInputStream mCheckpoint;
+
+        private Archive(String path, ZipSource source, long length, long lastModified) throws IOException {
+            mPath = path;
+            mLength = length;
+            mLastModified = lastModified;
+            mSource = source;
+            long start = System.currentTimeMillis();
+            mChildren.put("", new ArrayList<ZipEntry>());
+            try {
+                for (ZipArchiveEntry entry : ZipCentralDirectory.read(mSource))
+                    add(entry);
+            } catch (IOException | RuntimeException e) {
+                mSource.close();
+                throw e;
+            }
+            log.debug("Archive: " + path + " indexed " + mEntries.size() + " entries in " + (System.currentTimeMillis() - start) + "ms");
+        }
+
+        private void add(ZipArchiveEntry entry) {
+            String name = entry.getName();
+            if (name.isEmpty() || mEntries.containsKey(name))
+                return;
+            mEntries.put(name, entry);
+            if (entry.isDirectory() && !mChildren.containsKey(name))
+                mChildren.put(name, new ArrayList<ZipEntry>());
+            String parent = getParent(name);
+            List<ZipEntry> siblings = mChildren.get(parent);
+            if (siblings == null) {
+                // parent has no entry of its own
+                add(new ZipArchiveEntry(parent));
+                siblings = mChildren.get(parent);
+            }
+            siblings.add(entry);
+        }
+
+        /**
+         * "a/b/c" and "a/b/c/" -> "a/b/", "c" -> ""
+         */
+        private static String getParent(String name) {
+            int end = name.endsWith("/") ? name.length() - 1 : name.length();
+            int slash = name.lastIndexOf('/', end - 1);
+            return slash < 0 ? "" : name.substring(0, slash + 1);
+        }
+
+        public String getPath() {
+            return mPath;
+        }
+
+        /**
+         * @param directory "" for the root of the archive, with or without trailing '/' otherwise
+         * @return entries directly in directory, null if there is no such directory
+         */
+        public List<ZipEntry> list(String directory) {
+            if (!directory.isEmpty() && !directory.endsWith("/"))
+                directory += "/";
+            List<ZipEntry> children = mChildren.get(directory);
+            return children != null ? new ArrayList<>(children) : null;
+        }
+
+        /**
+         * @param directory "" for the whole archive
+         * @return every entry below directory, each directory before its content, null if there is no such directory
+         */
+        public List<ZipArchiveEntry> listTree(String directory) {
+            if (!directory.isEmpty() && !directory.endsWith("/"))
+                directory += "/";
+            if (!mChildren.containsKey(directory))
+                return null;
+            ArrayList<ZipArchiveEntry> tree = new ArrayList<>();
+            ArrayDeque<String> toList = new ArrayDeque<>();
+            toList.push(directory);
+            while (!toList.isEmpty()) {
+                for (ZipEntry entry : mChildren.get(toList.pop())) {
+                    tree.add((ZipArchiveEntry) entry);
+                    if (entry.isDirectory() && mChildren.containsKey(entry.getName()))
+                        toList.push(entry.getName());
+                }
+            }
+            return tree;
+        }
+
+        /**
+         * @return entry named name (a directory can be given without its trailing '/'), null if none
+         */
+        public ZipArchiveEntry getEntry(String name) {
+            ZipArchiveEntry entry = mEntries.get(name);
+            if (entry == null && !name.endsWith("/"))
+                entry = mEntries.get(name + "/");
+            return entry;
+        }
+
+        public int size() {
+            return mEntries.size();
+        }
+
+        public InputStream getInputStream(ZipEntry entry) throws IOException {
+            return getInputStream(entry, 0);
+        }
+
+        /**
+         * Data of entry starting at uncompressed offset from, read straight from its local header offset.
+         * Stored entries are read in place, so seeking costs nothing. Deflated ones are inflated and skipped up to from,
+         * resuming the last interrupted read of the same entry when it is not past from.
+         */
+        public InputStream getInputStream(ZipEntry zipEntry, long from) throws IOException {
+            final ZipArchiveEntry entry = mEntries.get(zipEntry.getName());
+            if (entry == null || entry.isDirectory())
+                throw new ZipException("no such entry " + zipEntry.getName());
+            if (entry.isEncrypted())
+                throw new ZipException("encrypted entry " + entry.getName());
+            if (entry.getCompressionMethod() != ZipEntry.STORED && entry.getCompressionMethod() != ZipEntry.DEFLATED)
+                throw new ZipException("unsupported compression method " + entry.getCompressionMethod() + " for " + entry.getName());
+            if (!tryAcquire())
+                throw new IOException("archive " + mPath + " has been closed");
+            InputStream in;
+            try {
+                long dataOffset = ZipCentralDirectory.getDataOffset(mSource, entry);
+                long dataEnd = dataOffset + entry.getCompressedSize();
+                if (entry.getCompressionMethod() == ZipEntry.STORED) {
+                    in = new ZipSourceInputStream(mSource, dataOffset + Math.min(from, entry.getCompressedSize()), dataEnd);
+                    if (from == 0)
+                        in = new ZipCheckedInputStream(in, entry);
+                } else {
+                    ZipInflaterInputStream inflater = takeCheckpoint(entry, from);
+                    if (inflater == null)
+                        inflater = new ZipInflaterInputStream(new ZipSourceInputStream(mSource, dataOffset, dataEnd), entry);
+                    else
+                        log.debug("getInputStream: resuming " + entry.getName() + " at " + inflater.getPosition() + " for " + from);
+                    in = inflater;
+                    try {
+                        skipFully(inflater, from - inflater.getPosition());
+                    } catch (IOException | RuntimeException e) {
+                        inflater.close();
+                        throw e;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                release();
+                throw e;
+            }
+            return new FilterInputStream(in) {
+                private boolean mClosed;
+                @Override
+                public void close() throws IOException {
+                    if (mClosed) return;
+                    mClosed = true;
+                    try {
+                        if (!(in instanceof ZipInflaterInputStream) || !putCheckpoint((ZipInflaterInputStream) in))
+                            super.close();
+                    } finally {
+                        release();
+                    }
+                }
+            };
+        }
+
+        private static void skipFully(InputStream in, long n) throws IOException {
+            while (n > 0) {
+                long skipped = in.skip(n);
+                if (skipped <= 0)
+                    throw new EOFException("seek beyond end of entry");
+                n -= skipped;
+            }
+        }
+
+        private synchronized ZipInflaterInputStream takeCheckpoint(ZipArchiveEntry entry, long from) {
+            ZipInflaterInputStream checkpoint = mCheckpoint;
+            if (checkpoint == null || checkpoint.getEntry() != entry || checkpoint.getPosition() > from)
+                return null;
+            mCheckpoint = null;
+            return checkpoint;
+        }
+
+        /**
+         * @return true if the stream has been kept as checkpoint instead of being closed
+         */
+        private boolean putCheckpoint(ZipInflaterInputStream in) {
+            ZipInflaterInputStream previous;
+            synchronized (this) {
+                if (mEvicted || !in.isResumable())
+                    return false;
+                previous = mCheckpoint;
+                mCheckpoint = in;
+            }
+            if (previous != null)
+                closeSilently(previous);
+            return true;
+        }
+
+        /**
+         * @return false if the source has already been closed
+         */
+        private synchronized boolean tryAcquire() {
+            if (mEvicted && mUsers == 0)
+                return false;
+            mUsers++;
+            return true;
+        }
+
+        /**
+         * Balances ZipIndex.acquire()
+         */
+        public synchronized void release() {
+            if (--mUsers == 0 && mEvicted)
+                closeSource();
+        }
+
+        private synchronized void evict() {
+            mEvicted = true;
+            if (mCheckpoint != null) {
+                closeSilently(mCheckpoint);
+                mCheckpoint = null;
+            }
+            if (mUsers == 0)
+                closeSource();
+        }
+
+        private void closeSource() {
+            closeSilently(mSource);
+        }
+
+        private void closeSilently(Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                log.warn("closeSilently: " + mPath, e);
+            }
+        }
+    }
+}
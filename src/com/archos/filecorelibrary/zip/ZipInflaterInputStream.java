@@ -0,0 +1,127 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Inflates the raw deflate data of a zip entry, keeping track of the uncompressed position
+ * so that an entry partially read can be resumed from there (see ZipIndex.Archive checkpoints).
+ * Size and CRC-32 of the entry are checked at its end, a ZipException is thrown on mismatch like ZipInputStream does.
+ */
+public class ZipInflaterInputStream extends InflaterInputStream {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ZipArchiveEntry mEntry;
+    private long mPosition;
+    private boolean mEofReached;
+    private boolean mFailed;
+    private boolean mDummyByteGiven;
+    // skipped bytes go through read() too: the whole entry is checked whatever the seeks
+    private final CRC32 mCrc = new CRC32();
+
+    public ZipInflaterInputStream(InputStream compressed, ZipArchiveEntry entry) {
+        super(compressed, new Inflater(true), BUFFER_SIZE);
+        mEntry = entry;
+    }
+
+    public ZipArchiveEntry getEntry() {
+        return mEntry;
+    }
+
+    /**
+     * @return number of uncompressed bytes returned or skipped so far
+     */
+    public long getPosition() {
+        return mPosition;
+    }
+
+    /**
+     * @return true when the stream can still be resumed from getPosition()
+     */
+    public boolean isResumable() {
+        return !mFailed && !mEofReached;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read;
+        try {
+            read = super.read(b, off, len);
+        } catch (IOException | RuntimeException e) {
+            mFailed = true;
+            throw e;
+        }
+        if (read > 0) {
+            mCrc.update(b, off, read);
+            mPosition += read;
+        } else if (read < 0 && !mEofReached) {
+            mEofReached = true;
+            check();
+        }
+        return read;
+    }
+
+    private void check() throws ZipException {
+        if (mEntry.getSize() >= 0 && mPosition != mEntry.getSize()) {
+            mFailed = true;
+            throw new ZipException("invalid entry size for " + mEntry.getName() + " (expected " + mEntry.getSize() + " but got " + mPosition + " bytes)");
+        }
+        if (mEntry.getCrc() != -1 && mCrc.getValue() != mEntry.getCrc()) {
+            mFailed = true;
+            throw new ZipException("invalid entry CRC for " + mEntry.getName() + " (expected 0x" + Long.toHexString(mEntry.getCrc())
+                    + " but got 0x" + Long.toHexString(mCrc.getValue()) + ")");
+        }
+    }
+
+    @Override
+    protected void fill() throws IOException {
+        len = in.read(buf, 0, buf.length);
+        if (len == -1) {
+            // the raw inflater may ask for one more byte than the entry holds (same trick as java.util.zip.ZipFile)
+            if (mDummyByteGiven)
+                throw new EOFException("unexpected end of entry " + mEntry.getName());
+            mDummyByteGiven = true;
+            buf[0] = 0;
+            len = 1;
+        }
+        inf.setInput(buf, 0, len);
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (mEofReached || mEntry.getSize() < 0)
+            return super.available();
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, mEntry.getSize() - mPosition));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            // created here, so not ended by InflaterInputStream.close()
+            inf.end();
+        }
+    }
+}
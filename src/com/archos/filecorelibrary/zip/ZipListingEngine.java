@@ -26,10 +26,9 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 
 /**
@@ -107,33 +106,22 @@ public class ZipListingEngine extends ListingEngine {
             for each path segment, check if file (in case we have a folder with .zip in the name)
 
          */
-                String toTest = ZipUtils.getZipPathFromUri(mUri);
-                String path = mUri.getPath();
-                String remains ="";
-                if(path.length()>toTest.length()+1)
-                    remains = path.substring(toTest.length()+1);//remove first "/"
                 try {
-                    ZipFile zf = new ZipFile(toTest);
-                    ArrayList <ZipEntry>entries = (ArrayList<ZipEntry>) Collections.list(zf.entries());
+                    // one directory level straight from the cached central directory, local or remote archive
+                    List<ZipEntry> entries = ZipIndex.getInstance().get(mUri).list(ZipUtils.getEntryName(mUri));
                     if (entries == null) {
                         postError(ErrorEnum.ERROR_UNKNOWN);
                         return;
                     }
+                    Uri zipUri = ZipUtils.getZipUri(ZipUtils.getArchiveUri(mUri));
                     ArrayList<ZipFile2> files = new ArrayList<>();
                     ArrayList<ZipFile2> directories = new ArrayList<>();
                     for(ZipEntry entry : entries){
-                        if(entry.getName().startsWith(remains)||remains.equals("")){
-                            String name = entry.getName().substring(remains.length());
-                            boolean rightLevel = !name.equalsIgnoreCase("") && (name.indexOf('/') == name.length()-1 || name.indexOf('/') == -1);
-                            if(rightLevel){
-
-                                ZipFile2 zf2 = new ZipFile2(toTest, entry);
-                                if(zf2.isFile())
-                                    files.add(zf2);
-                                else
-                                    directories.add(zf2);
-                            }
-                        }
+                        ZipFile2 zf2 = new ZipFile2(zipUri, entry);
+                        if(zf2.isFile())
+                            files.add(zf2);
+                        else
+                            directories.add(zf2);
                     }
                     final ArrayList<ZipFile2> allFiles = new ArrayList<>(directories.size() + files.size());
                     allFiles.addAll(directories);
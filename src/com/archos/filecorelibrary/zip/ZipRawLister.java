@@ -23,10 +23,8 @@ import com.archos.filecorelibrary.AuthenticationException;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 
 /**
@@ -40,30 +38,15 @@ public class ZipRawLister extends RawLister {
     }
 
     public List<MetaFile2> getFileList() throws IOException, AuthenticationException {
-        String toTest = ZipUtils.getZipPathFromUri(mUri);
-        String path = mUri.getPath();
-        String remains = "";
-        if (path.length() > toTest.length() + 1)
-            remains = path.substring(toTest.length() + 1);//remove first "/"
-
-        ZipFile zf = new ZipFile(toTest);
-        ArrayList<ZipEntry> entries = (ArrayList<ZipEntry>) Collections.list(zf.entries());
+        List<ZipEntry> entries = ZipIndex.getInstance().get(mUri).list(ZipUtils.getEntryName(mUri));
         if (entries == null) {
 
             return null;
         }
-        ArrayList<MetaFile2> list = new ArrayList<>();
-        for (ZipEntry entry : entries) {
-            if (entry.getName().startsWith(remains) || remains.equals("")) {
-                String name = entry.getName().substring(remains.length());
-                boolean rightLevel = !name.equalsIgnoreCase("") && (name.indexOf('/') == name.length() - 1 || name.indexOf('/') == -1);
-                if (rightLevel) {
-
-                    ZipFile2 zf2 = new ZipFile2(toTest, entry);
-                    list.add(zf2);
-                }
-            }
-        }
+        Uri zipUri = ZipUtils.getZipUri(ZipUtils.getArchiveUri(mUri));
+        ArrayList<MetaFile2> list = new ArrayList<>(entries.size());
+        for (ZipEntry entry : entries)
+            list.add(new ZipFile2(zipUri, entry));
         return list;
 
 
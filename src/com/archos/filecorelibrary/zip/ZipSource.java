@@ -0,0 +1,33 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Random access to the bytes of a zip archive, whatever its storage
+ */
+public interface ZipSource extends Closeable {
+
+    long length() throws IOException;
+
+    /**
+     * Reads up to length bytes starting at position. Can be called concurrently from several threads.
+     * @return number of bytes read, -1 at the end of the archive
+     */
+    int read(long position, byte[] buffer, int offset, int length) throws IOException;
+}
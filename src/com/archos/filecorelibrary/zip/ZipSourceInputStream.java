@@ -0,0 +1,70 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads a byte range of a ZipSource. Skipping is free: nothing is read until the next read().
+ * Closing it leaves the source open, it belongs to whoever opened it.
+ */
+public class ZipSourceInputStream extends InputStream {
+
+    private final ZipSource mSource;
+    private final long mEnd;
+    private long mPosition;
+
+    /**
+     * @param start first byte of the range
+     * @param end end of the range (excluded)
+     */
+    public ZipSourceInputStream(ZipSource source, long start, long end) {
+        mSource = source;
+        mPosition = start;
+        mEnd = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (mPosition >= mEnd)
+            return -1;
+        int read = mSource.read(mPosition, b, off, (int) Math.min(len, mEnd - mPosition));
+        if (read > 0)
+            mPosition += read;
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, mEnd - mPosition));
+        mPosition += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, mEnd - mPosition);
+    }
+}
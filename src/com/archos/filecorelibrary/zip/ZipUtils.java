@@ -19,6 +19,7 @@ import android.net.Uri;
 import com.archos.filecorelibrary.FileEditorFactory;
 import com.archos.filecorelibrary.MetaFile2;
 import com.archos.filecorelibrary.FileUtils;
+import com.archos.filecorelibrary.TransferTuning;
 
 import java.io.Closeable;
 import java.io.File;
@@ -48,6 +49,68 @@ public class ZipUtils {
         return toTest;
     }
 
+    /**
+     * Archives on a network share are browsed through zip+scheme uris, e.g. zip+smb://server/share/dir/archive.zip/entry
+     */
+    public static final String REMOTE_SCHEME_PREFIX = "zip+";
+
+    public static boolean isZipScheme(String scheme) {
+        return "zip".equals(scheme) || isRemoteZipScheme(scheme);
+    }
+
+    public static boolean isRemoteZipUri(Uri uri) {
+        return isRemoteZipScheme(uri.getScheme());
+    }
+
+    private static boolean isRemoteZipScheme(String scheme) {
+        return scheme != null && scheme.startsWith(REMOTE_SCHEME_PREFIX) && scheme.length() > REMOTE_SCHEME_PREFIX.length();
+    }
+
+    /**
+     * @return zip uri browsing the content of archiveUri, local file or on a network share
+     */
+    public static Uri getZipUri(Uri archiveUri) {
+        if (FileUtils.isLocal(archiveUri))
+            return Uri.parse("zip://" + archiveUri.getPath());
+        return archiveUri.buildUpon().scheme(REMOTE_SCHEME_PREFIX + archiveUri.getScheme()).build();
+    }
+
+    /**
+     * @return uri of the archive itself: a file uri for a local zip, the network uri for zip+scheme ones
+     */
+    public static Uri getArchiveUri(Uri zipUri) {
+        if (!isRemoteZipUri(zipUri))
+            return Uri.fromFile(new File(getZipPathFromUri(zipUri)));
+        return zipUri.buildUpon()
+                .scheme(zipUri.getScheme().substring(REMOTE_SCHEME_PREFIX.length()))
+                .path(getRemoteZipPath(zipUri))
+                .build();
+    }
+
+    /**
+     * Remote variant of getZipPathFromUri(): checking each segment would cost a round trip, the first one named *.zip is the archive
+     */
+    private static String getRemoteZipPath(Uri zipUri) {
+        String toTest = "";
+        for (String seg : zipUri.getPathSegments()) {
+            toTest += "/" + seg;
+            if (seg.toLowerCase().endsWith(".zip"))
+                break;
+        }
+        return toTest;
+    }
+
+    /**
+     * @return path of the entry inside the archive, "" for the archive itself
+     */
+    public static String getEntryName(Uri zipUri) {
+        String zipPath = isRemoteZipUri(zipUri) ? getRemoteZipPath(zipUri) : getZipPathFromUri(zipUri);
+        String path = zipUri.getPath();
+        if (path.length() > zipPath.length() + 1)
+            return path.substring(zipPath.length() + 1);//remove first "/"
+        return "";
+    }
+
     public static boolean isZipMetaFile(MetaFile2 mf){
         if(mf==null) return false; //safer
         return "application/zip".equals(mf.getMimeType()) || mf instanceof ZipFile2;
@@ -64,7 +127,7 @@ public class ZipUtils {
 
             ZipOutputStream zos = new ZipOutputStream(FileEditorFactory.getFileEditorForUrl(Uri.fromFile(target), null).getOutputStream());
             ZipEntry entry = new ZipEntry(uri.toString().substring(rootOffset));
-            byte[] bytes = new byte[1024];
+            byte[] bytes = new byte[TransferTuning.DEFAULT.bufferSize]; // local files only
             InputStream fis = FileEditorFactory.getFileEditorForUrl(uri, null).getInputStream();
             entry.setSize(toCompress.length());
             entry.setTime(toCompress.lastModified());
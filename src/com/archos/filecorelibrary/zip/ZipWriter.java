@@ -0,0 +1,601 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import com.archos.filecorelibrary.PositionalWriter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a standard zip archive (zip64 when needed) to a sequential stream, deflating on a pool of workers.
+ * Entries are cut into blocks deflated independently, pigz style: each block is primed with the last 32KB of the
+ * previous one and ends with a sync flush, so that their concatenation is a single valid deflate stream.
+ * Blocks are written back in order by the thread adding entries, sizes and CRC going to data descriptors.
+ * Memory is bounded by the number of blocks allowed in flight.
+ * STORED entries cannot have data descriptors (readers would not find their end): their CRC is either given upfront,
+ * or patched into the local header at the end through a PositionalWriter on the target.
+ */
+public class ZipWriter implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ZipWriter.class);
+
+    public static final int BLOCK_SIZE = 128 * 1024;
+    public static final int DEFAULT_MAX_IN_FLIGHT_BLOCKS = 32;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+    // empty deflate block with the final bit set, ends the stream of sync flushed blocks
+    private static final byte[] FINAL_BLOCK = { 0x03, 0x00 };
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_EOCD_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int ZIP64_EXTRA_ID = 0x0001;
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+    private static final int ZIP64_MAGIC_COUNT = 0xffff;
+
+    private static final class Entry {
+        final byte[] name;
+        final int dosTime;
+        final int method;
+        final int flags;
+        final boolean zip64Local;
+        // what the local header says, when there is no data descriptor
+        long headerCrc;
+        long headerSize;
+        long crc;
+        long size;
+        long compressedSize;
+        long offset;
+        Entry(String name, long time, int method, int flags, boolean zip64Local) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            this.dosTime = javaToDosTime(time);
+            this.method = method;
+            this.flags = flags;
+            this.zip64Local = zip64Local;
+        }
+    }
+
+    private static final class Block {
+        final byte[] data;
+        final int length;
+        Block(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    private static final int CHUNK_HEADER = 0;
+    private static final int CHUNK_DATA = 1;
+    private static final int CHUNK_DESCRIPTOR = 2;
+
+    /** what is left to write, in archive order */
+    private static final class Chunk {
+        final int type;
+        final Entry entry;
+        final Future<Block> data;
+        Chunk(int type, Entry entry, Future<Block> data) {
+            this.type = type;
+            this.entry = entry;
+            this.data = data;
+        }
+    }
+
+    private final OutputStream mOut;
+    private final ExecutorService mExecutor;
+    private final ArrayBlockingQueue<Deflater> mDeflaters;
+    private final int mMaxInFlightBlocks;
+    private final ArrayDeque<Chunk> mPending = new ArrayDeque<>();
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    // stored entries whose local header gets its CRC and sizes at the end
+    private final ArrayList<Entry> mToPatch = new ArrayList<>();
+    private PositionalWriter mPositionalWriter;
+    private int mPendingBlocks;
+    private long mPosition;
+    private int mLevel = Deflater.DEFAULT_COMPRESSION;
+    private volatile boolean mCanceled;
+    private boolean mFinished;
+
+    /**
+     * @param parallelism number of deflating threads, 1 to deflate on the calling thread
+     * @param maxInFlightBlocks blocks read but not written yet, of BLOCK_SIZE each (plus their deflated copy)
+     */
+    public ZipWriter(OutputStream out, int parallelism, int maxInFlightBlocks) {
+        mOut = new BufferedOutputStream(out, OUTPUT_BUFFER_SIZE);
+        parallelism = Math.max(1, parallelism);
+        mMaxInFlightBlocks = Math.max(1, maxInFlightBlocks);
+        mDeflaters = new ArrayBlockingQueue<>(parallelism);
+        for (int i = 0; i < parallelism; i++)
+            mDeflaters.add(new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+        mExecutor = parallelism == 1 ? null : Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ZipWriter-" + mCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Enables putStored() without a known CRC. positionalWriter must write to the same file as the output stream,
+     * it is closed with the ZipWriter.
+     */
+    public void setPositionalWriter(PositionalWriter positionalWriter) {
+        mPositionalWriter = positionalWriter;
+    }
+
+    public boolean canPatchHeaders() {
+        return mPositionalWriter != null;
+    }
+
+    /**
+     * Deflate level of the entries added from now on
+     */
+    public void setLevel(int level) {
+        mLevel = level;
+    }
+
+    /**
+     * Stops reading the entry being added, can be called from any thread. The archive is unusable afterwards.
+     */
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    public void putDirectory(String name, long time) throws IOException {
+        if (!name.endsWith("/"))
+            name += "/";
+        enqueue(new Chunk(CHUNK_HEADER, addEntry(new Entry(name, time, ZipEntry.STORED, FLAG_UTF8, false)), null));
+    }
+
+    /**
+     * Reads in until its end and adds it deflated. Returns once everything has been read, deflating may still be going on.
+     * @param expectedSize size of the content if known, -1 otherwise: announces zip64 sizes in the local header when too large
+     * @return number of bytes read
+     */
+    public long putDeflated(String name, long time, long expectedSize, InputStream in) throws IOException {
+        final int level = mLevel;
+        boolean zip64 = expectedSize >= ZIP64_MAGIC;
+        Entry entry = addEntry(new Entry(name, time, ZipEntry.DEFLATED, FLAG_UTF8 | FLAG_DATA_DESCRIPTOR, zip64));
+        enqueue(new Chunk(CHUNK_HEADER, entry, null));
+        CRC32 crc = new CRC32();
+        long size = 0;
+        byte[] previous = null;
+        int previousLength = 0;
+        while (!mCanceled) {
+            final byte[] block = new byte[BLOCK_SIZE];
+            final int length = readFully(in, block);
+            if (length <= 0)
+                break;
+            crc.update(block, 0, length);
+            size += length;
+            final byte[] dictionary = previous;
+            final int dictionaryLength = previousLength;
+            enqueue(new Chunk(CHUNK_DATA, entry, submit(new Callable<Block>() {
+                @Override
+                public Block call() throws Exception {
+                    return deflate(block, length, dictionary, dictionaryLength, level);
+                }
+            })));
+            previous = block;
+            previousLength = length;
+            if (length < BLOCK_SIZE)
+                break;
+        }
+        enqueue(new Chunk(CHUNK_DATA, entry, done(new Block(FINAL_BLOCK, FINAL_BLOCK.length))));
+        entry.crc = crc.getValue();
+        entry.size = size;
+        enqueue(new Chunk(CHUNK_DESCRIPTOR, entry, null));
+        return size;
+    }
+
+    /**
+     * Adds in as is, crc being the CRC32 of its content
+     * @param size exact size of the content
+     */
+    public long putStored(String name, long time, long size, long crc, InputStream in) throws IOException {
+        return putStored(name, time, size, crc, in, false);
+    }
+
+    /**
+     * Adds in as is, its CRC is computed on the way and patched into the local header at the end
+     * @param size expected size of the content, patched as well if it turns out different
+     * @throws IllegalStateException if there is no PositionalWriter to patch headers
+     */
+    public long putStored(String name, long time, long size, InputStream in) throws IOException {
+        if (mPositionalWriter == null)
+            throw new IllegalStateException("no PositionalWriter to patch the header of " + name);
+        return putStored(name, time, size, 0, in, true);
+    }
+
+    private long putStored(String name, long time, long size, long crc, InputStream in, boolean patch) throws IOException {
+        Entry entry = addEntry(new Entry(name, time, ZipEntry.STORED, FLAG_UTF8, size >= ZIP64_MAGIC));
+        entry.headerCrc = crc;
+        entry.headerSize = size;
+        enqueue(new Chunk(CHUNK_HEADER, entry, null));
+        CRC32 actualCrc = new CRC32();
+        long actualSize = 0;
+        while (!mCanceled) {
+            byte[] block = new byte[BLOCK_SIZE];
+            int length = readFully(in, block);
+            if (length <= 0)
+                break;
+            actualCrc.update(block, 0, length);
+            actualSize += length;
+            enqueue(new Chunk(CHUNK_DATA, entry, done(new Block(block, length))));
+            if (length < BLOCK_SIZE)
+                break;
+        }
+        entry.crc = actualCrc.getValue();
+        entry.size = actualSize;
+        if (mCanceled)
+            return actualSize;
+        if (patch) {
+            if (!entry.zip64Local && actualSize >= ZIP64_MAGIC)
+                throw new ZipException("entry larger than announced: " + name);
+            mToPatch.add(entry);
+        } else if (actualSize != size || entry.crc != crc) {
+            throw new ZipException("entry changed while being added: " + name);
+        }
+        return actualSize;
+    }
+
+    /**
+     * Writes what is still pending and the central directory. The output stream is left open.
+     */
+    public void finish() throws IOException {
+        if (mFinished)
+            return;
+        while (!mPending.isEmpty())
+            writeHead();
+        long directoryOffset = mPosition;
+        for (Entry entry : mEntries)
+            writeCentralHeader(entry);
+        writeEnd(directoryOffset, mPosition - directoryOffset);
+        mOut.flush();
+        patchLocalHeaders();
+        mFinished = true;
+        log.debug("finish: " + mEntries.size() + " entries, " + mPosition + " bytes");
+    }
+
+    /**
+     * Finishes the archive unless canceled, then closes the output stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!mCanceled)
+                finish();
+        } finally {
+            if (mExecutor != null)
+                mExecutor.shutdownNow();
+            Deflater deflater;
+            while ((deflater = mDeflaters.poll()) != null)
+                deflater.end();
+            try {
+                mOut.close();
+            } finally {
+                if (mPositionalWriter != null)
+                    mPositionalWriter.close();
+            }
+        }
+    }
+
+    /**
+     * CRC and sizes of the stored entries added without their CRC, once everything before has been flushed
+     */
+    private void patchLocalHeaders() throws IOException {
+        for (Entry entry : mToPatch) {
+            byte[] fields = new byte[12];
+            putInt(fields, 0, entry.crc);
+            if (entry.zip64Local) {
+                mPositionalWriter.write(entry.offset + 14, fields, 0, 4);
+                byte[] sizes = new byte[16];
+                putInt(sizes, 0, entry.size);
+                putInt(sizes, 4, entry.size >>> 32);
+                putInt(sizes, 8, entry.size);
+                putInt(sizes, 12, entry.size >>> 32);
+                // zip64 extra field right after the name: id, length, size, compressed size
+                mPositionalWriter.write(entry.offset + 30 + entry.name.length + 4, sizes, 0, sizes.length);
+            } else {
+                putInt(fields, 4, entry.size);
+                putInt(fields, 8, entry.size);
+                mPositionalWriter.write(entry.offset + 14, fields, 0, fields.length);
+            }
+        }
+        mToPatch.clear();
+    }
+
+    private static void putInt(byte[] b, int offset, long v) {
+        b[offset] = (byte) v;
+        b[offset + 1] = (byte) (v >>> 8);
+        b[offset + 2] = (byte) (v >>> 16);
+        b[offset + 3] = (byte) (v >>> 24);
+    }
+
+    private Entry addEntry(Entry entry) {
+        mEntries.add(entry);
+        return entry;
+    }
+
+    private Future<Block> submit(Callable<Block> task) {
+        if (mExecutor != null)
+            return mExecutor.submit(task);
+        FutureTask<Block> future = new FutureTask<>(task);
+        future.run();
+        return future;
+    }
+
+    private static Future<Block> done(final Block block) {
+        FutureTask<Block> future = new FutureTask<>(new Callable<Block>() {
+            @Override
+            public Block call() {
+                return block;
+            }
+        });
+        future.run();
+        return future;
+    }
+
+    private Block deflate(byte[] input, int length, byte[] dictionary, int dictionaryLength, int level) throws InterruptedException {
+        Deflater deflater = mDeflaters.take();
+        try {
+            deflater.reset();
+            deflater.setLevel(level);
+            if (dictionary != null) {
+                int dictionarySize = Math.min(DICTIONARY_SIZE, dictionaryLength);
+                deflater.setDictionary(dictionary, dictionaryLength - dictionarySize, dictionarySize);
+            }
+            deflater.setInput(input, 0, length);
+            byte[] output = new byte[length + (length >> 4) + 64];
+            int outputLength = 0;
+            while (true) {
+                int space = output.length - outputLength;
+                int deflated = deflater.deflate(output, outputLength, space, Deflater.SYNC_FLUSH);
+                outputLength += deflated;
+                // flush is complete once all input is taken and it did not fill the space it was given
+                // (the first call after a level change only applies the level)
+                if (deflated < space && deflater.needsInput())
+                    break;
+                if (outputLength == output.length)
+                    output = Arrays.copyOf(output, output.length * 2);
+            }
+            return new Block(output, outputLength);
+        } finally {
+            mDeflaters.add(deflater);
+        }
+    }
+
+    private void enqueue(Chunk chunk) throws IOException {
+        mPending.add(chunk);
+        if (chunk.type == CHUNK_DATA)
+            mPendingBlocks++;
+        while (mPendingBlocks > mMaxInFlightBlocks)
+            writeHead();
+        // whatever is ready can go right away
+        while (!mPending.isEmpty() && (mPending.peekFirst().data == null || mPending.peekFirst().data.isDone()))
+            writeHead();
+    }
+
+    private void writeHead() throws IOException {
+        Chunk chunk = mPending.pollFirst();
+        switch (chunk.type) {
+            case CHUNK_HEADER:
+                writeLocalHeader(chunk.entry);
+                break;
+            case CHUNK_DATA:
+                Block block = get(chunk.data);
+                write(block.data, 0, block.length);
+                chunk.entry.compressedSize += block.length;
+                mPendingBlocks--;
+                break;
+            case CHUNK_DESCRIPTOR:
+                writeDataDescriptor(chunk.entry);
+                break;
+        }
+    }
+
+    private static Block get(Future<Block> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void writeLocalHeader(Entry entry) throws IOException {
+        entry.offset = mPosition;
+        boolean descriptor = (entry.flags & FLAG_DATA_DESCRIPTOR) != 0;
+        writeInt(LOCAL_HEADER_SIGNATURE);
+        writeShort(entry.zip64Local ? VERSION_ZIP64 : VERSION);
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        // stored entries have no compression: compressed size is the size
+        writeInt(descriptor ? 0 : entry.headerCrc);
+        if (entry.zip64Local) {
+            writeInt(ZIP64_MAGIC);
+            writeInt(ZIP64_MAGIC);
+        } else {
+            writeInt(descriptor ? 0 : entry.headerSize);
+            writeInt(descriptor ? 0 : entry.headerSize);
+        }
+        writeShort(entry.name.length);
+        writeShort(entry.zip64Local ? 20 : 0);
+        write(entry.name, 0, entry.name.length);
+        if (entry.zip64Local) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(16);
+            writeLong(descriptor ? 0 : entry.headerSize);
+            writeLong(descriptor ? 0 : entry.headerSize);
+        }
+    }
+
+    private void writeDataDescriptor(Entry entry) throws IOException {
+        writeInt(DATA_DESCRIPTOR_SIGNATURE);
+        writeInt(entry.crc);
+        // 8 bytes sizes as soon as they need it, which is what java.util.zip.ZipInputStream expects
+        if (entry.zip64Local || entry.size >= ZIP64_MAGIC || entry.compressedSize >= ZIP64_MAGIC) {
+            writeLong(entry.compressedSize);
+            writeLong(entry.size);
+        } else {
+            writeInt(entry.compressedSize);
+            writeInt(entry.size);
+        }
+    }
+
+    private void writeCentralHeader(Entry entry) throws IOException {
+        boolean zip64Size = entry.size >= ZIP64_MAGIC;
+        boolean zip64CompressedSize = entry.compressedSize >= ZIP64_MAGIC;
+        boolean zip64Offset = entry.offset >= ZIP64_MAGIC;
+        int extraLength = (zip64Size ? 8 : 0) + (zip64CompressedSize ? 8 : 0) + (zip64Offset ? 8 : 0);
+        boolean zip64 = extraLength > 0 || entry.zip64Local;
+        writeInt(CENTRAL_HEADER_SIGNATURE);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION);
+        writeShort(zip64 ? VERSION_ZIP64 : VERSION);
+        writeShort(entry.flags);
+        writeShort(entry.method);
+        writeInt(entry.dosTime);
+        writeInt(entry.crc);
+        writeInt(zip64CompressedSize ? ZIP64_MAGIC : entry.compressedSize);
+        writeInt(zip64Size ? ZIP64_MAGIC : entry.size);
+        writeShort(entry.name.length);
+        writeShort(extraLength > 0 ? extraLength + 4 : 0);
+        writeShort(0); // comment
+        writeShort(0); // disk
+        writeShort(0); // internal attributes
+        writeInt(0); // external attributes
+        writeInt(zip64Offset ? ZIP64_MAGIC : entry.offset);
+        write(entry.name, 0, entry.name.length);
+        if (extraLength > 0) {
+            writeShort(ZIP64_EXTRA_ID);
+            writeShort(extraLength);
+            if (zip64Size) writeLong(entry.size);
+            if (zip64CompressedSize) writeLong(entry.compressedSize);
+            if (zip64Offset) writeLong(entry.offset);
+        }
+    }
+
+    private void writeEnd(long directoryOffset, long directorySize) throws IOException {
+        int count = mEntries.size();
+        if (count >= ZIP64_MAGIC_COUNT || directoryOffset >= ZIP64_MAGIC || directorySize >= ZIP64_MAGIC) {
+            long zip64EndOffset = mPosition;
+            writeInt(ZIP64_EOCD_SIGNATURE);
+            writeLong(44); // size of the remaining record
+            writeShort(VERSION_ZIP64);
+            writeShort(VERSION_ZIP64);
+            writeInt(0); // disk
+            writeInt(0); // disk of the central directory
+            writeLong(count);
+            writeLong(count);
+            writeLong(directorySize);
+            writeLong(directoryOffset);
+            writeInt(ZIP64_EOCD_LOCATOR_SIGNATURE);
+            writeInt(0);
+            writeLong(zip64EndOffset);
+            writeInt(1); // number of disks
+        }
+        writeInt(EOCD_SIGNATURE);
+        writeShort(0);
+        writeShort(0);
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeShort(Math.min(count, ZIP64_MAGIC_COUNT));
+        writeInt(Math.min(directorySize, ZIP64_MAGIC));
+        writeInt(Math.min(directoryOffset, ZIP64_MAGIC));
+        writeShort(0); // comment
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int read = in.read(buffer, length, buffer.length - length);
+            if (read < 0)
+                break;
+            length += read;
+        }
+        return length;
+    }
+
+    private static int javaToDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980)
+            return (1 << 21) | (1 << 16); // 1980-01-01
+        return (year - 1980) << 25 | (calendar.get(Calendar.MONTH) + 1) << 21 | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11 | calendar.get(Calendar.MINUTE) << 5 | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        mOut.write(b, off, len);
+        mPosition += len;
+    }
+
+    private void writeShort(int v) throws IOException {
+        mOut.write(v & 0xff);
+        mOut.write((v >>> 8) & 0xff);
+        mPosition += 2;
+    }
+
+    private void writeInt(long v) throws IOException {
+        writeShort((int) (v & 0xffff));
+        writeShort((int) ((v >>> 16) & 0xffff));
+    }
+
+    private void writeLong(long v) throws IOException {
+        writeInt(v & 0xffffffffL);
+        writeInt(v >>> 32);
+    }
+}
@@ -0,0 +1,142 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+
+import com.archos.filecorelibrary.localstorage.LocalStorageFileEditor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+@RunWith(RobolectricTestRunner.class)
+public class BlockSignaturesTest {
+
+    private static final int BLOCK_SIZE = 1000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static byte[] random(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] md5(byte[] data, int from, int to) {
+        MessageDigest md = BlockSignatures.newDigest();
+        md.update(data, from, to - from);
+        return md.digest();
+    }
+
+    /**
+     * Network streams return less than asked for
+     */
+    private static InputStream trickle(byte[] data) {
+        return new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+    }
+
+    @Test
+    public void blocksOfShortReads() throws IOException {
+        byte[] data = random(2500);
+        BlockSignatures signatures = BlockSignatures.compute(trickle(data), BLOCK_SIZE);
+        assertEquals(BLOCK_SIZE, signatures.getBlockSize());
+        assertEquals(3, signatures.getBlockCount());
+        assertTrue(signatures.matches(0, md5(data, 0, 1000)));
+        assertTrue(signatures.matches(1, md5(data, 1000, 2000)));
+        assertTrue(signatures.matches(2, md5(data, 2000, 2500)));
+        assertFalse(signatures.matches(3, md5(data, 2000, 2500)));
+    }
+
+    @Test
+    public void blockCounts() throws IOException {
+        assertEquals(0, BlockSignatures.compute(new ByteArrayInputStream(new byte[0]), BLOCK_SIZE).getBlockCount());
+        assertEquals(1, BlockSignatures.compute(new ByteArrayInputStream(random(1)), BLOCK_SIZE).getBlockCount());
+        assertEquals(2, BlockSignatures.compute(new ByteArrayInputStream(random(2000)), BLOCK_SIZE).getBlockCount());
+        assertEquals(3, BlockSignatures.compute(new ByteArrayInputStream(random(2001)), BLOCK_SIZE).getBlockCount());
+    }
+
+    @Test
+    public void changedBlocksDoNotMatch() throws IOException {
+        byte[] target = random(3000);
+        BlockSignatures signatures = BlockSignatures.compute(new ByteArrayInputStream(target), BLOCK_SIZE);
+        byte[] source = Arrays.copyOf(target, 3500);
+        source[1500] ^= 1;
+        assertTrue(signatures.matches(0, md5(source, 0, 1000)));
+        assertFalse(signatures.matches(1, md5(source, 1000, 2000)));
+        assertTrue(signatures.matches(2, md5(source, 2000, 3000)));
+        // appended data
+        assertFalse(signatures.matches(3, md5(source, 3000, 3500)));
+        // a target ending inside a block only matches a source ending at the same place
+        BlockSignatures shorter = BlockSignatures.compute(new ByteArrayInputStream(Arrays.copyOf(target, 2500)), BLOCK_SIZE);
+        assertFalse(shorter.matches(2, md5(target, 2000, 3000)));
+    }
+
+    @Test
+    public void readBlockFillsTheBlock() throws IOException {
+        byte[] data = random(25);
+        InputStream in = trickle(data);
+        byte[] block = new byte[10];
+        assertEquals(10, BlockSignatures.readBlock(in, block));
+        assertArrayEquals(Arrays.copyOfRange(data, 0, 10), block);
+        assertEquals(10, BlockSignatures.readBlock(in, block));
+        assertEquals(5, BlockSignatures.readBlock(in, block));
+        assertEquals(0, BlockSignatures.readBlock(in, block));
+    }
+
+    @Test
+    public void hexOfRemoteSums() {
+        // md5sum output of the remote split
+        assertArrayEquals(md5(new byte[0], 0, 0), BlockSignatures.fromHex("d41d8cd98f00b204e9800998ecf8427e"));
+    }
+
+    @Test
+    public void mappedLocalFileMatchesStream() throws Exception {
+        byte[] data = random(10 * BLOCK_SIZE + 123);
+        File file = mFolder.newFile("signed");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        BlockSignatures mapped = new LocalStorageFileEditor(Uri.fromFile(file), RuntimeEnvironment.getApplication()).getBlockSignatures(BLOCK_SIZE);
+        assertEquals(11, mapped.getBlockCount());
+        for (int i = 0; i < 11; i++)
+            assertTrue(mapped.matches(i, md5(data, i * BLOCK_SIZE, Math.min(data.length, (i + 1) * BLOCK_SIZE))));
+    }
+}
@@ -0,0 +1,189 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import android.net.Uri;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stale-while-revalidate: an expired listing is revalidated by the wrapped engine and the differences reported
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CachingListingEngineTest {
+
+    private static final String SCHEME = "smb";
+    private static final long DEFAULT_TTL_MS = 30000;
+
+    /**
+     * Lists the files it is given, synchronously
+     */
+    private static class FakeEngine extends ListingEngine {
+        private final List<MetaFile2> mFiles;
+
+        FakeEngine(List<MetaFile2> files) {
+            super(null);
+            mFiles = files;
+        }
+
+        @Override
+        public void start() {
+            mListener.onListingStart();
+            mListener.onListingUpdate(mFiles);
+            mListener.onListingEnd();
+        }
+
+        @Override
+        public void abort() {}
+    }
+
+    private static class DeltaListener implements ListingEngine.Listener {
+        List<? extends MetaFile2> updated;
+        List<MetaFile2> added;
+        List<MetaFile2> removed;
+        List<MetaFile2> changed;
+
+        @Override
+        public void onListingStart() {}
+
+        @Override
+        public void onListingUpdate(List<? extends MetaFile2> files) {
+            updated = files;
+        }
+
+        @Override
+        public void onListingEnd() {}
+
+        @Override
+        public void onListingTimeOut() {}
+
+        @Override
+        public void onCredentialRequired(Exception e) {}
+
+        @Override
+        public void onListingFatalError(Exception e, ListingEngine.ErrorEnum errorCode) {}
+
+        @Override
+        public void onListingFileInfoUpdate(Uri uri, MetaFile2 metaFile2) {}
+
+        @Override
+        public void onListingDelta(List<MetaFile2> added, List<MetaFile2> removed, List<MetaFile2> changed) {
+            this.added = added;
+            this.removed = removed;
+            this.changed = changed;
+        }
+    }
+
+    private Uri mDirectory;
+
+    @Before
+    public void setUp() {
+        // listings expire right away but can still be revalidated
+        ListingCache.getInstance().setTtl(SCHEME, 1);
+        mDirectory = Uri.parse(SCHEME + "://server/share/dir" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        ListingCache.getInstance().setTtl(SCHEME, 0);
+        ListingCache.getInstance().setTtl(SCHEME, DEFAULT_TTL_MS);
+    }
+
+    private static List<MetaFile2> list(MetaFile2... files) {
+        return new ArrayList<>(Arrays.asList(files));
+    }
+
+    private static List<String> names(List<MetaFile2> files) {
+        ArrayList<String> names = new ArrayList<>();
+        for (MetaFile2 file : files)
+            names.add(file.getName());
+        return names;
+    }
+
+    /**
+     * Lists previous through a caching engine, then current once previous has expired
+     */
+    private DeltaListener revalidate(List<MetaFile2> previous, List<MetaFile2> current, boolean staleWhileRevalidate) throws InterruptedException {
+        ListingEngineFactory.CachingListingEngine first = new ListingEngineFactory.CachingListingEngine(null, mDirectory, new FakeEngine(previous));
+        first.setListener(new DeltaListener());
+        first.start();
+        Thread.sleep(20);
+        ListingEngineFactory.CachingListingEngine second = new ListingEngineFactory.CachingListingEngine(null, mDirectory, new FakeEngine(current));
+        second.setStaleWhileRevalidate(staleWhileRevalidate);
+        DeltaListener listener = new DeltaListener();
+        second.setListener(listener);
+        second.start();
+        return listener;
+    }
+
+    @Test
+    public void sameListingReportsNothing() throws InterruptedException {
+        DeltaListener listener = revalidate(
+                list(FakeMetaFile.file("a", 1, 10), FakeMetaFile.directory("b", 20)),
+                list(FakeMetaFile.directory("b", 20), FakeMetaFile.file("a", 1, 10)), true);
+        assertNull(listener.added);
+        // the stale listing was shown, the revalidated one is not reported again
+        assertNull(listener.updated);
+    }
+
+    @Test
+    public void addedRemovedAndChanged() throws InterruptedException {
+        DeltaListener listener = revalidate(
+                list(FakeMetaFile.file("kept", 1, 10), FakeMetaFile.file("gone", 2, 10), FakeMetaFile.file("resized", 3, 10),
+                        FakeMetaFile.file("touched", 4, 10), FakeMetaFile.file("also gone", 5, 10), FakeMetaFile.file("retyped", 0, 10)),
+                list(FakeMetaFile.file("kept", 1, 10), FakeMetaFile.file("resized", 30, 10), FakeMetaFile.file("touched", 4, 11),
+                        FakeMetaFile.file("new", 6, 10), FakeMetaFile.directory("retyped", 10)), true);
+        assertEquals(Arrays.asList("new"), names(listener.added));
+        // in the order they were shown
+        assertEquals(Arrays.asList("gone", "also gone"), names(listener.removed));
+        assertEquals(Arrays.asList("resized", "touched", "retyped"), names(listener.changed));
+    }
+
+    @Test
+    public void largeDirectory() throws InterruptedException {
+        List<MetaFile2> previous = new ArrayList<>();
+        List<MetaFile2> current = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            previous.add(FakeMetaFile.file("file" + i, i, 0));
+            if (i % 100 != 0)
+                current.add(FakeMetaFile.file("file" + i, i, 0));
+        }
+        current.add(FakeMetaFile.file("extra", 0, 0));
+        DeltaListener listener = revalidate(previous, current, true);
+        assertEquals(1, listener.added.size());
+        assertEquals(100, listener.removed.size());
+        assertEquals(0, listener.changed.size());
+    }
+
+    @Test
+    public void expiredListingIsListedAgainWithoutRevalidation() throws InterruptedException {
+        List<MetaFile2> current = list(FakeMetaFile.file("new", 1, 10));
+        DeltaListener listener = revalidate(list(FakeMetaFile.file("old", 1, 10)), current, false);
+        assertNull(listener.added);
+        assertEquals(current, listener.updated);
+    }
+}
@@ -0,0 +1,149 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Pipelined copy/cut of local trees: a cut directory is deleted once all its content is transferred, never before
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CopyCutEnginePipelineTest {
+
+    // more entries than the pipeline queue holds, for the enumeration to be blocked by the transfer loop
+    private static final int DIRECTORIES = 6;
+    private static final int SUBDIRECTORIES = 5;
+    private static final int FILES = 20;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mSource;
+    private File mTarget;
+    private TreeSet<String> mTree;
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes("UTF-8"));
+        }
+    }
+
+    /**
+     * @return relative paths of all the entries below directory, files with their size
+     */
+    private static TreeSet<String> list(File directory) {
+        TreeSet<String> entries = new TreeSet<>();
+        list(directory, "", entries);
+        return entries;
+    }
+
+    private static void list(File directory, String prefix, TreeSet<String> entries) {
+        for (File f : directory.listFiles()) {
+            if (f.isDirectory()) {
+                entries.add(prefix + f.getName() + "/");
+                list(f, prefix + f.getName() + "/", entries);
+            } else {
+                entries.add(prefix + f.getName() + " " + f.length());
+            }
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mSource = mFolder.newFolder("source");
+        mTarget = mFolder.newFolder("target");
+        for (int d = 0; d < DIRECTORIES; d++)
+            for (int s = 0; s < SUBDIRECTORIES; s++)
+                for (int f = 0; f < FILES; f++)
+                    write(new File(mSource, "tree/d" + d + "/s" + s + "/f" + f + ".txt"), "content of " + d + s + f);
+        assertTrue(new File(mSource, "tree/empty").mkdirs());
+        write(new File(mSource, "tree/top.txt"), "top");
+        write(new File(mSource, "single.txt"), "single");
+        mTree = list(mSource);
+        // directory deletion checks the all files access, that looks at the primary external storage
+        ShadowEnvironment.addExternalDir(mFolder.newFolder("sdcard").getPath());
+    }
+
+    private RecordingListener transfer(boolean cut) throws Exception {
+        ArrayList<MetaFile2> sources = new ArrayList<>();
+        for (String name : new String[] {"tree", "single.txt"})
+            sources.add(MetaFile2Factory.getMetaFileForUrl(Uri.fromFile(new File(mSource, name))));
+        RecordingListener listener = new RecordingListener();
+        CopyCutEngine engine = new CopyCutEngine(RecordingListener.context());
+        engine.setListener(listener);
+        engine.setPipelined(true);
+        if (cut)
+            engine.cut(sources, Uri.fromFile(mTarget), false);
+        else
+            engine.copy(sources, Uri.fromFile(mTarget), false);
+        listener.await();
+        return listener;
+    }
+
+    @Test
+    public void copyKeepsSources() throws Exception {
+        RecordingListener listener = transfer(false);
+        assertTrue(listener.mEnded);
+        assertEquals(mTree, list(mTarget));
+        assertEquals(mTree, list(mSource));
+    }
+
+    @Test
+    public void cutDeletesDirectoriesOnceEmptied() throws Exception {
+        RecordingListener listener = transfer(true);
+        assertTrue(listener.mEnded);
+        // a directory deleted before the end of its content would have taken files with it
+        assertEquals(mTree, list(mTarget));
+        assertEquals(0, mSource.list().length);
+    }
+
+    @Test
+    public void cutDeletesDirectoriesWithoutFiles() throws Exception {
+        // released by their listings only
+        assertTrue(new File(mSource, "hollow/a/b/c").mkdirs());
+        assertTrue(new File(mSource, "hollow/a/d").mkdirs());
+        ArrayList<MetaFile2> sources = new ArrayList<>();
+        sources.add(MetaFile2Factory.getMetaFileForUrl(Uri.fromFile(new File(mSource, "hollow"))));
+        RecordingListener listener = new RecordingListener();
+        CopyCutEngine engine = new CopyCutEngine(RecordingListener.context());
+        engine.setListener(listener);
+        engine.setPipelined(true);
+        engine.cut(sources, Uri.fromFile(mTarget), false);
+        listener.await();
+        assertEquals(new TreeSet<>(List.of("a/", "a/b/", "a/b/c/", "a/d/")), list(new File(mTarget, "hollow")));
+        assertFalse(new File(mSource, "hollow").exists());
+    }
+}
@@ -0,0 +1,179 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sync planning of CopyCutEngine on local directories: what is reported, then what is actually written
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CopyCutEngineSyncTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mSource;
+    private File mTarget;
+
+    private static void write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes("UTF-8"));
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+    }
+
+    private static List<String> names(List<MetaFile2> files) {
+        List<String> names = new ArrayList<>();
+        for (MetaFile2 f : files)
+            names.add(f.getName());
+        Collections.sort(names);
+        return names;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mSource = mFolder.newFolder("source");
+        mTarget = new File(mFolder.getRoot(), "target");
+        write(new File(mSource, "album/a.txt"), "aaaa");
+        write(new File(mSource, "album/b.txt"), "bb");
+        write(new File(mSource, "album/sub/c.txt"), "c");
+        write(new File(mSource, "notes.txt"), "notes");
+    }
+
+    private RecordingListener sync(boolean deleteExtraneous, boolean dryRun) throws Exception {
+        List<MetaFile2> sources = new ArrayList<>();
+        for (String name : new String[] {"album", "notes.txt"})
+            sources.add(MetaFile2Factory.getMetaFileForUrl(Uri.fromFile(new File(mSource, name))));
+        RecordingListener listener = new RecordingListener();
+        CopyCutEngine engine = new CopyCutEngine(RecordingListener.context());
+        engine.setListener(listener);
+        engine.sync(sources, Uri.fromFile(mTarget), deleteExtraneous, dryRun);
+        listener.await();
+        return listener;
+    }
+
+    @Test
+    public void dryRunOnlyReports() throws Exception {
+        SyncReport report = sync(false, true).mSyncReport;
+        assertTrue(report.isDryRun());
+        assertEquals(List.of("a.txt", "album", "b.txt", "c.txt", "notes.txt", "sub"), names(report.getToTransfer()));
+        assertEquals(4 + 2 + 1 + 5, report.getBytesToTransfer());
+        assertEquals(0, report.getUnchangedCount());
+        assertFalse(mTarget.exists());
+    }
+
+    @Test
+    public void firstRunCopiesEverything() throws Exception {
+        RecordingListener listener = sync(false, false);
+        assertFalse(listener.mSyncReport.isDryRun());
+        assertEquals(6, listener.mSyncReport.getToTransfer().size());
+        assertEquals("aaaa", read(new File(mTarget, "album/a.txt")));
+        assertEquals("c", read(new File(mTarget, "album/sub/c.txt")));
+        assertEquals("notes", read(new File(mTarget, "notes.txt")));
+    }
+
+    @Test
+    public void unchangedFilesAreSkipped() throws Exception {
+        sync(false, false);
+        // same size, target more recent than source: unchanged whatever its content
+        write(new File(mTarget, "album/a.txt"), "AAAA");
+        write(new File(mSource, "album/b.txt"), "changed");
+        write(new File(mSource, "album/sub/d.txt"), "new");
+
+        RecordingListener listener = sync(false, false);
+        SyncReport report = listener.mSyncReport;
+        // existing root directory and subdirectory are not transferred again, only walked
+        assertEquals(List.of("b.txt", "d.txt"), names(report.getToTransfer()));
+        assertEquals(3, report.getUnchangedCount());
+        assertEquals(4 + 1 + 5, report.getUnchangedBytes());
+        assertEquals("AAAA", read(new File(mTarget, "album/a.txt")));
+        assertEquals("changed", read(new File(mTarget, "album/b.txt")));
+        assertEquals("new", read(new File(mTarget, "album/sub/d.txt")));
+        assertTrue(listener.mEnded);
+    }
+
+    @Test
+    public void sourceMoreRecentIsTransferred() throws Exception {
+        sync(false, false);
+        File source = new File(mSource, "album/a.txt");
+        write(source, "AAAA");
+        assertTrue(source.setLastModified(new File(mTarget, "album/a.txt").lastModified() + 60000));
+
+        SyncReport report = sync(false, false).mSyncReport;
+        assertEquals(List.of("a.txt"), names(report.getToTransfer()));
+        assertEquals("AAAA", read(new File(mTarget, "album/a.txt")));
+    }
+
+    @Test
+    public void extraneousFilesAreDeletedOnlyWhenAsked() throws Exception {
+        sync(false, false);
+        File extraneous = new File(mTarget, "album/sub/old.txt");
+        write(extraneous, "old");
+        File rootExtraneous = new File(mTarget, "other.txt");
+        write(rootExtraneous, "other");
+
+        SyncReport report = sync(false, false).mSyncReport;
+        assertTrue(report.getToDelete().isEmpty());
+        assertTrue(extraneous.exists());
+
+        report = sync(true, false).mSyncReport;
+        assertEquals(List.of("old.txt"), names(report.getToDelete()));
+        assertFalse(extraneous.exists());
+        // never at the root of target
+        assertTrue(rootExtraneous.exists());
+    }
+
+    @Test
+    public void otherTypeIsReplaced() throws Exception {
+        sync(false, false);
+        File sub = new File(mTarget, "album/sub");
+        for (File f : sub.listFiles())
+            assertTrue(f.delete());
+        assertTrue(sub.delete());
+        write(sub, "a file where a directory goes");
+
+        SyncReport report = sync(false, false).mSyncReport;
+        assertEquals(List.of("sub"), names(report.getToReplace()));
+        assertEquals(List.of("c.txt", "sub"), names(report.getToTransfer()));
+        assertTrue(sub.isDirectory());
+        assertArrayEquals(new String[] {"c.txt"}, sub.list());
+    }
+}
@@ -0,0 +1,81 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class DestinationNameIndexTest {
+
+    private static DestinationNameIndex index(String... names) {
+        MetaFile2[] files = new MetaFile2[names.length];
+        for (int i = 0; i < names.length; i++)
+            files[i] = FakeMetaFile.file(names[i], 0, 0);
+        return new DestinationNameIndex(Arrays.asList(files), " (copy)", " (copy ", ")");
+    }
+
+    @Test
+    public void freeNameIsKept() {
+        assertEquals("movie.mkv", index("other.mkv").reserve("movie.mkv"));
+    }
+
+    @Test
+    public void takenNameGetsFirstCopy() {
+        assertEquals("movie (copy).mkv", index("movie.mkv").reserve("movie.mkv"));
+    }
+
+    @Test
+    public void copiesAreNumberedAfterTheHighestOne() {
+        DestinationNameIndex index = index("movie.mkv", "movie (copy).mkv", "movie (copy 4).mkv");
+        assertEquals("movie (copy 5).mkv", index.reserve("movie.mkv"));
+    }
+
+    @Test
+    public void copyOfACopyIsNumberedAfterTheOriginal() {
+        DestinationNameIndex index = index("movie.mkv", "movie (copy).mkv");
+        assertEquals("movie (copy 2).mkv", index.reserve("movie (copy).mkv"));
+    }
+
+    @Test
+    public void reservedNamesAreTaken() {
+        DestinationNameIndex index = index("notes");
+        assertEquals("notes (copy)", index.reserve("notes"));
+        assertEquals("notes (copy 2)", index.reserve("notes"));
+        assertEquals("notes (copy 3)", index.reserve("notes"));
+    }
+
+    @Test
+    public void extensionsAreIndependent() {
+        DestinationNameIndex index = index("movie.mkv", "movie (copy 3).mkv", "movie.srt");
+        assertEquals("movie (copy).srt", index.reserve("movie.srt"));
+    }
+
+    @Test
+    public void nonNumericCopyIsNotACopy() {
+        DestinationNameIndex index = index("movie (copy x).mkv");
+        assertEquals("movie (copy x) (copy).mkv", index.reserve("movie (copy x).mkv"));
+    }
+
+    @Test
+    public void emptyTargetDirectory() {
+        DestinationNameIndex index = new DestinationNameIndex(null, " (copy)", " (copy ", ")");
+        assertEquals("a.txt", index.reserve("a.txt"));
+        assertEquals("a (copy).txt", index.reserve("a.txt"));
+    }
+}
@@ -0,0 +1,105 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary;
+
+import android.content.Context;
+import android.net.Uri;
+
+/**
+ * MetaFile2 only made of what the listing code compares: name, type, size and date
+ */
+class FakeMetaFile extends MetaFile2 {
+
+    private final String mName;
+    private final boolean mDirectory;
+    private final long mLength;
+    private final long mLastModified;
+
+    static FakeMetaFile file(String name, long length, long lastModified) {
+        return new FakeMetaFile(name, false, length, lastModified);
+    }
+
+    static FakeMetaFile directory(String name, long lastModified) {
+        return new FakeMetaFile(name, true, 0, lastModified);
+    }
+
+    private FakeMetaFile(String name, boolean directory, long length, long lastModified) {
+        mName = name;
+        mDirectory = directory;
+        mLength = length;
+        mLastModified = lastModified;
+    }
+
+    @Override
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return mDirectory;
+    }
+
+    @Override
+    public boolean isFile() {
+        return !mDirectory;
+    }
+
+    @Override
+    public long lastModified() {
+        return mLastModified;
+    }
+
+    @Override
+    public boolean canRead() {
+        return true;
+    }
+
+    @Override
+    public boolean canWrite() {
+        return true;
+    }
+
+    @Override
+    public long length() {
+        return mLength;
+    }
+
+    @Override
+    public RawLister getRawListerInstance() {
+        return null;
+    }
+
+    @Override
+    public FileEditor getFileEditorInstance(Context ct) {
+        return null;
+    }
+
+    @Override
+    public Uri getUri() {
+        return null;
+    }
+
+    @Override
+    public boolean isRemote() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+}
@@ -0,0 +1,67 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import android.net.Uri;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class ListingCacheTest {
+
+    private static String normalize(String uri) {
+        return ListingCache.normalize(Uri.parse(uri));
+    }
+
+    @Test
+    public void slashesAreIgnored() {
+        assertEquals("smb://server/share/dir", normalize("smb://server/share/dir/"));
+        assertEquals("smb://server/share/dir", normalize("smb://server//share///dir"));
+        assertEquals("smb://server", normalize("smb://server/"));
+    }
+
+    @Test
+    public void schemeAndHostAreCaseInsensitive() {
+        assertEquals(normalize("smb://server/share"), normalize("SMB://Server/share"));
+    }
+
+    @Test
+    public void pathIsCaseSensitive() {
+        assertNotEquals(normalize("sftp://server/Home"), normalize("sftp://server/home"));
+    }
+
+    @Test
+    public void userAndPortAreKept() {
+        assertEquals("sftp://user@server:2222/home", normalize("sftp://user@server:2222/home/"));
+        assertNotEquals(normalize("ftp://a@server/dir"), normalize("ftp://b@server/dir"));
+        assertNotEquals(normalize("ftp://server:21/dir"), normalize("ftp://server:2121/dir"));
+    }
+
+    @Test
+    public void encodedPathIsKept() {
+        assertEquals("webdav://server/my%20dir", normalize("webdav://server/my%20dir/"));
+    }
+
+    @Test
+    public void noScheme() {
+        assertEquals("file:///sdcard/Movies", normalize("/sdcard/Movies/"));
+    }
+}
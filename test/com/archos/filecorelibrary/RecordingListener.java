@@ -0,0 +1,112 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary;
+
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Resources;
+import android.net.Uri;
+import android.os.Looper;
+
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records what an engine reports, callbacks are run by idling the main looper in await()
+ */
+class RecordingListener implements OperationEngineListener {
+
+    private static final long TIMEOUT_MS = 20000;
+
+    final List<Uri> mSucceeded = new ArrayList<>();
+    SyncReport mSyncReport;
+    Exception mFatalError;
+    boolean mEnded;
+    boolean mCanceled;
+
+    /**
+     * Context whose strings are all "copy": the R ids of the library are not packaged in the JVM tests
+     */
+    static Context context() {
+        final Context base = RuntimeEnvironment.getApplication();
+        final Resources resources = new Resources(base.getAssets(), base.getResources().getDisplayMetrics(), base.getResources().getConfiguration()) {
+            @Override
+            public String getString(int id) {
+                return "copy";
+            }
+        };
+        return new ContextWrapper(base) {
+            @Override
+            public Resources getResources() {
+                return resources;
+            }
+        };
+    }
+
+    /**
+     * Runs the posted callbacks until the engine is done
+     */
+    void await() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!mEnded && !mCanceled && mFatalError == null) {
+            if (System.currentTimeMillis() > deadline)
+                fail("engine did not end");
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(5);
+        }
+        if (mFatalError != null)
+            throw new AssertionError("fatal error", mFatalError);
+    }
+
+    @Override
+    public void onStart() {}
+
+    @Override
+    public void onProgress(int currentFile, long currentFileProgress, int currentRootFile, long currentRootProgress, long totalProgress, double currentSpeed) {}
+
+    @Override
+    public void onSuccess(Uri file) {
+        mSucceeded.add(file);
+    }
+
+    @Override
+    public void onFilesListUpdate(List<MetaFile2> copyingMetaFiles, List<MetaFile2> rootMetaFiles) {}
+
+    @Override
+    public void onEnd() {
+        mEnded = true;
+    }
+
+    @Override
+    public void onFatalError(Exception e) {
+        mFatalError = e;
+    }
+
+    @Override
+    public void onCanceled() {
+        mCanceled = true;
+    }
+
+    @Override
+    public void onSyncReport(SyncReport report) {
+        mSyncReport = report;
+    }
+}
@@ -0,0 +1,231 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.jobs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowEnvironment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Life cycle of the jobs, run with local DELETE jobs: no network, nothing to resolve but the files themselves
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TransferJobQueueTest {
+
+    private static final long TIMEOUT_MS = 20000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private Context mContext;
+    private TransferJobQueue mQueue;
+    // ids of the jobs in the order they started running
+    private final List<Long> mStarted = new ArrayList<>();
+
+    private final TransferJobQueue.Listener mListener = new TransferJobQueue.Listener() {
+        @Override
+        public void onJobStateChanged(TransferJob job) {
+            if (job.getState() == TransferJob.State.RUNNING)
+                mStarted.add(job.getId());
+        }
+
+        @Override
+        public void onJobProgress(TransferJob job) {}
+    };
+
+    /**
+     * Runs the posted callbacks until condition holds
+     */
+    private static void waitFor(Callable<Boolean> condition) throws Exception {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            shadowOf(Looper.getMainLooper()).idle();
+            if (condition.call())
+                return;
+            if (System.currentTimeMillis() > deadline)
+                fail("condition not met");
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Lets the background threads (resolver, database, engines) run and post their results
+     */
+    private static void settle() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(10);
+        }
+    }
+
+    private static TransferJob.State stateOf(TransferJobQueue queue, long id) {
+        TransferJob job = queue.getJob(id);
+        assertNotNull(job);
+        return job.getState();
+    }
+
+    private void waitForState(final TransferJobQueue queue, final long id, final TransferJob.State state) throws Exception {
+        waitFor(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                TransferJob job = queue.getJob(id);
+                return job != null && job.getState() == state;
+            }
+        });
+    }
+
+    private long delete(TransferJobQueue queue, File file, int priority) {
+        List<Uri> sources = new ArrayList<>();
+        sources.add(Uri.fromFile(file));
+        return queue.enqueue(TransferJob.Type.DELETE, sources, null, 0, priority);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        // local deletion checks the all files access, that looks at the primary external storage
+        ShadowEnvironment.addExternalDir(mFolder.newFolder("sdcard").getPath());
+        mContext = RuntimeEnvironment.getApplication();
+        mQueue = new TransferJobQueue(mContext);
+        mQueue.addListener(mListener);
+    }
+
+    @Test
+    public void jobRunsToDone() throws Exception {
+        File file = mFolder.newFile("a");
+        long id = delete(mQueue, file, TransferJob.PRIORITY_NORMAL);
+        waitForState(mQueue, id, TransferJob.State.DONE);
+        assertFalse(file.exists());
+        assertEquals(List.of(id), mStarted);
+    }
+
+    @Test
+    public void highestPriorityFirstThenOldest() throws Exception {
+        mQueue.setMaxConcurrentJobs(1);
+        long first = delete(mQueue, mFolder.newFile("a"), TransferJob.PRIORITY_NORMAL);
+        long normal = delete(mQueue, mFolder.newFile("b"), TransferJob.PRIORITY_NORMAL);
+        long background = delete(mQueue, mFolder.newFile("c"), TransferJob.PRIORITY_BACKGROUND);
+        long high = delete(mQueue, mFolder.newFile("d"), TransferJob.PRIORITY_HIGH);
+        long newerNormal = delete(mQueue, mFolder.newFile("e"), TransferJob.PRIORITY_NORMAL);
+        waitForState(mQueue, background, TransferJob.State.DONE);
+        // first one started before the others were queued
+        assertEquals(List.of(first, high, normal, newerNormal, background), mStarted);
+    }
+
+    @Test
+    public void pausedJobWaitsForResume() throws Exception {
+        File file = mFolder.newFile("a");
+        long id = delete(mQueue, file, TransferJob.PRIORITY_NORMAL);
+        // stopped while its sources are being resolved
+        mQueue.pause(id);
+        settle();
+        assertEquals(TransferJob.State.PAUSED, stateOf(mQueue, id));
+        assertTrue(file.exists());
+
+        mQueue.resume(id);
+        waitForState(mQueue, id, TransferJob.State.DONE);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void canceledJobNeverRuns() throws Exception {
+        mQueue.setPlaybackActive(true);
+        File file = mFolder.newFile("a");
+        long id = delete(mQueue, file, TransferJob.PRIORITY_BACKGROUND);
+        settle();
+        assertEquals(TransferJob.State.QUEUED, stateOf(mQueue, id));
+
+        mQueue.cancel(id);
+        mQueue.setPlaybackActive(false);
+        settle();
+        assertEquals(TransferJob.State.CANCELED, stateOf(mQueue, id));
+        assertTrue(mStarted.isEmpty());
+        assertTrue(file.exists());
+        // finished jobs are not resumed
+        mQueue.resume(id);
+        settle();
+        assertEquals(TransferJob.State.CANCELED, stateOf(mQueue, id));
+    }
+
+    @Test
+    public void playbackHoldsBackgroundJobs() throws Exception {
+        mQueue.setPlaybackActive(true);
+        File backgroundFile = mFolder.newFile("a");
+        long background = delete(mQueue, backgroundFile, TransferJob.PRIORITY_BACKGROUND);
+        long normal = delete(mQueue, mFolder.newFile("b"), TransferJob.PRIORITY_NORMAL);
+        waitForState(mQueue, normal, TransferJob.State.DONE);
+        settle();
+        assertEquals(TransferJob.State.QUEUED, stateOf(mQueue, background));
+        assertTrue(backgroundFile.exists());
+
+        mQueue.setPlaybackActive(false);
+        waitForState(mQueue, background, TransferJob.State.DONE);
+        assertFalse(backgroundFile.exists());
+    }
+
+    @Test
+    public void missingSourcesFail() throws Exception {
+        long id = delete(mQueue, new File(mFolder.getRoot(), "missing"), TransferJob.PRIORITY_NORMAL);
+        waitForState(mQueue, id, TransferJob.State.FAILED);
+    }
+
+    @Test
+    public void unfinishedJobsAreRestored() throws Exception {
+        mQueue.setPlaybackActive(true);
+        File file = mFolder.newFile("a");
+        final long id = delete(mQueue, file, TransferJob.PRIORITY_BACKGROUND);
+        long done = delete(mQueue, mFolder.newFile("b"), TransferJob.PRIORITY_NORMAL);
+        waitForState(mQueue, done, TransferJob.State.DONE);
+        // database writes are done in the background, in order
+        final TransferJobDatabase database = new TransferJobDatabase(mContext);
+        waitFor(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                List<TransferJob> stored = database.loadJobs();
+                return stored.size() == 1 && stored.get(0).getId() == id;
+            }
+        });
+
+        // as after process death: only what was persisted is left
+        final TransferJobQueue restored = new TransferJobQueue(mContext);
+        waitForState(restored, id, TransferJob.State.DONE);
+        assertFalse(file.exists());
+        assertEquals(1, restored.getJobs().size());
+        // new ids stay above the restored ones
+        assertTrue(delete(restored, mFolder.newFile("c"), TransferJob.PRIORITY_NORMAL) > id);
+    }
+}
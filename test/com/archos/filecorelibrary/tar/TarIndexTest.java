@@ -0,0 +1,157 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.tar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.net.Uri;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class TarIndexTest {
+
+    private static final long TIME = 1700000000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static byte[] content(String name, int length) {
+        byte[] content = new byte[length];
+        byte[] pattern = name.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < length; i++)
+            content[i] = pattern[i % pattern.length];
+        return content;
+    }
+
+    private static void put(TarOutputStream tar, String name, byte[] content) throws IOException {
+        tar.putNextEntry(TarEntry.file(name, content.length, TIME));
+        tar.write(content);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0)
+            out.write(buffer, 0, read);
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static List<String> names(List<TarEntry> entries) {
+        ArrayList<String> names = new ArrayList<>();
+        for (TarEntry entry : entries)
+            names.add(entry.getName());
+        Collections.sort(names);
+        return names;
+    }
+
+    private TarIndex.Archive index(File file) throws IOException {
+        return TarIndex.getInstance().get(TarUtils.getTarUri(Uri.fromFile(file)));
+    }
+
+    @Test
+    public void treeOfEntries() throws IOException {
+        File file = mFolder.newFile("test.tar");
+        String longName = "deep/" + new String(new char[150]).replace('\0', 'n') + ".txt";
+        try (TarOutputStream tar = new TarOutputStream(new FileOutputStream(file))) {
+            tar.putNextEntry(TarEntry.directory("dir", TIME));
+            put(tar, "dir/a.txt", content("a", 1000));
+            put(tar, "dir/sub/b.bin", content("b", 3 * 512 + 1));
+            put(tar, "top.txt", content("top", 0));
+            put(tar, longName, content("long", 10));
+        }
+        TarIndex.Archive archive = index(file);
+        assertEquals(7, archive.size());
+        assertEquals(List.of("deep", "dir", "top.txt"), names(archive.list("")));
+        assertEquals(List.of("dir/a.txt", "dir/sub"), names(archive.list("dir/")));
+        // parent without an entry of its own
+        assertTrue(archive.getEntry("dir/sub").isDirectory());
+        assertEquals(List.of("dir/sub/b.bin"), names(archive.list("dir/sub")));
+        assertNull(archive.list("missing"));
+        assertNotNull(archive.getEntry(longName));
+
+        assertArrayEquals(content("a", 1000), readAll(archive.getInputStream(archive.getEntry("dir/a.txt"))));
+        assertArrayEquals(content("long", 10), readAll(archive.getInputStream(archive.getEntry(longName))));
+        assertEquals(0, readAll(archive.getInputStream(archive.getEntry("top.txt"))).length);
+    }
+
+    @Test
+    public void readFromOffset() throws IOException {
+        File file = mFolder.newFile("offset.tar");
+        byte[] content = content("0123456789", 5000);
+        try (TarOutputStream tar = new TarOutputStream(new FileOutputStream(file))) {
+            put(tar, "first", content("x", 700));
+            put(tar, "second", content);
+        }
+        TarIndex.Archive archive = index(file);
+        TarEntry entry = archive.getEntry("second");
+        byte[] tail = readAll(archive.getInputStream(entry, 4321));
+        assertEquals(5000 - 4321, tail.length);
+        assertEquals('1', tail[0]);
+        assertEquals(0, readAll(archive.getInputStream(entry, 10000)).length);
+    }
+
+    @Test
+    public void dotPrefixAndAppendedEntries() throws IOException {
+        File file = mFolder.newFile("dot.tar");
+        try (TarOutputStream tar = new TarOutputStream(new FileOutputStream(file))) {
+            tar.putNextEntry(TarEntry.directory(".", TIME));
+            put(tar, "./file", content("old", 10));
+            put(tar, "./dir/other", content("other", 10));
+            // tar -r: the last copy wins
+            put(tar, "./file", content("new", 20));
+        }
+        TarIndex.Archive archive = index(file);
+        assertEquals(List.of("dir", "file"), names(archive.list("")));
+        assertArrayEquals(content("new", 20), readAll(archive.getInputStream(archive.getEntry("file"))));
+    }
+
+    @Test
+    public void rewrittenArchiveIsIndexedAgain() throws IOException {
+        File file = mFolder.newFile("rewritten.tar");
+        try (TarOutputStream tar = new TarOutputStream(new FileOutputStream(file))) {
+            put(tar, "before", content("b", 10));
+        }
+        assertNotNull(index(file).getEntry("before"));
+        try (TarOutputStream tar = new TarOutputStream(new FileOutputStream(file))) {
+            put(tar, "after", content("a", 10));
+            put(tar, "after2", content("a", 600));
+        }
+        TarIndex.Archive archive = index(file);
+        assertNull(archive.getEntry("before"));
+        assertNotNull(archive.getEntry("after"));
+    }
+}
@@ -0,0 +1,186 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.tar;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Archives written by TarOutputStream, read back by TarInputStream
+ */
+public class TarStreamTest {
+
+    private static final long TIME = 1700000000000L;
+
+    private static byte[] content(String name, int length) {
+        byte[] content = new byte[length];
+        byte[] pattern = name.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < length; i++)
+            content[i] = pattern[i % pattern.length];
+        return content;
+    }
+
+    private static void put(TarOutputStream tar, String name, byte[] content) throws IOException {
+        tar.putNextEntry(TarEntry.file(name, content.length, TIME));
+        tar.write(content);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[700];
+        int read;
+        while ((read = in.read(buffer)) > 0)
+            out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    /**
+     * Like an ssh channel: skip() never moves
+     */
+    private static class NoSkipInputStream extends FilterInputStream {
+        NoSkipInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public long skip(long n) {
+            return 0;
+        }
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        // split between the ustar prefix and name fields
+        String prefixed = repeat('p', 120) + "/" + repeat('n', 90);
+        // single 150 bytes component: GNU long name record
+        String longName = "dir/" + repeat('l', 150);
+        String[] names = { "empty", "one", "block", "block+1", prefixed, longName, "dir/été.txt" };
+        int[] sizes = { 0, 1, 512, 513, 10, 2000, 3 };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(out)) {
+            tar.putNextEntry(TarEntry.directory("dir", TIME));
+            for (int i = 0; i < names.length; i++)
+                put(tar, names[i], content(names[i], sizes[i]));
+        }
+        byte[] archive = out.toByteArray();
+        assertEquals(0, archive.length % 512);
+
+        TarInputStream in = new TarInputStream(new ByteArrayInputStream(archive));
+        TarEntry entry = in.getNextEntry();
+        assertEquals("dir", entry.getName());
+        assertTrue(entry.isDirectory());
+        assertEquals(0755, entry.getMode());
+        for (int i = 0; i < names.length; i++) {
+            entry = in.getNextEntry();
+            assertEquals(names[i], entry.getName());
+            assertTrue(entry.isFile());
+            assertEquals(sizes[i], entry.getSize());
+            assertEquals(TIME, entry.getLastModified());
+            assertEquals(0644, entry.getMode());
+            byte[] expected = content(names[i], sizes[i]);
+            assertArrayEquals(expected, readAll(in));
+            // the offset is where the content lies in the archive, as used for in place reads
+            assertArrayEquals(expected, Arrays.copyOfRange(archive, (int) entry.getDataOffset(), (int) entry.getDataOffset() + sizes[i]));
+        }
+        assertNull(in.getNextEntry());
+        assertNull(in.getNextEntry());
+    }
+
+    @Test
+    public void unreadContentIsSkipped() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(out)) {
+            put(tar, "first", content("first", 5000));
+            put(tar, "second", content("second", 100));
+            put(tar, "third", content("third", 1));
+        }
+        TarInputStream in = new TarInputStream(new NoSkipInputStream(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals("first", in.getNextEntry().getName());
+        byte[] start = new byte[10];
+        assertEquals(10, in.read(start));
+        assertEquals(100, in.skip(100));
+        assertEquals("second", in.getNextEntry().getName());
+        assertEquals("third", in.getNextEntry().getName());
+        assertArrayEquals(content("third", 1), readAll(in));
+        assertNull(in.getNextEntry());
+    }
+
+    @Test
+    public void declaredSizeIsEnforced() throws IOException {
+        TarOutputStream tar = new TarOutputStream(new ByteArrayOutputStream());
+        tar.putNextEntry(TarEntry.file("short", 10, TIME));
+        try {
+            tar.write(new byte[11]);
+            fail("content larger than the declared size");
+        } catch (IOException expected) {
+        }
+        tar.write(new byte[9]);
+        try {
+            tar.putNextEntry(TarEntry.file("next", 1, TIME));
+            fail("previous entry missing a byte");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void corruptedHeaderIsRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(out)) {
+            put(tar, "file", content("file", 10));
+        }
+        byte[] archive = out.toByteArray();
+        archive[0] = 'F';
+        try {
+            new TarInputStream(new ByteArrayInputStream(archive)).getNextEntry();
+            fail("bad checksum");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void truncatedContentFails() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(out)) {
+            put(tar, "file", content("file", 2000));
+        }
+        TarInputStream in = new TarInputStream(new ByteArrayInputStream(Arrays.copyOf(out.toByteArray(), 512 + 1000)));
+        in.getNextEntry();
+        try {
+            readAll(in);
+            fail("truncated entry");
+        } catch (IOException expected) {
+        }
+    }
+}
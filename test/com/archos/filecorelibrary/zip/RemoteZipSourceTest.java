@@ -0,0 +1,230 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.net.Uri;
+
+import com.archos.filecorelibrary.FileEditor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Range requests made by RemoteZipSource, counted on a fake editor
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RemoteZipSourceTest {
+
+    private static final Uri URI = Uri.parse("smb://server/share/archive.zip");
+    private static final int BUFFER_SIZE = 8192;
+
+    private static class FakeEditor extends FileEditor {
+        final byte[] mData;
+        // position of each request
+        final List<Long> mOpens = new ArrayList<>();
+        int mClosed;
+        // streams opened before that many requests fail, as if the server had dropped them
+        int mBrokenBefore;
+
+        FakeEditor(byte[] data) {
+            super(URI);
+            mData = data;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return getInputStream(0);
+        }
+
+        @Override
+        public InputStream getInputStream(long from) {
+            final int request = mOpens.size();
+            mOpens.add(from);
+            final InputStream data = new ByteArrayInputStream(mData, (int) from, mData.length - (int) from);
+            return new InputStream() {
+                private void check() throws IOException {
+                    if (request < mBrokenBefore)
+                        throw new IOException("connection reset");
+                }
+
+                @Override
+                public int read() throws IOException {
+                    check();
+                    return data.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    check();
+                    return data.read(b, off, len);
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    check();
+                    return data.skip(n);
+                }
+
+                @Override
+                public void close() {
+                    mClosed++;
+                }
+            };
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+    }
+
+    private byte[] mData;
+    private FakeEditor mEditor;
+    private RemoteZipSource mSource;
+
+    @Before
+    public void setUp() {
+        mData = new byte[4 * 1024 * 1024];
+        new Random(0).nextBytes(mData);
+        mEditor = new FakeEditor(mData);
+        mSource = new RemoteZipSource(URI, mEditor, mData.length, BUFFER_SIZE);
+    }
+
+    private void assertRead(long position, int length) throws IOException {
+        byte[] buffer = new byte[length];
+        int total = 0;
+        while (total < length) {
+            int read = mSource.read(position + total, buffer, total, length - total);
+            assertTrue("read at " + (position + total), read > 0);
+            total += read;
+        }
+        assertArrayEquals(Arrays.copyOfRange(mData, (int) position, (int) position + length), buffer);
+    }
+
+    @Test
+    public void sequentialReadsShareOneRequest() throws IOException {
+        for (int position = 0; position < 200000; position += 1000)
+            assertRead(position, 1000);
+        assertEquals(List.of(0L), mEditor.mOpens);
+    }
+
+    @Test
+    public void shortForwardSeeksSkip() throws IOException {
+        assertRead(0, 100);
+        assertRead(100000, 100);
+        assertEquals(1, mEditor.mOpens.size());
+        // too far to be worth reading through
+        assertRead(2000000, 100);
+        // behind every cursor
+        assertRead(50, 100);
+        assertEquals(List.of(0L, 2000000L, 50L), mEditor.mOpens);
+    }
+
+    @Test
+    public void interleavedReadsKeepTheirCursors() throws IOException {
+        for (int i = 0; i < 50; i++) {
+            assertRead(i * 1000, 1000);
+            assertRead(1000000 + i * 1000, 1000);
+            assertRead(3000000 + i * 1000, 1000);
+        }
+        assertEquals(List.of(0L, 1000000L, 3000000L), mEditor.mOpens);
+    }
+
+    @Test
+    public void leastRecentlyUsedCursorsAreClosed() throws IOException {
+        for (int i = 0; i <= RemoteZipSource.MAX_CURSORS; i++)
+            assertRead(i * 1000000, 10);
+        assertEquals(1, mEditor.mClosed);
+        // the first one was evicted
+        assertRead(10, 10);
+        assertEquals(RemoteZipSource.MAX_CURSORS + 2, mEditor.mOpens.size());
+        mSource.close();
+        assertEquals(mEditor.mOpens.size(), mEditor.mClosed);
+    }
+
+    @Test
+    public void droppedCursorIsReopened() throws IOException {
+        assertRead(0, 100);
+        mEditor.mBrokenBefore = 1;
+        // beyond what is buffered: the kept stream is read again
+        assertRead(2 * BUFFER_SIZE, 100);
+        assertEquals(List.of(0L, (long) 2 * BUFFER_SIZE), mEditor.mOpens);
+        // fresh requests failing too: the error reaches the caller
+        mEditor.mBrokenBefore = Integer.MAX_VALUE;
+        try {
+            mSource.read(3000000, new byte[10], 0, 10);
+            fail("broken server");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void readsStopAtTheEnd() throws IOException {
+        byte[] buffer = new byte[100];
+        assertEquals(10, mSource.read(mData.length - 10, buffer, 0, 100));
+        assertEquals(-1, mSource.read(mData.length, buffer, 0, 100));
+    }
+
+    private byte[] archive(int entryCount, String prefix) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (int i = 0; i < entryCount; i++) {
+                zip.putNextEntry(new ZipEntry(prefix + i));
+                zip.write(mData, i * 1000, 1000);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void centralDirectoryOfRemoteArchive() throws IOException {
+        byte[] archive = archive(100, "dir/file");
+        FakeEditor editor = new FakeEditor(archive);
+        List<ZipArchiveEntry> entries = ZipCentralDirectory.read(new RemoteZipSource(URI, editor, archive.length, BUFFER_SIZE));
+        assertEquals(100, entries.size());
+        assertEquals("dir/file99", entries.get(99).getName());
+        // small archive: the central directory is in the tail read to find its end record
+        assertEquals(1, editor.mOpens.size());
+    }
+
+    @Test
+    public void largeCentralDirectoryIsReadInOneRequest() throws IOException {
+        // about 200KB of central directory
+        byte[] archive = archive(2000, "some/rather/long/directory/names/file");
+        FakeEditor editor = new FakeEditor(archive);
+        List<ZipArchiveEntry> entries = ZipCentralDirectory.read(new RemoteZipSource(URI, editor, archive.length, BUFFER_SIZE));
+        assertEquals(2000, entries.size());
+        assertEquals(2, editor.mOpens.size());
+    }
+}
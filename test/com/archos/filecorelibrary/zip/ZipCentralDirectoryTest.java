@@ -0,0 +1,168 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+public class ZipCentralDirectoryTest {
+
+    // even seconds: dos dates have a 2s resolution
+    private static final long TIME = 1700000000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static final byte[] STORED_CONTENT = "stored content".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DEFLATED_CONTENT = new byte[10000];
+
+    /**
+     * Archive made by java.util.zip, after prefix (e.g. the stub of a self extracting archive)
+     */
+    private File writeArchive(byte[] prefix, String comment) throws IOException {
+        File file = mFolder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(prefix);
+            ZipOutputStream zip = new ZipOutputStream(out);
+            ZipEntry directory = new ZipEntry("dir/");
+            directory.setTime(TIME);
+            zip.putNextEntry(directory);
+            ZipEntry stored = new ZipEntry("dir/stored.txt");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(STORED_CONTENT.length);
+            CRC32 crc = new CRC32();
+            crc.update(STORED_CONTENT);
+            stored.setCrc(crc.getValue());
+            stored.setTime(TIME);
+            zip.putNextEntry(stored);
+            zip.write(STORED_CONTENT);
+            ZipEntry deflated = new ZipEntry("deflated.bin");
+            deflated.setTime(TIME);
+            zip.putNextEntry(deflated);
+            zip.write(DEFLATED_CONTENT);
+            if (comment != null)
+                zip.setComment(comment);
+            zip.finish();
+        }
+        return file;
+    }
+
+    private static void assertEntries(List<ZipArchiveEntry> entries) {
+        assertEquals(3, entries.size());
+        assertEquals("dir/", entries.get(0).getName());
+        assertTrue(entries.get(0).isDirectory());
+        ZipArchiveEntry stored = entries.get(1);
+        assertEquals("dir/stored.txt", stored.getName());
+        assertEquals(ZipEntry.STORED, stored.getCompressionMethod());
+        assertEquals(STORED_CONTENT.length, stored.getSize());
+        assertEquals(TIME, stored.getTime());
+        ZipArchiveEntry deflated = entries.get(2);
+        assertEquals("deflated.bin", deflated.getName());
+        assertEquals(ZipEntry.DEFLATED, deflated.getCompressionMethod());
+        assertEquals(DEFLATED_CONTENT.length, deflated.getSize());
+        assertTrue(deflated.getCompressedSize() < DEFLATED_CONTENT.length);
+        CRC32 crc = new CRC32();
+        crc.update(DEFLATED_CONTENT);
+        assertEquals(crc.getValue(), deflated.getCrc());
+    }
+
+    private static byte[] readData(ZipSource source, ZipArchiveEntry entry) throws IOException {
+        long offset = ZipCentralDirectory.getDataOffset(source, entry);
+        byte[] data = new byte[(int) entry.getCompressedSize()];
+        int length = 0;
+        while (length < data.length) {
+            int read = source.read(offset + length, data, length, data.length - length);
+            assertTrue(read > 0);
+            length += read;
+        }
+        return data;
+    }
+
+    @Test
+    public void javaArchive() throws IOException {
+        File file = writeArchive(new byte[0], null);
+        try (ZipSource source = new FileZipSource(file)) {
+            List<ZipArchiveEntry> entries = ZipCentralDirectory.read(source);
+            assertEntries(entries);
+            assertEquals(0, entries.get(0).getLocalHeaderOffset());
+            assertArrayEquals(STORED_CONTENT, readData(source, entries.get(1)));
+        }
+    }
+
+    @Test
+    public void commentAndPrefix() throws IOException {
+        byte[] prefix = new byte[1000];
+        StringBuilder comment = new StringBuilder();
+        while (comment.length() < 30000)
+            comment.append("a long comment ");
+        File file = writeArchive(prefix, comment.toString());
+        try (ZipSource source = new FileZipSource(file)) {
+            List<ZipArchiveEntry> entries = ZipCentralDirectory.read(source);
+            assertEntries(entries);
+            // offsets are in the file, prefix included
+            assertArrayEquals(STORED_CONTENT, readData(source, entries.get(1)));
+        }
+    }
+
+    @Test
+    public void zip64Archive() throws IOException {
+        File file = mFolder.newFile();
+        int count = 70000;
+        ZipWriter writer = new ZipWriter(new FileOutputStream(file), 1, ZipWriter.DEFAULT_MAX_IN_FLIGHT_BLOCKS);
+        for (int i = 0; i < count; i++)
+            writer.putStored("file" + i, TIME, 0, 0, new ByteArrayInputStream(new byte[0]));
+        CRC32 crc = new CRC32();
+        crc.update(STORED_CONTENT);
+        writer.putStored("last", TIME, STORED_CONTENT.length, crc.getValue(), new ByteArrayInputStream(STORED_CONTENT));
+        writer.close();
+
+        try (ZipSource source = new FileZipSource(file)) {
+            List<ZipArchiveEntry> entries = ZipCentralDirectory.read(source);
+            assertEquals(count + 1, entries.size());
+            ZipArchiveEntry last = entries.get(count);
+            assertEquals("last", last.getName());
+            assertArrayEquals(STORED_CONTENT, readData(source, last));
+        }
+    }
+
+    @Test(expected = ZipException.class)
+    public void notAnArchive() throws IOException {
+        File file = mFolder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[5000]);
+        }
+        try (ZipSource source = new FileZipSource(file)) {
+            ZipCentralDirectory.read(source);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+@RunWith(RobolectricTestRunner.class)
+public class ZipCompressionPolicyTest {
+
+    private static final ZipCompressionPolicy AUTO = ZipCompressionPolicy.DEFAULT;
+
+    private static byte[] random() {
+        byte[] sample = new byte[ZipCompressionPolicy.SAMPLE_SIZE];
+        new Random(0).nextBytes(sample);
+        return sample;
+    }
+
+    private static byte[] repetitive() {
+        byte[] sample = new byte[ZipCompressionPolicy.SAMPLE_SIZE];
+        for (int i = 0; i < sample.length; i++)
+            sample[i] = (byte) "some text ".charAt(i % 10);
+        return sample;
+    }
+
+    @Test
+    public void compressedMediaAreStored() {
+        for (String name : new String[] { "movie.mkv", "movie.MP4", "song.mp3", "photo.jpg", "photo.png" }) {
+            assertFalse(name, AUTO.needsSample(name));
+            assertEquals(name, ZipEntry.STORED, AUTO.getMethod(name, null, 0));
+        }
+    }
+
+    @Test
+    public void uncompressedMediaAreDeflated() {
+        for (String name : new String[] { "sound.wav", "picture.bmp" }) {
+            assertFalse(name, AUTO.needsSample(name));
+            assertEquals(name, ZipEntry.DEFLATED, AUTO.getMethod(name, null, 0));
+        }
+    }
+
+    @Test
+    public void textIsDeflated() {
+        assertEquals(ZipEntry.DEFLATED, AUTO.getMethod("notes.txt", null, 0));
+        assertEquals(ZipEntry.DEFLATED, AUTO.getMethod("subtitles.srt", null, 0));
+    }
+
+    @Test
+    public void archivesAreStored() {
+        assertEquals(ZipEntry.STORED, AUTO.getMethod("backup.zip", null, 0));
+        assertEquals(ZipEntry.STORED, AUTO.getMethod("app.apk", null, 0));
+        assertEquals(ZipEntry.STORED, AUTO.getMethod("report.docx", null, 0));
+    }
+
+    @Test
+    public void unknownTypesAreSampled() {
+        for (String name : new String[] { "data.xyz123", "README" }) {
+            assertTrue(name, AUTO.needsSample(name));
+            assertEquals(name, ZipEntry.STORED, AUTO.getMethod(name, random(), ZipCompressionPolicy.SAMPLE_SIZE));
+            assertEquals(name, ZipEntry.DEFLATED, AUTO.getMethod(name, repetitive(), ZipCompressionPolicy.SAMPLE_SIZE));
+            // empty or missing sample: deflating costs nothing
+            assertEquals(name, ZipEntry.DEFLATED, AUTO.getMethod(name, null, 0));
+        }
+    }
+
+    @Test
+    public void forcedModes() {
+        ZipCompressionPolicy storeAll = new ZipCompressionPolicy(ZipCompressionPolicy.Mode.STORE_ALL, Deflater.DEFAULT_COMPRESSION);
+        ZipCompressionPolicy deflateAll = new ZipCompressionPolicy(ZipCompressionPolicy.Mode.DEFLATE_ALL, 9);
+        ZipCompressionPolicy noCompression = new ZipCompressionPolicy(ZipCompressionPolicy.Mode.AUTO, Deflater.NO_COMPRESSION);
+        for (String name : new String[] { "movie.mkv", "notes.txt", "data.xyz123" }) {
+            assertFalse(name, storeAll.needsSample(name));
+            assertFalse(name, deflateAll.needsSample(name));
+            assertEquals(name, ZipEntry.STORED, storeAll.getMethod(name, null, 0));
+            assertEquals(name, ZipEntry.DEFLATED, deflateAll.getMethod(name, random(), ZipCompressionPolicy.SAMPLE_SIZE));
+            assertEquals(name, ZipEntry.STORED, noCompression.getMethod(name, repetitive(), ZipCompressionPolicy.SAMPLE_SIZE));
+        }
+        assertEquals(9, deflateAll.getLevel());
+    }
+}
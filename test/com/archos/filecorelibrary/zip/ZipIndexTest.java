@@ -0,0 +1,170 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Seeks in entries read from their local header offset
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ZipIndexTest {
+
+    private static final int LENGTH = 300000;
+    private static final long[] OFFSETS = { 0, 1, 65535, 65536, 123457, LENGTH - 1, LENGTH };
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static byte[] text(int length) {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(length);
+        while (text.length() < length)
+            text.append("line ").append(random.nextInt(1000)).append(" of some text\n");
+        return text.substring(0, length).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        try {
+            while ((read = in.read(buffer)) > 0)
+                out.write(buffer, 0, read);
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readSome(InputStream in, int length) throws IOException {
+        byte[] data = new byte[length];
+        int total = 0;
+        while (total < length) {
+            int read = in.read(data, total, length - total);
+            if (read < 0) break;
+            total += read;
+        }
+        in.close();
+        return Arrays.copyOf(data, total);
+    }
+
+    private File writeArchive(byte[] content) throws IOException {
+        File file = mFolder.newFile();
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+            ZipEntry stored = new ZipEntry("stored.mkv");
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(content.length);
+            stored.setCrc(crc.getValue());
+            zip.putNextEntry(stored);
+            zip.write(content);
+            zip.putNextEntry(new ZipEntry("deflated.txt"));
+            zip.write(content);
+        }
+        return file;
+    }
+
+    private ZipIndex.Archive index(File file) throws IOException {
+        return ZipIndex.getInstance().get(file.getPath());
+    }
+
+    @Test
+    public void seekInStoredEntry() throws IOException {
+        byte[] content = text(LENGTH);
+        ZipIndex.Archive archive = index(writeArchive(content));
+        ZipEntry entry = archive.getEntry("stored.mkv");
+        for (long from : OFFSETS)
+            assertArrayEquals("from " + from, Arrays.copyOfRange(content, (int) from, LENGTH), readAll(archive.getInputStream(entry, from)));
+        assertEquals(0, readAll(archive.getInputStream(entry, LENGTH + 10)).length);
+    }
+
+    @Test
+    public void seekInDeflatedEntry() throws IOException {
+        byte[] content = text(LENGTH);
+        ZipIndex.Archive archive = index(writeArchive(content));
+        ZipEntry entry = archive.getEntry("deflated.txt");
+        for (long from : OFFSETS)
+            assertArrayEquals("from " + from, Arrays.copyOfRange(content, (int) from, LENGTH), readAll(archive.getInputStream(entry, from)));
+        try {
+            archive.getInputStream(entry, LENGTH + 10);
+            fail("seek beyond end of entry");
+        } catch (EOFException expected) {
+        }
+    }
+
+    @Test
+    public void interruptedReadsAreResumed() throws IOException {
+        byte[] content = text(LENGTH);
+        ZipIndex.Archive archive = index(writeArchive(content));
+        ZipEntry entry = archive.getEntry("deflated.txt");
+        // player like pattern: read a bit, seek forward, back, forward again
+        long[] seeks = { 0, 1000, 200000, 150000, 150001, 299000 };
+        for (long from : seeks) {
+            int length = (int) Math.min(5000, LENGTH - from);
+            assertArrayEquals("from " + from, Arrays.copyOfRange(content, (int) from, (int) from + length),
+                    readSome(archive.getInputStream(entry, from), length));
+        }
+        assertArrayEquals(content, readAll(archive.getInputStream(entry)));
+    }
+
+    @Test
+    public void corruptedEntriesFailAtTheirEnd() throws IOException {
+        byte[] content = text(LENGTH);
+        File file = writeArchive(content);
+        // first entry is stored right after its local header: 30 bytes + name
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = 30 + "stored.mkv".length() + 1000;
+            raf.seek(position);
+            int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 1);
+        }
+        ZipIndex.Archive archive = index(file);
+        try {
+            readAll(archive.getInputStream(archive.getEntry("stored.mkv")));
+            fail("bad CRC");
+        } catch (ZipException expected) {
+        }
+        // a read not starting at 0 cannot check anything
+        assertEquals(LENGTH - 2000, readAll(archive.getInputStream(archive.getEntry("stored.mkv"), 2000)).length);
+        assertArrayEquals(content, readAll(archive.getInputStream(archive.getEntry("deflated.txt"))));
+    }
+}
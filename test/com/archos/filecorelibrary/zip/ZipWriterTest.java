@@ -0,0 +1,280 @@
+// Copyright 2026 Courville Software
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+
+package com.archos.filecorelibrary.zip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.archos.filecorelibrary.PositionalWriter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Archives written by ZipWriter, read back by java.util.zip
+ */
+public class ZipWriterTest {
+
+    private static final long TIME = 1700000000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static class FilePositionalWriter implements PositionalWriter {
+        private final RandomAccessFile mFile;
+
+        FilePositionalWriter(File file) throws IOException {
+            mFile = new RandomAccessFile(file, "rw");
+        }
+
+        @Override
+        public void write(long position, byte[] buffer, int offset, int length) throws IOException {
+            mFile.seek(position);
+            mFile.write(buffer, offset, length);
+        }
+
+        @Override
+        public void setLength(long length) throws IOException {
+            mFile.setLength(length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            mFile.close();
+        }
+    }
+
+    /**
+     * Text like content: compressible, several blocks long
+     */
+    private static byte[] text(int length) {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(length);
+        while (text.length() < length)
+            text.append("line ").append(random.nextInt(1000)).append(" of some text\n");
+        return text.substring(0, length).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] random(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0)
+            out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+
+    private static void assertEntry(ZipFile zip, String name, int method, byte[] content) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        assertNotNull(name, entry);
+        assertEquals(name, method, entry.getMethod());
+        assertEquals(name, content.length, entry.getSize());
+        assertEquals(name, crc(content), entry.getCrc());
+        try (InputStream in = zip.getInputStream(entry)) {
+            assertArrayEquals(name, content, readAll(in));
+        }
+    }
+
+    @Test
+    public void deflatedRoundTrip() throws IOException {
+        for (int parallelism : new int[] { 1, 4 }) {
+            File file = mFolder.newFile();
+            byte[] small = text(1000);
+            byte[] large = text(5 * ZipWriter.BLOCK_SIZE + 123);
+            byte[] exact = text(2 * ZipWriter.BLOCK_SIZE);
+            byte[] noise = random(3 * ZipWriter.BLOCK_SIZE);
+            // few blocks in flight: the writer has to wait for its workers
+            ZipWriter writer = new ZipWriter(new FileOutputStream(file), parallelism, 2);
+            writer.putDirectory("dir", TIME);
+            writer.putDeflated("dir/small.txt", TIME, small.length, new ByteArrayInputStream(small));
+            writer.putDeflated("dir/large.txt", TIME, -1, new ByteArrayInputStream(large));
+            writer.setLevel(1);
+            writer.putDeflated("exact.txt", TIME, exact.length, new ByteArrayInputStream(exact));
+            writer.putDeflated("noise.bin", TIME, noise.length, new ByteArrayInputStream(noise));
+            writer.putDeflated("empty", TIME, 0, new ByteArrayInputStream(new byte[0]));
+            writer.close();
+
+            try (ZipFile zip = new ZipFile(file)) {
+                assertEquals(6, zip.size());
+                assertTrue(zip.getEntry("dir/").isDirectory());
+                assertEntry(zip, "dir/small.txt", ZipEntry.DEFLATED, small);
+                assertEntry(zip, "dir/large.txt", ZipEntry.DEFLATED, large);
+                assertEntry(zip, "exact.txt", ZipEntry.DEFLATED, exact);
+                assertEntry(zip, "noise.bin", ZipEntry.DEFLATED, noise);
+                assertEntry(zip, "empty", ZipEntry.DEFLATED, new byte[0]);
+                assertTrue(zip.getEntry("dir/large.txt").getCompressedSize() < large.length / 2);
+            }
+        }
+    }
+
+    @Test
+    public void sequentialReadersFindEntryEnds() throws IOException {
+        File file = mFolder.newFile();
+        byte[] first = text(3 * ZipWriter.BLOCK_SIZE);
+        byte[] second = random(1000);
+        ZipWriter writer = new ZipWriter(new FileOutputStream(file), 2, ZipWriter.DEFAULT_MAX_IN_FLIGHT_BLOCKS);
+        writer.putDeflated("first", TIME, first.length, new ByteArrayInputStream(first));
+        writer.putStored("second", TIME, second.length, crc(second), new ByteArrayInputStream(second));
+        writer.close();
+
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(file))) {
+            assertEquals("first", in.getNextEntry().getName());
+            assertArrayEquals(first, readAll(in));
+            assertEquals("second", in.getNextEntry().getName());
+            assertArrayEquals(second, readAll(in));
+            assertEquals(null, in.getNextEntry());
+        }
+    }
+
+    @Test
+    public void storedWithKnownCrc() throws IOException {
+        File file = mFolder.newFile();
+        byte[] content = random(2 * ZipWriter.BLOCK_SIZE + 7);
+        ZipWriter writer = new ZipWriter(new FileOutputStream(file), 1, ZipWriter.DEFAULT_MAX_IN_FLIGHT_BLOCKS);
+        writer.putStored("movie.mkv", TIME, content.length, crc(content), new ByteArrayInputStream(content));
+        writer.close();
+
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEntry(zip, "movie.mkv", ZipEntry.STORED, content);
+            assertEquals(content.length, zip.getEntry("movie.mkv").getCompressedSize());
+        }
+    }
+
+    @Test
+    public void storedWithPatchedHeaders() throws IOException {
+        File file = mFolder.newFile();
+        byte[] content = random(ZipWriter.BLOCK_SIZE + 1);
+        byte[] other = random(100);
+        ZipWriter writer = new ZipWriter(new FileOutputStream(file), 1, ZipWriter.DEFAULT_MAX_IN_FLIGHT_BLOCKS);
+        writer.setPositionalWriter(new FilePositionalWriter(file));
+        assertTrue(writer.canPatchHeaders());
+        writer.putStored("movie.mkv", TIME, content.length, new ByteArrayInputStream(content));
+        // announced larger than 4GB: the local header gets zip64 sizes, patched as well
+        writer.putStored("huge.mkv", TIME, 5L << 30, new ByteArrayInputStream(other));
+        writer.close();
+
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEntry(zip, "movie.mkv", ZipEntry.STORED, content);
+            assertEntry(zip, "huge.mkv", ZipEntry.STORED, other);
+        }
+        // local headers are what sequential readers go by
+        try (ZipInputStream in = new ZipInputStream(new FileInputStream(file))) {
+            assertEquals("movie.mkv", in.getNextEntry().getName());
+            assertArrayEquals(content, readAll(in));
+            assertEquals("huge.mkv", in.getNextEntry().getName());
+            assertArrayEquals(other, readAll(in));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void storedWithoutCrcNeedsPositionalWriter() throws IOException {
+        ZipWriter writer = new ZipWriter(new ByteArrayOutputStream(), 1, ZipWriter.DEFAULT_MAX_IN_FLIGHT_BLOCKS);
+        writer.putStored("a", TIME, 1, new ByteArrayInputStream(new byte[1]));
+    }
+
+    @Test
+    public void storedContentChanged() throws IOException {
+        ZipWriter writer = new ZipWriter(new ByteArrayOutputStream(), 1, ZipWriter.DEFAULT_MAX_IN_FLIGHT_BLOCKS);
+        byte[] content = random(10);
+        try {
+            writer.putStored("a", TIME, content.length, crc(content) + 1, new ByteArrayInputStream(content));
+            fail("wrong CRC accepted");
+        } catch (ZipException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void zip64EntryCount() throws IOException {
+        File file = mFolder.newFile();
+        int count = 70000;
+        ZipWriter writer = new ZipWriter(new FileOutputStream(file), 1, ZipWriter.DEFAULT_MAX_IN_FLIGHT_BLOCKS);
+        for (int i = 0; i < count; i++)
+            writer.putStored("file" + i, TIME, 0, 0, new ByteArrayInputStream(new byte[0]));
+        byte[] last = text(5000);
+        writer.putDeflated("last.txt", TIME, last.length, new ByteArrayInputStream(last));
+        writer.close();
+
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEquals(count + 1, zip.size());
+            assertEntry(zip, "file" + (count - 1), ZipEntry.STORED, new byte[0]);
+            assertEntry(zip, "last.txt", ZipEntry.DEFLATED, last);
+        }
+    }
+
+    @Test
+    public void zip64LocalHeaderForLargeDeflatedEntry() throws IOException {
+        File file = mFolder.newFile();
+        byte[] content = text(10000);
+        ZipWriter writer = new ZipWriter(new FileOutputStream(file), 1, ZipWriter.DEFAULT_MAX_IN_FLIGHT_BLOCKS);
+        writer.putDeflated("big.txt", TIME, 5L << 30, new ByteArrayInputStream(content));
+        writer.putDeflated("after.txt", TIME, content.length, new ByteArrayInputStream(content));
+        writer.close();
+
+        try (ZipFile zip = new ZipFile(file)) {
+            assertEntry(zip, "big.txt", ZipEntry.DEFLATED, content);
+            assertEntry(zip, "after.txt", ZipEntry.DEFLATED, content);
+        }
+        // not read with ZipInputStream: the data descriptor has 8 bytes sizes as APPNOTE asks after a zip64 local
+        // header, ZipInputStream of JDK 17 and Android only expects them above 4GB
+    }
+
+    @Test
+    public void utf8Names() throws IOException {
+        File file = mFolder.newFile();
+        byte[] content = text(10);
+        ZipWriter writer = new ZipWriter(new FileOutputStream(file), 1, ZipWriter.DEFAULT_MAX_IN_FLIGHT_BLOCKS);
+        writer.putDeflated("été/ファイル.txt", TIME, content.length, new ByteArrayInputStream(content));
+        writer.close();
+
+        try (ZipFile zip = new ZipFile(file, StandardCharsets.ISO_8859_1)) {
+            // the UTF-8 flag wins over the charset given
+            assertEntry(zip, "été/ファイル.txt", ZipEntry.DEFLATED, content);
+        }
+    }
+}